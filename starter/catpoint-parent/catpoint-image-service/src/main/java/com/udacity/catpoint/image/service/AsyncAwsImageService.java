@@ -0,0 +1,154 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking variant of AwsImageService. Requests go through RekognitionAsyncClient on the
+ * Netty NIO HTTP client, so no thread is parked while Rekognition works on a frame and the number
+ * of frames in flight is bounded by the connection pool rather than by a thread pool.
+ *
+ * Reads the same config.properties keys as AwsImageService, plus these optional ones:
+ *      aws.endpoint=[endpoint override, for example a local stub such as http://localhost:8080]
+ *      aws.async.maxConnections=[max pooled connections, default 64]
+ *      aws.async.maxPendingAcquires=[max requests waiting for a connection, default 10000]
+ *      aws.async.connectionTtlSeconds=[max lifetime of a pooled connection, default 60]
+ *      aws.async.maxIdleSeconds=[idle time before a pooled connection is reaped, default 30]
+ */
+public class AsyncAwsImageService implements ImageService, AutoCloseable {
+
+    private Logger log = LoggerFactory.getLogger(AsyncAwsImageService.class);
+
+    private final RekognitionAsyncClient rekognitionClient;
+
+    public AsyncAwsImageService() {
+        this(loadProperties());
+    }
+
+    public AsyncAwsImageService(Properties props) {
+        this(buildClient(props));
+    }
+
+    public AsyncAwsImageService(RekognitionAsyncClient rekognitionClient) {
+        this.rekognitionClient = rekognitionClient;
+    }
+
+    /**
+     * Builds a RekognitionAsyncClient backed by a Netty connection pool tuned for many small
+     * concurrent requests: keep-alive is on and idle connections are reaped, so a steady stream
+     * of frames reuses warm connections instead of paying a new TLS handshake per frame.
+     */
+    public static RekognitionAsyncClient buildClient(Properties props) {
+        SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(intProperty(props, "aws.async.maxConnections", 64))
+                .maxPendingConnectionAcquires(intProperty(props, "aws.async.maxPendingAcquires", 10_000))
+                .connectionTimeToLive(Duration.ofSeconds(intProperty(props, "aws.async.connectionTtlSeconds", 60)))
+                .connectionMaxIdleTime(Duration.ofSeconds(intProperty(props, "aws.async.maxIdleSeconds", 30)))
+                .useIdleConnectionReaper(true)
+                .tcpKeepAlive(true)
+                .build();
+
+        AwsCredentials awsCredentials = AwsBasicCredentials.create(props.getProperty("aws.id"), props.getProperty("aws.secret"));
+        RekognitionAsyncClient.Builder builder = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .region(Region.of(props.getProperty("aws.region")))
+                .httpClient(httpClient);
+        String endpoint = props.getProperty("aws.endpoint");
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Blocking adapter so this class can be used anywhere an ImageService is expected.
+     * Prefer {@link #imageContainsCatAsync(BufferedImage, float)} when the caller can compose futures.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        try {
+            return imageContainsCatAsync(image, confidenceThreshold).join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw ce;
+        }
+    }
+
+    /**
+     * Returns a future that completes with true if the provided image contains a cat. The JPEG
+     * encoding runs on the calling thread; the request itself never blocks a thread.
+     * @param image Image to scan
+     * @param confidenceThreshold Minimum threshold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     */
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshold) {
+        Image awsImage;
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "jpg", os);
+            // the buffer is never touched again, so hand it to the SDK without another copy
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(os.toByteArray())).build();
+        } catch (IOException ioe) {
+            log.error("Error building image byte array", ioe);
+            return CompletableFuture.failedFuture(new UncheckedIOException(ioe));
+        }
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshold).build();
+        return rekognitionClient.detectLabels(detectLabelsRequest).thenApply(response -> {
+            logLabelsForFun(response);
+            return response.labels().stream().anyMatch(l -> l.name().toLowerCase().contains("cat"));
+        });
+    }
+
+    @Override
+    public void close() {
+        rekognitionClient.close();
+    }
+
+    private void logLabelsForFun(DetectLabelsResponse response) {
+        log.info(response.labels().stream()
+                .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
+                .collect(Collectors.joining(", ")));
+    }
+
+    private static Properties loadProperties() {
+        Properties props = new Properties();
+        try (InputStream is = AsyncAwsImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                throw new IllegalStateException("Unable to initialize AWS Rekognition, no properties file found");
+            }
+            props.load(is);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to initialize AWS Rekognition, properties file unreadable", ioe);
+        }
+        return props;
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -17,6 +17,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -32,13 +33,15 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ * Optionally:
+ *      aws.endpoint=[endpoint override, for example a local stub such as http://localhost:8080]
  */
-public class AwsImageService implements ImageService {
+public class AwsImageService implements ImageService, AutoCloseable {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    private final RekognitionClient rekognitionClient;
 
     public AwsImageService() {
         Properties props = new Properties();
@@ -46,18 +49,34 @@ public class AwsImageService implements ImageService {
             props.load(is);
         } catch (IOException ioe ) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+            rekognitionClient = null;
             return;
         }
+        rekognitionClient = buildClient(props);
+    }
+
+    public AwsImageService(Properties props) {
+        this(buildClient(props));
+    }
+
+    public AwsImageService(RekognitionClient rekognitionClient) {
+        this.rekognitionClient = rekognitionClient;
+    }
 
+    public static RekognitionClient buildClient(Properties props) {
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        RekognitionClient.Builder builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .region(Region.of(awsRegion))
-                .build();
+                .region(Region.of(awsRegion));
+        String endpoint = props.getProperty("aws.endpoint");
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
     }
 
     /**
@@ -81,6 +100,13 @@ public class AwsImageService implements ImageService {
         return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
     }
 
+    @Override
+    public void close() {
+        if (rekognitionClient != null) {
+            rekognitionClient.close();
+        }
+    }
+
     private void logLabelsForFun(DetectLabelsResponse response) {
         log.info(response.labels().stream()
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
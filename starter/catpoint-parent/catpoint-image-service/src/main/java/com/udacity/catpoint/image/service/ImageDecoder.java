@@ -0,0 +1,108 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decodes image files for display without ever holding them at full resolution.
+ *
+ * The reader is asked for source subsampling, so it only keeps every n-th row and column while
+ * decoding and the full-size raster is never allocated. n is the largest step that still leaves
+ * at least the target size, and a bilinear pass then fits the result to the target, keeping the
+ * aspect ratio. Use {@link #decodeFullResolution(Path)} for frames that are going to be classified.
+ */
+public class ImageDecoder {
+
+    private final int targetWidth;
+    private final int targetHeight;
+
+    /**
+     * @param targetWidth Maximum width of a decoded image
+     * @param targetHeight Maximum height of a decoded image
+     */
+    public ImageDecoder(int targetWidth, int targetHeight) {
+        if (targetWidth < 1 || targetHeight < 1) {
+            throw new IllegalArgumentException("Target resolution must be positive");
+        }
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+    }
+
+    /**
+     * @return The image, no larger than the target size
+     * @throws IOException If the file cannot be read or is not in a supported format
+     */
+    public BufferedImage decode(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = readerFor(in, file);
+            try {
+                reader.setInput(in, true, true);
+                int step = subsampling(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return fit(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes every pixel, for classification.
+     */
+    public static BufferedImage decodeFullResolution(Path file) throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+        return image;
+    }
+
+    int subsampling(int width, int height) {
+        double scale = Math.min((double) targetWidth / width, (double) targetHeight / height);
+        if (scale >= 1) {
+            return 1;
+        }
+        int outWidth = Math.max(1, (int) Math.round(width * scale));
+        int outHeight = Math.max(1, (int) Math.round(height * scale));
+        return Math.max(1, Math.min(width / outWidth, height / outHeight));
+    }
+
+    private BufferedImage fit(BufferedImage image) {
+        double scale = Math.min((double) targetWidth / image.getWidth(), (double) targetHeight / image.getHeight());
+        if (scale >= 1) {
+            return image;
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage out = new BufferedImage(width, height, type);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private static ImageReader readerFor(ImageInputStream in, Path file) throws IOException {
+        if (in == null) {
+            throw new IOException("Cannot open " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+        return readers.next();
+    }
+}
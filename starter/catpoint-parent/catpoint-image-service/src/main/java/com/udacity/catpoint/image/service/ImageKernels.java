@@ -0,0 +1,226 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Pixel kernels for frame pre-processing that work on the raster arrays instead of going
+ * through getRGB or Java2D: grayscale conversion, box and bilinear downscaling, absolute frame
+ * differences and histograms.
+ *
+ * The kernels use the incubating Vector API when the jdk.incubator.vector module is present
+ * (run with --add-modules jdk.incubator.vector) and the hardware has 256-bit vectors or wider,
+ * and plain loops otherwise; both give identical results. -Dcatpoint.kernels.scalar=true forces
+ * the plain loops. Histograms are always plain loops, since the Vector API has no scatter.
+ *
+ * Gray images are TYPE_BYTE_GRAY. The BufferedImage methods read TYPE_3BYTE_BGR, TYPE_INT_RGB
+ * and TYPE_INT_ARGB rasters directly, as long as they are not sub-images; anything else is
+ * drawn into a TYPE_INT_ARGB copy first. Alpha is ignored.
+ */
+public final class ImageKernels {
+
+    private static final boolean VECTORIZED = !Boolean.getBoolean("catpoint.kernels.scalar") && vectorApiUsable();
+
+    private ImageKernels() {
+    }
+
+    /**
+     * @return Whether the kernels run on the Vector API
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Luma with BT.601 weights, rounded to 8 bits. Gray images are copied as they are.
+     */
+    public static BufferedImage toGray(BufferedImage image) {
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = bytes(gray);
+        int pixels = image.getWidth() * image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            // drawing would convert from the linear gray color space
+            image.getRaster().getDataElements(0, 0, image.getWidth(), image.getHeight(), dst);
+        } else if (image.getType() == BufferedImage.TYPE_3BYTE_BGR && isPacked(image, 3)) {
+            grayFromBgr(bytes(image), dst, pixels);
+        } else if ((image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) && isPacked(image, 1)) {
+            grayFromRgb(ints(image), dst, pixels);
+        } else {
+            grayFromRgb(ints(toIntArgb(image)), dst, pixels);
+        }
+        return gray;
+    }
+
+    /**
+     * Averages each factor x factor block into one pixel. Rows and columns that do not fill a
+     * whole block are left out.
+     */
+    public static BufferedImage downscaleBox(BufferedImage image, int factor) {
+        if (factor < 1 || factor > Math.min(image.getWidth(), image.getHeight())) {
+            throw new IllegalArgumentException("Factor must be between 1 and the smaller side of the image");
+        }
+        BufferedImage out = new BufferedImage(image.getWidth() / factor, image.getHeight() / factor, BufferedImage.TYPE_BYTE_GRAY);
+        downscaleBox(grayBytes(image), image.getWidth(), image.getHeight(), factor, bytes(out));
+        return out;
+    }
+
+    public static BufferedImage downscaleBilinear(BufferedImage image, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        downscaleBilinear(grayBytes(image), image.getWidth(), image.getHeight(), bytes(out), width, height);
+        return out;
+    }
+
+    /**
+     * @return |a - b| per pixel of the two frames' gray levels
+     */
+    public static BufferedImage absoluteDifference(BufferedImage a, BufferedImage b) {
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+            throw new IllegalArgumentException("Frames differ in size");
+        }
+        BufferedImage out = new BufferedImage(a.getWidth(), a.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        absoluteDifference(grayBytes(a), grayBytes(b), bytes(out), a.getWidth() * a.getHeight());
+        return out;
+    }
+
+    /**
+     * @return Pixels per gray level, 256 bins
+     */
+    public static int[] histogram(BufferedImage image) {
+        int[] bins = new int[256];
+        histogram(grayBytes(image), image.getWidth() * image.getHeight(), bins);
+        return bins;
+    }
+
+    /**
+     * @param bgr Packed 3-byte pixels in blue, green, red order, as in TYPE_3BYTE_BGR
+     */
+    public static void grayFromBgr(byte[] bgr, byte[] gray, int pixels) {
+        if (VECTORIZED) {
+            VectorImageKernels.grayFromBgr(bgr, gray, pixels);
+        } else {
+            ScalarImageKernels.grayFromBgr(bgr, gray, 0, pixels);
+        }
+    }
+
+    /**
+     * @param rgb Pixels as in TYPE_INT_RGB; alpha, if any, is ignored
+     */
+    public static void grayFromRgb(int[] rgb, byte[] gray, int pixels) {
+        if (VECTORIZED) {
+            VectorImageKernels.grayFromRgb(rgb, gray, pixels);
+        } else {
+            ScalarImageKernels.grayFromRgb(rgb, gray, 0, pixels);
+        }
+    }
+
+    /**
+     * @param dst Holds (width / factor) x (height / factor) pixels
+     */
+    public static void downscaleBox(byte[] gray, int width, int height, int factor, byte[] dst) {
+        if (VECTORIZED) {
+            VectorImageKernels.downscaleBox(gray, width, factor, dst, width / factor, height / factor);
+        } else {
+            ScalarImageKernels.downscaleBox(gray, width, factor, dst, width / factor, height / factor);
+        }
+    }
+
+    /**
+     * Samples at pixel centers with 8-bit fixed point weights. Best for reductions of less
+     * than half; larger ones skip source pixels, where {@link #downscaleBox} averages them.
+     */
+    public static void downscaleBilinear(byte[] gray, int width, int height, byte[] dst, int dstWidth, int dstHeight) {
+        if (VECTORIZED) {
+            VectorImageKernels.downscaleBilinear(gray, width, height, dst, dstWidth, dstHeight);
+        } else {
+            ScalarImageKernels.downscaleBilinear(gray, width, height, dst, dstWidth, dstHeight);
+        }
+    }
+
+    public static void absoluteDifference(byte[] a, byte[] b, byte[] dst, int length) {
+        if (VECTORIZED) {
+            VectorImageKernels.absoluteDifference(a, b, dst, length);
+        } else {
+            ScalarImageKernels.absoluteDifference(a, b, dst, 0, length);
+        }
+    }
+
+    /**
+     * Adds the gray levels of the first length pixels to 256 bins.
+     */
+    public static void histogram(byte[] gray, int length, int[] bins) {
+        ScalarImageKernels.histogram(gray, length, bins);
+    }
+
+    private static boolean vectorApiUsable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorImageKernels.isSupported();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * The gray bytes of an image: its own raster if it is a whole TYPE_BYTE_GRAY image,
+     * otherwise a converted copy.
+     */
+    private static byte[] grayBytes(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && isPacked(image, 1)) {
+            return bytes(image);
+        }
+        return bytes(toGray(image));
+    }
+
+    private static BufferedImage toIntArgb(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            // copied, not blended over black, so alpha is ignored as it is for whole ARGB images
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Whether the raster holds exactly this image's pixels, row after row from index 0, which a
+     * sub-image sharing its parent's array does not.
+     */
+    private static boolean isPacked(BufferedImage image, int elementsPerPixel) {
+        WritableRaster raster = image.getRaster();
+        SampleModel model = raster.getSampleModel();
+        int stride;
+        if (model instanceof ComponentSampleModel component) {
+            stride = component.getScanlineStride();
+        } else if (model instanceof SinglePixelPackedSampleModel packed) {
+            stride = packed.getScanlineStride();
+        } else {
+            return false;
+        }
+        return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getNumBanks() == 1 && raster.getDataBuffer().getOffset() == 0
+                && stride == image.getWidth() * elementsPerPixel;
+    }
+
+    private static byte[] bytes(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static int[] ints(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
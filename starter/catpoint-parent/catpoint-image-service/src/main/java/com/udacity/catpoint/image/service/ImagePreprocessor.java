@@ -0,0 +1,183 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prepares camera frames for classification. Each frame is cropped to the camera's region of
+ * interest, normalized to 8-bit sRGB (TYPE_3BYTE_BGR, which is what the JPEG encoder wants
+ * anyway) and shrunk to fit the target resolution, so less has to be encoded, uploaded and
+ * classified per frame.
+ *
+ * Scaling works directly on the byte raster: large reductions use area averaging (every
+ * source pixel contributes to exactly one output pixel), small ones use bilinear interpolation.
+ */
+public class ImagePreprocessor {
+
+    private final int targetWidth;
+    private final int targetHeight;
+    private final Map<String, Rectangle2D> regionsOfInterest = new ConcurrentHashMap<>();
+
+    /**
+     * @param targetWidth Maximum width of a preprocessed frame
+     * @param targetHeight Maximum height of a preprocessed frame. Aspect ratio is always kept.
+     */
+    public ImagePreprocessor(int targetWidth, int targetHeight) {
+        if (targetWidth < 1 || targetHeight < 1) {
+            throw new IllegalArgumentException("Target resolution must be positive");
+        }
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+    }
+
+    /**
+     * Restricts a camera to part of its field of view.
+     * @param cameraId Camera the region applies to
+     * @param region Region as fractions of the frame, for example (0.5, 0, 0.5, 1) for the right half
+     */
+    public void setRegionOfInterest(String cameraId, Rectangle2D region) {
+        Rectangle2D unit = new Rectangle2D.Double(0, 0, 1, 1);
+        if (region.isEmpty() || !unit.contains(region)) {
+            throw new IllegalArgumentException("Region of interest must be a non-empty part of the unit square");
+        }
+        regionsOfInterest.put(cameraId, region);
+    }
+
+    public void clearRegionOfInterest(String cameraId) {
+        regionsOfInterest.remove(cameraId);
+    }
+
+    /**
+     * Crops, normalizes and downscales a frame. The source image is never modified.
+     * @param cameraId Camera the frame came from, used to look up its region of interest. May be null.
+     * @param frame Frame at full camera resolution
+     * @return A TYPE_3BYTE_BGR image no larger than the target resolution
+     */
+    public BufferedImage preprocess(String cameraId, BufferedImage frame) {
+        Rectangle crop = cropBounds(cameraId, frame);
+        BufferedImage normalized = normalize(frame, crop);
+
+        double scale = Math.min(1.0, Math.min((double) targetWidth / crop.width, (double) targetHeight / crop.height));
+        int outWidth = Math.max(1, (int) Math.round(crop.width * scale));
+        int outHeight = Math.max(1, (int) Math.round(crop.height * scale));
+        if (outWidth == crop.width && outHeight == crop.height) {
+            return normalized;
+        }
+
+        BufferedImage out = new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] src = ((DataBufferByte) normalized.getRaster().getDataBuffer()).getData();
+        byte[] dst = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+        if (crop.width >= 2 * outWidth && crop.height >= 2 * outHeight) {
+            areaAverage(src, crop.width, crop.height, dst, outWidth, outHeight);
+        } else {
+            bilinear(src, crop.width, crop.height, dst, outWidth, outHeight);
+        }
+        return out;
+    }
+
+    private Rectangle cropBounds(String cameraId, BufferedImage frame) {
+        Rectangle2D region = cameraId == null ? null : regionsOfInterest.get(cameraId);
+        if (region == null) {
+            return new Rectangle(0, 0, frame.getWidth(), frame.getHeight());
+        }
+        int x = (int) Math.floor(region.getX() * frame.getWidth());
+        int y = (int) Math.floor(region.getY() * frame.getHeight());
+        int w = Math.max(1, Math.min(frame.getWidth() - x, (int) Math.ceil(region.getWidth() * frame.getWidth())));
+        int h = Math.max(1, Math.min(frame.getHeight() - y, (int) Math.ceil(region.getHeight() * frame.getHeight())));
+        return new Rectangle(x, y, w, h);
+    }
+
+    /**
+     * Copies the cropped area into a fresh TYPE_3BYTE_BGR image. Java2D converts any source
+     * color model (ARGB, indexed, grayscale, ...) during the blit, and the result always has a
+     * tightly packed raster starting at offset 0, which the scaling kernels rely on.
+     */
+    private static BufferedImage normalize(BufferedImage frame, Rectangle crop) {
+        BufferedImage normalized = new BufferedImage(crop.width, crop.height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = normalized.createGraphics();
+        try {
+            g.drawImage(frame, 0, 0, crop.width, crop.height,
+                    crop.x, crop.y, crop.x + crop.width, crop.y + crop.height, null);
+        } finally {
+            g.dispose();
+        }
+        return normalized;
+    }
+
+    /**
+     * Box filter: each output pixel is the mean of the block of source pixels it covers.
+     */
+    static void areaAverage(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight) {
+        int[] xStart = new int[dstWidth + 1];
+        for (int dx = 0; dx <= dstWidth; dx++) {
+            xStart[dx] = (int) ((long) dx * srcWidth / dstWidth);
+        }
+        int[] sums = new int[dstWidth * 3];
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int y0 = (int) ((long) dy * srcHeight / dstHeight);
+            int y1 = (int) ((long) (dy + 1) * srcHeight / dstHeight);
+            Arrays.fill(sums, 0);
+            for (int sy = y0; sy < y1; sy++) {
+                int row = sy * srcWidth * 3;
+                for (int dx = 0; dx < dstWidth; dx++) {
+                    int b = 0, g = 0, r = 0;
+                    for (int i = row + xStart[dx] * 3, end = row + xStart[dx + 1] * 3; i < end; i += 3) {
+                        b += src[i] & 0xFF;
+                        g += src[i + 1] & 0xFF;
+                        r += src[i + 2] & 0xFF;
+                    }
+                    sums[dx * 3] += b;
+                    sums[dx * 3 + 1] += g;
+                    sums[dx * 3 + 2] += r;
+                }
+            }
+            int rows = y1 - y0;
+            int out = dy * dstWidth * 3;
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int count = rows * (xStart[dx + 1] - xStart[dx]);
+                int half = count / 2;
+                dst[out++] = (byte) ((sums[dx * 3] + half) / count);
+                dst[out++] = (byte) ((sums[dx * 3 + 1] + half) / count);
+                dst[out++] = (byte) ((sums[dx * 3 + 2] + half) / count);
+            }
+        }
+    }
+
+    /**
+     * Bilinear interpolation with 8-bit fixed point weights, sampling at pixel centers.
+     */
+    static void bilinear(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight) {
+        int[] x0 = new int[dstWidth];
+        int[] xWeight = new int[dstWidth];
+        for (int dx = 0; dx < dstWidth; dx++) {
+            double sx = Math.max(0, (dx + 0.5) * srcWidth / dstWidth - 0.5);
+            x0[dx] = Math.min((int) sx, srcWidth - 1);
+            xWeight[dx] = (int) ((sx - x0[dx]) * 256);
+        }
+        int out = 0;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            double sy = Math.max(0, (dy + 0.5) * srcHeight / dstHeight - 0.5);
+            int y0 = Math.min((int) sy, srcHeight - 1);
+            int y1 = Math.min(y0 + 1, srcHeight - 1);
+            int wy = (int) ((sy - y0) * 256);
+            int row0 = y0 * srcWidth * 3;
+            int row1 = y1 * srcWidth * 3;
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int left = x0[dx] * 3;
+                int right = Math.min(x0[dx] + 1, srcWidth - 1) * 3;
+                int wx = xWeight[dx];
+                for (int c = 0; c < 3; c++) {
+                    int top = (src[row0 + left + c] & 0xFF) * (256 - wx) + (src[row0 + right + c] & 0xFF) * wx;
+                    int bottom = (src[row1 + left + c] & 0xFF) * (256 - wx) + (src[row1 + right + c] & 0xFF) * wx;
+                    dst[out++] = (byte) ((top * (256 - wy) + bottom * wy + (1 << 15)) >> 16);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorator that bounds how long an alarm decision can wait on a remote ImageService.
+ * <ul>
+ *     <li>Every call has a deadline. When it passes, the fallback service answers instead.</li>
+ *     <li>If the primary has not answered after the recent p95 latency, a duplicate (hedged)
+ *     request is sent and whichever answers first wins. A failed first attempt triggers the
+ *     duplicate right away, so it doubles as a single retry.</li>
+ *     <li>A circuit breaker stops calling the primary after repeated failures or timeouts and
+ *     sends everything to the fallback until a trial call succeeds again.</li>
+ * </ul>
+ */
+public class ResilientImageService implements ImageService, AutoCloseable {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_SAMPLES_FOR_P95 = 20;
+
+    private Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService primary;
+    private final ImageService fallback;
+    private final long deadlineNanos;
+    private final CircuitBreaker breaker;
+
+    private final ExecutorService attempts = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "image-hedge-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // recent primary latencies, including failed and abandoned requests, used to pick the hedge delay
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int latencyNext;
+    private volatile long hedgeDelayNanos;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedgesSent = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * Uses a hedge delay of half the deadline until enough latencies have been observed, and
+     * opens the circuit for 30 seconds after 5 consecutive failures.
+     */
+    public ResilientImageService(ImageService primary, ImageService fallback, Duration deadline) {
+        this(primary, fallback, deadline, deadline.dividedBy(2), 5, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param primary The (usually remote) service to protect
+     * @param fallback Local service that answers when the primary is too slow, failing or cut off
+     * @param deadline Maximum time a call may take before the fallback answers
+     * @param initialHedgeDelay Hedge delay to use until enough latencies are known to compute the p95
+     * @param failureThreshold Consecutive failures or timeouts that open the circuit
+     * @param openDuration How long the circuit stays open before a trial call is let through
+     */
+    public ResilientImageService(ImageService primary, ImageService fallback, Duration deadline,
+                                 Duration initialHedgeDelay, int failureThreshold, Duration openDuration) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.deadlineNanos = deadline.toNanos();
+        this.hedgeDelayNanos = initialHedgeDelay.toNanos();
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration.toNanos());
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        calls.increment();
+        if (!breaker.allowRequest()) {
+            return useFallback(image, confidenceThreshold);
+        }
+
+        Call call = new Call(image, confidenceThreshold);
+        Runnable hedge = () -> {
+            if (!call.result.isDone() && call.hedged.compareAndSet(false, true)) {
+                call.outstanding.incrementAndGet();
+                hedgesSent.increment();
+                launch(call, true, null);
+            }
+        };
+        ScheduledFuture<?> hedgeTask = hedgeTimer.schedule(hedge, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+        launch(call, false, hedge);
+
+        boolean settled = false;
+        try {
+            boolean cat = call.result.get(deadlineNanos, TimeUnit.NANOSECONDS);
+            breaker.recordSuccess();
+            settled = true;
+            return cat;
+        } catch (TimeoutException te) {
+            timeouts.increment();
+            breaker.recordFailure();
+            settled = true;
+            log.warn("Image classification missed its {} ms deadline, using fallback", TimeUnit.NANOSECONDS.toMillis(deadlineNanos));
+        } catch (ExecutionException ee) {
+            failures.increment();
+            breaker.recordFailure();
+            settled = true;
+            log.warn("Image classification failed, using fallback", ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return useFallback(image, confidenceThreshold);
+        } finally {
+            hedgeTask.cancel(false);
+            // attempts still running once the call is decided are abandoned, and sampled as they stand
+            call.cancelAttempts();
+            if (!settled) {
+                // only a verdict settles the breaker; an interrupted trial must not hold it half-open
+                breaker.releaseTrial();
+            }
+        }
+        return useFallback(image, confidenceThreshold);
+    }
+
+    public long getCalls() { return calls.sum(); }
+    public long getHedgesSent() { return hedgesSent.sum(); }
+    public long getHedgeWins() { return hedgeWins.sum(); }
+    public long getTimeouts() { return timeouts.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public long getFallbacks() { return fallbacks.sum(); }
+
+    /**
+     * @return Fraction of hedged requests that answered before the original request, or 0 if none were sent
+     */
+    public double getHedgeWinRate() {
+        long sent = hedgesSent.sum();
+        return sent == 0 ? 0.0 : (double) hedgeWins.sum() / sent;
+    }
+
+    public Duration getCurrentHedgeDelay() {
+        return Duration.ofNanos(hedgeDelayNanos);
+    }
+
+    public boolean isCircuitOpen() {
+        return breaker.isOpen();
+    }
+
+    @Override
+    public void close() {
+        hedgeTimer.shutdownNow();
+        attempts.shutdownNow();
+    }
+
+    private void launch(Call call, boolean isHedge, Runnable retry) {
+        Attempt attempt = new Attempt();
+        Future<?> task;
+        try {
+            task = attempts.submit(() -> {
+                boolean cat;
+                try {
+                    cat = primary.imageContainsCat(call.image, call.confidenceThreshold);
+                } catch (RuntimeException | Error e) {
+                    attempt.sample();
+                    // a failed original starts the hedge right away instead of waiting for the timer
+                    if (retry != null) {
+                        retry.run();
+                    }
+                    if (call.outstanding.decrementAndGet() == 0) {
+                        call.result.completeExceptionally(e);
+                    }
+                    return;
+                }
+                attempt.sample();
+                // pick the winner before completing, so metrics are settled when the caller wakes up
+                if (call.winner.compareAndSet(false, true)) {
+                    if (isHedge) {
+                        hedgeWins.increment();
+                    }
+                    call.result.complete(cat);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+            call.result.completeExceptionally(e);
+            return;
+        }
+        call.add(attempt, task);
+    }
+
+    private boolean useFallback(BufferedImage image, float confidenceThreshold) {
+        fallbacks.increment();
+        return fallback.imageContainsCat(image, confidenceThreshold);
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[latencyNext] = nanos;
+        latencyNext = (latencyNext + 1) % LATENCY_WINDOW;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        // sorting the window is cheap, but there is no need to do it on every call
+        if (latencyCount >= MIN_SAMPLES_FOR_P95 && latencyNext % 16 == 0) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            long p95 = sorted[(int) Math.ceil(latencyCount * 0.95) - 1];
+            hedgeDelayNanos = Math.min(p95, deadlineNanos);
+        }
+    }
+
+    /**
+     * One call to imageContainsCat: its result and the attempts sent to the primary for it.
+     */
+    private static class Call {
+        final BufferedImage image;
+        final float confidenceThreshold;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        final AtomicBoolean hedged = new AtomicBoolean(false);
+        final AtomicBoolean winner = new AtomicBoolean(false);
+
+        // guarded by this
+        private final List<Attempt> attempts = new ArrayList<>(2);
+        private boolean cancelled;
+
+        Call(BufferedImage image, float confidenceThreshold) {
+            this.image = image;
+            this.confidenceThreshold = confidenceThreshold;
+        }
+
+        void add(Attempt attempt, Future<?> task) {
+            boolean cancelNow;
+            synchronized (this) {
+                attempt.task = task;
+                attempts.add(attempt);
+                cancelNow = cancelled;
+            }
+            if (cancelNow) {
+                attempt.cancel();
+            }
+        }
+
+        void cancelAttempts() {
+            // no hedge or retry is sent once the call is decided
+            result.cancel(false);
+            List<Attempt> running;
+            synchronized (this) {
+                cancelled = true;
+                running = new ArrayList<>(attempts);
+            }
+            running.forEach(Attempt::cancel);
+        }
+    }
+
+    /**
+     * One request to the primary. Its latency is sampled once: when it answers, fails or is
+     * abandoned, so slow and failed requests count towards the p95 as well.
+     */
+    private class Attempt {
+        final long start = System.nanoTime();
+        final AtomicBoolean sampled = new AtomicBoolean();
+        volatile Future<?> task;
+
+        void sample() {
+            if (sampled.compareAndSet(false, true)) {
+                recordLatency(System.nanoTime() - start);
+            }
+        }
+
+        void cancel() {
+            sample();
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Consecutive-failure circuit breaker. While open every call goes to the fallback; after the
+     * open duration a single trial call is let through to decide whether to close again.
+     */
+    private static class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openNanos;
+
+        private int consecutiveFailures;
+        private boolean open;
+        private boolean trialInFlight;
+        private long openedAt;
+
+        CircuitBreaker(int failureThreshold, long openNanos) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = openNanos;
+        }
+
+        synchronized boolean allowRequest() {
+            if (!open) {
+                return true;
+            }
+            if (!trialInFlight && System.nanoTime() - openedAt >= openNanos) {
+                trialInFlight = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            open = false;
+            trialInFlight = false;
+        }
+
+        /**
+         * Lets another call be the trial, when a call that was let through ended without a verdict.
+         */
+        synchronized void releaseTrial() {
+            trialInFlight = false;
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            if (trialInFlight || consecutiveFailures >= failureThreshold) {
+                open = true;
+                trialInFlight = false;
+                openedAt = System.nanoTime();
+            }
+        }
+
+        synchronized boolean isOpen() {
+            return open;
+        }
+    }
+}
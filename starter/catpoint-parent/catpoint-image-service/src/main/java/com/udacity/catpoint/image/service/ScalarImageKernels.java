@@ -0,0 +1,145 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.Arrays;
+
+/**
+ * Plain loops behind {@link ImageKernels}, used where the Vector API is not available and for
+ * the ends of rows that do not fill a whole vector. The integer arithmetic is the same as in
+ * {@link VectorImageKernels}, so both produce identical bytes.
+ */
+final class ScalarImageKernels {
+
+    private ScalarImageKernels() {
+    }
+
+    static int luma(int r, int g, int b) {
+        // ITU-R BT.601 weights in 8-bit fixed point; 77 + 150 + 29 = 256
+        return (77 * r + 150 * g + 29 * b + 128) >>> 8;
+    }
+
+    static void grayFromBgr(byte[] bgr, byte[] gray, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int o = i * 3;
+            gray[i] = (byte) luma(bgr[o + 2] & 0xFF, bgr[o + 1] & 0xFF, bgr[o] & 0xFF);
+        }
+    }
+
+    static void grayFromRgb(int[] rgb, byte[] gray, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int p = rgb[i];
+            gray[i] = (byte) luma((p >>> 16) & 0xFF, (p >>> 8) & 0xFF, p & 0xFF);
+        }
+    }
+
+    static void absoluteDifference(byte[] a, byte[] b, byte[] dst, int from, int to) {
+        for (int i = from; i < to; i++) {
+            dst[i] = (byte) Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+        }
+    }
+
+    /**
+     * Four tables side by side, so runs of equal pixels do not wait on the same counter.
+     */
+    static void histogram(byte[] gray, int length, int[] bins) {
+        int[] counts = new int[4 * 256];
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            counts[gray[i] & 0xFF]++;
+            counts[256 + (gray[i + 1] & 0xFF)]++;
+            counts[512 + (gray[i + 2] & 0xFF)]++;
+            counts[768 + (gray[i + 3] & 0xFF)]++;
+        }
+        for (; i < length; i++) {
+            counts[gray[i] & 0xFF]++;
+        }
+        for (int v = 0; v < 256; v++) {
+            bins[v] += counts[v] + counts[256 + v] + counts[512 + v] + counts[768 + v];
+        }
+    }
+
+    static void downscaleBox(byte[] src, int width, int factor, byte[] dst, int dstWidth, int dstHeight) {
+        int used = dstWidth * factor;
+        int[] sums = new int[used];
+        for (int dy = 0; dy < dstHeight; dy++) {
+            Arrays.fill(sums, 0);
+            for (int k = 0; k < factor; k++) {
+                int row = (dy * factor + k) * width;
+                for (int x = 0; x < used; x++) {
+                    sums[x] += src[row + x] & 0xFF;
+                }
+            }
+            boxRow(sums, factor, dst, dy * dstWidth, dstWidth);
+        }
+    }
+
+    /**
+     * Sums each run of factor column sums and writes the rounded mean.
+     */
+    static void boxRow(int[] sums, int factor, byte[] dst, int out, int dstWidth) {
+        int count = factor * factor;
+        int half = count / 2;
+        for (int dx = 0, x = 0; dx < dstWidth; dx++) {
+            int sum = 0;
+            for (int end = x + factor; x < end; x++) {
+                sum += sums[x];
+            }
+            dst[out + dx] = (byte) ((sum + half) / count);
+        }
+    }
+
+    static void downscaleBilinear(byte[] src, int width, int height, byte[] dst, int dstWidth, int dstHeight) {
+        BilinearMap map = new BilinearMap(width, dstWidth);
+        int[] rows = new int[width];
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int wy = map.rowWeight(dy, height, dstHeight);
+            int row0 = map.row0 * width;
+            int row1 = map.row1 * width;
+            for (int x = 0; x < width; x++) {
+                rows[x] = (src[row0 + x] & 0xFF) * (256 - wy) + (src[row1 + x] & 0xFF) * wy;
+            }
+            bilinearRow(rows, map, dst, dy * dstWidth, 0, dstWidth);
+        }
+    }
+
+    static void bilinearRow(int[] rows, BilinearMap map, byte[] dst, int out, int from, int to) {
+        for (int dx = from; dx < to; dx++) {
+            int wx = map.weight[dx];
+            dst[out + dx] = (byte) ((rows[map.x0[dx]] * (256 - wx) + rows[map.x1[dx]] * wx + (1 << 15)) >>> 16);
+        }
+    }
+
+    /**
+     * Where each output pixel samples the source: at pixel centers, with 8-bit fixed point
+     * weights, the same mapping ImagePreprocessor uses.
+     */
+    static final class BilinearMap {
+        final int[] x0;
+        final int[] x1;
+        final int[] weight;
+        int row0;
+        int row1;
+
+        BilinearMap(int width, int dstWidth) {
+            x0 = new int[dstWidth];
+            x1 = new int[dstWidth];
+            weight = new int[dstWidth];
+            for (int dx = 0; dx < dstWidth; dx++) {
+                double sx = Math.max(0, (dx + 0.5) * width / dstWidth - 0.5);
+                x0[dx] = Math.min((int) sx, width - 1);
+                x1[dx] = Math.min(x0[dx] + 1, width - 1);
+                weight[dx] = (int) ((sx - x0[dx]) * 256);
+            }
+        }
+
+        /**
+         * Sets row0 and row1 for an output row.
+         * @return The weight of row1
+         */
+        int rowWeight(int dy, int height, int dstHeight) {
+            double sy = Math.max(0, (dy + 0.5) * height / dstHeight - 0.5);
+            row0 = Math.min((int) sy, height - 1);
+            row1 = Math.min(row0 + 1, height - 1);
+            return (int) ((sy - row0) * 256);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorator that classifies a frame as a grid of overlapping tiles instead of as a whole, so a
+ * cat that fills a small part of a wide-angle frame still fills a good part of one tile. The
+ * tiles are views on the frame (getSubimage), not copies, and are classified in parallel on a
+ * fork/join pool.
+ *
+ * The call returns as soon as one tile contains a cat. Tiles that have not started by then are
+ * skipped; tiles already being classified cannot be stopped through ImageService and finish in
+ * the background, and their answers are ignored. If no tile contains a cat but one failed, the
+ * failure is thrown, so a ResilientImageService around this one can fall back. An interrupted
+ * call is thrown the same way, with the interrupt flag set again.
+ *
+ * Give this service full resolution frames: in front of the pre-processing stage, or with its
+ * target resolution at least the tile size, since tiles of a downscaled frame gain nothing.
+ */
+public class TilingImageService implements ImageService, AutoCloseable {
+
+    private final ImageService delegate;
+    private final int columns;
+    private final int rows;
+    private final double overlap;
+    private final ForkJoinPool pool;
+    // a fork/join pool adds threads while tasks wait on joins, so it does not cap delegate calls
+    private final Semaphore permits;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder tilesClassified = new LongAdder();
+    private final LongAdder tilesSkipped = new LongAdder();
+    private final LongAdder earlyExits = new LongAdder();
+
+    /**
+     * Classifies a 2x2 grid whose tiles overlap by a fifth of their size.
+     */
+    public TilingImageService(ImageService delegate) {
+        this(delegate, 2, 2, 0.2);
+    }
+
+    /**
+     * Runs every tile of a frame at once, on a pool with one thread per tile.
+     * @param delegate The service that classifies each tile
+     * @param columns Tiles across the frame
+     * @param rows Tiles down the frame
+     * @param overlap Fraction of a tile's width or height it shares with its neighbor, from 0 up to 0.5
+     */
+    public TilingImageService(ImageService delegate, int columns, int rows, double overlap) {
+        this(delegate, columns, rows, overlap, columns * rows);
+    }
+
+    /**
+     * @param parallelism Tiles classified at the same time, across all calls; fewer than the tile
+     * count saves delegate calls when a cat is found early, at the cost of latency when none is
+     */
+    public TilingImageService(ImageService delegate, int columns, int rows, double overlap, int parallelism) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("Tile grid must have at least one column and one row");
+        }
+        if (!(overlap >= 0 && overlap <= 0.5)) {
+            throw new IllegalArgumentException("Overlap must be between 0 and 0.5");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.delegate = delegate;
+        this.columns = columns;
+        this.rows = rows;
+        this.overlap = overlap;
+        this.pool = new ForkJoinPool(parallelism);
+        this.permits = new Semaphore(parallelism);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        calls.increment();
+        Classification classification = new Classification(image, tiles(image.getWidth(), image.getHeight()), confidenceThreshold);
+        pool.execute(new TileTask(classification, 0, classification.tiles.size()));
+        try {
+            boolean cat = classification.result.get();
+            if (cat) {
+                earlyExits.increment();
+            }
+            return cat;
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Tile classification failed", ee.getCause());
+        } catch (InterruptedException ie) {
+            // no answer is not the same as no cat
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while classifying tiles", ie);
+        } finally {
+            // nothing left to start once the caller has its answer
+            classification.decided.set(true);
+        }
+    }
+
+    /**
+     * The tiles of a frame, row by row. Tiles are as large as the overlap allows, and the last
+     * tile of each row and column ends on the frame's edge.
+     */
+    List<Rectangle> tiles(int width, int height) {
+        int tileWidth = tileSize(width, columns);
+        int tileHeight = tileSize(height, rows);
+        List<Rectangle> tiles = new ArrayList<>(columns * rows);
+        for (int row = 0; row < rows; row++) {
+            int y = offset(row, rows, height, tileHeight);
+            for (int column = 0; column < columns; column++) {
+                tiles.add(new Rectangle(offset(column, columns, width, tileWidth), y, tileWidth, tileHeight));
+            }
+        }
+        return tiles;
+    }
+
+    public long getCalls() { return calls.sum(); }
+    public long getTilesClassified() { return tilesClassified.sum(); }
+    public long getTilesSkipped() { return tilesSkipped.sum(); }
+
+    /**
+     * @return Calls answered by the first tile with a cat, without waiting for the others
+     */
+    public long getEarlyExits() { return earlyExits.sum(); }
+
+    /**
+     * Stops accepting new frames and waits for tiles still being classified.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    private int tileSize(int size, int count) {
+        // count tiles of this size, each sharing overlap of itself with the next, span the frame
+        int tile = (int) Math.ceil(size / (count - (count - 1) * overlap));
+        return Math.max(1, Math.min(size, tile));
+    }
+
+    private static int offset(int index, int count, int size, int tileSize) {
+        return count == 1 ? 0 : (int) Math.round((double) index * (size - tileSize) / (count - 1));
+    }
+
+    /**
+     * State shared by the tiles of one call.
+     */
+    private static class Classification {
+        final BufferedImage image;
+        final List<Rectangle> tiles;
+        final float confidenceThreshold;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        final AtomicBoolean decided = new AtomicBoolean(false);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Classification(BufferedImage image, List<Rectangle> tiles, float confidenceThreshold) {
+            this.image = image;
+            this.tiles = tiles;
+            this.confidenceThreshold = confidenceThreshold;
+        }
+    }
+
+    /**
+     * Splits its range of tiles in halves until one is left, which it classifies unless
+     * another tile has already found a cat. The task that covers every tile completes the call
+     * with no cat, or with a tile's failure, once all of them are done.
+     */
+    private class TileTask extends RecursiveAction {
+        private final Classification classification;
+        private final int from;
+        private final int to;
+
+        TileTask(Classification classification, int from, int to) {
+            this.classification = classification;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            boolean all = from == 0 && to == classification.tiles.size();
+            try {
+                if (to - from > 1) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new TileTask(classification, from, middle), new TileTask(classification, middle, to));
+                } else {
+                    classify(classification.tiles.get(from));
+                }
+            } catch (Error e) {
+                if (all) {
+                    // the caller would otherwise wait forever
+                    classification.result.completeExceptionally(e);
+                }
+                throw e;
+            }
+            if (all) {
+                RuntimeException failure = classification.failure.get();
+                if (failure != null) {
+                    classification.result.completeExceptionally(failure);
+                } else {
+                    classification.result.complete(false);
+                }
+            }
+        }
+
+        private void classify(Rectangle tile) {
+            permits.acquireUninterruptibly();
+            try {
+                if (classification.decided.get()) {
+                    tilesSkipped.increment();
+                    return;
+                }
+                tilesClassified.increment();
+                BufferedImage view = classification.image.getSubimage(tile.x, tile.y, tile.width, tile.height);
+                if (delegate.imageContainsCat(view, classification.confidenceThreshold)
+                        && classification.decided.compareAndSet(false, true)) {
+                    classification.result.complete(true);
+                }
+            } catch (RuntimeException e) {
+                // another tile may still find the cat
+                classification.failure.compareAndSet(null, e);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
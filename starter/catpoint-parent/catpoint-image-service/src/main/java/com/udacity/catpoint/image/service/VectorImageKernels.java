@@ -0,0 +1,180 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * The kernels of {@link ImageKernels} on the incubating Vector API. Only {@link ImageKernels}
+ * touches this class, and only after checking {@link #isSupported()}, so nothing here is
+ * loaded when the jdk.incubator.vector module is missing.
+ *
+ * Pixels are widened to 16 or 32 bit lanes for arithmetic and narrowed again to store, so a
+ * pass works on as many pixels as fit in one vector of the wider type. Row ends that do not
+ * fill a vector go through {@link ScalarImageKernels}.
+ */
+@SuppressWarnings("unchecked")
+final class VectorImageKernels {
+
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> S = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> B = ByteVector.SPECIES_PREFERRED;
+    // bytes that widen to exactly one int or short vector
+    private static final VectorSpecies<Byte> BI = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, I.vectorBitSize() / 4)));
+    private static final VectorSpecies<Byte> BS = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, S.vectorBitSize() / 2)));
+
+    // deinterleave BGR: lane j of channel c is byte 3j + c of three consecutive vectors, so
+    // each channel takes a third of its lanes from each vector; single-vector rearranges and
+    // blends, since two-vector rearranges compile to far slower code
+    private static final VectorShuffle<Byte>[][] FROM = new VectorShuffle[3][];
+    private static final VectorMask<Byte>[][] IN = new VectorMask[3][];
+
+    static {
+        int lanes = BS.length();
+        for (int c = 0; c < 3; c++) {
+            FROM[c] = new VectorShuffle[3];
+            IN[c] = new VectorMask[3];
+            for (int v = 0; v < 3; v++) {
+                int[] indexes = new int[lanes];
+                boolean[] in = new boolean[lanes];
+                for (int j = 0; j < lanes; j++) {
+                    int index = 3 * j + c - v * lanes;
+                    in[j] = index >= 0 && index < lanes;
+                    indexes[j] = in[j] ? index : 0;
+                }
+                FROM[c][v] = VectorShuffle.fromArray(BS, indexes, 0);
+                IN[c][v] = VectorMask.fromArray(BS, in, 0);
+            }
+        }
+    }
+
+    private VectorImageKernels() {
+    }
+
+    /**
+     * Needs 256-bit vectors or wider, so that a vector of bytes widens into one of ints; on
+     * narrower hardware the API would fall back to slow emulation.
+     */
+    static boolean isSupported() {
+        return I.vectorBitSize() >= 256 && BI.length() == I.length() && BS.length() == S.length();
+    }
+
+    static void grayFromBgr(byte[] bgr, byte[] gray, int pixels) {
+        int lanes = BS.length();
+        int i = 0;
+        for (int bound = BS.loopBound(pixels); i < bound; i += lanes) {
+            int o = i * 3;
+            ByteVector v0 = ByteVector.fromArray(BS, bgr, o);
+            ByteVector v1 = ByteVector.fromArray(BS, bgr, o + lanes);
+            ByteVector v2 = ByteVector.fromArray(BS, bgr, o + 2 * lanes);
+            ShortVector b = channel(v0, v1, v2, 0);
+            ShortVector g = channel(v0, v1, v2, 1);
+            ShortVector r = channel(v0, v1, v2, 2);
+            // at most 256 * 255 + 128: wraps a signed short, but not an unsigned shift
+            ShortVector y = r.mul((short) 77).add(g.mul((short) 150)).add(b.mul((short) 29)).add((short) 128)
+                    .lanewise(VectorOperators.LSHR, 8);
+            ((ByteVector) y.convertShape(VectorOperators.S2B, BS, 0)).intoArray(gray, i);
+        }
+        ScalarImageKernels.grayFromBgr(bgr, gray, i, pixels);
+    }
+
+    static void grayFromRgb(int[] rgb, byte[] gray, int pixels) {
+        int i = 0;
+        for (int bound = I.loopBound(pixels); i < bound; i += I.length()) {
+            IntVector p = IntVector.fromArray(I, rgb, i);
+            IntVector r = p.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+            IntVector g = p.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+            IntVector b = p.and(0xFF);
+            IntVector y = r.mul(77).add(g.mul(150)).add(b.mul(29)).add(128).lanewise(VectorOperators.LSHR, 8);
+            ((ByteVector) y.convertShape(VectorOperators.I2B, BI, 0)).intoArray(gray, i);
+        }
+        ScalarImageKernels.grayFromRgb(rgb, gray, i, pixels);
+    }
+
+    static void absoluteDifference(byte[] a, byte[] b, byte[] dst, int length) {
+        int i = 0;
+        for (int bound = B.loopBound(length); i < bound; i += B.length()) {
+            // flipping the sign bit orders unsigned bytes as signed ones
+            ByteVector x = ByteVector.fromArray(B, a, i).lanewise(VectorOperators.XOR, (byte) 0x80);
+            ByteVector y = ByteVector.fromArray(B, b, i).lanewise(VectorOperators.XOR, (byte) 0x80);
+            x.max(y).sub(x.min(y)).intoArray(dst, i);
+        }
+        ScalarImageKernels.absoluteDifference(a, b, dst, i, length);
+    }
+
+    /**
+     * Column sums of each band of factor rows are vectorized; the sums of factor columns that
+     * make an output pixel are not, which leaves 1 / (factor + 1) of the work scalar.
+     */
+    static void downscaleBox(byte[] src, int width, int factor, byte[] dst, int dstWidth, int dstHeight) {
+        int used = dstWidth * factor;
+        int bound = I.loopBound(used);
+        int[] sums = new int[used];
+        for (int dy = 0; dy < dstHeight; dy++) {
+            Arrays.fill(sums, 0);
+            for (int k = 0; k < factor; k++) {
+                int row = (dy * factor + k) * width;
+                int x = 0;
+                for (; x < bound; x += I.length()) {
+                    IntVector.fromArray(I, sums, x).add(widen(src, row + x)).intoArray(sums, x);
+                }
+                for (; x < used; x++) {
+                    sums[x] += src[row + x] & 0xFF;
+                }
+            }
+            ScalarImageKernels.boxRow(sums, factor, dst, dy * dstWidth, dstWidth);
+        }
+    }
+
+    /**
+     * Each output row first blends its two source rows into ints, contiguously, then gathers
+     * the two columns of every output pixel from that row.
+     */
+    static void downscaleBilinear(byte[] src, int width, int height, byte[] dst, int dstWidth, int dstHeight) {
+        ScalarImageKernels.BilinearMap map = new ScalarImageKernels.BilinearMap(width, dstWidth);
+        int[] rows = new int[width];
+        int rowBound = I.loopBound(width);
+        int outBound = I.loopBound(dstWidth);
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int wy = map.rowWeight(dy, height, dstHeight);
+            int row0 = map.row0 * width;
+            int row1 = map.row1 * width;
+            int x = 0;
+            for (; x < rowBound; x += I.length()) {
+                widen(src, row0 + x).mul(256 - wy).add(widen(src, row1 + x).mul(wy)).intoArray(rows, x);
+            }
+            for (; x < width; x++) {
+                rows[x] = (src[row0 + x] & 0xFF) * (256 - wy) + (src[row1 + x] & 0xFF) * wy;
+            }
+
+            int out = dy * dstWidth;
+            int dx = 0;
+            for (; dx < outBound; dx += I.length()) {
+                IntVector left = IntVector.fromArray(I, rows, 0, map.x0, dx);
+                IntVector right = IntVector.fromArray(I, rows, 0, map.x1, dx);
+                IntVector wx = IntVector.fromArray(I, map.weight, dx);
+                IntVector value = left.mul(wx.neg().add(256)).add(right.mul(wx)).add(1 << 15).lanewise(VectorOperators.LSHR, 16);
+                ((ByteVector) value.convertShape(VectorOperators.I2B, BI, 0)).intoArray(dst, out + dx);
+            }
+            ScalarImageKernels.bilinearRow(rows, map, dst, out, dx, dstWidth);
+        }
+    }
+
+    private static IntVector widen(byte[] src, int offset) {
+        return (IntVector) ByteVector.fromArray(BI, src, offset).convertShape(VectorOperators.ZERO_EXTEND_B2I, I, 0);
+    }
+
+    private static ShortVector channel(ByteVector v0, ByteVector v1, ByteVector v2, int c) {
+        ByteVector bytes = v0.rearrange(FROM[c][0])
+                .blend(v1.rearrange(FROM[c][1]), IN[c][1])
+                .blend(v2.rearrange(FROM[c][2]), IN[c][2]);
+        return (ShortVector) bytes.convertShape(VectorOperators.ZERO_EXTEND_B2S, S, 0);
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs calls to a blocking ImageService (such as AwsImageService) on virtual threads, so many
+ * camera frames can be classified at once without sizing a large platform thread pool.
+ * A semaphore caps how many calls may be in flight against the underlying endpoint; extra
+ * calls simply park their (cheap) virtual thread until a permit frees up.
+ */
+public class VirtualThreadImageService implements ImageService, AutoCloseable {
+
+    private final ImageService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param delegate The blocking image service that does the actual classification
+     * @param maxConcurrentCalls Maximum number of delegate calls allowed to run at the same time
+     */
+    public VirtualThreadImageService(ImageService delegate, int maxConcurrentCalls) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * Blocking call, still subject to the concurrency limit. If the calling thread is
+     * interrupted while waiting for a permit, throws IllegalStateException with the interrupt
+     * flag set again.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        try {
+            return classify(image, confidenceThreshold);
+        } catch (InterruptedException ie) {
+            // no answer is not the same as no cat
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to classify image", ie);
+        }
+    }
+
+    /**
+     * Classifies the image on a new virtual thread.
+     * @return A future that completes with the classification result, or exceptionally if the
+     * delegate throws
+     */
+    public CompletableFuture<Boolean> submit(BufferedImage image, float confidenceThreshold) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return classify(image, confidenceThreshold);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ie);
+            }
+        }, executor);
+    }
+
+    /**
+     * Classifies all images concurrently and waits for every result.
+     * @return Results in the same order as the provided images
+     */
+    public List<Boolean> classifyAll(List<BufferedImage> images, float confidenceThreshold) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            futures.add(submit(image, confidenceThreshold));
+        }
+        List<Boolean> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Boolean> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return Number of delegate calls currently running
+     */
+    public int getInFlightCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * Stops accepting new work and waits for submitted calls to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private boolean classify(BufferedImage image, float confidenceThreshold) throws InterruptedException {
+        permits.acquire();
+        try {
+            return delegate.imageContainsCat(image, confidenceThreshold);
+        } finally {
+            permits.release();
+        }
+    }
+}
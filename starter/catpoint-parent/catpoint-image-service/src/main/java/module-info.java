@@ -6,6 +6,10 @@ module com.udacity.catpoint.image {
     requires software.amazon.awssdk.auth; 
     requires software.amazon.awssdk.core; 
     requires software.amazon.awssdk.services.rekognition;
+    requires software.amazon.awssdk.http;
+    requires software.amazon.awssdk.http.nio.netty;
+    // ImageKernels uses it when present and falls back to plain loops otherwise
+    requires static jdk.incubator.vector;
 
     
     exports com.udacity.catpoint.image.service;
@@ -0,0 +1,112 @@
+package com.udacity.catpoint.image.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives AsyncAwsImageService through the real SDK client against a tiny local endpoint
+ * that answers DetectLabels calls.
+ */
+class AsyncAwsImageServiceTest {
+
+    private static final long STUB_LATENCY_MS = 200;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private AsyncAwsImageService service;
+    private volatile String labelsJson = "[]";
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(STUB_LATENCY_MS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"Labels\":" + labelsJson + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        Properties props = new Properties();
+        props.setProperty("aws.id", "test");
+        props.setProperty("aws.secret", "test");
+        props.setProperty("aws.region", "us-east-1");
+        props.setProperty("aws.endpoint", "http://localhost:" + server.getAddress().getPort());
+        props.setProperty("aws.async.maxConnections", "128");
+        service = new AsyncAwsImageService(props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void catLabel_returnsTrue() {
+        labelsJson = "[{\"Name\":\"Cat\",\"Confidence\":97.5}]";
+        assertTrue(service.imageContainsCatAsync(frame(), 50.0f).join());
+    }
+
+    @Test
+    void otherLabels_returnFalse() {
+        labelsJson = "[{\"Name\":\"Dog\",\"Confidence\":91.0},{\"Name\":\"Sofa\",\"Confidence\":80.0}]";
+        assertFalse(service.imageContainsCat(frame(), 50.0f));
+    }
+
+    @Test
+    void concurrentFrames_areNotSerializedOnThreads() {
+        labelsJson = "[{\"Name\":\"Cat\",\"Confidence\":97.5}]";
+        int frames = 64;
+        BufferedImage image = frame();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < frames; i++) {
+            futures.add(service.imageContainsCatAsync(image, 50.0f));
+        }
+        futures.forEach(f -> assertTrue(f.join()));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(frames, requests.get());
+        // serial execution would take frames * latency (12.8s); overlapping requests finish in a few round trips
+        assertTrue(elapsedMs < frames * STUB_LATENCY_MS / 4, "took " + elapsedMs + "ms");
+    }
+
+    private static BufferedImage frame() {
+        return new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+    }
+}
@@ -0,0 +1,79 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares loading a camera picture for the 300x225 preview the way ImagePanel used to (full
+ * ImageIO.read followed by getScaledInstance) with ImageDecoder's subsampled decode. Prints time
+ * and heap allocated per frame. Not a unit test; run the main method from the IDE.
+ */
+public class ImageDecoderBenchmark {
+
+    private static final int WARMUP_FRAMES = 5;
+    private static final int MEASURED_FRAMES = 15;
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("camera", ".jpg");
+        try {
+            ImageIO.write(cameraFrame(4000, 3000), "jpg", file.toFile());
+            System.out.printf("%d KB JPEG, 4000x3000%n", Files.size(file) / 1024);
+            ImageDecoder decoder = new ImageDecoder(300, 225);
+
+            run("ImageIO.read + getScaledInstance", () -> {
+                BufferedImage full = ImageIO.read(file.toFile());
+                Image scaled = full.getScaledInstance(300, 225, Image.SCALE_SMOOTH);
+                // the label paints the scaled image, which is when the scaling really runs
+                BufferedImage shown = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = shown.createGraphics();
+                g.drawImage(scaled, 0, 0, null);
+                g.dispose();
+            });
+            run("ImageDecoder (subsampled)", () -> decoder.decode(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private interface Load {
+        void run() throws IOException;
+    }
+
+    private static void run(String name, Load load) throws IOException {
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            load.run();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            load.run();
+        }
+        double msPerFrame = (System.nanoTime() - start) / 1e6 / MEASURED_FRAMES;
+        long allocated = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / MEASURED_FRAMES;
+        System.out.printf("%-34s %8.1f ms/frame %8.1f MB allocated/frame%n", name, msPerFrame, allocated / 1e6);
+    }
+
+    private static BufferedImage cameraFrame(int width, int height) {
+        // smooth gradients plus sensor noise, roughly what a camera picture looks like
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(16);
+                int r = (x * 255 / width + noise) & 0xFF;
+                int g = (y * 255 / height + noise) & 0xFF;
+                int b = ((x + y) * 255 / (width + height) + noise) & 0xFF;
+                frame.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,67 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageDecoderTest {
+
+    @TempDir
+    Path dir;
+
+    private Path writeJpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(Color.BLUE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+        Path file = dir.resolve(width + "x" + height + ".jpg");
+        ImageIO.write(image, "jpg", file.toFile());
+        return file;
+    }
+
+    @Test
+    void largePicture_isDecodedToFitTheTarget_keepingAspectRatio() throws IOException {
+        BufferedImage preview = new ImageDecoder(300, 225).decode(writeJpeg(4000, 2000));
+        assertEquals(300, preview.getWidth());
+        assertEquals(150, preview.getHeight());
+        // colors survive subsampling, give or take JPEG artifacts
+        Color left = new Color(preview.getRGB(10, 75));
+        Color right = new Color(preview.getRGB(290, 75));
+        assertTrue(left.getRed() > 200 && left.getBlue() < 50, "left half " + left);
+        assertTrue(right.getBlue() > 200 && right.getRed() < 50, "right half " + right);
+    }
+
+    @Test
+    void subsampling_neverDropsBelowTheTarget() {
+        ImageDecoder decoder = new ImageDecoder(300, 225);
+        assertEquals(13, decoder.subsampling(4000, 3000));
+        assertEquals(1, decoder.subsampling(500, 400));
+        assertEquals(1, decoder.subsampling(200, 100));
+        assertEquals(2, decoder.subsampling(640, 480));
+    }
+
+    @Test
+    void smallPicture_isDecodedAsIs_andUnreadableFilesFail() throws IOException {
+        BufferedImage preview = new ImageDecoder(300, 225).decode(writeJpeg(120, 90));
+        assertEquals(120, preview.getWidth());
+        assertEquals(90, preview.getHeight());
+
+        Path text = Files.writeString(dir.resolve("notes.jpg"), "not a picture");
+        assertThrows(IOException.class, () -> new ImageDecoder(300, 225).decode(text));
+        assertThrows(IOException.class, () -> ImageDecoder.decodeFullResolution(text));
+    }
+}
@@ -0,0 +1,133 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the frame pre-processing steps on a 1920x1080 camera frame three ways: through Java2D
+ * and getRGB the way the code would otherwise do them, with the plain loops of
+ * ScalarImageKernels, and with the Vector API kernels. Prints the median milliseconds per frame
+ * of each. Run with --add-modules jdk.incubator.vector, or the last column is left out. Not a
+ * unit test; run the main method from the IDE.
+ */
+public class ImageKernelsBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int RUNS = 101;
+
+    public static void main(String[] args) {
+        BufferedImage bgrFrame = cameraFrame(BufferedImage.TYPE_3BYTE_BGR, 42);
+        BufferedImage rgbFrame = cameraFrame(BufferedImage.TYPE_INT_RGB, 42);
+        byte[] bgr = ((DataBufferByte) bgrFrame.getRaster().getDataBuffer()).getData();
+        int[] rgb = ((DataBufferInt) rgbFrame.getRaster().getDataBuffer()).getData();
+        BufferedImage grayFrame = ImageKernels.toGray(bgrFrame);
+        BufferedImage nextFrame = ImageKernels.toGray(cameraFrame(BufferedImage.TYPE_3BYTE_BGR, 43));
+        byte[] gray = ((DataBufferByte) grayFrame.getRaster().getDataBuffer()).getData();
+        byte[] next = ((DataBufferByte) nextFrame.getRaster().getDataBuffer()).getData();
+        byte[] out = new byte[WIDTH * HEIGHT];
+        int[] bins = new int[256];
+        boolean vector = ImageKernels.isVectorized();
+
+        System.out.printf("%dx%d, Vector API %s%n", WIDTH, HEIGHT, vector ? "in use" : "not available");
+        System.out.printf("%-26s %10s %10s %10s%n", "median ms/frame", "Java2D", "scalar", "vector");
+        row("gray from BGR", vector,
+                () -> awtGray(bgrFrame),
+                () -> ScalarImageKernels.grayFromBgr(bgr, out, 0, out.length),
+                () -> VectorImageKernels.grayFromBgr(bgr, out, out.length));
+        row("gray from INT_RGB", vector,
+                () -> awtGray(rgbFrame),
+                () -> ScalarImageKernels.grayFromRgb(rgb, out, 0, out.length),
+                () -> VectorImageKernels.grayFromRgb(rgb, out, out.length));
+        row("box downscale by 4", vector,
+                () -> awtScale(grayFrame, WIDTH / 4, HEIGHT / 4, RenderingHints.VALUE_INTERPOLATION_BILINEAR),
+                () -> ScalarImageKernels.downscaleBox(gray, WIDTH, 4, out, WIDTH / 4, HEIGHT / 4),
+                () -> VectorImageKernels.downscaleBox(gray, WIDTH, 4, out, WIDTH / 4, HEIGHT / 4));
+        row("bilinear to 640x360", vector,
+                () -> awtScale(grayFrame, 640, 360, RenderingHints.VALUE_INTERPOLATION_BILINEAR),
+                () -> ScalarImageKernels.downscaleBilinear(gray, WIDTH, HEIGHT, out, 640, 360),
+                () -> VectorImageKernels.downscaleBilinear(gray, WIDTH, HEIGHT, out, 640, 360));
+        row("absolute difference", vector,
+                () -> awtDifference(grayFrame, nextFrame),
+                () -> ScalarImageKernels.absoluteDifference(gray, next, out, 0, out.length),
+                () -> VectorImageKernels.absoluteDifference(gray, next, out, out.length));
+        row("histogram", false,
+                () -> awtHistogram(grayFrame),
+                () -> ScalarImageKernels.histogram(gray, gray.length, bins),
+                null);
+    }
+
+    private static void row(String name, boolean vector, Runnable awt, Runnable scalar, Runnable simd) {
+        System.out.printf("%-26s %10.3f %10.3f %10s%n", name, median(awt), median(scalar),
+                vector ? String.format("%.3f", median(simd)) : "-");
+    }
+
+    private static double median(Runnable kernel) {
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            kernel.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[RUNS / 2] / 1e6;
+    }
+
+    private static BufferedImage awtGray(BufferedImage frame) {
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        g.drawImage(frame, 0, 0, null);
+        g.dispose();
+        return gray;
+    }
+
+    private static BufferedImage awtScale(BufferedImage frame, int width, int height, Object interpolation) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.drawImage(frame, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static int awtDifference(BufferedImage a, BufferedImage b) {
+        int[] pa = a.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        int[] pb = b.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        int total = 0;
+        for (int i = 0; i < pa.length; i++) {
+            total += Math.abs((pa[i] & 0xFF) - (pb[i] & 0xFF));
+        }
+        return total;
+    }
+
+    private static int[] awtHistogram(BufferedImage frame) {
+        int[] bins = new int[256];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                bins[frame.getRaster().getSample(x, y, 0)]++;
+            }
+        }
+        return bins;
+    }
+
+    private static BufferedImage cameraFrame(int type, long seed) {
+        // smooth gradients plus sensor noise, roughly what a camera picture looks like
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(seed);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int noise = random.nextInt(16);
+                int r = (x * 255 / WIDTH + noise) & 0xFF;
+                int g = (y * 255 / HEIGHT + noise) & 0xFF;
+                int b = ((x + y) * 255 / (WIDTH + HEIGHT) + noise) & 0xFF;
+                frame.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return frame;
+    }
+}
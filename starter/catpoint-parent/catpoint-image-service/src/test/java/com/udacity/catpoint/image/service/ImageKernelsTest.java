@@ -0,0 +1,177 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ImageKernelsTest {
+
+    // odd sizes, so rows end partway through a vector
+    private static final int WIDTH = 203;
+    private static final int HEIGHT = 77;
+
+    private final Random random = new Random(7);
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private BufferedImage randomImage(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int luma(int rgb) {
+        return (int) Math.round(0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF));
+    }
+
+    @Test
+    void toGray_isBt601Luma_forEveryRasterLayout() {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR}) {
+            BufferedImage image = randomImage(type);
+            // a sub-image shares its parent's raster and must not be read as if it were packed
+            BufferedImage sub = image.getSubimage(3, 5, 100, 50);
+            BufferedImage gray = ImageKernels.toGray(image);
+            BufferedImage subGray = ImageKernels.toGray(sub);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    // 8-bit fixed point weights are off by at most one
+                    assertEquals(luma(image.getRGB(x, y)), gray.getRaster().getSample(x, y, 0), 1.0, "type " + type);
+                }
+            }
+            for (int y = 0; y < 50; y++) {
+                for (int x = 0; x < 100; x++) {
+                    assertEquals(gray.getRaster().getSample(x + 3, y + 5, 0), subGray.getRaster().getSample(x, y, 0));
+                }
+            }
+        }
+    }
+
+    @Test
+    void downscales_matchTheColorKernelsOfImagePreprocessor() {
+        byte[] gray = randomBytes(WIDTH * HEIGHT);
+        byte[] bgr = new byte[gray.length * 3];
+        for (int i = 0; i < gray.length; i++) {
+            bgr[3 * i] = bgr[3 * i + 1] = bgr[3 * i + 2] = gray[i];
+        }
+
+        // the same sampling as ImagePreprocessor, which does each channel separately
+        int dw = 67;
+        int dh = 25;
+        byte[] expected = new byte[dw * dh * 3];
+        ImagePreprocessor.bilinear(bgr, WIDTH, HEIGHT, expected, dw, dh);
+        byte[] actual = new byte[dw * dh];
+        ImageKernels.downscaleBilinear(gray, WIDTH, HEIGHT, actual, dw, dh);
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected[3 * i], actual[i]);
+        }
+
+        // ImagePreprocessor's area average is a box filter when the factor divides the size
+        int factor = 3;
+        byte[] cropped = new byte[201 * 75];
+        byte[] croppedBgr = new byte[cropped.length * 3];
+        for (int y = 0; y < 75; y++) {
+            System.arraycopy(gray, y * WIDTH, cropped, y * 201, 201);
+            System.arraycopy(bgr, y * WIDTH * 3, croppedBgr, y * 201 * 3, 201 * 3);
+        }
+        expected = new byte[67 * 25 * 3];
+        ImagePreprocessor.areaAverage(croppedBgr, 201, 75, expected, 67, 25);
+        actual = new byte[67 * 25];
+        ImageKernels.downscaleBox(gray, WIDTH, HEIGHT, factor, actual);
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected[3 * i], actual[i]);
+        }
+    }
+
+    @Test
+    void differenceAndHistogram_countEveryPixel() {
+        BufferedImage a = ImageKernels.toGray(randomImage(BufferedImage.TYPE_INT_RGB));
+        BufferedImage b = ImageKernels.toGray(randomImage(BufferedImage.TYPE_INT_RGB));
+        BufferedImage diff = ImageKernels.absoluteDifference(a, b);
+        int[] bins = ImageKernels.histogram(diff);
+
+        int[] expected = new int[256];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int d = Math.abs(a.getRaster().getSample(x, y, 0) - b.getRaster().getSample(x, y, 0));
+                assertEquals(d, diff.getRaster().getSample(x, y, 0));
+                expected[d]++;
+            }
+        }
+        assertArrayEquals(expected, bins);
+    }
+
+    @Test
+    void vectorKernels_giveTheSameBytesAsScalarOnes() {
+        assumeTrue(ImageKernels.isVectorized(), "run with --add-modules jdk.incubator.vector on 256-bit SIMD hardware");
+        for (int pixels : new int[]{1, 15, 16, 17, 63, 64, 65, 1000, WIDTH * HEIGHT}) {
+            byte[] bgr = randomBytes(pixels * 3);
+            int[] rgb = random.ints(pixels).toArray();
+            byte[] a = randomBytes(pixels);
+            byte[] b = randomBytes(pixels);
+            // the extremes, where unsigned arithmetic could go wrong
+            a[0] = (byte) 0xFF;
+            b[0] = 0;
+            bgr[0] = bgr[1] = bgr[2] = (byte) 0xFF;
+
+            byte[] scalar = new byte[pixels];
+            byte[] vector = new byte[pixels];
+            ScalarImageKernels.grayFromBgr(bgr, scalar, 0, pixels);
+            VectorImageKernels.grayFromBgr(bgr, vector, pixels);
+            assertArrayEquals(scalar, vector, "gray from BGR, " + pixels);
+            ScalarImageKernels.grayFromRgb(rgb, scalar, 0, pixels);
+            VectorImageKernels.grayFromRgb(rgb, vector, pixels);
+            assertArrayEquals(scalar, vector, "gray from RGB, " + pixels);
+            ScalarImageKernels.absoluteDifference(a, b, scalar, 0, pixels);
+            VectorImageKernels.absoluteDifference(a, b, vector, pixels);
+            assertArrayEquals(scalar, vector, "difference, " + pixels);
+        }
+
+        byte[] gray = randomBytes(WIDTH * HEIGHT);
+        for (int factor : new int[]{1, 2, 3, 8}) {
+            int dw = WIDTH / factor;
+            int dh = HEIGHT / factor;
+            byte[] scalar = new byte[dw * dh];
+            byte[] vector = new byte[dw * dh];
+            ScalarImageKernels.downscaleBox(gray, WIDTH, factor, scalar, dw, dh);
+            VectorImageKernels.downscaleBox(gray, WIDTH, factor, vector, dw, dh);
+            assertArrayEquals(scalar, vector, "box, factor " + factor);
+        }
+        for (int[] size : new int[][]{{WIDTH, HEIGHT}, {150, 60}, {17, 5}, {1, 1}}) {
+            byte[] scalar = new byte[size[0] * size[1]];
+            byte[] vector = new byte[size[0] * size[1]];
+            ScalarImageKernels.downscaleBilinear(gray, WIDTH, HEIGHT, scalar, size[0], size[1]);
+            VectorImageKernels.downscaleBilinear(gray, WIDTH, HEIGHT, vector, size[0], size[1]);
+            assertArrayEquals(scalar, vector, "bilinear to " + size[0] + "x" + size[1]);
+        }
+    }
+
+    @Test
+    void grayImages_areReadAsTheyAre() {
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        random.nextBytes(pixels);
+        int[] bins = ImageKernels.histogram(gray);
+        assertEquals(WIDTH * HEIGHT, java.util.Arrays.stream(bins).sum());
+        assertArrayEquals(pixels, ((DataBufferByte) ImageKernels.downscaleBox(gray, 1).getRaster().getDataBuffer()).getData());
+        BufferedImage sub = ImageKernels.toGray(gray.getSubimage(3, 5, 100, 50));
+        for (int y = 0; y < 50; y++) {
+            for (int x = 0; x < 100; x++) {
+                assertEquals(gray.getRaster().getSample(x + 3, y + 5, 0), sub.getRaster().getSample(x, y, 0));
+            }
+        }
+    }
+}
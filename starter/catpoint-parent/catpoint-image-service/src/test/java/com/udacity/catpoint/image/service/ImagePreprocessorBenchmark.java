@@ -0,0 +1,73 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares the per-frame client side cost of getting a camera frame ready for Rekognition:
+ * JPEG encoding at full resolution (what AwsImageService does today), AWT getScaledInstance
+ * followed by encoding, and ImagePreprocessor followed by encoding. Prints time per frame and
+ * the size of the upload. Not a unit test; run the main method from the IDE.
+ */
+public class ImagePreprocessorBenchmark {
+
+    private static final int WARMUP_FRAMES = 5;
+    private static final int MEASURED_FRAMES = 15;
+
+    public static void main(String[] args) throws IOException {
+        BufferedImage frame = cameraFrame(4000, 3000);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(640, 480);
+
+        run("full-resolution encode", frame, f -> f);
+        run("getScaledInstance + encode", frame, f -> {
+            Image scaled = f.getScaledInstance(640, 480, Image.SCALE_SMOOTH);
+            BufferedImage out = new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D g = out.createGraphics();
+            g.drawImage(scaled, 0, 0, null);
+            g.dispose();
+            return out;
+        });
+        run("ImagePreprocessor + encode", frame, f -> preprocessor.preprocess("bench", f));
+    }
+
+    private static void run(String name, BufferedImage frame, UnaryOperator<BufferedImage> stage) throws IOException {
+        long bytes = 0;
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            bytes = encode(stage.apply(frame));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            bytes = encode(stage.apply(frame));
+        }
+        double msPerFrame = (System.nanoTime() - start) / 1e6 / MEASURED_FRAMES;
+        System.out.printf("%-28s %8.1f ms/frame %10d bytes uploaded%n", name, msPerFrame, bytes);
+    }
+
+    private static long encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", os);
+        return os.size();
+    }
+
+    private static BufferedImage cameraFrame(int width, int height) {
+        // smooth gradients plus sensor noise, roughly what a decoded camera JPEG looks like
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(16);
+                int r = (x * 255 / width + noise) & 0xFF;
+                int g = (y * 255 / height + noise) & 0xFF;
+                int b = ((x + y) * 255 / (width + height) + noise) & 0xFF;
+                frame.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return frame;
+    }
+}
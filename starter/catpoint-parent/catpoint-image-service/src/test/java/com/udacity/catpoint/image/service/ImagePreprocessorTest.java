@@ -0,0 +1,77 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImagePreprocessorTest {
+
+    @Test
+    void largeFrame_isShrunkToTarget_keepingAspectRatio() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(640, 480);
+        BufferedImage out = preprocessor.preprocess("cam", new BufferedImage(4000, 2000, BufferedImage.TYPE_INT_RGB));
+        assertEquals(640, out.getWidth());
+        assertEquals(320, out.getHeight());
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, out.getType());
+    }
+
+    @Test
+    void smallFrame_isOnlyNormalized() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(640, 480);
+        BufferedImage frame = new BufferedImage(100, 80, BufferedImage.TYPE_INT_ARGB);
+        frame.setRGB(10, 10, 0xFF336699);
+
+        BufferedImage out = preprocessor.preprocess("cam", frame);
+        assertEquals(100, out.getWidth());
+        assertEquals(80, out.getHeight());
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, out.getType());
+        assertEquals(0x336699, out.getRGB(10, 10) & 0xFFFFFF);
+    }
+
+    @Test
+    void regionOfInterest_cropsBeforeScaling() {
+        BufferedImage frame = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 400, 400);
+        g.setColor(Color.BLUE);
+        g.fillRect(400, 0, 400, 400);
+        g.dispose();
+
+        ImagePreprocessor preprocessor = new ImagePreprocessor(100, 100);
+        preprocessor.setRegionOfInterest("porch", new Rectangle2D.Double(0.5, 0, 0.5, 1));
+
+        BufferedImage porch = preprocessor.preprocess("porch", frame);
+        assertEquals(100, porch.getWidth());
+        assertEquals(100, porch.getHeight());
+        assertEquals(Color.BLUE.getRGB(), porch.getRGB(0, 0));
+        assertEquals(Color.BLUE.getRGB(), porch.getRGB(99, 99));
+
+        // cameras without a region keep the whole frame
+        BufferedImage other = preprocessor.preprocess("garden", frame);
+        assertEquals(Color.RED.getRGB(), other.getRGB(0, 0));
+        assertEquals(Color.BLUE.getRGB(), other.getRGB(99, 49));
+    }
+
+    @Test
+    void areaAverage_averagesEachBlock() {
+        // 2x2 BGR source, one output pixel
+        byte[] src = {0, 0, (byte) 200, 0, 0, 100, 0, 0, 50, 0, 0, 50};
+        byte[] dst = new byte[3];
+        ImagePreprocessor.areaAverage(src, 2, 2, dst, 1, 1);
+        assertEquals(100, dst[2] & 0xFF);
+    }
+
+    @Test
+    void regionOutsideFrame_isRejected() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(100, 100);
+        assertThrows(IllegalArgumentException.class,
+                () -> preprocessor.setRegionOfInterest("cam", new Rectangle2D.Double(0.5, 0.5, 0.8, 0.2)));
+    }
+}
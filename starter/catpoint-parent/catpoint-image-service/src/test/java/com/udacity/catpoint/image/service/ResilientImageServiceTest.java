@@ -0,0 +1,162 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResilientImageServiceTest {
+
+    private static final ImageService ALWAYS_CAT = (image, threshold) -> true;
+    private static final ImageService NEVER_CAT = (image, threshold) -> false;
+
+    private final BufferedImage frame = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private ResilientImageService service;
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void slowPrimary_missesDeadline_fallbackAnswers() {
+        service = new ResilientImageService(sleeping(2_000, true), NEVER_CAT, Duration.ofMillis(100),
+                Duration.ofMillis(50), 5, Duration.ofSeconds(30));
+
+        long start = System.nanoTime();
+        assertFalse(service.imageContainsCat(frame, 50f));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1_000);
+        assertEquals(1, service.getTimeouts());
+        assertEquals(1, service.getFallbacks());
+    }
+
+    @Test
+    void slowFirstAttempt_hedgeWins() {
+        AtomicInteger attempt = new AtomicInteger();
+        // the first request hangs, the duplicate answers immediately
+        ImageService primary = (image, threshold) -> {
+            if (attempt.getAndIncrement() == 0) {
+                sleep(2_000);
+            }
+            return true;
+        };
+        service = new ResilientImageService(primary, NEVER_CAT, Duration.ofSeconds(1),
+                Duration.ofMillis(20), 5, Duration.ofSeconds(30));
+
+        assertTrue(service.imageContainsCat(frame, 50f));
+        assertEquals(1, service.getHedgesSent());
+        assertEquals(1, service.getHedgeWins());
+        assertEquals(1.0, service.getHedgeWinRate(), 0.0);
+        assertEquals(0, service.getFallbacks());
+    }
+
+    @Test
+    void failingPrimary_isRetriedOnce_thenFallsBack() {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        ImageService primary = (image, threshold) -> {
+            primaryCalls.incrementAndGet();
+            throw new IllegalStateException("rekognition unavailable");
+        };
+        service = new ResilientImageService(primary, ALWAYS_CAT, Duration.ofSeconds(1),
+                Duration.ofMillis(500), 5, Duration.ofSeconds(30));
+
+        assertTrue(service.imageContainsCat(frame, 50f));
+        assertEquals(2, primaryCalls.get());
+        assertEquals(1, service.getFailures());
+    }
+
+    @Test
+    void repeatedFailures_openCircuit_andSkipPrimary() {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        ImageService primary = (image, threshold) -> {
+            primaryCalls.incrementAndGet();
+            throw new IllegalStateException("rekognition unavailable");
+        };
+        service = new ResilientImageService(primary, ALWAYS_CAT, Duration.ofSeconds(1),
+                Duration.ofMillis(500), 3, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            service.imageContainsCat(frame, 50f);
+        }
+        assertTrue(service.isCircuitOpen());
+
+        int callsWhenOpened = primaryCalls.get();
+        assertTrue(service.imageContainsCat(frame, 50f));
+        assertEquals(callsWhenOpened, primaryCalls.get());
+        assertEquals(4, service.getFallbacks());
+    }
+
+    @Test
+    void timedOutAttempts_areCancelled_andCountTowardsTheHedgeDelay() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(2);
+        ImageService hanging = (image, threshold) -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return true;
+        };
+        service = new ResilientImageService(hanging, NEVER_CAT, Duration.ofMillis(20),
+                Duration.ofMillis(5), 1_000, Duration.ofSeconds(30));
+
+        assertFalse(service.imageContainsCat(frame, 50f));
+        // the original and its hedge
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 20; i++) {
+            service.imageContainsCat(frame, 50f);
+        }
+        // only timeouts were seen, so the p95 is about the deadline, not the initial 5 ms
+        assertTrue(service.getCurrentHedgeDelay().toMillis() >= 10, service.getCurrentHedgeDelay().toString());
+    }
+
+    @Test
+    void interruptedTrialCall_releasesTheHalfOpenCircuit() {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        ImageService primary = (image, threshold) -> {
+            switch (primaryCalls.incrementAndGet()) {
+                // the first call and its retry
+                case 1, 2 -> throw new IllegalStateException("rekognition unavailable");
+                // the trial: slow enough that its caller is waiting when interrupted
+                case 3 -> sleep(1_000);
+            }
+            return true;
+        };
+        service = new ResilientImageService(primary, NEVER_CAT, Duration.ofSeconds(5),
+                Duration.ofSeconds(5), 1, Duration.ZERO);
+        service.imageContainsCat(frame, 50f);
+        assertTrue(service.isCircuitOpen());
+
+        // the trial call is interrupted before it has an answer
+        Thread.currentThread().interrupt();
+        assertFalse(service.imageContainsCat(frame, 50f));
+        assertTrue(Thread.interrupted());
+
+        assertTrue(service.imageContainsCat(frame, 50f));
+        assertFalse(service.isCircuitOpen());
+    }
+
+    private static ImageService sleeping(long millis, boolean answer) {
+        return (image, threshold) -> {
+            sleep(millis);
+            return answer;
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares classifying 1920x1080 frames whole with classifying them through TilingImageService,
+ * on a stand-in for a remote classifier. The stand-in JPEG-encodes what it is given as
+ * AwsImageService does, which is real work on this machine's cores, then waits a 40 ms round
+ * trip plus 60 ms per megapixel for the upload and the model.
+ * Like most detection models it looks at the picture scaled to 640 pixels on the long side,
+ * and sees the cat only if the cat covers 32x32 pixels there. The cat is an 80x80 patch at a
+ * random place in the frame. Prints the median and p90 latency per frame, how many frames the
+ * cat was found in and the classifier calls per frame. Not a unit test; run the main method from
+ * the IDE.
+ */
+public class TilingImageServiceBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int CAT_SIZE = 80;
+    private static final int CAT = 0xC86432;
+    private static final int FRAMES = 20;
+    private static final int WARMUP_FRAMES = 5;
+
+    private static final AtomicInteger classifierCalls = new AtomicInteger();
+    // where the cat of the current frame is, so the stand-in need not search for it
+    private static volatile Rectangle cat = new Rectangle();
+
+    public static void main(String[] args) {
+        BufferedImage empty = cameraFrame();
+        ImageService remote = TilingImageServiceBenchmark::remoteClassifier;
+
+        System.out.printf("%-32s %10s %10s %10s %12s%n", "", "median ms", "p90 ms", "cats found", "calls/frame");
+        run("whole frame, cat", remote, empty, true);
+        run("whole frame, no cat", remote, empty, false);
+        for (int grid : new int[]{2, 3}) {
+            try (TilingImageService tiled = new TilingImageService(remote, grid, grid, 0.2)) {
+                run(grid + "x" + grid + " tiles, cat", tiled, empty, true);
+                run(grid + "x" + grid + " tiles, no cat", tiled, empty, false);
+            }
+        }
+        try (TilingImageService tiled = new TilingImageService(remote, 3, 3, 0.2, 3)) {
+            run("3x3 tiles, 3 at a time, cat", tiled, empty, true);
+            run("3x3 tiles, 3 at a time, no cat", tiled, empty, false);
+        }
+    }
+
+    private static void run(String name, ImageService service, BufferedImage empty, boolean withCat) {
+        Random random = new Random(42);
+        long[] nanos = new long[FRAMES];
+        int found = 0;
+        for (int i = 0; i < WARMUP_FRAMES + FRAMES; i++) {
+            BufferedImage frame = copy(empty);
+            cat = withCat
+                    ? new Rectangle(random.nextInt(WIDTH - CAT_SIZE), random.nextInt(HEIGHT - CAT_SIZE), CAT_SIZE, CAT_SIZE)
+                    : new Rectangle();
+            paintCat(frame, cat);
+            if (i == WARMUP_FRAMES) {
+                classifierCalls.set(0);
+            }
+            long start = System.nanoTime();
+            boolean seen = service.imageContainsCat(frame, 80f);
+            if (i >= WARMUP_FRAMES) {
+                nanos[i - WARMUP_FRAMES] = System.nanoTime() - start;
+                found += seen ? 1 : 0;
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-32s %10.1f %10.1f %7d/%-2d %12.1f%n", name, nanos[FRAMES / 2] / 1e6,
+                nanos[FRAMES * 9 / 10] / 1e6, found, FRAMES, (double) classifierCalls.get() / FRAMES);
+    }
+
+    private static boolean remoteClassifier(BufferedImage image, float confidenceThreshold) {
+        classifierCalls.incrementAndGet();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", jpeg);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // a tile's raster is translated by the tile's place in the frame
+        Raster raster = image.getRaster();
+        Rectangle shown = new Rectangle(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY(),
+                image.getWidth(), image.getHeight()).intersection(cat);
+        double catPixels = shown.isEmpty() ? 0 : (double) shown.width * shown.height;
+        double scale = Math.min(1.0, 640.0 / Math.max(image.getWidth(), image.getHeight()));
+        try {
+            Thread.sleep(40 + (long) image.getWidth() * image.getHeight() * 60 / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return catPixels * scale * scale >= 32 * 32;
+    }
+
+    private static void paintCat(BufferedImage frame, Rectangle cat) {
+        for (int y = cat.y; y < cat.y + cat.height; y++) {
+            for (int x = cat.x; x < cat.x + cat.width; x++) {
+                frame.setRGB(x, y, CAT);
+            }
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getRaster());
+        return copy;
+    }
+
+    private static BufferedImage cameraFrame() {
+        // smooth gradients plus sensor noise, roughly what a camera picture looks like
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int noise = random.nextInt(4);
+                int r = (x * 255 / WIDTH + noise) & 0xFF;
+                int g = (y * 255 / HEIGHT + noise) & 0xFF;
+                int b = ((x + y) * 255 / (WIDTH + HEIGHT) + noise) & 0xFF;
+                frame.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return frame;
+    }
+}
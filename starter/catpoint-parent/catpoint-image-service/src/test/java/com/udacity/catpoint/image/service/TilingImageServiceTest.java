@@ -0,0 +1,147 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TilingImageServiceTest {
+
+    private static final int CAT = 0xFF0000;
+    private static final int BROKEN = 0x0000FF;
+
+    private final BufferedImage frame = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+    private TilingImageService service;
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    /**
+     * Sees a cat in any tile with a red pixel; tiles without one take the given time.
+     */
+    private static ImageService redPixelFinder(long emptyTileMillis) {
+        return (image, threshold) -> {
+            if (contains(image, CAT)) {
+                return true;
+            }
+            sleep(emptyTileMillis);
+            return false;
+        };
+    }
+
+    private static boolean contains(BufferedImage image, int rgb) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) & 0xFFFFFF) == rgb) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void tiles_coverTheFrame_andOverlapTheirNeighbors() {
+        service = new TilingImageService((image, threshold) -> false, 3, 2, 0.25);
+        List<Rectangle> tiles = service.tiles(1000, 601);
+
+        assertEquals(6, tiles.size());
+        boolean[][] covered = new boolean[601][1000];
+        for (Rectangle tile : tiles) {
+            assertTrue(new Rectangle(0, 0, 1000, 601).contains(tile), tile.toString());
+            for (int y = tile.y; y < tile.y + tile.height; y++) {
+                for (int x = tile.x; x < tile.x + tile.width; x++) {
+                    covered[y][x] = true;
+                }
+            }
+        }
+        for (boolean[] row : covered) {
+            for (boolean pixel : row) {
+                assertTrue(pixel);
+            }
+        }
+        Rectangle first = tiles.get(0);
+        Rectangle right = tiles.get(1);
+        Rectangle below = tiles.get(3);
+        assertEquals(0.25 * first.width, first.x + first.width - right.x, 1.0);
+        assertEquals(0.25 * first.height, first.y + first.height - below.y, 1.0);
+    }
+
+    @Test
+    void catInOneTile_answersWithoutWaitingForTheOthers() {
+        frame.setRGB(190, 95, CAT);
+        service = new TilingImageService(redPixelFinder(2_000), 2, 2, 0.2);
+
+        long start = System.nanoTime();
+        assertTrue(service.imageContainsCat(frame, 50f));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1_000);
+        assertEquals(1, service.getEarlyExits());
+    }
+
+    @Test
+    void catFound_remainingTilesAreSkipped() {
+        frame.setRGB(5, 5, CAT);
+        // one tile at a time, so the cat's tile is the only one classified
+        service = new TilingImageService(redPixelFinder(0), 2, 2, 0.2, 1);
+
+        assertTrue(service.imageContainsCat(frame, 50f));
+        // the caller has its answer before the other tiles are skipped
+        service.close();
+        assertEquals(1, service.getTilesClassified());
+        assertEquals(3, service.getTilesSkipped());
+    }
+
+    @Test
+    void noCat_everyTileIsClassified() {
+        service = new TilingImageService(redPixelFinder(0), 3, 3, 0.1);
+
+        assertFalse(service.imageContainsCat(frame, 50f));
+        assertEquals(9, service.getTilesClassified());
+        assertEquals(0, service.getTilesSkipped());
+        assertEquals(0, service.getEarlyExits());
+    }
+
+    @Test
+    void failedTile_isThrownOnlyWhenNoOtherTileSeesACat() {
+        ImageService finder = redPixelFinder(0);
+        ImageService failingOnBlue = (image, threshold) -> {
+            if (contains(image, BROKEN)) {
+                throw new IllegalStateException("endpoint down");
+            }
+            return finder.imageContainsCat(image, threshold);
+        };
+        frame.setRGB(5, 50, BROKEN);
+        service = new TilingImageService(failingOnBlue, 2, 1, 0.2);
+
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(frame, 50f));
+        frame.setRGB(190, 50, CAT);
+        assertTrue(service.imageContainsCat(frame, 50f));
+    }
+
+    @Test
+    void interruptedCall_isThrown_notAnsweredWithNoCat() {
+        service = new TilingImageService(redPixelFinder(1_000), 2, 1, 0.2);
+
+        Thread.currentThread().interrupt();
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> service.imageContainsCat(frame, 50f));
+        assertTrue(Thread.interrupted(), "the interrupt flag must survive the call");
+        assertTrue(thrown.getCause() instanceof InterruptedException);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadImageServiceTest {
+
+    private VirtualThreadImageService service;
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    private static List<BufferedImage> frames(int count) {
+        List<BufferedImage> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // the width tells the frames apart
+            frames.add(new BufferedImage(i + 1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        return frames;
+    }
+
+    @Test
+    void concurrentDelegateCalls_neverExceedMaxConcurrentCalls() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        service = new VirtualThreadImageService((image, threshold) -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(20);
+            running.decrementAndGet();
+            return false;
+        }, 3);
+
+        service.classifyAll(frames(30), 50f);
+
+        assertEquals(3, peak.get());
+        assertEquals(0, service.getInFlightCalls());
+    }
+
+    @Test
+    void classifyAll_keepsTheOrderOfTheImages() {
+        // odd widths are cats, and the later frames answer first
+        service = new VirtualThreadImageService((image, threshold) -> {
+            sleep(100 - image.getWidth() * 10L);
+            return image.getWidth() % 2 == 1;
+        }, 10);
+
+        List<Boolean> results = service.classifyAll(frames(8), 50f);
+
+        assertEquals(List.of(true, false, true, false, true, false, true, false), results);
+    }
+
+    @Test
+    void classifyAll_throwsTheDelegatesFailure() {
+        IllegalStateException failure = new IllegalStateException("rekognition unavailable");
+        service = new VirtualThreadImageService((image, threshold) -> {
+            if (image.getWidth() == 3) {
+                throw failure;
+            }
+            return true;
+        }, 4);
+
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> service.classifyAll(frames(5), 50f));
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void close_waitsForSubmittedCalls_andRejectsNewOnes() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger finished = new AtomicInteger();
+        service = new VirtualThreadImageService((image, threshold) -> {
+            started.countDown();
+            sleep(100);
+            finished.incrementAndGet();
+            return true;
+        }, 1);
+        service.submit(frames(1).get(0), 50f);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        service.close();
+
+        assertEquals(1, finished.get());
+        assertThrows(RejectedExecutionException.class, () -> service.submit(frames(1).get(0), 50f));
+    }
+
+    @Test
+    void interruptedCaller_getsAnException_notNoCat() {
+        service = new VirtualThreadImageService((image, threshold) -> false, 1);
+
+        Thread.currentThread().interrupt();
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> service.imageContainsCat(frames(1).get(0), 50f));
+        assertTrue(Thread.interrupted(), "the interrupt flag must survive the call");
+        assertTrue(thrown.getCause() instanceof InterruptedException);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.udacity.catpoint.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Repository that keeps its full history. Every mutation is appended to a journal file with a
+ * timestamp, and every few hundred mutations a checkpoint (the complete state) is appended too.
+ * The current state lives in memory; past states are rebuilt on demand by {@link #stateAt(Instant)}.
+ *
+ * Journal records are [time millis][length][frames], where frames use the replication wire
+ * format. A mutation is a record of one frame; a checkpoint is a single record holding a RESET
+ * frame followed by the whole state, so a crash while writing one leaves a torn record, which
+ * recovery cuts off, rather than a partial state that looks like a checkpoint. An in-memory index of
+ * checkpoint times and file offsets lets stateAt binary search for the nearest checkpoint and
+ * replay at most one checkpoint interval of mutations, however long the journal has grown.
+ */
+public class EventSourcedSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 500;
+
+    private final Path journal;
+    private final Clock clock;
+    private final int checkpointInterval;
+    private final DataOutputStream out;
+
+    // current state
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private volatile SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    // journal position
+    private long size;
+    private long lastSeq;
+    private long lastTime;
+    private int sinceCheckpoint;
+
+    // checkpoint index, sorted by time
+    private long[] checkpointTimes = new long[64];
+    private long[] checkpointOffsets = new long[64];
+    private int checkpoints;
+
+    public EventSourcedSecurityRepository(Path journal) {
+        this(journal, Clock.systemUTC(), DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param journal Journal file, created if missing and continued if it exists
+     * @param clock Source of the mutation timestamps
+     * @param checkpointInterval Mutations between checkpoints, which bounds the replay per query
+     */
+    public EventSourcedSecurityRepository(Path journal, Clock clock, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be at least 1");
+        }
+        this.journal = journal;
+        this.clock = clock;
+        this.checkpointInterval = checkpointInterval;
+        try {
+            if (journal.getParent() != null) {
+                Files.createDirectories(journal.getParent());
+            }
+            if (Files.exists(journal)) {
+                recover();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(journal, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            // every session starts with a checkpoint, so each query has one to start from
+            writeCheckpoint(nextTime());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal " + journal, e);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
+        append(ReplicationProtocol.upsertSensor(++lastSeq, sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        snapshot = snapshot.withoutSensor(sensor);
+        append(ReplicationProtocol.removeSensor(++lastSeq, sensor.getSensorId()));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
+        append(ReplicationProtocol.upsertSensor(++lastSeq, sensor));
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        append(ReplicationProtocol.alarmStatus(++lastSeq, alarmStatus));
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        append(ReplicationProtocol.armingStatus(++lastSeq, armingStatus));
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Rebuilds the state as it was at the given time. Before the first journal entry that is
+     * an empty, disarmed system.
+     */
+    public synchronized SecurityState stateAt(Instant time) {
+        long t = time.toEpochMilli();
+        int i = lastCheckpointAtOrBefore(t);
+        if (i < 0) {
+            return new SecurityState(time, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, SensorSnapshot.EMPTY);
+        }
+        try {
+            out.flush();
+            Replay replay = new Replay();
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+                channel.position(checkpointOffsets[i]);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                long remaining = size - checkpointOffsets[i];
+                while (remaining > 0) {
+                    long recordTime = in.readLong();
+                    byte[] frame = new byte[in.readInt()];
+                    in.readFully(frame);
+                    if (recordTime > t) {
+                        break;
+                    }
+                    applyRecord(frame, replay);
+                    remaining -= Long.BYTES + Integer.BYTES + frame.length;
+                }
+            }
+            return new SecurityState(time, replay.alarmStatus, replay.armingStatus, replay.snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read journal " + journal, e);
+        }
+    }
+
+    public synchronized int getCheckpointCount() {
+        return checkpoints;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close journal " + journal, e);
+        }
+    }
+
+    private void append(byte[] frame) {
+        long time = nextTime();
+        try {
+            writeRecord(time, frame);
+            if (++sinceCheckpoint >= checkpointInterval) {
+                writeCheckpoint(time);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to journal " + journal, e);
+        }
+    }
+
+    private void writeCheckpoint(long time) throws IOException {
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        state.writeBytes(ReplicationProtocol.reset(lastSeq));
+        for (Sensor sensor : sensors) {
+            state.writeBytes(ReplicationProtocol.upsertSensor(lastSeq, sensor));
+        }
+        state.writeBytes(ReplicationProtocol.alarmStatus(lastSeq, alarmStatus));
+        state.writeBytes(ReplicationProtocol.armingStatus(lastSeq, armingStatus));
+        long offset = size;
+        writeRecord(time, state.toByteArray());
+        out.flush();
+        addCheckpoint(time, offset);
+        sinceCheckpoint = 0;
+    }
+
+    private void writeRecord(long time, byte[] frame) throws IOException {
+        out.writeLong(time);
+        out.writeInt(frame.length);
+        out.write(frame);
+        size += Long.BYTES + Integer.BYTES + frame.length;
+    }
+
+    /**
+     * Applies the frames of one record in order.
+     * @return The sequence number of the last frame
+     */
+    private static long applyRecord(byte[] record, SecurityRepository target) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        long seq = 0;
+        while (in.available() > 0) {
+            seq = ReplicationProtocol.apply(in, target);
+        }
+        return seq;
+    }
+
+    /**
+     * Timestamps never go backwards, even if the clock does, so the index stays sorted.
+     */
+    private long nextTime() {
+        lastTime = Math.max(lastTime, clock.millis());
+        return lastTime;
+    }
+
+    private void addCheckpoint(long time, long offset) {
+        if (checkpoints == checkpointTimes.length) {
+            checkpointTimes = Arrays.copyOf(checkpointTimes, checkpoints * 2);
+            checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpoints * 2);
+        }
+        checkpointTimes[checkpoints] = time;
+        checkpointOffsets[checkpoints] = offset;
+        checkpoints++;
+    }
+
+    private int lastCheckpointAtOrBefore(long time) {
+        int lo = 0;
+        int hi = checkpoints - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (checkpointTimes[mid] <= time) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Rebuilds the index by scanning record headers, then restores the current state from the
+     * last checkpoint. A record cut short by a crash is truncated away.
+     */
+    private void recover() throws IOException {
+        long lastCheckpoint = -1;
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            long offset = 0;
+            try {
+                while (true) {
+                    long time = in.readLong();
+                    int length = in.readInt();
+                    byte op = in.readByte();
+                    in.skipNBytes(length - 1);
+                    if (op == ReplicationProtocol.OP_RESET) {
+                        addCheckpoint(time, offset);
+                        lastCheckpoint = offset;
+                    }
+                    lastTime = Math.max(lastTime, time);
+                    offset += Long.BYTES + Integer.BYTES + length;
+                }
+            } catch (EOFException e) {
+                // end of journal, or a torn last record
+            }
+            channel.truncate(offset);
+            size = offset;
+        }
+        if (lastCheckpoint < 0) {
+            return;
+        }
+
+        Replay replay = new Replay();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            in.skipNBytes(lastCheckpoint);
+            for (long remaining = size - lastCheckpoint; remaining > 0; ) {
+                in.readLong();
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                lastSeq = Math.max(lastSeq, applyRecord(frame, replay));
+                remaining -= Long.BYTES + Integer.BYTES + frame.length;
+            }
+        }
+        replay.snapshot.forEach(e -> sensors.add(e.getSensor()));
+        snapshot = SensorSnapshot.of(sensors);
+        alarmStatus = replay.alarmStatus;
+        armingStatus = replay.armingStatus;
+    }
+
+    /**
+     * Accumulates replayed frames. Only what ReplicationProtocol.apply needs is implemented.
+     */
+    private static class Replay implements SecurityRepository {
+        private SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+        private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+        @Override
+        public void addSensor(Sensor sensor) {
+            snapshot = snapshot.withSensor(sensor);
+        }
+
+        @Override
+        public void removeSensor(Sensor sensor) {
+            snapshot = snapshot.withoutSensor(sensor);
+        }
+
+        @Override
+        public void updateSensor(Sensor sensor) {
+            snapshot = snapshot.withSensor(sensor);
+        }
+
+        @Override
+        public void setAlarmStatus(AlarmStatus alarmStatus) {
+            this.alarmStatus = alarmStatus;
+        }
+
+        @Override
+        public void setArmingStatus(ArmingStatus armingStatus) {
+            this.armingStatus = armingStatus;
+        }
+
+        @Override
+        public Set<Sensor> getSensors() {
+            Set<Sensor> result = new TreeSet<>();
+            snapshot.forEach(e -> result.add(e.getSensor()));
+            return result;
+        }
+
+        @Override
+        public SensorSnapshot getSensorSnapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        @Override
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+    }
+}
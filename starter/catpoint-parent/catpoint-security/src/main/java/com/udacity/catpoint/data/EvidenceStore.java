@@ -0,0 +1,336 @@
+package com.udacity.catpoint.data;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the frames in which a cat was detected, together with the camera, time, confidence and
+ * alarm status, in a fixed-size memory-mapped ring file. Once the ring is full the oldest
+ * frames are overwritten, so the file never grows no matter how long capture runs.
+ *
+ * The file is a header, an index of fixed-size entries and a data region:
+ * <pre>
+ *   header  magic, version, data capacity, index slots, oldest seq, next seq, write position
+ *   index   per slot: seq, time, data offset, camera length, frame length, confidence, alarm
+ *   data    per frame: camera id (UTF-8) followed by the encoded frame, never split at the end
+ * </pre>
+ * Frames are appended with one copy from the encoded buffer into the mapping. The index slot is
+ * written before the header's next seq is advanced, so a crash at worst loses the last frame.
+ * Times never go backwards, which lets {@link #find} binary search the index.
+ */
+public class EvidenceStore implements AutoCloseable {
+
+    public static final int DEFAULT_DATA_CAPACITY = 64 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_SLOTS = 4096;
+
+    private static final int MAGIC = 0x43415445; // "CATE"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 40;
+
+    // header fields
+    private static final int H_CAPACITY = 8;
+    private static final int H_SLOTS = 12;
+    private static final int H_OLDEST = 16;
+    private static final int H_NEXT = 24;
+    private static final int H_WRITE_POS = 32;
+
+    // index entry fields
+    private static final int E_SEQ = 0;
+    private static final int E_TIME = 8;
+    private static final int E_OFFSET = 16;
+    private static final int E_CAMERA_LENGTH = 20;
+    private static final int E_FRAME_LENGTH = 24;
+    private static final int E_CONFIDENCE = 28;
+    private static final int E_ALARM = 32;
+
+    /**
+     * One stored frame.
+     * @param frame The encoded frame (JPEG when stored through {@link #record})
+     */
+    public record Evidence(long sequence, String cameraId, Instant time, float confidence,
+                           AlarmStatus alarmStatus, byte[] frame) {
+
+        public BufferedImage decode() {
+            try {
+                return ImageIO.read(new ByteArrayInputStream(frame));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not decode evidence frame " + sequence, e);
+            }
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int dataCapacity;
+    private final int indexSlots;
+    private final int dataStart;
+
+    private long oldestSeq;
+    private long nextSeq;
+    private int writePos;
+    private long lastTime;
+    private long overwritten;
+
+    public EvidenceStore(Path file) {
+        this(file, DEFAULT_DATA_CAPACITY, DEFAULT_INDEX_SLOTS);
+    }
+
+    /**
+     * Opens the ring file, creating it if needed. An existing file must have been created with
+     * the same capacity and slot count.
+     * @param dataCapacity Bytes available for frames
+     * @param indexSlots Most frames kept at once, however small they are
+     */
+    public EvidenceStore(Path file, int dataCapacity, int indexSlots) {
+        if (dataCapacity < 1 || indexSlots < 1) {
+            throw new IllegalArgumentException("Capacity and index slots must be positive");
+        }
+        long size = HEADER_SIZE + (long) indexSlots * ENTRY_SIZE + dataCapacity;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Evidence file would exceed 2 GB");
+        }
+        this.file = file;
+        this.dataCapacity = dataCapacity;
+        this.indexSlots = indexSlots;
+        this.dataStart = HEADER_SIZE + indexSlots * ENTRY_SIZE;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open evidence file " + file, e);
+        }
+        if (map.getInt(0) == MAGIC) {
+            if (map.getInt(4) != VERSION || map.getInt(H_CAPACITY) != dataCapacity || map.getInt(H_SLOTS) != indexSlots) {
+                close();
+                throw new IllegalArgumentException(file + " was created with a different version or size");
+            }
+            oldestSeq = map.getLong(H_OLDEST);
+            nextSeq = map.getLong(H_NEXT);
+            writePos = map.getInt(H_WRITE_POS);
+            if (nextSeq > oldestSeq) {
+                lastTime = map.getLong(entry(nextSeq - 1) + E_TIME);
+            }
+        } else {
+            map.putInt(4, VERSION);
+            map.putInt(H_CAPACITY, dataCapacity);
+            map.putInt(H_SLOTS, indexSlots);
+            writeHeader();
+            // magic last, so a half-initialized file is not mistaken for a valid one
+            map.putInt(0, MAGIC);
+        }
+    }
+
+    /**
+     * Encodes the frame as JPEG and stores it.
+     * @return The sequence number of the stored frame
+     */
+    public long record(String cameraId, Instant time, float confidence, AlarmStatus alarmStatus, BufferedImage frame) {
+        FrameBytes encoded = new FrameBytes();
+        try {
+            if (!ImageIO.write(withoutAlpha(frame), "jpg", encoded)) {
+                throw new IllegalStateException("No JPEG writer available");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode evidence frame", e);
+        }
+        return append(cameraId, time, confidence, alarmStatus, encoded.buffer());
+    }
+
+    /**
+     * Stores an already encoded frame, evicting the oldest frames if there is no room. The
+     * buffer's remaining bytes are copied straight into the mapping.
+     * @return The sequence number of the stored frame
+     */
+    public synchronized long append(String cameraId, Instant time, float confidence, AlarmStatus alarmStatus, ByteBuffer encodedFrame) {
+        byte[] camera = cameraId.getBytes(StandardCharsets.UTF_8);
+        int length = camera.length + encodedFrame.remaining();
+        if (length > dataCapacity) {
+            throw new IllegalArgumentException("Frame of " + length + " bytes does not fit in the evidence store");
+        }
+
+        int start = writePos;
+        int wrapFrom = Integer.MAX_VALUE;
+        if (start + length > dataCapacity) {
+            // records never wrap, so the tail of the data region is skipped
+            wrapFrom = start;
+            start = 0;
+        }
+        evict(start, start + length, wrapFrom);
+        // publish the evictions before their bytes are overwritten
+        map.putLong(H_OLDEST, oldestSeq);
+
+        ByteBuffer data = map.duplicate().position(dataStart + start);
+        data.put(camera);
+        data.put(encodedFrame);
+
+        long seq = nextSeq;
+        lastTime = Math.max(lastTime, time.toEpochMilli());
+        int e = entry(seq);
+        map.putLong(e + E_SEQ, seq);
+        map.putLong(e + E_TIME, lastTime);
+        map.putInt(e + E_OFFSET, start);
+        map.putInt(e + E_CAMERA_LENGTH, camera.length);
+        map.putInt(e + E_FRAME_LENGTH, length - camera.length);
+        map.putFloat(e + E_CONFIDENCE, confidence);
+        map.putInt(e + E_ALARM, alarmStatus.ordinal());
+
+        writePos = start + length;
+        nextSeq = seq + 1;
+        writeHeader();
+        return seq;
+    }
+
+    /**
+     * @return Frames stored at or after from and before to, oldest first
+     */
+    public synchronized List<Evidence> find(Instant from, Instant to) {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        List<Evidence> result = new ArrayList<>();
+        for (long seq = firstAtOrAfter(fromMillis); seq < nextSeq; seq++) {
+            int e = entry(seq);
+            if (map.getLong(e + E_TIME) >= toMillis) {
+                break;
+            }
+            result.add(read(seq));
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of frames currently stored
+     */
+    public synchronized int size() {
+        return (int) (nextSeq - oldestSeq);
+    }
+
+    /**
+     * @return Frames overwritten to make room since the store was opened
+     */
+    public synchronized long getOverwrittenCount() {
+        return overwritten;
+    }
+
+    /**
+     * Writes mapped changes through to the storage device.
+     */
+    public synchronized void flush() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            map.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close evidence file " + file, e);
+        }
+    }
+
+    /**
+     * Drops the oldest frames while they lie in the skipped tail, overlap the new record or hold
+     * the index slot it needs.
+     */
+    private void evict(int start, int end, int wrapFrom) {
+        while (oldestSeq < nextSeq) {
+            int e = entry(oldestSeq);
+            int offset = map.getInt(e + E_OFFSET);
+            int recordEnd = offset + map.getInt(e + E_CAMERA_LENGTH) + map.getInt(e + E_FRAME_LENGTH);
+            boolean inSkippedTail = offset >= wrapFrom;
+            boolean overlaps = offset < end && recordEnd > start;
+            boolean slotNeeded = nextSeq - oldestSeq >= indexSlots;
+            if (!inSkippedTail && !overlaps && !slotNeeded) {
+                return;
+            }
+            oldestSeq++;
+            overwritten++;
+        }
+    }
+
+    private long firstAtOrAfter(long millis) {
+        long lo = oldestSeq;
+        long hi = nextSeq;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (map.getLong(entry(mid) + E_TIME) < millis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private Evidence read(long seq) {
+        int e = entry(seq);
+        int offset = dataStart + map.getInt(e + E_OFFSET);
+        byte[] camera = new byte[map.getInt(e + E_CAMERA_LENGTH)];
+        byte[] frame = new byte[map.getInt(e + E_FRAME_LENGTH)];
+        map.get(offset, camera);
+        map.get(offset + camera.length, frame);
+        return new Evidence(seq, new String(camera, StandardCharsets.UTF_8), Instant.ofEpochMilli(map.getLong(e + E_TIME)),
+                map.getFloat(e + E_CONFIDENCE), AlarmStatus.values()[map.getInt(e + E_ALARM)], frame);
+    }
+
+    private int entry(long seq) {
+        return HEADER_SIZE + (int) (seq % indexSlots) * ENTRY_SIZE;
+    }
+
+    private void writeHeader() {
+        map.putLong(H_OLDEST, oldestSeq);
+        map.putInt(H_WRITE_POS, writePos);
+        // next seq last: it is what makes a new frame visible after a crash
+        map.putLong(H_NEXT, nextSeq);
+    }
+
+    /**
+     * The JPEG writer drops or rejects alpha channels, so such frames are flattened first.
+     */
+    private static BufferedImage withoutAlpha(BufferedImage frame) {
+        if (!frame.getColorModel().hasAlpha()) {
+            return frame;
+        }
+        BufferedImage rgb = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(frame, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Hands out the encoder's own array instead of the copy toByteArray would make.
+     */
+    private static final class FrameBytes extends ByteArrayOutputStream {
+        FrameBytes() {
+            super(16 * 1024);
+        }
+
+        ByteBuffer buffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
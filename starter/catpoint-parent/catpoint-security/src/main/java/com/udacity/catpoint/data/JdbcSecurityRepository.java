@@ -0,0 +1,533 @@
+package com.udacity.catpoint.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository backed by an embedded, file based H2 database.
+ *
+ * Sensors live in a normalized table (sensor types in their own lookup table) with indexes on
+ * type and active state next to the primary key. Reads of the full state are answered from an
+ * in-memory copy loaded at startup, like the other implementations. Writes go onto a queue that
+ * a single writer thread drains: everything that piled up while the previous transaction was
+ * committing is coalesced per sensor, sent as JDBC batches and committed together. Call
+ * {@link #flush()} to wait until all earlier writes are durable.
+ *
+ * A failed commit is not skipped over quietly: from then on every write is refused with an
+ * IllegalStateException until {@link #flush()} reports the failure and reloads the in-memory
+ * copy from the database, so it shows only what was actually stored.
+ */
+public class JdbcSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    public static final String DEFAULT_URL = "jdbc:h2:" + System.getProperty("user.home") + "/.catpoint/security";
+
+    private static final int DEFAULT_POOL_SIZE = 3;
+    private static final int MAX_BATCH = 1024;
+    // queued by close() to stop the writer; interrupting it could close H2's file channel mid-write
+    private static final Write STOP = Write.delete(null);
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS sensor_type (id INT PRIMARY KEY, name VARCHAR(16) NOT NULL UNIQUE)",
+            "CREATE TABLE IF NOT EXISTS sensor (id UUID PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                    + "type_id INT NOT NULL REFERENCES sensor_type(id), active BOOLEAN NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS sensor_type_idx ON sensor(type_id)",
+            "CREATE INDEX IF NOT EXISTS sensor_active_idx ON sensor(active)",
+            "CREATE TABLE IF NOT EXISTS system_state (id INT PRIMARY KEY, "
+                    + "alarm_status VARCHAR(16) NOT NULL, arming_status VARCHAR(16) NOT NULL)"
+    };
+    private static final String UPSERT_TYPE = "MERGE INTO sensor_type (id, name) KEY (id) VALUES (?, ?)";
+    private static final String UPSERT_SENSOR = "MERGE INTO sensor (id, name, type_id, active) KEY (id) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SENSOR = "DELETE FROM sensor WHERE id = ?";
+    private static final String UPSERT_STATE = "MERGE INTO system_state (id, alarm_status, arming_status) KEY (id) VALUES (1, ?, ?)";
+    private static final String SELECT_SENSORS = "SELECT s.id, s.name, t.name, s.active FROM sensor s JOIN sensor_type t ON t.id = s.type_id";
+    private static final String SELECT_STATE = "SELECT alarm_status, arming_status FROM system_state WHERE id = 1";
+
+    private final String url;
+    private final ConnectionPool pool;
+    private final BlockingQueue<Write> writes = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private volatile SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    // guarded by this
+    private long enqueuedSeq;
+    // committed, or failed and held in writeFailure until flush() reports it
+    private long settledSeq;
+    private Throwable writeFailure;
+    private boolean closed;
+
+    public JdbcSecurityRepository() {
+        this(DEFAULT_URL);
+    }
+
+    public JdbcSecurityRepository(String url) {
+        this(url, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param url JDBC url of the database, created on first use
+     * @param poolSize Number of pooled connections, shared by the writer thread and queries
+     */
+    public JdbcSecurityRepository(String url, int poolSize) {
+        this.url = url;
+        try {
+            this.pool = new ConnectionPool(url, poolSize);
+            createSchema();
+            load();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not open security database at " + url, e);
+        }
+        writer = new Thread(this::writeLoop, "security-db-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        ensureWritable();
+        sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
+        enqueue(Write.upsert(sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        ensureWritable();
+        sensors.remove(sensor);
+        snapshot = snapshot.withoutSensor(sensor);
+        enqueue(Write.delete(sensor.getSensorId()));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        ensureWritable();
+        sensors.remove(sensor);
+        sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
+        enqueue(Write.upsert(sensor));
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        ensureWritable();
+        this.alarmStatus = alarmStatus;
+        enqueue(Write.state(alarmStatus, armingStatus));
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        ensureWritable();
+        this.armingStatus = armingStatus;
+        enqueue(Write.state(alarmStatus, armingStatus));
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Queries the sensor table through its type index, after waiting for pending writes.
+     */
+    public List<Sensor> getSensorsByType(SensorType type) {
+        return query(SELECT_SENSORS + " WHERE s.type_id = ?", type.ordinal());
+    }
+
+    /**
+     * Queries the sensor table through its active index, after waiting for pending writes.
+     */
+    public List<Sensor> getActiveSensors() {
+        return query(SELECT_SENSORS + " WHERE s.active = ?", Boolean.TRUE);
+    }
+
+    /**
+     * Blocks until every write made before this call has been committed.
+     * @throws IllegalStateException if a write failed since the last flush. The in-memory state
+     * has then been reloaded from the database and writes are accepted again.
+     */
+    public void flush() {
+        synchronized (this) {
+            try {
+                long target = enqueuedSeq;
+                while (settledSeq < target) {
+                    wait();
+                }
+                if (writeFailure != null) {
+                    // nothing new is accepted while failed, so wait for everything that was
+                    while (settledSeq < enqueuedSeq) {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for database writes", e);
+            }
+            if (writeFailure != null) {
+                Throwable failure = writeFailure;
+                writeFailure = null;
+                reload(failure);
+                throw new IllegalStateException("Could not write to security database at " + url, failure);
+            }
+        }
+    }
+
+    /**
+     * Commits pending writes and closes all connections.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // from here on enqueue() refuses, so the flush covers every write that was accepted
+            closed = true;
+        }
+        try {
+            flush();
+        } finally {
+            writes.add(STOP);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool.close();
+        }
+    }
+
+    // called before the in-memory copy changes, so a refused write leaves no trace
+    private void ensureWritable() {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Repository is closed");
+            }
+            if (writeFailure != null) {
+                throw new IllegalStateException("An earlier write to " + url + " failed; call flush() to see why", writeFailure);
+            }
+        }
+    }
+
+    private void enqueue(Write write) {
+        synchronized (this) {
+            write.seq = ++enqueuedSeq;
+            writes.add(write);
+        }
+    }
+
+    // the failed batch was rolled back, so the database is the truth again; guarded by this
+    private void reload(Throwable failure) {
+        sensors.clear();
+        try {
+            load();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void writeLoop() {
+        List<Write> batch = new ArrayList<>();
+        while (true) {
+            Write first;
+            try {
+                first = writes.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == STOP) {
+                return;
+            }
+            batch.add(first);
+            // group commit: whatever queued up behind the first write goes into the same transaction
+            writes.drainTo(batch, MAX_BATCH - 1);
+            // close() only queues STOP once enqueue() refuses, so it can only be the last element here
+            boolean stop = batch.get(batch.size() - 1) == STOP;
+            if (stop) {
+                batch.remove(batch.size() - 1);
+            }
+            Throwable failure = null;
+            try {
+                commit(batch);
+            } catch (Throwable e) {
+                // whatever went wrong, the writer keeps going; writes are refused until flush() reports it
+                failure = e;
+            }
+            synchronized (this) {
+                settledSeq = batch.get(batch.size() - 1).seq;
+                if (failure != null) {
+                    if (writeFailure == null) {
+                        writeFailure = failure;
+                    } else {
+                        writeFailure.addSuppressed(failure);
+                    }
+                }
+                notifyAll();
+            }
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Write> batch) throws SQLException {
+        // only the last write per sensor matters
+        Map<UUID, Write> sensorWrites = new LinkedHashMap<>();
+        Write state = null;
+        for (Write w : batch) {
+            if (w.sensorId != null) {
+                sensorWrites.put(w.sensorId, w);
+            } else {
+                state = w;
+            }
+        }
+
+        Connection c = pool.borrow();
+        try (PreparedStatement upsert = c.prepareStatement(UPSERT_SENSOR);
+             PreparedStatement delete = c.prepareStatement(DELETE_SENSOR)) {
+            boolean anyUpsert = false;
+            boolean anyDelete = false;
+            for (Write w : sensorWrites.values()) {
+                if (w.deleted) {
+                    delete.setObject(1, w.sensorId);
+                    delete.addBatch();
+                    anyDelete = true;
+                } else {
+                    upsert.setObject(1, w.sensorId);
+                    upsert.setString(2, w.name);
+                    upsert.setInt(3, w.typeId);
+                    upsert.setBoolean(4, w.active);
+                    upsert.addBatch();
+                    anyUpsert = true;
+                }
+            }
+            if (anyDelete) {
+                delete.executeBatch();
+            }
+            if (anyUpsert) {
+                upsert.executeBatch();
+            }
+            if (state != null) {
+                writeState(c, state.alarmStatus, state.armingStatus);
+            }
+            c.commit();
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    private List<Sensor> query(String sql, Object parameter) {
+        flush();
+        List<Sensor> result = new ArrayList<>();
+        try {
+            Connection c = pool.borrow();
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setObject(1, parameter);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(readSensor(rs));
+                    }
+                }
+                c.commit();
+            } finally {
+                pool.release(c);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not query security database at " + url, e);
+        }
+        return result;
+    }
+
+    private void createSchema() throws SQLException {
+        Connection c = pool.borrow();
+        try {
+            try (Statement s = c.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    s.execute(ddl);
+                }
+            }
+            // prepared only now: H2 resolves the table when the statement is prepared
+            try (PreparedStatement types = c.prepareStatement(UPSERT_TYPE)) {
+                for (SensorType type : SensorType.values()) {
+                    types.setInt(1, type.ordinal());
+                    types.setString(2, type.name());
+                    types.addBatch();
+                }
+                types.executeBatch();
+            }
+            c.commit();
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    private void load() throws SQLException {
+        Connection c = pool.borrow();
+        try (Statement s = c.createStatement()) {
+            try (ResultSet rs = s.executeQuery(SELECT_SENSORS)) {
+                while (rs.next()) {
+                    sensors.add(readSensor(rs));
+                }
+                snapshot = SensorSnapshot.of(sensors);
+            }
+            try (ResultSet rs = s.executeQuery(SELECT_STATE)) {
+                if (rs.next()) {
+                    alarmStatus = AlarmStatus.valueOf(rs.getString(1));
+                    armingStatus = ArmingStatus.valueOf(rs.getString(2));
+                } else {
+                    writeState(c, alarmStatus, armingStatus);
+                }
+            }
+            c.commit();
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    private static void writeState(Connection c, AlarmStatus alarmStatus, ArmingStatus armingStatus) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPSERT_STATE)) {
+            ps.setString(1, alarmStatus.name());
+            ps.setString(2, armingStatus.name());
+            ps.executeUpdate();
+        }
+    }
+
+    private static Sensor readSensor(ResultSet rs) throws SQLException {
+        Sensor sensor = new Sensor(rs.getString(2), SensorType.valueOf(rs.getString(3)));
+        sensor.setSensorId(rs.getObject(1, UUID.class));
+        sensor.setActive(rs.getBoolean(4));
+        return sensor;
+    }
+
+    /**
+     * A queued change. Sensor fields are copied when the write is queued, because callers keep
+     * mutating their Sensor objects.
+     */
+    private static class Write {
+        private final UUID sensorId;
+        private final boolean deleted;
+        private final String name;
+        private final int typeId;
+        private final boolean active;
+        private final AlarmStatus alarmStatus;
+        private final ArmingStatus armingStatus;
+        private long seq;
+
+        private Write(UUID sensorId, boolean deleted, String name, int typeId, boolean active,
+                      AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+            this.sensorId = sensorId;
+            this.deleted = deleted;
+            this.name = name;
+            this.typeId = typeId;
+            this.active = active;
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+        }
+
+        static Write upsert(Sensor s) {
+            return new Write(s.getSensorId(), false, s.getName(), s.getSensorType().ordinal(),
+                    Boolean.TRUE.equals(s.getActive()), null, null);
+        }
+
+        static Write delete(UUID sensorId) {
+            return new Write(sensorId, true, null, 0, false, null, null);
+        }
+
+        static Write state(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+            return new Write(null, false, null, 0, false, alarmStatus, armingStatus);
+        }
+    }
+
+    /**
+     * Fixed set of connections opened up front. Callers borrow one, use it inside a transaction
+     * and hand it back.
+     */
+    private static class ConnectionPool {
+        private final BlockingQueue<Connection> idle;
+        private final List<Connection> all = new ArrayList<>();
+
+        ConnectionPool(String url, int size) throws SQLException {
+            if (size < 1) {
+                throw new IllegalArgumentException("Pool size must be at least 1");
+            }
+            idle = new ArrayBlockingQueue<>(size);
+            Properties settings = new Properties();
+            if (url.startsWith("jdbc:h2:")) {
+                // H2 closes the database from its own shutdown hook, racing close() in ours and
+                // failing the writes it still has to commit
+                settings.setProperty("DB_CLOSE_ON_EXIT", "FALSE");
+            }
+            try {
+                for (int i = 0; i < size; i++) {
+                    Connection c = DriverManager.getConnection(url, settings);
+                    c.setAutoCommit(false);
+                    all.add(c);
+                    idle.add(c);
+                }
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        Connection borrow() throws SQLException {
+            try {
+                return idle.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+        }
+
+        void release(Connection c) {
+            idle.add(c);
+        }
+
+        void close() {
+            for (Connection c : all) {
+                try {
+                    c.close();
+                } catch (SQLException ignored) {
+                    // closing anyway
+                }
+            }
+        }
+    }
+}
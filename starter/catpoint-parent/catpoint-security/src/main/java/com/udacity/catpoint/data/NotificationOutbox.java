@@ -0,0 +1,265 @@
+package com.udacity.catpoint.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Alarm notifications that have not yet reached every destination, kept in a file so they
+ * survive a restart.
+ *
+ * The file is a log of records [kind][length][payload]: the epoch of each session, each
+ * notification as it is added, and each acknowledgement by a destination. Adding is durable
+ * when {@link #add} returns; acknowledgements are not forced to disk, since losing one only
+ * means the notification is delivered again, and destinations drop duplicates by
+ * {@link Notification#id()}. A record cut short by a crash is truncated away on open, and the
+ * log is rewritten with only what is still owed when it has grown to twice its last size.
+ */
+public class NotificationOutbox implements AutoCloseable {
+
+    private static final byte EPOCH = 1;
+    private static final byte ADD = 2;
+    private static final byte ACK = 3;
+    private static final long MIN_COMPACT_SIZE = 64 * 1024;
+
+    /**
+     * An alarm transition to deliver.
+     * @param epoch Session of the outbox that added it, since sequences restart with the app
+     * @param sequence Sequence number of the transition's SecurityEvent
+     */
+    public record Notification(long epoch, long sequence, Instant time, AlarmStatus status) {
+        /** Unique across restarts; destinations use it to drop duplicates. */
+        public String id() {
+            return epoch + "-" + sequence;
+        }
+    }
+
+    private record Key(long epoch, long sequence) {
+    }
+
+    private record Owed(Notification notification, Set<String> destinations) {
+    }
+
+    private final Path file;
+    private final List<String> destinations;
+    private final long epoch;
+    private final LinkedHashMap<Key, Owed> owed = new LinkedHashMap<>();
+    // a stream rather than a channel: senders get interrupted on close, and that closes channels
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long size;
+    private long compactedSize;
+
+    /**
+     * @param file Outbox file, created if missing and continued if it exists
+     * @param destinations Names of the destinations every notification is owed to
+     */
+    public NotificationOutbox(Path file, Collection<String> destinations) {
+        this.file = file;
+        this.destinations = List.copyOf(destinations);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            long lastEpoch = Files.exists(file) ? recover() : 0;
+            epoch = lastEpoch + 1;
+            // every session starts from a compacted file that records its epoch
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open outbox " + file, e);
+        }
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Adds notifications owed to every destination and forces them to disk.
+     */
+    public synchronized void add(List<Notification> notifications) {
+        try {
+            for (Notification n : notifications) {
+                owed.put(new Key(n.epoch(), n.sequence()), new Owed(n, new HashSet<>(destinations)));
+                writeAdd(n);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to outbox " + file, e);
+        }
+    }
+
+    /**
+     * Records that a destination has the given notifications; they are forgotten once every
+     * destination has them.
+     */
+    public synchronized void acknowledge(String destination, List<Notification> delivered) {
+        try {
+            for (Notification n : delivered) {
+                Key key = new Key(n.epoch(), n.sequence());
+                Owed o = owed.get(key);
+                if (o != null && o.destinations().remove(destination)) {
+                    writeAck(destination, n);
+                    if (o.destinations().isEmpty()) {
+                        owed.remove(key);
+                    }
+                }
+            }
+            out.flush();
+            if (size > MIN_COMPACT_SIZE && size > 2 * compactedSize) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to outbox " + file, e);
+        }
+    }
+
+    /**
+     * @return Notifications the destination has not acknowledged, oldest first
+     */
+    public synchronized List<Notification> pending(String destination) {
+        List<Notification> result = new ArrayList<>();
+        for (Owed o : owed.values()) {
+            if (o.destinations().contains(destination)) {
+                result.add(o.notification());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Notifications still owed to at least one destination
+     */
+    public synchronized int size() {
+        return owed.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close outbox " + file, e);
+        }
+    }
+
+    private void writeAdd(Notification n) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeLong(n.epoch());
+        payload.writeLong(n.sequence());
+        payload.writeLong(n.time().toEpochMilli());
+        payload.writeByte(n.status().ordinal());
+        writeRecord(ADD, bytes.toByteArray());
+    }
+
+    private void writeAck(String destination, Notification n) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeUTF(destination);
+        payload.writeLong(n.epoch());
+        payload.writeLong(n.sequence());
+        writeRecord(ACK, bytes.toByteArray());
+    }
+
+    private void writeRecord(byte kind, byte[] payload) throws IOException {
+        out.writeByte(kind);
+        out.writeShort(payload.length);
+        out.write(payload);
+        size += 1 + Short.BYTES + payload.length;
+    }
+
+    /**
+     * Rewrites the file with this session's epoch and what is still owed, then continues
+     * appending to it. The new file replaces the old one atomically.
+     */
+    private void compact() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        fileOut = new FileOutputStream(tmp.toFile());
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        size = 0;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+        new DataOutputStream(bytes).writeLong(epoch);
+        writeRecord(EPOCH, bytes.toByteArray());
+        for (Owed o : owed.values()) {
+            writeAdd(o.notification());
+            for (String destination : destinations) {
+                if (!o.destinations().contains(destination)) {
+                    writeAck(destination, o.notification());
+                }
+            }
+        }
+        out.flush();
+        fileOut.getFD().sync();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        compactedSize = size;
+    }
+
+    /**
+     * Replays the log into {@link #owed}. Notifications are owed to the destinations configured
+     * now; acknowledgements by destinations no longer configured are ignored.
+     * @return The highest epoch in the file
+     */
+    private long recover() throws IOException {
+        long lastEpoch = 0;
+        long offset = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream records = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in)));
+            try {
+                while (true) {
+                    byte kind = records.readByte();
+                    byte[] bytes = new byte[records.readUnsignedShort()];
+                    records.readFully(bytes);
+                    DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+                    switch (kind) {
+                        case EPOCH -> lastEpoch = Math.max(lastEpoch, payload.readLong());
+                        case ADD -> {
+                            Notification n = new Notification(payload.readLong(), payload.readLong(),
+                                    Instant.ofEpochMilli(payload.readLong()), AlarmStatus.values()[payload.readByte()]);
+                            owed.put(new Key(n.epoch(), n.sequence()), new Owed(n, new HashSet<>(destinations)));
+                        }
+                        case ACK -> {
+                            String destination = payload.readUTF();
+                            Key key = new Key(payload.readLong(), payload.readLong());
+                            Owed o = owed.get(key);
+                            if (o != null) {
+                                o.destinations().remove(destination);
+                            }
+                        }
+                        default -> throw new IOException("Unknown outbox record " + kind + " at offset " + offset);
+                    }
+                    offset += 1 + Short.BYTES + bytes.length;
+                }
+            } catch (EOFException e) {
+                // end of the log, or a torn last record
+            }
+            in.truncate(offset);
+        }
+        owed.values().removeIf(o -> o.destinations().isEmpty());
+        return lastEpoch;
+    }
+}
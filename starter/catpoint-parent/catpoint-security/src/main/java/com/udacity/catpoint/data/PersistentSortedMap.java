@@ -0,0 +1,176 @@
+package com.udacity.catpoint.data;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted map (an AVL tree). put and remove return a new map that shares every node
+ * off the path to the changed key with the old one, so an update costs O(log n) new nodes and
+ * old versions stay valid for whoever still holds them.
+ */
+final class PersistentSortedMap<K, V> implements Iterable<V> {
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root, int size) {
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+    }
+
+    static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentSortedMap<>(comparator, null, 0);
+    }
+
+    V get(K key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = comparator.compare(key, n.key);
+            if (c == 0) {
+                return n.value;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    PersistentSortedMap<K, V> put(K key, V value) {
+        int newSize = get(key) == null ? size + 1 : size;
+        return new PersistentSortedMap<>(comparator, insert(root, key, value), newSize);
+    }
+
+    PersistentSortedMap<K, V> remove(K key) {
+        if (get(key) == null) {
+            return this;
+        }
+        return new PersistentSortedMap<>(comparator, delete(root, key), size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Values in key order.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public V next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<K, V> n = stack.pop();
+                pushLeft(n.right);
+                return n.value;
+            }
+
+            private void pushLeft(Node<K, V> n) {
+                for (; n != null; n = n.left) {
+                    stack.push(n);
+                }
+            }
+        };
+    }
+
+    private Node<K, V> insert(Node<K, V> n, K key, V value) {
+        if (n == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int c = comparator.compare(key, n.key);
+        if (c < 0) {
+            return balance(n.key, n.value, insert(n.left, key, value), n.right);
+        } else if (c > 0) {
+            return balance(n.key, n.value, n.left, insert(n.right, key, value));
+        }
+        return new Node<>(key, value, n.left, n.right);
+    }
+
+    private Node<K, V> delete(Node<K, V> n, K key) {
+        int c = comparator.compare(key, n.key);
+        if (c < 0) {
+            return balance(n.key, n.value, delete(n.left, key), n.right);
+        } else if (c > 0) {
+            return balance(n.key, n.value, n.left, delete(n.right, key));
+        }
+        if (n.left == null) {
+            return n.right;
+        }
+        if (n.right == null) {
+            return n.left;
+        }
+        Node<K, V> min = n.right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.key, min.value, n.left, deleteMin(n.right));
+    }
+
+    private static <K, V> Node<K, V> deleteMin(Node<K, V> n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        return balance(n.key, n.value, deleteMin(n.left), n.right);
+    }
+
+    /**
+     * Builds a node from its parts, with a single or double rotation if the subtrees differ in
+     * height by more than one.
+     */
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> l, Node<K, V> r) {
+        int hl = height(l);
+        int hr = height(r);
+        if (hl > hr + 1) {
+            if (height(l.left) >= height(l.right)) {
+                return new Node<>(l.key, l.value, l.left, new Node<>(key, value, l.right, r));
+            }
+            Node<K, V> lr = l.right;
+            return new Node<>(lr.key, lr.value, new Node<>(l.key, l.value, l.left, lr.left), new Node<>(key, value, lr.right, r));
+        }
+        if (hr > hl + 1) {
+            if (height(r.right) >= height(r.left)) {
+                return new Node<>(r.key, r.value, new Node<>(key, value, l, r.left), r.right);
+            }
+            Node<K, V> rl = r.left;
+            return new Node<>(rl.key, rl.value, new Node<>(key, value, l, rl.left), new Node<>(r.key, r.value, rl.right, r.right));
+        }
+        return new Node<>(key, value, l, r);
+    }
+
+    private static int height(Node<?, ?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+}
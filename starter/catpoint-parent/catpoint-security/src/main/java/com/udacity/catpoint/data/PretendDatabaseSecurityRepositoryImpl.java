@@ -16,6 +16,7 @@ import java.util.prefs.Preferences;
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
 
     private Set<Sensor> sensors;
+    private volatile SensorSnapshot snapshot;
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
@@ -24,10 +25,18 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+    private final Preferences prefs;
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * @param prefs Preferences node to keep the state in, e.g. a scratch node for benchmarks
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
@@ -42,35 +51,39 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
             }.getType();
             sensors = gson.fromJson(sensorString, type);
         }
+        snapshot = SensorSnapshot.of(sensors);
     }
 
     @Override
-    public void addSensor(Sensor sensor) {
+    public synchronized void addSensor(Sensor sensor) {
         sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
         prefs.put(SENSORS, gson.toJson(sensors));
     }
 
     @Override
-    public void removeSensor(Sensor sensor) {
+    public synchronized void removeSensor(Sensor sensor) {
         sensors.remove(sensor);
+        snapshot = snapshot.withoutSensor(sensor);
         prefs.put(SENSORS, gson.toJson(sensors));
     }
 
     @Override
-    public void updateSensor(Sensor sensor) {
+    public synchronized void updateSensor(Sensor sensor) {
         sensors.remove(sensor);
         sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
         prefs.put(SENSORS, gson.toJson(sensors));
     }
 
     @Override
-    public void setAlarmStatus(AlarmStatus alarmStatus) {
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
         prefs.put(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
         prefs.put(ARMING_STATUS, this.armingStatus.toString());
     }
@@ -80,6 +93,11 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
         return sensors;
     }
 
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return snapshot;
+    }
+
     @Override
     public AlarmStatus getAlarmStatus() {
         return alarmStatus;
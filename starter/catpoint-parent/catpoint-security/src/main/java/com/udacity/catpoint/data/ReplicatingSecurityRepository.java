@@ -0,0 +1,347 @@
+package com.udacity.catpoint.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps a repository and streams every mutation to a {@link ReplicationStandby} over TCP, so a
+ * second process has a warm copy of the state to fail over to.
+ *
+ * Mutations are applied locally first, encoded as small binary frames (see ReplicationProtocol)
+ * and queued. A sender thread writes whatever is queued without waiting for acknowledgements
+ * and flushes once the queue is empty; the standby acknowledges cumulatively, once per burst.
+ * With {@link Durability#SYNC} a mutation returns only after the standby has acknowledged it,
+ * or once the sync timeout has passed, or right away while no standby is connected: the alarm
+ * must keep working when the standby is down. With {@link Durability#ASYNC} it returns
+ * immediately.
+ *
+ * When the connection is (re)established the full state is sent first, so the standby never
+ * depends on frames that were queued while it was unreachable.
+ */
+public class ReplicatingSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    public enum Durability {
+        /** Return once the standby has applied the mutation */
+        SYNC,
+        /** Return once the mutation is queued for sending */
+        ASYNC
+    }
+
+    private static final Duration DEFAULT_SYNC_TIMEOUT = Duration.ofSeconds(1);
+    private static final long RECONNECT_DELAY_MILLIS = 500;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final SecurityRepository delegate;
+    private final InetSocketAddress standby;
+    private final Durability durability;
+    private final long syncTimeoutNanos;
+
+    private final BlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();
+    private final Thread sender;
+
+    // guarded by this: mutations, sequence numbers and the unacknowledged mutations
+    private long lastSeq;
+    private long ackedSeq;
+    private final Deque<long[]> unacked = new ArrayDeque<>(); // {seq, nanoTime}
+    private long syncTimeouts;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    public ReplicatingSecurityRepository(SecurityRepository delegate, String host, int port, Durability durability) {
+        this(delegate, new InetSocketAddress(host, port), durability, DEFAULT_SYNC_TIMEOUT);
+    }
+
+    /**
+     * @param delegate Repository that holds the local state
+     * @param standby Address the standby listens on. It does not have to be up yet.
+     * @param durability Whether mutations wait for the standby
+     * @param syncTimeout Longest a SYNC mutation waits before carrying on without the standby
+     */
+    public ReplicatingSecurityRepository(SecurityRepository delegate, InetSocketAddress standby,
+                                         Durability durability, Duration syncTimeout) {
+        this.delegate = delegate;
+        this.standby = standby;
+        this.durability = durability;
+        this.syncTimeoutNanos = syncTimeout.toNanos();
+        sender = new Thread(this::sendLoop, "replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        long seq;
+        synchronized (this) {
+            delegate.addSensor(sensor);
+            seq = enqueue(ReplicationProtocol.upsertSensor(lastSeq + 1, sensor));
+        }
+        awaitDurability(seq);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        long seq;
+        synchronized (this) {
+            delegate.removeSensor(sensor);
+            seq = enqueue(ReplicationProtocol.removeSensor(lastSeq + 1, sensor.getSensorId()));
+        }
+        awaitDurability(seq);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        long seq;
+        synchronized (this) {
+            delegate.updateSensor(sensor);
+            seq = enqueue(ReplicationProtocol.upsertSensor(lastSeq + 1, sensor));
+        }
+        awaitDurability(seq);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        long seq;
+        synchronized (this) {
+            delegate.setAlarmStatus(alarmStatus);
+            seq = enqueue(ReplicationProtocol.alarmStatus(lastSeq + 1, alarmStatus));
+        }
+        awaitDurability(seq);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        long seq;
+        synchronized (this) {
+            delegate.setArmingStatus(armingStatus);
+            seq = enqueue(ReplicationProtocol.armingStatus(lastSeq + 1, armingStatus));
+        }
+        awaitDurability(seq);
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return delegate.getSensorSnapshot();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    /**
+     * Waits until the standby has acknowledged every mutation made so far.
+     * @return false if the timeout passed first
+     */
+    public boolean awaitReplication(Duration timeout) throws InterruptedException {
+        synchronized (this) {
+            return awaitAck(lastSeq, timeout.toNanos());
+        }
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSeq;
+    }
+
+    public synchronized long getAcknowledgedSequence() {
+        return ackedSeq;
+    }
+
+    /**
+     * @return Number of mutations the standby has not acknowledged yet
+     */
+    public synchronized long getReplicationLag() {
+        return lastSeq - ackedSeq;
+    }
+
+    /**
+     * @return How long the oldest unacknowledged mutation has been waiting, 0 when caught up
+     */
+    public synchronized long getReplicationLagMillis() {
+        long[] oldest = unacked.peekFirst();
+        return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest[1]);
+    }
+
+    /**
+     * @return Number of SYNC mutations that returned without the standby's acknowledgement
+     */
+    public synchronized long getSyncTimeouts() {
+        return syncTimeouts;
+    }
+
+    public boolean isConnected() {
+        return socket != null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        sender.interrupt();
+        closeQuietly(socket);
+    }
+
+    private long enqueue(byte[] frame) {
+        long seq = ++lastSeq;
+        unacked.addLast(new long[]{seq, System.nanoTime()});
+        outbox.add(frame);
+        return seq;
+    }
+
+    private void awaitDurability(long seq) {
+        if (durability != Durability.SYNC) {
+            return;
+        }
+        synchronized (this) {
+            if (socket == null) {
+                // no standby to wait for; it gets the full state when it connects
+                syncTimeouts++;
+                return;
+            }
+            try {
+                if (!awaitAck(seq, syncTimeoutNanos)) {
+                    syncTimeouts++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // caller holds the monitor
+    private boolean awaitAck(long seq, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (ackedSeq < seq) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    private void sendLoop() {
+        while (!closed) {
+            Socket s = new Socket();
+            try {
+                s.connect(standby, CONNECT_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                out.writeInt(ReplicationProtocol.MAGIC);
+                out.writeByte(ReplicationProtocol.VERSION);
+                for (byte[] frame : snapshot()) {
+                    out.write(frame);
+                }
+                out.flush();
+                socket = s;
+                startAckReader(s);
+
+                while (!closed) {
+                    byte[] frame = outbox.take();
+                    out.write(frame);
+                    // pipeline: write everything already queued, then flush once
+                    while ((frame = outbox.poll()) != null) {
+                        out.write(frame);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // standby down or connection lost: retry, the snapshot resynchronizes it
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return;
+                }
+            } finally {
+                // clear first, so the ack reader of this connection does not interrupt the next one
+                socket = null;
+                closeQuietly(s);
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes the full current state, tagged with the latest sequence number, and drops the
+     * queued frames it supersedes.
+     */
+    private synchronized List<byte[]> snapshot() {
+        outbox.clear();
+        List<byte[]> frames = new ArrayList<>();
+        frames.add(ReplicationProtocol.reset(lastSeq));
+        for (Sensor sensor : delegate.getSensors()) {
+            frames.add(ReplicationProtocol.upsertSensor(lastSeq, sensor));
+        }
+        frames.add(ReplicationProtocol.alarmStatus(lastSeq, delegate.getAlarmStatus()));
+        frames.add(ReplicationProtocol.armingStatus(lastSeq, delegate.getArmingStatus()));
+        return frames;
+    }
+
+    private void startAckReader(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    acknowledge(in.readLong());
+                }
+            } catch (IOException e) {
+                // connection gone: wake the sender so it reconnects and resends the state
+                if (socket == s) {
+                    sender.interrupt();
+                }
+            }
+        }, "replication-acks");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private synchronized void acknowledge(long seq) {
+        if (seq <= ackedSeq) {
+            return;
+        }
+        ackedSeq = seq;
+        while (!unacked.isEmpty() && unacked.peekFirst()[0] <= seq) {
+            unacked.removeFirst();
+        }
+        notifyAll();
+    }
+
+    private static void closeQuietly(Socket s) {
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+        }
+    }
+}
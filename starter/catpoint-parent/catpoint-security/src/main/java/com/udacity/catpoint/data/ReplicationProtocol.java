@@ -0,0 +1,133 @@
+package com.udacity.catpoint.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+/**
+ * Wire format shared by ReplicatingSecurityRepository and ReplicationStandby.
+ *
+ * After a header (magic number and version) the primary sends a stream of frames. Every frame is
+ * one op byte, the sequence number of the mutation and an op specific payload:
+ * <pre>
+ *   RESET          -
+ *   UPSERT_SENSOR  id (2 longs), type (byte), active (byte), name (modified UTF-8)
+ *   REMOVE_SENSOR  id (2 longs)
+ *   ALARM, ARMING  status ordinal (byte)
+ * </pre>
+ * The standby answers with the sequence number (one long) of the last frame it applied, once
+ * it has applied everything that was available to read, so a burst of frames costs one ack.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x43415450; // "CATP"
+    static final byte VERSION = 1;
+
+    static final byte OP_RESET = 0;
+    static final byte OP_UPSERT_SENSOR = 1;
+    static final byte OP_REMOVE_SENSOR = 2;
+    static final byte OP_ALARM = 3;
+    static final byte OP_ARMING = 4;
+
+    private ReplicationProtocol() {
+    }
+
+    static byte[] reset(long seq) {
+        return frame(OP_RESET, seq, out -> { });
+    }
+
+    static byte[] upsertSensor(long seq, Sensor sensor) {
+        return frame(OP_UPSERT_SENSOR, seq, out -> {
+            writeId(out, sensor.getSensorId());
+            out.writeByte(sensor.getSensorType().ordinal());
+            out.writeBoolean(Boolean.TRUE.equals(sensor.getActive()));
+            out.writeUTF(sensor.getName());
+        });
+    }
+
+    static byte[] removeSensor(long seq, UUID sensorId) {
+        return frame(OP_REMOVE_SENSOR, seq, out -> writeId(out, sensorId));
+    }
+
+    static byte[] alarmStatus(long seq, AlarmStatus status) {
+        return frame(OP_ALARM, seq, out -> out.writeByte(status.ordinal()));
+    }
+
+    static byte[] armingStatus(long seq, ArmingStatus status) {
+        return frame(OP_ARMING, seq, out -> out.writeByte(status.ordinal()));
+    }
+
+    /**
+     * Reads one frame and applies it to the repository.
+     * @return The sequence number of the frame
+     */
+    static long apply(DataInput in, SecurityRepository repo) throws IOException {
+        byte op = in.readByte();
+        long seq = in.readLong();
+        switch (op) {
+            case OP_RESET -> repo.getSensorSnapshot().forEach(e -> repo.removeSensor(e.getSensor()));
+            case OP_UPSERT_SENSOR -> {
+                UUID id = readId(in);
+                SensorType type = SensorType.values()[in.readByte()];
+                boolean active = in.readBoolean();
+                String name = in.readUTF();
+                Sensor sensor = find(repo, id);
+                if (sensor == null) {
+                    sensor = new Sensor(name, type);
+                    sensor.setSensorId(id);
+                } else {
+                    // the name is part of the sort key, so take it out before changing it
+                    repo.removeSensor(sensor);
+                    sensor.setName(name);
+                    sensor.setSensorType(type);
+                }
+                sensor.setActive(active);
+                repo.addSensor(sensor);
+            }
+            case OP_REMOVE_SENSOR -> {
+                Sensor sensor = find(repo, readId(in));
+                if (sensor != null) {
+                    repo.removeSensor(sensor);
+                }
+            }
+            case OP_ALARM -> repo.setAlarmStatus(AlarmStatus.values()[in.readByte()]);
+            case OP_ARMING -> repo.setArmingStatus(ArmingStatus.values()[in.readByte()]);
+            default -> throw new IOException("Unknown replication op " + op);
+        }
+        return seq;
+    }
+
+    private static Sensor find(SecurityRepository repo, UUID id) {
+        SensorSnapshot.Entry entry = repo.getSensorSnapshot().get(id);
+        return entry == null ? null : entry.getSensor();
+    }
+
+    private static void writeId(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readId(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static byte[] frame(byte op, long seq, Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            out.writeLong(seq);
+            payload.write(out);
+        } catch (IOException e) {
+            // cannot happen when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,115 @@
+package com.udacity.catpoint.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Receiving end of ReplicatingSecurityRepository. Accepts one primary at a time and applies its
+ * mutations to a local repository, which can take over when the primary fails.
+ *
+ * Run the main method to start a standby process:
+ * <pre>
+ *   ReplicationStandby &lt;port&gt; [jdbc-url]
+ * </pre>
+ * The state is kept in a JdbcSecurityRepository, by default in the user's home directory.
+ */
+public class ReplicationStandby implements AutoCloseable {
+
+    private final SecurityRepository repository;
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private volatile long appliedSeq;
+    private volatile boolean closed;
+
+    /**
+     * @param repository Repository the replicated state is written to
+     * @param port Port to listen on, 0 for any free port
+     */
+    public ReplicationStandby(SecurityRepository repository, int port) throws IOException {
+        this.repository = repository;
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        acceptor = new Thread(this::acceptLoop, "replication-standby");
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplicationStandby <port> [jdbc-url]");
+            System.exit(2);
+        }
+        String url = args.length > 1 ? args[1] : JdbcSecurityRepository.DEFAULT_URL + "-standby";
+        JdbcSecurityRepository repository = new JdbcSecurityRepository(url);
+        ReplicationStandby standby = new ReplicationStandby(repository, Integer.parseInt(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            standby.close();
+            repository.close();
+        }));
+        System.out.println("Standby listening on " + standby.getAddress() + ", state in " + url);
+    }
+
+    public SecurityRepository getRepository() {
+        return repository;
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * @return Sequence number of the last mutation applied
+     */
+    public long getAppliedSequence() {
+        return appliedSeq;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // shutting down anyway
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try (Socket s = server.accept()) {
+                replicate(s);
+            } catch (IOException e) {
+                // primary went away or the server was closed; wait for the next primary
+            }
+        }
+    }
+
+    private void replicate(Socket s) throws IOException {
+        s.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        if (in.readInt() != ReplicationProtocol.MAGIC || in.readByte() != ReplicationProtocol.VERSION) {
+            throw new IOException("Not a compatible replication primary");
+        }
+        try {
+            while (!closed) {
+                long seq = ReplicationProtocol.apply(in, repository);
+                appliedSeq = seq;
+                // batch acknowledgements: one per burst of frames
+                if (in.available() == 0) {
+                    out.writeLong(seq);
+                    out.flush();
+                }
+            }
+        } catch (EOFException e) {
+            // primary closed the connection
+        }
+    }
+}
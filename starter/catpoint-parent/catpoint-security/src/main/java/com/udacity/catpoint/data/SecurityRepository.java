@@ -12,6 +12,11 @@ public interface SecurityRepository {
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
     Set<Sensor> getSensors();
+
+    /**
+     * @return The latest immutable snapshot of the sensors, safe to read from any thread without copying
+     */
+    SensorSnapshot getSensorSnapshot();
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
@@ -0,0 +1,9 @@
+package com.udacity.catpoint.data;
+
+import java.time.Instant;
+
+/**
+ * The complete system state as it was at one moment.
+ */
+public record SecurityState(Instant time, AlarmStatus alarmStatus, ArmingStatus armingStatus, SensorSnapshot sensors) {
+}
@@ -0,0 +1,553 @@
+package com.udacity.catpoint.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Every activation and deactivation of every sensor, for questions like which doors open most
+ * and at what hours.
+ *
+ * Changes collect per sensor in an open block of up to blockEvents entries. A full block is
+ * sealed: its times are stored as zigzag varints of the delta of deltas, or of the deltas if
+ * those are smaller, and its states as a bitmap, and the two columns are deflated together and appended to the file.
+ * Regular patterns such as a sensor polled every few seconds shrink to almost nothing, and
+ * irregular ones take three to four bytes per change.
+ *
+ * Each block has a header with its sensor, type, time range and how many activations it
+ * holds. The headers stay in memory, so queries skip blocks of other sensors, types and times
+ * without reading them, and count blocks that lie wholly inside the range from the header alone.
+ * Only blocks cut by the range edges, and every block in range for hour histograms, are read
+ * and inflated.
+ *
+ * Open blocks live in memory until they fill up or the history is {@link #flush flushed} or
+ * closed, so a crash loses the most recent changes. A block cut short by a crash is truncated
+ * away on open.
+ */
+public class SensorHistory implements AutoCloseable {
+
+    public static final int DEFAULT_BLOCK_EVENTS = 4096;
+
+    private static final int MAGIC = 0x53484231; // "SHB1"
+    private static final long HOUR_MILLIS = 3_600_000;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    public record Change(Instant time, boolean active) {
+    }
+
+    /**
+     * @param activations Changes to active within the range
+     * @param changes All recorded changes within the range, including deactivations
+     */
+    public record SensorActivity(UUID sensorId, String name, SensorType type, long activations, long changes) {
+    }
+
+    /**
+     * Where a block is and what it holds. Unsealed blocks carry their columns instead of an offset.
+     */
+    private record Block(UUID sensorId, String name, SensorType type, int count, int activations,
+                         long minTime, long maxTime, long offset, int rawLength, int length, int crc, Column open) {
+
+        boolean overlaps(long from, long to) {
+            return minTime < to && maxTime >= from;
+        }
+
+        boolean inside(long from, long to) {
+            return minTime >= from && maxTime < to;
+        }
+    }
+
+    private record Column(long[] times, BitSet states, int count) {
+    }
+
+    private static final class OpenBlock {
+        final UUID sensorId;
+        final String name;
+        final SensorType type;
+        final long[] times;
+        final BitSet states = new BitSet();
+        int count;
+        int activations;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+
+        OpenBlock(Sensor sensor, int capacity) {
+            this.sensorId = sensor.getSensorId();
+            this.name = sensor.getName();
+            this.type = sensor.getSensorType();
+            this.times = new long[capacity];
+        }
+
+        Block snapshot() {
+            Column column = new Column(Arrays.copyOf(times, count), (BitSet) states.clone(), count);
+            return new Block(sensorId, name, type, count, activations, minTime, maxTime, -1, 0, 0, 0, column);
+        }
+    }
+
+    private final Path file;
+    private final int blockEvents;
+    private final List<Block> sealed = new CopyOnWriteArrayList<>();
+    private final Map<UUID, OpenBlock> open = new LinkedHashMap<>(); // guarded by this
+    private final AtomicLong blocksRead = new AtomicLong();
+    private FileOutputStream out; // guarded by this
+    private long size; // guarded by this
+
+    public SensorHistory(Path file) {
+        this(file, DEFAULT_BLOCK_EVENTS);
+    }
+
+    /**
+     * @param blockEvents Changes per sealed block; larger blocks compress better but make range
+     *                    edges cost more to read
+     */
+    public SensorHistory(Path file, int blockEvents) {
+        if (blockEvents < 1) {
+            throw new IllegalArgumentException("blockEvents must be at least 1");
+        }
+        this.file = file;
+        this.blockEvents = blockEvents;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (Files.exists(file)) {
+                recover();
+            }
+            out = new FileOutputStream(file.toFile(), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open sensor history " + file, e);
+        }
+    }
+
+    /**
+     * Records the sensor's current state as of the given time.
+     */
+    public synchronized void record(Sensor sensor, Instant time) {
+        OpenBlock block = open.get(sensor.getSensorId());
+        if (block != null && (block.type != sensor.getSensorType() || !block.name.equals(sensor.getName()))) {
+            // a block belongs to one name and type, so queries by type can trust its header
+            seal(block);
+            block = null;
+        }
+        if (block == null) {
+            block = new OpenBlock(sensor, blockEvents);
+            open.put(block.sensorId, block);
+        }
+        long millis = time.toEpochMilli();
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        block.times[block.count] = millis;
+        block.states.set(block.count, active);
+        block.count++;
+        block.activations += active ? 1 : 0;
+        block.minTime = Math.min(block.minTime, millis);
+        block.maxTime = Math.max(block.maxTime, millis);
+        if (block.count == blockEvents) {
+            seal(block);
+        }
+    }
+
+    /**
+     * Activity per sensor in [from, to), most activations first.
+     * @param type Only sensors of this type, or null for all
+     */
+    public List<SensorActivity> getActivity(SensorType type, Instant from, Instant to) {
+        long lo = toMillis(from);
+        long hi = toMillis(to);
+        Map<UUID, SensorActivity> activity = new HashMap<>();
+        for (Block block : blocks(type, null, lo, hi)) {
+            long activations = 0;
+            long changes = 0;
+            if (block.inside(lo, hi)) {
+                activations = block.activations();
+                changes = block.count();
+            } else {
+                Column column = column(block);
+                for (int i = 0; i < column.count(); i++) {
+                    long t = column.times()[i];
+                    if (t >= lo && t < hi) {
+                        changes++;
+                        activations += column.states().get(i) ? 1 : 0;
+                    }
+                }
+            }
+            if (changes > 0) {
+                // the latest block's name and type, since blocks are visited oldest first
+                activity.merge(block.sensorId(), new SensorActivity(block.sensorId(), block.name(), block.type(), activations, changes),
+                        (old, add) -> new SensorActivity(old.sensorId(), add.name(), add.type(),
+                                old.activations() + add.activations(), old.changes() + add.changes()));
+            }
+        }
+        List<SensorActivity> result = new ArrayList<>(activity.values());
+        result.sort(Comparator.comparingLong(SensorActivity::activations).reversed());
+        return result;
+    }
+
+    /**
+     * Activations in [from, to) by hour of day in the given zone.
+     * @param type Only sensors of this type, or null for all
+     * @return 24 counts, midnight to 1 am first
+     */
+    public long[] getActivationsByHour(SensorType type, Instant from, Instant to, ZoneId zone) {
+        long lo = toMillis(from);
+        long hi = toMillis(to);
+        ZoneRules rules = zone.getRules();
+        long[] hours = new long[24];
+        for (Block block : blocks(type, null, lo, hi)) {
+            if (block.activations() == 0) {
+                continue;
+            }
+            Column column = column(block);
+            // one offset for the whole block unless it spans a daylight saving change
+            Instant min = Instant.ofEpochMilli(block.minTime());
+            ZoneOffsetTransition next = rules.nextTransition(min);
+            boolean fixed = next == null || next.toEpochSecond() * 1000 > block.maxTime();
+            long offset = rules.getOffset(min).getTotalSeconds() * 1000L;
+            for (int i = column.states().nextSetBit(0); i >= 0 && i < column.count(); i = column.states().nextSetBit(i + 1)) {
+                long t = column.times()[i];
+                if (t >= lo && t < hi) {
+                    long local = t + (fixed ? offset : rules.getOffset(Instant.ofEpochMilli(t)).getTotalSeconds() * 1000L);
+                    hours[(int) (Math.floorMod(local, DAY_MILLIS) / HOUR_MILLIS)]++;
+                }
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * @return The sensor's changes in [from, to) in the order they were recorded
+     */
+    public List<Change> getChanges(UUID sensorId, Instant from, Instant to) {
+        long lo = toMillis(from);
+        long hi = toMillis(to);
+        List<Change> changes = new ArrayList<>();
+        for (Block block : blocks(null, sensorId, lo, hi)) {
+            Column column = column(block);
+            for (int i = 0; i < column.count(); i++) {
+                long t = column.times()[i];
+                if (t >= lo && t < hi) {
+                    changes.add(new Change(Instant.ofEpochMilli(t), column.states().get(i)));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @return Sealed blocks read from the file and inflated by queries so far
+     */
+    public long getBlocksRead() {
+        return blocksRead.get();
+    }
+
+    public int getBlockCount() {
+        return sealed.size();
+    }
+
+    /**
+     * @return Bytes in the file, which holds sealed blocks only
+     */
+    public synchronized long getFileSize() {
+        return size;
+    }
+
+    /**
+     * Seals every open block, so nothing recorded so far is lost in a crash. Blocks sealed
+     * early hold fewer changes and compress less well.
+     */
+    public synchronized void flush() {
+        for (OpenBlock block : List.copyOf(open.values())) {
+            seal(block);
+        }
+        try {
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync sensor history " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close sensor history " + file, e);
+        }
+    }
+
+    /**
+     * Like toEpochMilli, but Instant.MIN and MAX and other far-off times saturate.
+     */
+    private static long toMillis(Instant time) {
+        try {
+            return time.toEpochMilli();
+        } catch (ArithmeticException e) {
+            return time.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Blocks that may hold changes in [from, to): sealed ones oldest first, then open ones.
+     */
+    private List<Block> blocks(SensorType type, UUID sensorId, long from, long to) {
+        List<Block> result = new ArrayList<>();
+        // both lists under one lock: a block sealed in between would be in neither
+        synchronized (this) {
+            for (Block block : sealed) {
+                if (matches(block, type, sensorId, from, to)) {
+                    result.add(block);
+                }
+            }
+            for (OpenBlock block : open.values()) {
+                if (block.count > 0 && (type == null || block.type == type) && (sensorId == null || block.sensorId.equals(sensorId))
+                        && block.minTime < to && block.maxTime >= from) {
+                    result.add(block.snapshot());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(Block block, SensorType type, UUID sensorId, long from, long to) {
+        return (type == null || block.type() == type)
+                && (sensorId == null || block.sensorId().equals(sensorId))
+                && block.overlaps(from, to);
+    }
+
+    private Column column(Block block) {
+        if (block.open() != null) {
+            return block.open();
+        }
+        blocksRead.incrementAndGet();
+        // a channel per read, so an interrupted query cannot close the one appends go to
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer compressed = ByteBuffer.allocate(block.length());
+            readFully(channel, compressed, block.offset());
+            CRC32 crc = new CRC32();
+            crc.update(compressed.array());
+            if ((int) crc.getValue() != block.crc()) {
+                throw new DataFormatException("Checksum mismatch");
+            }
+            return decode(compressed.array(), block.rawLength(), block.count());
+        } catch (IOException | DataFormatException e) {
+            throw new UncheckedIOException("Could not read sensor history block at " + block.offset(),
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+    }
+
+    private void seal(OpenBlock block) {
+        open.remove(block.sensorId);
+        if (block.count == 0) {
+            return;
+        }
+        byte[] raw = encode(block.times, block.states, block.count);
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] compressed = new byte[raw.length + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, length);
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + length);
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeLong(block.sensorId.getMostSignificantBits());
+            header.writeLong(block.sensorId.getLeastSignificantBits());
+            header.writeByte(block.type.ordinal());
+            header.writeUTF(block.name);
+            header.writeInt(block.count);
+            header.writeInt(block.activations);
+            header.writeLong(block.minTime);
+            header.writeLong(block.maxTime);
+            header.writeInt(raw.length);
+            header.writeInt(length);
+            header.writeInt((int) crc.getValue());
+            int headerLength = bytes.size();
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(8 + headerLength + length);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            recordOut.writeInt(MAGIC);
+            recordOut.writeInt(headerLength);
+            bytes.writeTo(recordOut);
+            recordOut.write(compressed, 0, length);
+            out.write(record.toByteArray());
+
+            long offset = size + 8 + headerLength;
+            sealed.add(new Block(block.sensorId, block.name, block.type, block.count, block.activations,
+                    block.minTime, block.maxTime, offset, raw.length, length, (int) crc.getValue(), null));
+            size = offset + length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to sensor history " + file, e);
+        }
+    }
+
+    /**
+     * Times as zigzag varints, states as a bitmap of count bits. Times are stored as deltas of
+     * deltas, which shrink regular intervals to zero, unless plain deltas come out smaller, as
+     * they do for irregular ones; the first byte says which.
+     */
+    private static byte[] encode(long[] times, BitSet states, int count) {
+        ByteArrayOutputStream deltas = encodeTimes(times, count, 1);
+        ByteArrayOutputStream deltasOfDeltas = encodeTimes(times, count, 2);
+        ByteArrayOutputStream bytes = deltas.size() < deltasOfDeltas.size() ? deltas : deltasOfDeltas;
+        bytes.writeBytes(Arrays.copyOf(states.toByteArray(), (count + 7) / 8));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param order 1 for deltas, 2 for deltas of deltas; the first time is stored as is
+     */
+    private static ByteArrayOutputStream encodeTimes(long[] times, int count, int order) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 3 + count / 8 + 16);
+        bytes.write(order);
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long value = times[i];
+            if (i > 0) {
+                long delta = times[i] - previous;
+                value = order == 1 ? delta : delta - previousDelta;
+                previousDelta = delta;
+            }
+            previous = times[i];
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                bytes.write((int) (zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            bytes.write((int) zigzag);
+        }
+        return bytes;
+    }
+
+    private static Column decode(byte[] compressed, int rawLength, int count) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        byte[] raw = new byte[rawLength];
+        try {
+            inflater.setInput(compressed);
+            if (inflater.inflate(raw) != rawLength) {
+                throw new DataFormatException("Block shorter than its header says");
+            }
+        } finally {
+            inflater.end();
+        }
+        long[] times = new long[count];
+        int order = raw[0];
+        int pos = 1;
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = raw[pos++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            long value = (zigzag >>> 1) ^ -(zigzag & 1);
+            if (i == 0) {
+                times[i] = value;
+            } else {
+                previousDelta = order == 1 ? value : previousDelta + value;
+                times[i] = previous + previousDelta;
+            }
+            previous = times[i];
+        }
+        BitSet states = BitSet.valueOf(Arrays.copyOfRange(raw, pos, raw.length));
+        return new Column(times, states, count);
+    }
+
+    /**
+     * Loads the block headers and truncates whatever follows the last intact block.
+     */
+    private void recover() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            long pos = 0;
+            ByteBuffer prefix = ByteBuffer.allocate(8);
+            while (pos + prefix.capacity() <= fileSize) {
+                prefix.clear();
+                readFully(channel, prefix, pos);
+                prefix.flip();
+                int headerLength = prefix.getInt(4);
+                if (prefix.getInt(0) != MAGIC || headerLength <= 0 || pos + 8 + headerLength > fileSize) {
+                    break;
+                }
+                ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+                readFully(channel, headerBytes, pos + 8);
+                DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes.array()));
+                UUID sensorId = new UUID(header.readLong(), header.readLong());
+                SensorType type = SensorType.values()[header.readByte()];
+                String name = header.readUTF();
+                int count = header.readInt();
+                int activations = header.readInt();
+                long minTime = header.readLong();
+                long maxTime = header.readLong();
+                int rawLength = header.readInt();
+                int length = header.readInt();
+                int crc = header.readInt();
+                long offset = pos + 8 + headerLength;
+                if (length < 0 || offset + length > fileSize || crc(channel, offset, length) != crc) {
+                    break;
+                }
+                sealed.add(new Block(sensorId, name, type, count, activations, minTime, maxTime, offset, rawLength, length, crc, null));
+                pos = offset + length;
+            }
+            channel.truncate(pos);
+            size = pos;
+        }
+    }
+
+    private static int crc(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(channel, bytes, offset);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.flip());
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of sensor history");
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.udacity.catpoint.data;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable view of all sensors at one point in time. Repositories publish a new snapshot
+ * through a volatile field on every sensor change, so readers can iterate one without copying
+ * or locking, and can tell whether anything changed by comparing versions. The new snapshot is
+ * derived from the current one, so writers swap it under the same lock as the change itself;
+ * otherwise two concurrent changes could each publish a snapshot missing the other.
+ *
+ * Each entry captures the sensor's fields when it was written. It also keeps the Sensor itself,
+ * which callers hand back to SecurityService to change or remove the sensor.
+ */
+public final class SensorSnapshot implements Iterable<SensorSnapshot.Entry> {
+
+    public static final SensorSnapshot EMPTY = new SensorSnapshot(0,
+            PersistentSortedMap.empty(Comparator.naturalOrder()),
+            PersistentSortedMap.empty(Entry.DISPLAY_ORDER), 0);
+
+    private final long version;
+    private final PersistentSortedMap<UUID, Entry> byId;
+    private final PersistentSortedMap<Entry, Entry> ordered;
+    private final int activeCount;
+
+    private SensorSnapshot(long version, PersistentSortedMap<UUID, Entry> byId,
+                           PersistentSortedMap<Entry, Entry> ordered, int activeCount) {
+        this.version = version;
+        this.byId = byId;
+        this.ordered = ordered;
+        this.activeCount = activeCount;
+    }
+
+    public static SensorSnapshot of(Collection<Sensor> sensors) {
+        SensorSnapshot snapshot = EMPTY;
+        for (Sensor sensor : sensors) {
+            snapshot = snapshot.withSensor(sensor);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return A snapshot with the sensor's current fields, added or replacing its earlier entry
+     */
+    public SensorSnapshot withSensor(Sensor sensor) {
+        Entry entry = new Entry(sensor);
+        Entry old = byId.get(entry.sensorId);
+        PersistentSortedMap<Entry, Entry> remaining = old == null ? ordered : ordered.remove(old);
+        int active = activeCount - (old != null && old.active ? 1 : 0) + (entry.active ? 1 : 0);
+        return new SensorSnapshot(version + 1, byId.put(entry.sensorId, entry), remaining.put(entry, entry), active);
+    }
+
+    public SensorSnapshot withoutSensor(Sensor sensor) {
+        Entry old = byId.get(sensor.getSensorId());
+        if (old == null) {
+            return this;
+        }
+        return new SensorSnapshot(version + 1, byId.remove(old.sensorId), ordered.remove(old),
+                activeCount - (old.active ? 1 : 0));
+    }
+
+    /**
+     * @return A number that grows with every change, so equal versions from the same repository mean equal content
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEmpty() {
+        return byId.size() == 0;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public Entry get(UUID sensorId) {
+        return byId.get(sensorId);
+    }
+
+    /**
+     * Entries in the same order as Sensor's natural ordering: name, type, id.
+     */
+    @Override
+    public Iterator<Entry> iterator() {
+        return ordered.iterator();
+    }
+
+    public Stream<Entry> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * One sensor as it was when the snapshot was taken.
+     */
+    public static final class Entry {
+
+        static final Comparator<Entry> DISPLAY_ORDER = Comparator.comparing(Entry::getName)
+                .thenComparing(e -> e.sensorType.toString())
+                .thenComparing(Entry::getSensorId);
+
+        private final Sensor sensor;
+        private final UUID sensorId;
+        private final String name;
+        private final SensorType sensorType;
+        private final boolean active;
+
+        private Entry(Sensor sensor) {
+            this.sensor = sensor;
+            this.sensorId = sensor.getSensorId();
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType();
+            this.active = Boolean.TRUE.equals(sensor.getActive());
+        }
+
+        /**
+         * @return The live sensor, for passing back to SecurityService. Its fields may have moved on since.
+         */
+        public Sensor getSensor() {
+            return sensor;
+        }
+
+        public UUID getSensorId() {
+            return sensorId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SensorType getSensorType() {
+            return sensorType;
+        }
+
+        public boolean getActive() {
+            return active;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.udacity.catpoint.security.application;
 
 import javax.swing.SwingUtilities;
+import java.time.Duration;
 
 public class CatpointApp {
     public static void main(String[] args) {
+        // -Dcatpoint.edt.monitor=<ms> reports EDT stalls longer than that when the app exits
+        String edtThreshold = System.getProperty("catpoint.edt.monitor");
+        if (edtThreshold != null) {
+            EdtMonitor monitor = EdtMonitor.install(Duration.ofMillis(Long.parseLong(edtThreshold.trim())));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(monitor.report()), "edt-monitor-report"));
+        }
         SwingUtilities.invokeLater(() -> new CatpointGui().setVisible(true));
     }
 }
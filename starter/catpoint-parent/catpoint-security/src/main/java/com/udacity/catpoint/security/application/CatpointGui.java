@@ -1,13 +1,26 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.data.EventSourcedSecurityRepository;
+import com.udacity.catpoint.data.EvidenceStore;
+import com.udacity.catpoint.data.JdbcSecurityRepository;
 import com.udacity.catpoint.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.data.SecurityRepository;
+import com.udacity.catpoint.data.SensorHistory;
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.service.AlarmNotifier;
+import com.udacity.catpoint.security.service.LaneScheduler;
+import com.udacity.catpoint.security.service.ScanScheduler;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorDebouncer;
+import com.udacity.catpoint.security.service.SpoolIngestion;
 
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -16,13 +29,15 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private final SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+    private final SecurityRepository securityRepository = createRepository();
     private final SecurityService securityService =
             new SecurityService(securityRepository, new FakeImageService());
+    // sensor toggles are debounced and flapping sensors quarantined before the rules see them
+    private final SensorDebouncer sensorDebouncer = new SensorDebouncer(securityService);
 
     private final DisplayPanel displayPanel = new DisplayPanel(securityService);
     private final ControlPanel controlPanel = new ControlPanel(securityService);
-    private final SensorPanel sensorPanel = new SensorPanel(securityService);
+    private final SensorPanel sensorPanel = new SensorPanel(securityService, sensorDebouncer);
     private final ImagePanel imagePanel = new ImagePanel(securityService);
 
     public CatpointGui() {
@@ -31,11 +46,50 @@ public class CatpointGui extends JFrame {
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        // Register all panels as listeners so they refresh when sensors/alarms change
-        securityService.addStatusListener(displayPanel);
-        securityService.addStatusListener(controlPanel);
-        securityService.addStatusListener(sensorPanel);
-        securityService.addStatusListener(imagePanel);
+        // Register all panels as listeners so they refresh when sensors/alarms change. Changes come
+        // from background threads too, so the panels hear about them on the EDT
+        securityService.addStatusListener(new EdtStatusListener(displayPanel));
+        securityService.addStatusListener(new EdtStatusListener(controlPanel));
+        securityService.addStatusListener(new EdtStatusListener(sensorPanel));
+        securityService.addStatusListener(new EdtStatusListener(imagePanel));
+        sensorDebouncer.start();
+
+        // -Dcatpoint.lanes=true runs sensor changes, evidence and panel updates on one worker that
+        // always announces alarms first
+        if (Boolean.getBoolean("catpoint.lanes")) {
+            securityService.setLaneScheduler(new LaneScheduler());
+        }
+
+        // -Dcatpoint.evidence.path keeps the frames a cat was seen in, in a fixed-size ring file
+        String evidencePath = System.getProperty("catpoint.evidence.path");
+        if (evidencePath != null) {
+            securityService.setEvidenceStore(new EvidenceStore(Path.of(evidencePath)));
+        }
+        // -Dcatpoint.history.path keeps every sensor activation for later analysis
+        String historyPath = System.getProperty("catpoint.history.path");
+        if (historyPath != null) {
+            SensorHistory history = new SensorHistory(Path.of(historyPath));
+            securityService.setSensorHistory(history);
+            // open blocks are only in memory until sealed
+            Runtime.getRuntime().addShutdownHook(new Thread(history::close));
+        }
+        // -Dcatpoint.spool.path processes the frames IP cameras drop into that directory
+        String spoolPath = System.getProperty("catpoint.spool.path");
+        if (spoolPath != null) {
+            new SpoolIngestion(Path.of(spoolPath), securityService).start();
+        }
+        // -Dcatpoint.scan.adaptive=true scans cameras on their own, as often as arming and activity call for
+        if (Boolean.getBoolean("catpoint.scan.adaptive")) {
+            imagePanel.setFeedingCamera(true);
+            new ScanScheduler(securityService).start();
+        }
+        // -Dcatpoint.notify.urls=pager=http://...,center=http://... posts every alarm transition there
+        String notifyUrls = System.getProperty("catpoint.notify.urls");
+        if (notifyUrls != null) {
+            Path defaultOutbox = Path.of(System.getProperty("user.home"), ".catpoint", "outbox.bin");
+            Path outbox = Path.of(System.getProperty("catpoint.notify.outbox", defaultOutbox.toString()));
+            new AlarmNotifier(outbox, parseDestinations(notifyUrls)).subscribeTo(securityService.getEventPublisher());
+        }
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
@@ -46,4 +100,45 @@ public class CatpointGui extends JFrame {
 
         getContentPane().add(mainPanel);
     }
+
+    /**
+     * Run with -Dcatpoint.repository=jdbc to keep state in the embedded database instead of
+     * user preferences. -Dcatpoint.jdbc.url overrides where the database lives.
+     * Run with -Dcatpoint.repository=journal to keep the full history in a journal file,
+     * by default ~/.catpoint/journal.bin, overridden by -Dcatpoint.journal.path.
+     */
+    private static SecurityRepository createRepository() {
+        String repository = System.getProperty("catpoint.repository", "");
+        if (repository.equals("jdbc")) {
+            JdbcSecurityRepository jdbc =
+                    new JdbcSecurityRepository(System.getProperty("catpoint.jdbc.url", JdbcSecurityRepository.DEFAULT_URL));
+            // queued writes are only in memory until the daemon writer commits them
+            Runtime.getRuntime().addShutdownHook(new Thread(jdbc::close));
+            return jdbc;
+        }
+        if (repository.equals("journal")) {
+            Path defaultPath = Path.of(System.getProperty("user.home"), ".catpoint", "journal.bin");
+            EventSourcedSecurityRepository journal =
+                    new EventSourcedSecurityRepository(Path.of(System.getProperty("catpoint.journal.path", defaultPath.toString())));
+            // appends are flushed as they happen; this closes the file cleanly on the way out
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+            return journal;
+        }
+        return new PretendDatabaseSecurityRepositoryImpl();
+    }
+
+    /**
+     * @param urls Comma-separated name=url pairs
+     */
+    private static List<AlarmNotifier.Destination> parseDestinations(String urls) {
+        List<AlarmNotifier.Destination> destinations = new ArrayList<>();
+        for (String entry : urls.split(",")) {
+            int equals = entry.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("Expected name=url in catpoint.notify.urls, got " + entry);
+            }
+            destinations.add(new AlarmNotifier.Destination(entry.substring(0, equals).trim(), URI.create(entry.substring(equals + 1).trim())));
+        }
+        return destinations;
+    }
 }
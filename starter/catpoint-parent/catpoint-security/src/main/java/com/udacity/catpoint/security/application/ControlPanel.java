@@ -49,9 +49,6 @@ public class ControlPanel extends JPanel implements StatusListener {
 
         ArmingStatus currentStatus = securityService.getArmingStatus();
         buttonMap.get(currentStatus).setBackground(currentStatus.getColor());
-
-        // register to receive updates so that if the status changes externally, buttons update
-        securityService.addStatusListener(this);
     }
 
     @Override
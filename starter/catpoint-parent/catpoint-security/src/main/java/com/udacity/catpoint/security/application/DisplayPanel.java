@@ -22,7 +22,6 @@ public class DisplayPanel extends JPanel implements StatusListener {
         setLayout(new MigLayout());
 
         this.securityService = securityService;
-        securityService.addStatusListener(this);
 
         JLabel panelLabel = new JLabel("Very Secure Home Security");
         JLabel systemStatusLabel = new JLabel("System Status:");
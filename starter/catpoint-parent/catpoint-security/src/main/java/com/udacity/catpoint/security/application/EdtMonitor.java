@@ -0,0 +1,314 @@
+package com.udacity.catpoint.security.application;
+
+import javax.swing.AbstractButton;
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how long the event dispatch thread spends on each event, to find the handlers that
+ * freeze the UI.
+ *
+ * Once {@link #install installed} it takes the place of the system event queue. Every dispatch
+ * goes into a histogram with power-of-two millisecond buckets. A dispatch that takes longer than
+ * the threshold is a stall: it is charged to its source component, named after the nearest
+ * panel of ours that contains it, and kept with stack samples of the EDT. The samples are taken
+ * every sample interval once a dispatch has run past the threshold, so they show where the EDT
+ * is stuck while it is stuck; a stall that ends before the first sample has none.
+ *
+ * An event that opens a modal dialog keeps dispatching other events until the dialog closes.
+ * Such a dispatch is not counted, since the EDT was not blocked; the events it pumped are.
+ */
+public class EdtMonitor extends EventQueue implements AutoCloseable {
+
+    public static final Duration DEFAULT_SAMPLE_INTERVAL = Duration.ofMillis(10);
+
+    /** Stalls kept with their stack samples; shorter ones are forgotten first. */
+    private static final int MAX_STALLS = 20;
+    private static final int MAX_SAMPLES_PER_STALL = 50;
+    private static final int BUCKETS = 16;
+
+    /**
+     * @param samples Stacks of the EDT taken during the stall, oldest first
+     */
+    public record Stall(String source, String event, long durationMillis, List<StackTraceElement[]> samples) {
+    }
+
+    public record Offender(String source, long stalls, long totalMillis, long maxMillis) {
+    }
+
+    private static final class Dispatch {
+        final AWTEvent event;
+        final Thread thread = Thread.currentThread();
+        final long start = System.nanoTime();
+        volatile boolean pumping;
+        final List<StackTraceElement[]> samples = new ArrayList<>(); // guarded by this
+
+        Dispatch(AWTEvent event) {
+            this.event = event;
+        }
+    }
+
+    private final long thresholdNanos;
+    private final long sampleIntervalMillis;
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final Map<String, Offender> offenders = new HashMap<>(); // guarded by this
+    private final PriorityQueue<Stall> stalls = new PriorityQueue<>(Comparator.comparingLong(Stall::durationMillis)); // guarded by this
+    private final Thread sampler;
+    private volatile Dispatch current;
+    private volatile boolean installed;
+    private volatile boolean closed;
+
+    public EdtMonitor(Duration threshold) {
+        this(threshold, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    public EdtMonitor(Duration threshold, Duration sampleInterval) {
+        if (threshold.isNegative() || sampleInterval.toMillis() < 1) {
+            throw new IllegalArgumentException("Threshold must not be negative and the sample interval at least 1 ms");
+        }
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleIntervalMillis = sampleInterval.toMillis();
+        sampler = new Thread(this::sample, "edt-monitor");
+        sampler.setDaemon(true);
+    }
+
+    /**
+     * Pushes a new monitor onto the system event queue.
+     */
+    public static EdtMonitor install(Duration threshold) {
+        EdtMonitor monitor = new EdtMonitor(threshold);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor);
+        monitor.installed = true;
+        monitor.sampler.start();
+        return monitor;
+    }
+
+    /**
+     * @return Dispatches per bucket; see {@link #bucketUpperBoundMillis(int)}
+     */
+    public long[] getHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return The exclusive upper bound of a histogram bucket, Long.MAX_VALUE for the last one
+     */
+    public static long bucketUpperBoundMillis(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    public long getDispatched() {
+        long total = 0;
+        for (long count : getHistogram()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param quantile For example 0.99
+     * @return The upper bound of the bucket holding that quantile, 0 if nothing was dispatched
+     */
+    public long getPercentileMillis(double quantile) {
+        long[] counts = getHistogram();
+        long total = getDispatched();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBoundMillis(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The longest stalls seen, longest first
+     */
+    public synchronized List<Stall> getStalls() {
+        List<Stall> longest = new ArrayList<>(stalls);
+        longest.sort(Comparator.comparingLong(Stall::durationMillis).reversed());
+        return longest;
+    }
+
+    /**
+     * @return Sources of stalls by the total time they blocked the EDT, worst first
+     */
+    public synchronized List<Offender> getWorstOffenders(int limit) {
+        return offenders.values().stream()
+                .sorted(Comparator.comparingLong(Offender::totalMillis).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("EDT: %d events, p50 < %d ms, p99 < %d ms, p999 < %d ms%n", getDispatched(),
+                getPercentileMillis(0.5), getPercentileMillis(0.99), getPercentileMillis(0.999)));
+        long[] counts = getHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] > 0) {
+                String bound = i == BUCKETS - 1 ? ">= " + (1L << (i - 1)) : "< " + bucketUpperBoundMillis(i);
+                out.append(String.format("  %10s ms %8d%n", bound, counts[i]));
+            }
+        }
+        for (Offender offender : getWorstOffenders(10)) {
+            out.append(String.format("stalled by %s: %d times, %d ms total, %d ms max%n",
+                    offender.source(), offender.stalls(), offender.totalMillis(), offender.maxMillis()));
+        }
+        for (Stall stall : getStalls()) {
+            out.append(String.format("%d ms in %s (%s), %d samples%n",
+                    stall.durationMillis(), stall.source(), stall.event(), stall.samples().size()));
+            if (!stall.samples().isEmpty()) {
+                // the latest sample shows where the EDT ended up stuck
+                StackTraceElement[] stack = stall.samples().get(stall.samples().size() - 1);
+                for (int i = 0; i < Math.min(12, stack.length); i++) {
+                    out.append("    at ").append(stack[i]).append(System.lineSeparator());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Stops sampling and hands dispatching back to the queue this monitor replaced.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        sampler.interrupt();
+        if (installed) {
+            installed = false;
+            pop();
+        }
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        Dispatch outer = current;
+        if (outer != null) {
+            outer.pumping = true;
+        }
+        Dispatch dispatch = new Dispatch(event);
+        current = dispatch;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            current = outer;
+            if (!dispatch.pumping) {
+                record(dispatch, System.nanoTime() - dispatch.start);
+            }
+        }
+    }
+
+    private void record(Dispatch dispatch, long nanos) {
+        long millis = nanos / 1_000_000;
+        histogram.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(millis), BUCKETS - 1));
+        if (nanos <= thresholdNanos) {
+            return;
+        }
+        String source = describe(dispatch.event);
+        List<StackTraceElement[]> samples;
+        synchronized (dispatch) {
+            samples = List.copyOf(dispatch.samples);
+        }
+        Stall stall = new Stall(source, eventName(dispatch.event), millis, samples);
+        synchronized (this) {
+            offenders.merge(source, new Offender(source, 1, millis, millis), (a, b) ->
+                    new Offender(source, a.stalls() + 1, a.totalMillis() + millis, Math.max(a.maxMillis(), millis)));
+            stalls.add(stall);
+            if (stalls.size() > MAX_STALLS) {
+                stalls.poll();
+            }
+        }
+    }
+
+    private void sample() {
+        while (!closed) {
+            try {
+                Thread.sleep(sampleIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            Dispatch dispatch = current;
+            if (dispatch == null || dispatch.pumping || System.nanoTime() - dispatch.start <= thresholdNanos) {
+                continue;
+            }
+            StackTraceElement[] stack = dispatch.thread.getStackTrace();
+            synchronized (dispatch) {
+                // the dispatch may have finished meanwhile; its stall has then already been recorded
+                if (current == dispatch && dispatch.samples.size() < MAX_SAMPLES_PER_STALL) {
+                    dispatch.samples.add(stack);
+                }
+            }
+        }
+    }
+
+    /**
+     * Names the source of an event after our nearest panel and the component itself, for example
+     * "ImagePanel > JButton 'Scan Picture'".
+     */
+    private static String describe(AWTEvent event) {
+        Object source = event.getSource();
+        if (event instanceof InvocationEvent) {
+            return source instanceof Toolkit ? "invokeLater" : "invokeLater from " + className(source);
+        }
+        if (!(source instanceof Component component)) {
+            return className(source);
+        }
+        String name = className(component);
+        if (component instanceof AbstractButton button && button.getText() != null && !button.getText().isEmpty()) {
+            name += " '" + button.getText() + "'";
+        } else if (component.getName() != null) {
+            name += " '" + component.getName() + "'";
+        }
+        for (Component parent = component.getParent(); parent != null; parent = parent.getParent()) {
+            if (!isToolkitClass(parent.getClass())) {
+                return className(parent) + " > " + name;
+            }
+        }
+        return name;
+    }
+
+    private static String eventName(AWTEvent event) {
+        String params = event.paramString();
+        int comma = params.indexOf(',');
+        return comma < 0 ? params : params.substring(0, comma);
+    }
+
+    private static boolean isToolkitClass(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.");
+    }
+
+    private static String className(Object o) {
+        if (o == null) {
+            return "unknown";
+        }
+        // anonymous classes have no simple name
+        Class<?> type = o.getClass();
+        while (type.getSimpleName().isEmpty()) {
+            type = type.getSuperclass();
+        }
+        return type.getSimpleName();
+    }
+}
@@ -0,0 +1,37 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.data.AlarmStatus;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Passes status changes on to a Swing component on the event dispatch thread.
+ *
+ * SecurityService notifies its listeners on whichever thread made the change: the spool,
+ * scanner and debouncer threads as well as the EDT, sometimes while holding its state lock.
+ * Every call is queued with invokeLater, including calls made on the EDT, so the component
+ * sees the changes in the order they happened and never runs under the service's lock.
+ */
+public class EdtStatusListener implements StatusListener {
+
+    private final StatusListener component;
+
+    public EdtStatusListener(StatusListener component) {
+        this.component = component;
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        SwingUtilities.invokeLater(() -> component.notify(status));
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        SwingUtilities.invokeLater(() -> component.catDetected(catDetected));
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        SwingUtilities.invokeLater(component::sensorStatusChanged);
+    }
+}
@@ -1,41 +1,48 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.image.service.ImageDecoder;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 
 import net.miginfocom.swing.MigLayout;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
+ *
+ * Pictures are decoded off the event dispatch thread. The preview is decoded straight at label
+ * size; the full-resolution picture is only decoded when it is scanned, and not kept afterwards.
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    private Path currentCameraFile;
+    private SwingWorker<BufferedImage, Void> loading;
+    private boolean feedingCamera;
 
     private final int IMAGE_WIDTH = 300;
     private final int IMAGE_HEIGHT = 225;
+    private final ImageDecoder previewDecoder = new ImageDecoder(IMAGE_WIDTH, IMAGE_HEIGHT);
 
     public ImagePanel(SecurityService securityService) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
 
         cameraLabel = new JLabel();
+        cameraLabel.setHorizontalAlignment(SwingConstants.CENTER);
         cameraLabel.setBackground(Color.WHITE);
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
@@ -50,21 +57,12 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
-            try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
-            }
-            repaint();
+            loadPreview(chooser.getSelectedFile().toPath());
         });
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
-        scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
-        });
+        scanPictureButton.addActionListener(e -> scan(scanPictureButton));
 
         add(cameraHeader, "span 3, wrap");
         add(cameraLabel, "span 3, wrap");
@@ -72,6 +70,103 @@ public class ImagePanel extends JPanel implements StatusListener {
         add(scanPictureButton);
     }
 
+    /**
+     * When on, a refreshed picture also becomes the default camera's frame, at full resolution,
+     * so a ScanScheduler scans it without anyone clicking "Scan Picture".
+     */
+    public void setFeedingCamera(boolean feedingCamera) {
+        this.feedingCamera = feedingCamera;
+    }
+
+    private void loadPreview(Path file) {
+        if (loading != null) {
+            loading.cancel(true);
+        }
+        loading = new SwingWorker<>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                return previewDecoder.decode(file);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                BufferedImage preview = result(this);
+                if (preview == null) {
+                    JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                    return;
+                }
+                currentCameraFile = file;
+                cameraLabel.setIcon(new ImageIcon(preview));
+                repaint();
+                if (feedingCamera) {
+                    feedCamera(file);
+                }
+            }
+        };
+        loading.execute();
+    }
+
+    private void feedCamera(Path file) {
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                return ImageDecoder.decodeFullResolution(file);
+            }
+
+            @Override
+            protected void done() {
+                BufferedImage frame = result(this);
+                if (frame != null) {
+                    securityService.updateCameraFrame(SecurityService.DEFAULT_CAMERA_ID, frame);
+                }
+            }
+        }.execute();
+    }
+
+    private void scan(JButton scanPictureButton) {
+        Path file = currentCameraFile;
+        if (file == null) {
+            // no picture yet: let the image service decide on its own, as it always has
+            securityService.processImage((BufferedImage) null);
+            return;
+        }
+        scanPictureButton.setEnabled(false);
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                return ImageDecoder.decodeFullResolution(file);
+            }
+
+            @Override
+            protected void done() {
+                scanPictureButton.setEnabled(true);
+                BufferedImage frame = result(this);
+                if (frame == null) {
+                    JOptionPane.showMessageDialog(null, "Could not read " + file.getFileName() + ".");
+                    return;
+                }
+                securityService.processImage(frame);
+            }
+        }.execute();
+    }
+
+    /**
+     * @return The worker's result, or null if it failed
+     */
+    private static BufferedImage result(SwingWorker<BufferedImage, Void> worker) {
+        try {
+            return worker.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
     @Override
     public void notify(AlarmStatus status) {
         // Visual cue when alarm is active
@@ -1,15 +1,15 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorSnapshot;
 import com.udacity.catpoint.data.SensorType;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorDebouncer;
 import com.udacity.catpoint.security.service.StyleService;
 
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
@@ -18,6 +18,7 @@ import java.util.Set;
 public class SensorPanel extends JPanel implements StatusListener {
 
     private SecurityService securityService;
+    private SensorDebouncer sensorDebouncer;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -28,11 +29,16 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     private JPanel sensorListPanel;
     private JPanel newSensorPanel;
+    private long shownVersion = -1;
 
-    public SensorPanel(SecurityService securityService) {
+    /**
+     * @param sensorDebouncer Stage that sensor toggles pass through on their way to the securityService
+     */
+    public SensorPanel(SecurityService securityService, SensorDebouncer sensorDebouncer) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.sensorDebouncer = sensorDebouncer;
 
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
@@ -45,9 +51,6 @@ public class SensorPanel extends JPanel implements StatusListener {
 
         updateSensorList(sensorListPanel);
 
-        // Register to receive status updates so this panel reflects changes
-        securityService.addStatusListener(this);
-
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
         add(sensorListPanel, "span");
@@ -73,18 +76,21 @@ public class SensorPanel extends JPanel implements StatusListener {
      * @param p The Panel to populate with the current list of sensors
      */
     private void updateSensorList(JPanel p) {
+        // the snapshot is immutable and already sorted in natural order, so no defensive copy
+        SensorSnapshot sensors = securityService.getSensorSnapshot();
+        if (sensors.getVersion() == shownVersion) {
+            return;
+        }
+        shownVersion = sensors.getVersion();
         p.removeAll();
 
-        // sort by natural order (Sensor implements Comparable in starter project)
-        // create a defensive copy so concurrency doesn't bite us
-        Set<Sensor> sensors = new HashSet<>(securityService.getSensors());
-        sensors.stream().sorted().forEach(s -> {
+        sensors.forEach(s -> {
             JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
             JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
             JButton sensorRemoveButton = new JButton("Remove Sensor");
 
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
+            sensorToggleButton.addActionListener(e -> setSensorActivity(s.getSensor(), !s.getActive()) );
+            sensorRemoveButton.addActionListener(e -> removeSensor(s.getSensor()));
 
             //hard code some sizes, tsk tsk
             p.add(sensorLabel, "width 300:300:300");
@@ -97,12 +103,13 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Passes a sensor activation change through the debouncer to the securityService and then
+     * rebuilds the current sensor list
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
+        sensorDebouncer.changeSensorActivationStatus(sensor, isActive);
         updateSensorList(sensorListPanel);
     }
 
@@ -111,7 +118,7 @@ public class SensorPanel extends JPanel implements StatusListener {
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
+        if(securityService.getSensorSnapshot().size() < 4) {
             securityService.addSensor(sensor);
             updateSensorList(sensorListPanel);
         } else {
@@ -120,11 +127,12 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor through the debouncer, so nothing it still holds back for the sensor is
+     * forwarded later, and then rebuild the sensor list
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
+        sensorDebouncer.removeSensor(sensor);
         updateSensorList(sensorListPanel);
     }
 
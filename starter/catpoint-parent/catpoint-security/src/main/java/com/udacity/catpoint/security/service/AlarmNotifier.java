@@ -0,0 +1,381 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.data.NotificationOutbox;
+import com.udacity.catpoint.data.NotificationOutbox.Notification;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes alarm transitions to external HTTP endpoints such as pagers, a monitoring center or
+ * webhooks.
+ *
+ * It subscribes to the SecurityEventPublisher for alarm transitions only, and every one of them
+ * is delivered: other events never reach its buffer, and a full buffer makes SecurityService
+ * wait rather than lose a transition. Receiving one only queues it for the outbox writer, so the
+ * buffer drains as fast as the publisher's executor runs. Each AlarmChanged event becomes a {@link Notification} that is written to a
+ * {@link NotificationOutbox} before it is sent, so it is delivered even if the app stops first.
+ * Notifications arriving together share one disk flush.
+ *
+ * Every destination has its own sender thread, which POSTs up to maxBatch notifications as one
+ * JSON document and waits up to linger for a batch to fill. All senders share one HttpClient and
+ * its pool of kept-alive connections. A failed batch (connection error, 408, 429 or 5xx) is
+ * retried with exponential backoff and jitter until it is delivered; other 4xx answers are
+ * counted as rejected and not retried. Delivery is at least once: a batch may arrive twice if an
+ * answer was lost, and destinations drop duplicates by notification id. Transitions repeated by
+ * the publisher are dropped here by their sequence number. If the outbox cannot be written, the
+ * writer and senders keep retrying with the same backoff rather than give up on what is owed.
+ */
+public class AlarmNotifier implements Flow.Subscriber<SecurityEvent>, AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final Duration DEFAULT_LINGER = Duration.ofMillis(20);
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(200);
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private static final int SUBSCRIBER_BUFFER = 1024;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    public record Destination(String name, URI endpoint) {
+    }
+
+    /**
+     * @param delivered Notifications the destination accepted
+     * @param rejected Notifications the destination refused with a 4xx answer, not retried
+     * @param retries Failed attempts that were retried
+     * @param failures Attempts that failed here rather than at the destination, such as outbox
+     *                 writes; all are retried. A failed outbox add holds up, and counts for, every destination
+     * @param pending Notifications not yet delivered or rejected
+     */
+    public record DestinationStats(String name, long delivered, long batches, long rejected, long retries,
+                                   long failures, int pending) {
+    }
+
+    private final NotificationOutbox outbox;
+    private final HttpClient client;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final List<Sender> senders = new ArrayList<>();
+    private final LinkedBlockingQueue<Notification> incoming = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private volatile Flow.Subscription subscription;
+    private long lastSequence; // only touched by onNext, which the publisher never runs concurrently
+    private volatile boolean closed;
+
+    public AlarmNotifier(Path outboxFile, List<Destination> destinations) {
+        this(outboxFile, destinations, DEFAULT_MAX_BATCH, DEFAULT_LINGER, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * @param outboxFile Where undelivered notifications are kept
+     * @param maxBatch Most notifications sent in one request
+     * @param linger How long a sender waits for a batch to fill once it has something to send
+     * @param initialBackoff Wait before the first retry; it doubles with every failure up to maxBackoff
+     */
+    public AlarmNotifier(Path outboxFile, List<Destination> destinations, int maxBatch, Duration linger,
+                         Duration initialBackoff, Duration maxBackoff) {
+        if (destinations.isEmpty() || maxBatch < 1 || initialBackoff.toMillis() < 1 || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("Need a destination, a positive batch size and backoff, and maxBackoff >= initialBackoff");
+        }
+        this.maxBatch = maxBatch;
+        this.lingerNanos = linger.toNanos();
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.outbox = new NotificationOutbox(outboxFile, destinations.stream().map(Destination::name).toList());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        for (Destination destination : destinations) {
+            // notifications a previous session did not get out
+            senders.add(new Sender(destination, outbox.pending(destination.name())));
+        }
+        writer = new Thread(this::write, "alarm-outbox");
+        writer.setDaemon(true);
+        writer.start();
+        senders.forEach(s -> s.thread.start());
+    }
+
+    /**
+     * Subscribes to the publisher's alarm transitions.
+     */
+    public void subscribeTo(SecurityEventPublisher publisher) {
+        publisher.subscribe(this, SecurityEventPublisher.OverflowStrategy.BLOCK, SUBSCRIBER_BUFFER,
+                e -> e instanceof SecurityEvent.AlarmChanged);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(SecurityEvent event) {
+        if (event instanceof SecurityEvent.AlarmChanged alarm && alarm.sequence() > lastSequence && !closed) {
+            lastSequence = alarm.sequence();
+            accepted.incrementAndGet();
+            incoming.add(new Notification(outbox.getEpoch(), alarm.sequence(), alarm.time(), alarm.status()));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    public List<DestinationStats> getStats() {
+        return senders.stream().map(Sender::stats).toList();
+    }
+
+    /**
+     * Waits until every notification accepted so far has been delivered or rejected everywhere.
+     * @return false if some were still pending when the timeout ran out
+     */
+    public boolean awaitDelivered(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (senders.stream().anyMatch(s -> s.settled.get() < s.owedBefore + accepted.get())) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    /**
+     * Stops sending. Notifications not yet delivered stay in the outbox for the next session.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            // a BLOCK subscription that nobody drains would hold up the publisher
+            s.cancel();
+        }
+        writer.interrupt();
+        for (Sender sender : senders) {
+            sender.thread.interrupt();
+        }
+        try {
+            writer.join(1_000);
+            for (Sender sender : senders) {
+                sender.thread.join(1_000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        outbox.close();
+        // close() would wait for requests still in flight, however long they take to time out
+        client.shutdownNow();
+        try {
+            client.awaitTermination(Duration.ofSeconds(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes what has arrived, makes it durable in one flush and hands it to the senders.
+     */
+    private void write() {
+        List<Notification> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                batch.add(incoming.take());
+                incoming.drainTo(batch);
+                for (int attempt = 0; ; attempt++) {
+                    try {
+                        outbox.add(batch);
+                        break;
+                    } catch (RuntimeException e) {
+                        // not durable yet, so not handed to the senders; a full disk must not end the thread
+                        writeFailures.incrementAndGet();
+                        Thread.sleep(backoffMillis(attempt));
+                    }
+                }
+                for (Sender sender : senders) {
+                    sender.offer(batch);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+        // what arrived while closing is owed to the next session
+        incoming.drainTo(batch);
+        if (!batch.isEmpty()) {
+            outbox.add(batch);
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long delay = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 30));
+        // equal jitter: senders that failed together do not retry together
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static String toJson(List<Notification> batch) {
+        StringBuilder json = new StringBuilder(64 + batch.size() * 96).append("{\"notifications\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            Notification n = batch.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(n.id())
+                    .append("\",\"epoch\":").append(n.epoch())
+                    .append(",\"sequence\":").append(n.sequence())
+                    .append(",\"time\":\"").append(n.time())
+                    .append("\",\"status\":\"").append(n.status()).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private final class Sender implements Runnable {
+        final Destination destination;
+        final Thread thread;
+        final long owedBefore;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition available = lock.newCondition();
+        final ArrayDeque<Notification> queue = new ArrayDeque<>(); // guarded by lock
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong settled = new AtomicLong();
+
+        Sender(Destination destination, List<Notification> owed) {
+            this.destination = destination;
+            this.owedBefore = owed.size();
+            queue.addAll(owed);
+            thread = new Thread(this, "alarm-notify-" + destination.name());
+            thread.setDaemon(true);
+        }
+
+        void offer(List<Notification> notifications) {
+            lock.lock();
+            try {
+                queue.addAll(notifications);
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        DestinationStats stats() {
+            long pending = owedBefore + accepted.get() - settled.get();
+            return new DestinationStats(destination.name(), delivered.get(), batches.get(), rejected.get(),
+                    retries.get(), failures.get() + writeFailures.get(), (int) Math.max(0, pending));
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    List<Notification> batch = nextBatch();
+                    for (int attempt = 0; ; attempt++) {
+                        long retryAfterMillis;
+                        try {
+                            retryAfterMillis = send(batch);
+                        } catch (RuntimeException e) {
+                            // e.g. the outbox could not record the answer; the batch goes again, and
+                            // destinations drop what they already have
+                            failures.incrementAndGet();
+                            retryAfterMillis = 0;
+                        }
+                        if (retryAfterMillis < 0) {
+                            break;
+                        }
+                        retries.incrementAndGet();
+                        Thread.sleep(Math.max(retryAfterMillis, backoffMillis(attempt)));
+                    }
+                    settled.addAndGet(batch.size());
+                }
+            } catch (InterruptedException e) {
+                // closed; whatever was not acknowledged is still in the outbox
+            }
+        }
+
+        /**
+         * Waits for a notification, then up to linger for the batch to fill.
+         */
+        private List<Notification> nextBatch() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (queue.isEmpty()) {
+                    available.await();
+                }
+                long lingerUntil = System.nanoTime() + lingerNanos;
+                long left;
+                while (queue.size() < maxBatch && (left = lingerUntil - System.nanoTime()) > 0) {
+                    available.awaitNanos(left);
+                }
+                List<Notification> batch = new ArrayList<>(Math.min(queue.size(), maxBatch));
+                while (batch.size() < maxBatch && !queue.isEmpty()) {
+                    batch.add(queue.poll());
+                }
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return -1 if the batch is settled, otherwise the minimum wait before retrying
+         */
+        private long send(List<Notification> batch) throws InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(destination.endpoint())
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(toJson(batch)))
+                    .build();
+            HttpResponse<Void> response;
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                return 0;
+            }
+            int status = response.statusCode();
+            if (status / 100 == 2) {
+                outbox.acknowledge(destination.name(), batch);
+                delivered.addAndGet(batch.size());
+                batches.incrementAndGet();
+                return -1;
+            }
+            if (status == 408 || status == 429 || status / 100 == 5) {
+                try {
+                    return response.headers().firstValueAsLong("Retry-After").orElse(0) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0; // an HTTP date; the backoff will do
+                }
+            }
+            // the destination will never take these; do not let them block the ones behind
+            outbox.acknowledge(destination.name(), batch);
+            rejected.addAndGet(batch.size());
+            return -1;
+        }
+    }
+}
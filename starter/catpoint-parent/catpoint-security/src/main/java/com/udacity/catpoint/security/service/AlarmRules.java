@@ -0,0 +1,176 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The alarm state machine as a list of declarative rules, compiled into a dense lookup table.
+ *
+ * A rule names the events, arming and alarm statuses it applies to, the guard bits that must
+ * be set or clear, and the alarm status to move to (null to keep the current one). For every
+ * combination the first matching rule wins, and no match keeps the alarm as it is. Compiling
+ * evaluates all combinations once, so at run time a decision is a single array read.
+ */
+public class AlarmRules {
+
+    /** Something that may change the alarm status. */
+    public enum Event {
+        /** The arming status was just set. Looked up with the new arming status. */
+        ARMING_CHANGED,
+        /** An inactive sensor became active. */
+        SENSOR_ACTIVATED,
+        /** An active sensor was activated again. */
+        SENSOR_REACTIVATED,
+        /** An active sensor became inactive. */
+        SENSOR_DEACTIVATED,
+        /** A camera verdict left at least one camera seeing a cat. */
+        CAT_DETECTED,
+        /** A camera verdict left no camera seeing a cat. */
+        NO_CAT,
+        ENTRY_DELAY_EXPIRED,
+        EXIT_DELAY_EXPIRED
+    }
+
+    /** Guard bit: at least one sensor is active, including the one that just changed. */
+    public static final int ANY_SENSOR_ACTIVE = 1;
+    /** Guard bit: at least one camera sees a cat. */
+    public static final int CAT_VISIBLE = 1 << 1;
+    /** Guard bit: the system was armed recently and the exit delay is still running. */
+    public static final int EXIT_DELAY_ACTIVE = 1 << 2;
+
+    private static final int GUARD_BITS = 3;
+    private static final int GUARD_COMBINATIONS = 1 << GUARD_BITS;
+    private static final byte KEEP = -1;
+
+    private static final ArmingStatus[] ARMING = ArmingStatus.values();
+    private static final AlarmStatus[] ALARM = AlarmStatus.values();
+    private static final Event[] EVENTS = Event.values();
+
+    /**
+     * @param events Events the rule applies to
+     * @param arming Arming statuses the rule applies to
+     * @param alarm Alarm statuses the rule applies to
+     * @param whenSet Guard bits that must all be set
+     * @param whenClear Guard bits that must all be clear
+     * @param target Alarm status to move to, or null to keep the current one
+     */
+    public record Rule(Set<Event> events, Set<ArmingStatus> arming, Set<AlarmStatus> alarm,
+                       int whenSet, int whenClear, AlarmStatus target) {
+
+        boolean matches(Event event, ArmingStatus armingStatus, AlarmStatus alarmStatus, int guards) {
+            return events.contains(event) && arming.contains(armingStatus) && alarm.contains(alarmStatus)
+                    && (guards & whenSet) == whenSet && (guards & whenClear) == 0;
+        }
+    }
+
+    private static final Set<ArmingStatus> ARMED = EnumSet.of(ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY);
+    private static final Set<ArmingStatus> ANY_ARMING = EnumSet.allOf(ArmingStatus.class);
+    private static final Set<AlarmStatus> ANY_ALARM = EnumSet.allOf(AlarmStatus.class);
+
+    /** The CatPoint requirements, numbered as in the specification. */
+    public static final List<Rule> DEFAULT_RULES = List.of(
+            // 9: disarming clears the alarm
+            new Rule(EnumSet.of(Event.ARMING_CHANGED), EnumSet.of(ArmingStatus.DISARMED), ANY_ALARM,
+                    0, 0, AlarmStatus.NO_ALARM),
+            // 11: arming home while a camera sees a cat
+            new Rule(EnumSet.of(Event.ARMING_CHANGED), EnumSet.of(ArmingStatus.ARMED_HOME), ANY_ALARM,
+                    CAT_VISIBLE, 0, AlarmStatus.ALARM),
+            // 4: sensors do not affect an active alarm
+            new Rule(EnumSet.of(Event.SENSOR_ACTIVATED, Event.SENSOR_REACTIVATED, Event.SENSOR_DEACTIVATED),
+                    ANY_ARMING, EnumSet.of(AlarmStatus.ALARM), 0, 0, null),
+            // 5: a sensor activated while already active and pending
+            new Rule(EnumSet.of(Event.SENSOR_REACTIVATED), ANY_ARMING, EnumSet.of(AlarmStatus.PENDING_ALARM),
+                    0, 0, AlarmStatus.ALARM),
+            // 1 and 2: activations while armed, ignored until the exit delay ends
+            new Rule(EnumSet.of(Event.SENSOR_ACTIVATED), ARMED, EnumSet.of(AlarmStatus.NO_ALARM),
+                    0, EXIT_DELAY_ACTIVE, AlarmStatus.PENDING_ALARM),
+            new Rule(EnumSet.of(Event.SENSOR_ACTIVATED), ARMED, EnumSet.of(AlarmStatus.PENDING_ALARM),
+                    0, EXIT_DELAY_ACTIVE, AlarmStatus.ALARM),
+            // 3: pending and every sensor inactive
+            new Rule(EnumSet.of(Event.SENSOR_DEACTIVATED), ANY_ARMING, EnumSet.of(AlarmStatus.PENDING_ALARM),
+                    0, ANY_SENSOR_ACTIVE, AlarmStatus.NO_ALARM),
+            // 7: a cat while armed home
+            new Rule(EnumSet.of(Event.CAT_DETECTED), EnumSet.of(ArmingStatus.ARMED_HOME), ANY_ALARM,
+                    0, 0, AlarmStatus.ALARM),
+            // 8: no cat and every sensor inactive
+            new Rule(EnumSet.of(Event.NO_CAT), ANY_ARMING, ANY_ALARM,
+                    0, ANY_SENSOR_ACTIVE, AlarmStatus.NO_ALARM),
+            // entry delay: a pending alarm nobody cleared in time
+            new Rule(EnumSet.of(Event.ENTRY_DELAY_EXPIRED), ARMED, EnumSet.of(AlarmStatus.PENDING_ALARM),
+                    0, 0, AlarmStatus.ALARM),
+            // exit delay: a sensor still active when it ends counts as an activation
+            new Rule(EnumSet.of(Event.EXIT_DELAY_EXPIRED), ARMED, EnumSet.of(AlarmStatus.NO_ALARM),
+                    ANY_SENSOR_ACTIVE, 0, AlarmStatus.PENDING_ALARM));
+
+    // next alarm ordinal (or KEEP) per arming x alarm x event x guards
+    private final byte[] transitions;
+    // guard bits that can change the outcome, per arming x alarm x event
+    private final byte[] guardsUsed;
+
+    public AlarmRules() {
+        this(DEFAULT_RULES);
+    }
+
+    public AlarmRules(List<Rule> rules) {
+        int rows = ARMING.length * ALARM.length * EVENTS.length;
+        transitions = new byte[rows * GUARD_COMBINATIONS];
+        guardsUsed = new byte[rows];
+        for (ArmingStatus arming : ARMING) {
+            for (AlarmStatus alarm : ALARM) {
+                for (Event event : EVENTS) {
+                    int row = row(arming, alarm, event);
+                    for (int guards = 0; guards < GUARD_COMBINATIONS; guards++) {
+                        transitions[row * GUARD_COMBINATIONS + guards] = compile(rules, event, arming, alarm, guards);
+                    }
+                    guardsUsed[row] = (byte) usedGuards(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The alarm status to move to, or null to keep the current one
+     */
+    public AlarmStatus next(ArmingStatus arming, AlarmStatus alarm, Event event, int guards) {
+        byte next = transitions[row(arming, alarm, event) * GUARD_COMBINATIONS + (guards & (GUARD_COMBINATIONS - 1))];
+        return next == KEEP ? null : ALARM[next];
+    }
+
+    /**
+     * Guard bits that can make a difference to {@link #next} in this situation. Callers only
+     * need to work out these, which spares scanning the sensors when the answer cannot matter.
+     */
+    public int guardsUsed(ArmingStatus arming, AlarmStatus alarm, Event event) {
+        return guardsUsed[row(arming, alarm, event)];
+    }
+
+    private static int row(ArmingStatus arming, AlarmStatus alarm, Event event) {
+        return (arming.ordinal() * ALARM.length + alarm.ordinal()) * EVENTS.length + event.ordinal();
+    }
+
+    private static byte compile(List<Rule> rules, Event event, ArmingStatus arming, AlarmStatus alarm, int guards) {
+        for (Rule rule : rules) {
+            if (rule.matches(event, arming, alarm, guards)) {
+                return rule.target() == null ? KEEP : (byte) rule.target().ordinal();
+            }
+        }
+        return KEEP;
+    }
+
+    private int usedGuards(int row) {
+        int used = 0;
+        for (int guards = 0; guards < GUARD_COMBINATIONS; guards++) {
+            for (int bit = 1; bit < GUARD_COMBINATIONS; bit <<= 1) {
+                int base = row * GUARD_COMBINATIONS;
+                if (transitions[base + guards] != transitions[base + (guards ^ bit)]) {
+                    used |= bit;
+                }
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,124 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Runtime state of a single camera: the latest frame it delivered, the verdict for the last
+ * frame that was classified and the scan task (if any) that keeps classifying new frames.
+ */
+public class Camera {
+    private final String cameraId;
+    private final String name;
+
+    private BufferedImage latestFrame;
+    private long frameVersion;
+    private long scannedVersion;
+    private long verdictVersion;
+    private boolean catVisible;
+    private long lastScanMillis;
+    private long scanIntervalMillis;
+    private ScheduledFuture<?> scanTask;
+
+    public Camera(String cameraId, String name) {
+        this.cameraId = cameraId;
+        this.name = name;
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized BufferedImage getLatestFrame() {
+        return latestFrame;
+    }
+
+    public synchronized boolean isCatVisible() {
+        return catVisible;
+    }
+
+    public synchronized long getLastScanMillis() {
+        return lastScanMillis;
+    }
+
+    public synchronized long getScanIntervalMillis() {
+        return scanIntervalMillis;
+    }
+
+    synchronized void updateFrame(BufferedImage frame) {
+        latestFrame = frame;
+        frameVersion++;
+    }
+
+    /**
+     * Makes the frame the latest one and hands it out at once, for callers that classify it
+     * themselves.
+     */
+    synchronized Frame takeNewFrame(BufferedImage frame) {
+        updateFrame(frame);
+        scannedVersion = frameVersion;
+        return new Frame(frame, frameVersion);
+    }
+
+    synchronized long getFrameVersion() {
+        return frameVersion;
+    }
+
+    synchronized boolean hasUnscannedFrame() {
+        return latestFrame != null && scannedVersion != frameVersion;
+    }
+
+    /**
+     * Returns the latest frame if it has not been scanned yet and marks it as scanned,
+     * or null if there is nothing new to classify.
+     */
+    synchronized Frame takeUnscannedFrame() {
+        if (latestFrame == null || scannedVersion == frameVersion) {
+            return null;
+        }
+        scannedVersion = frameVersion;
+        return new Frame(latestFrame, frameVersion);
+    }
+
+    /**
+     * Stores the verdict for a frame, unless the verdict of a newer frame is already stored.
+     * Classifications can finish out of order, so an older frame's late answer is dropped.
+     * @return false if the verdict was dropped
+     */
+    synchronized boolean recordVerdict(boolean cat, long version, long scanMillis) {
+        if (version < verdictVersion) {
+            return false;
+        }
+        verdictVersion = version;
+        catVisible = cat;
+        lastScanMillis = scanMillis;
+        return true;
+    }
+
+    /**
+     * Forgets the verdict, as when the camera is removed.
+     * @return The previous verdict
+     */
+    synchronized boolean clearVerdict() {
+        boolean previous = catVisible;
+        catVisible = false;
+        return previous;
+    }
+
+    synchronized ScheduledFuture<?> replaceScanTask(ScheduledFuture<?> task, long intervalMillis) {
+        ScheduledFuture<?> previous = scanTask;
+        scanTask = task;
+        scanIntervalMillis = intervalMillis;
+        return previous;
+    }
+
+    /**
+     * A frame handed out for classification, with the version its verdict is recorded under.
+     */
+    record Frame(BufferedImage image, long version) {
+    }
+}
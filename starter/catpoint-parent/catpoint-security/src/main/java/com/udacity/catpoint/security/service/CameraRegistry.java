@@ -0,0 +1,66 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of all cameras and of how many of them currently see a cat. The count is
+ * adjusted on every verdict change, so asking whether any camera sees a cat never has to
+ * walk the cameras. Verdicts and removals are serialized so the count cannot drift.
+ */
+public class CameraRegistry {
+
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+    private final AtomicInteger camerasSeeingCat = new AtomicInteger();
+
+    /**
+     * Returns the camera with the given id, registering it first if it does not exist yet.
+     */
+    public Camera register(String cameraId, String name) {
+        return cameras.computeIfAbsent(cameraId, id -> new Camera(id, name));
+    }
+
+    public Camera get(String cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    public Collection<Camera> getCameras() {
+        return Collections.unmodifiableCollection(cameras.values());
+    }
+
+    /**
+     * Removes a camera. If it was seeing a cat, it no longer counts towards the aggregate.
+     * @return The removed camera, or null if no camera had that id
+     */
+    public synchronized Camera remove(String cameraId) {
+        Camera camera = cameras.remove(cameraId);
+        if (camera != null && camera.clearVerdict()) {
+            camerasSeeingCat.decrementAndGet();
+        }
+        return camera;
+    }
+
+    /**
+     * Records the verdict for one of a camera's frames and updates the aggregate count. A
+     * verdict for a frame older than the one the camera's current verdict came from is dropped.
+     * @param frameVersion The version the frame was handed out with
+     * @return false if the verdict was dropped
+     */
+    public synchronized boolean recordVerdict(Camera camera, boolean cat, long frameVersion, long scanMillis) {
+        boolean previous = camera.isCatVisible();
+        if (!camera.recordVerdict(cat, frameVersion, scanMillis)) {
+            return false;
+        }
+        if (previous != cat && cameras.get(camera.getCameraId()) == camera) {
+            camerasSeeingCat.addAndGet(cat ? 1 : -1);
+        }
+        return true;
+    }
+
+    public boolean anyCatVisible() {
+        return camerasSeeingCat.get() > 0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck) for large numbers of one-shot timers.
+ * Scheduling and cancelling are O(1): a timer is linked into the bucket that covers its
+ * deadline and unlinked again on cancel. Each level has 64 buckets; a bucket on level n spans
+ * 64^n ticks and is cascaded down into finer levels when the wheel reaches it.
+ *
+ * The wheel has no thread or clock of its own. Whoever owns it calls {@link #advanceTo(long)}
+ * with the current time, which makes it easy to drive from a test clock.
+ */
+public class HierarchicalTimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Timeout[][] buckets = new Timeout[LEVELS][SLOTS];
+    private long currentTick;
+    private long nowMillis;
+    private int pending;
+
+    /**
+     * @param tickMillis Resolution of the wheel. Timers fire on the first tick at or after their deadline.
+     * @param startMillis Current time according to the clock that will drive the wheel
+     */
+    public HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis must be at least 1");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.nowMillis = startMillis;
+    }
+
+    /**
+     * Schedules a task to run once the wheel has been advanced past the delay, counted from the
+     * time of the latest {@link #advanceTo(long)} call.
+     * @return A handle that can cancel the task
+     */
+    public synchronized Timeout schedule(long delayMillis, Runnable task) {
+        return schedule(nowMillis, delayMillis, task);
+    }
+
+    /**
+     * Schedules a task to run once the wheel has been advanced past the delay, counted from the
+     * given time. Owners whose clock may have moved since the last {@link #advanceTo(long)} pass
+     * the current time, so the delay is not cut short by the time the wheel has not seen yet.
+     * @return A handle that can cancel the task
+     */
+    public synchronized Timeout schedule(long nowMillis, long delayMillis, Runnable task) {
+        long from = Math.max(this.nowMillis, nowMillis);
+        // round up so a timer never fires early, and never into the current tick: it has already been processed
+        long deadlineTick = Math.max(currentTick + 1, Math.ceilDiv(from + Math.max(0, delayMillis), tickMillis));
+        Timeout timeout = new Timeout(this, deadlineTick, task);
+        link(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Moves the wheel forward to the given time and runs every task whose deadline has passed.
+     * Tasks run on the calling thread, after the wheel's lock has been released. A task that
+     * throws does not stop the others.
+     */
+    public void advanceTo(long nowMillis) {
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            this.nowMillis = Math.max(this.nowMillis, nowMillis);
+            long targetTick = this.nowMillis / tickMillis;
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+                collectExpired(expired);
+            }
+        }
+        for (Runnable task : expired) {
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {
+                // one failing timer must not cost the others their turn
+            }
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            long lowerSpan = 1L << (SLOT_BITS * level);
+            if ((currentTick & (lowerSpan - 1)) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            Timeout t = buckets[level][slot];
+            buckets[level][slot] = null;
+            while (t != null) {
+                Timeout next = t.next;
+                t.prev = null;
+                t.next = null;
+                link(t);
+                t = next;
+            }
+        }
+    }
+
+    private void collectExpired(List<Runnable> expired) {
+        int slot = (int) (currentTick & SLOT_MASK);
+        Timeout t = buckets[0][slot];
+        buckets[0][slot] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            t.prev = null;
+            t.next = null;
+            if (t.deadlineTick <= currentTick) {
+                t.level = -1;
+                pending--;
+                expired.add(t.task);
+            } else {
+                // defensive: level-0 timers are always less than one lap away
+                link(t);
+            }
+            t = next;
+        }
+    }
+
+    private void link(Timeout t) {
+        long delta = t.deadlineTick - currentTick;
+        int level;
+        int slot;
+        if (delta <= 0) {
+            // due now (only happens while cascading): the current bucket is collected right after
+            level = 0;
+            slot = (int) (currentTick & SLOT_MASK);
+        } else if (delta >= MAX_SPAN_TICKS) {
+            // beyond the top level: park it in the furthest top-level bucket and re-place it on cascade
+            level = LEVELS - 1;
+            slot = (int) (((currentTick + MAX_SPAN_TICKS - 1) >>> (SLOT_BITS * level)) & SLOT_MASK);
+        } else {
+            level = 0;
+            while (delta >= (1L << (SLOT_BITS * (level + 1)))) {
+                level++;
+            }
+            slot = (int) ((t.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        }
+        t.level = level;
+        t.slot = slot;
+        t.next = buckets[level][slot];
+        if (t.next != null) {
+            t.next.prev = t;
+        }
+        buckets[level][slot] = t;
+    }
+
+    private synchronized boolean unlink(Timeout t) {
+        if (t.level < 0) {
+            return false;
+        }
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            buckets[t.level][t.slot] = t.next;
+        }
+        if (t.next != null) {
+            t.next.prev = t.prev;
+        }
+        t.prev = null;
+        t.next = null;
+        t.level = -1;
+        pending--;
+        return true;
+    }
+
+    /**
+     * Handle for a scheduled task. Doubles as the bucket list node, so cancelling needs no search.
+     */
+    public static final class Timeout {
+        private final HierarchicalTimingWheel wheel;
+        private final long deadlineTick;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private int level;
+        private int slot;
+
+        private Timeout(HierarchicalTimingWheel wheel, long deadlineTick, Runnable task) {
+            this.wheel = wheel;
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * @return true if the task was still pending and will now never run
+         */
+        public boolean cancel() {
+            return wheel.unlink(this);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs SecurityService work on one thread, always taking the most important lane first.
+ *
+ * Work that raises or announces an alarm never waits behind sensor updates or UI refreshes: the
+ * worker only looks at a lane when every lane above it is empty. Under overload the lower lanes
+ * give way in different ways:
+ * <ul>
+ *   <li>{@link Lane#ALARM} is unbounded and never shed.</li>
+ *   <li>{@link Lane#SENSOR} is bounded; a full lane makes the submitting thread wait, so sensor
+ *       changes are slowed down but never lost.</li>
+ *   <li>{@link Lane#EVIDENCE} is bounded the same way: a burst of cat frames holds up the
+ *       scanners instead of losing the frames.</li>
+ *   <li>{@link Lane#HOUSEKEEPING} is bounded; a task submitted with the same key as one still
+ *       waiting replaces it, and when the lane is full the oldest task is dropped.</li>
+ * </ul>
+ * Tasks are not preempted, so the time to run an alarm task is bounded by the longest single
+ * task of any lane, not by how much work is queued.
+ */
+public class LaneScheduler implements AutoCloseable {
+
+    public enum Lane {
+        /** Alarm transitions and the listeners that announce them. */
+        ALARM,
+        /** Applying sensor state changes. */
+        SENSOR,
+        /** Recording the frames a cat was seen in; slowed down under load, never dropped. */
+        EVIDENCE,
+        /** UI refreshes; may be deferred, merged or dropped. */
+        HOUSEKEEPING
+    }
+
+    public static final int DEFAULT_SENSOR_CAPACITY = 1024;
+    public static final int DEFAULT_EVIDENCE_CAPACITY = 32;
+    public static final int DEFAULT_HOUSEKEEPING_CAPACITY = 64;
+
+    private final int sensorCapacity;
+    private final int evidenceCapacity;
+    private final int housekeepingCapacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition sensorRoom = lock.newCondition();
+    private final Condition evidenceRoom = lock.newCondition();
+    private final Thread worker;
+
+    // guarded by lock
+    private final ArrayDeque<Runnable> alarm = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> sensor = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> evidence = new ArrayDeque<>();
+    private final LinkedHashMap<Object, Runnable> housekeeping = new LinkedHashMap<>();
+    private boolean closed;
+
+    private final Map<Lane, AtomicLong> executed = new EnumMap<>(Lane.class);
+    private final Map<Lane, AtomicLong> shed = new EnumMap<>(Lane.class);
+
+    public LaneScheduler() {
+        this(DEFAULT_SENSOR_CAPACITY, DEFAULT_HOUSEKEEPING_CAPACITY);
+    }
+
+    public LaneScheduler(int sensorCapacity, int housekeepingCapacity) {
+        this(sensorCapacity, DEFAULT_EVIDENCE_CAPACITY, housekeepingCapacity);
+    }
+
+    /**
+     * @param sensorCapacity Sensor tasks that may wait before submitters are held up
+     * @param evidenceCapacity Evidence tasks that may wait before submitters are held up
+     * @param housekeepingCapacity Housekeeping tasks that may wait before the oldest is dropped
+     */
+    public LaneScheduler(int sensorCapacity, int evidenceCapacity, int housekeepingCapacity) {
+        if (sensorCapacity < 1 || evidenceCapacity < 1 || housekeepingCapacity < 1) {
+            throw new IllegalArgumentException("Lane capacities must be positive");
+        }
+        this.sensorCapacity = sensorCapacity;
+        this.evidenceCapacity = evidenceCapacity;
+        this.housekeepingCapacity = housekeepingCapacity;
+        for (Lane lane : Lane.values()) {
+            executed.put(lane, new AtomicLong());
+            shed.put(lane, new AtomicLong());
+        }
+        worker = new Thread(this::run, "security-lanes");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void submit(Lane lane, Runnable task) {
+        submit(lane, null, task);
+    }
+
+    /**
+     * @param key For housekeeping tasks, replaces a waiting task with the same key. Null never
+     *            matches. Ignored for the other lanes.
+     */
+    public void submit(Lane lane, Object key, Runnable task) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            switch (lane) {
+                case ALARM -> alarm.add(task);
+                case SENSOR -> awaitRoomAndAdd(sensor, sensorCapacity, sensorRoom, task);
+                case EVIDENCE -> awaitRoomAndAdd(evidence, evidenceCapacity, evidenceRoom, task);
+                case HOUSEKEEPING -> {
+                    Object k = key == null ? new Object() : key;
+                    if (housekeeping.remove(k) != null) {
+                        shed.get(Lane.HOUSEKEEPING).incrementAndGet();
+                    }
+                    housekeeping.put(k, task);
+                    if (housekeeping.size() > housekeepingCapacity) {
+                        Iterator<Runnable> oldest = housekeeping.values().iterator();
+                        oldest.next();
+                        oldest.remove();
+                        shed.get(Lane.HOUSEKEEPING).incrementAndGet();
+                    }
+                }
+            }
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void awaitRoomAndAdd(ArrayDeque<Runnable> queue, int capacity, Condition room, Runnable task) {
+        // the worker itself must never wait for room it would have to make
+        while (queue.size() >= capacity && !closed && !isSchedulerThread()) {
+            room.awaitUninterruptibly();
+        }
+        if (!closed) {
+            queue.add(task);
+        }
+    }
+
+    public boolean isSchedulerThread() {
+        return Thread.currentThread() == worker;
+    }
+
+    public long getExecuted(Lane lane) {
+        return executed.get(lane).get();
+    }
+
+    /**
+     * @return Tasks dropped or replaced before they ran
+     */
+    public long getShed(Lane lane) {
+        return shed.get(lane).get();
+    }
+
+    public int getQueueDepth(Lane lane) {
+        lock.lock();
+        try {
+            return switch (lane) {
+                case ALARM -> alarm.size();
+                case SENSOR -> sensor.size();
+                case EVIDENCE -> evidence.size();
+                case HOUSEKEEPING -> housekeeping.size();
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the worker. Tasks still waiting are discarded.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            alarm.clear();
+            sensor.clear();
+            evidence.clear();
+            housekeeping.clear();
+            workAvailable.signalAll();
+            sensorRoom.signalAll();
+            evidenceRoom.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Runnable task;
+            Lane lane;
+            lock.lock();
+            try {
+                while (!closed && alarm.isEmpty() && sensor.isEmpty() && evidence.isEmpty() && housekeeping.isEmpty()) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                if (!alarm.isEmpty()) {
+                    task = alarm.poll();
+                    lane = Lane.ALARM;
+                } else if (!sensor.isEmpty()) {
+                    task = sensor.poll();
+                    lane = Lane.SENSOR;
+                    sensorRoom.signal();
+                } else if (!evidence.isEmpty()) {
+                    task = evidence.poll();
+                    lane = Lane.EVIDENCE;
+                    evidenceRoom.signal();
+                } else {
+                    Iterator<Runnable> oldest = housekeeping.values().iterator();
+                    task = oldest.next();
+                    oldest.remove();
+                    lane = Lane.HOUSEKEEPING;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {
+                // one failing task must not stop the lanes
+            }
+            executed.get(lane).incrementAndGet();
+        }
+    }
+}
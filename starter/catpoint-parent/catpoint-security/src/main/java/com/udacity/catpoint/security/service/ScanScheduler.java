@@ -0,0 +1,417 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.image.service.ImageKernels;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans every camera of a SecurityService at a rate that follows how much there is to watch,
+ * instead of at one fixed rate.
+ * <ul>
+ *     <li>The base interval follows the arming status: a trickle while disarmed, faster while
+ *     armed at home and fastest while armed away.</li>
+ *     <li>A sensor activation while armed, a pending or active alarm, or a camera that currently
+ *     sees a cat boost the camera to the boosted interval. Sensor boosts last for the boost hold
+ *     after the last activation.</li>
+ *     <li>Before a frame goes to the classifier it is compared with the last classified frame of
+ *     that camera on a small gray thumbnail. Unchanged frames are not classified, but the camera
+ *     keeps its interval, so a cat walking into a quiet scene is seen as soon as on a busy one.</li>
+ * </ul>
+ * Two budgets cap the cost. Classifier calls per minute is a token bucket holding ten seconds
+ * of calls. The CPU share is the fraction of one core the scans may use, measured as thread CPU
+ * time over the last second; a scan reserves the average cost of recent scans when it starts
+ * and settles its measured cost when it ends. When a budget runs out, due scans wait, boosted
+ * cameras first.
+ *
+ * Do not also call {@link SecurityService#startScanning} for a camera this class scans.
+ */
+public class ScanScheduler implements Flow.Subscriber<SecurityEvent>, AutoCloseable {
+
+    public static final long TICK_MILLIS = 100;
+
+    // thumbnails are about this wide; a pixel counts as changed when it moved by CHANGE_LEVEL
+    private static final int THUMBNAIL_WIDTH = 64;
+    private static final int CHANGE_LEVEL = 24;
+    private static final double CHANGED_SHARE = 0.01;
+    private static final int SUBSCRIBER_BUFFER = 256;
+
+    /**
+     * How often to scan in each situation.
+     * @param boostHold How long a sensor activation keeps cameras boosted
+     */
+    public record Intervals(Duration disarmed, Duration armedHome, Duration armedAway, Duration boosted, Duration boostHold) {
+        public static final Intervals DEFAULT = new Intervals(Duration.ofSeconds(30), Duration.ofSeconds(5),
+                Duration.ofSeconds(2), Duration.ofMillis(250), Duration.ofSeconds(30));
+
+        public Intervals {
+            for (Duration d : new Duration[]{disarmed, armedHome, armedAway, boosted}) {
+                if (d.toMillis() < 1) {
+                    throw new IllegalArgumentException("Scan intervals must be at least a millisecond");
+                }
+            }
+            if (boostHold.isNegative()) {
+                throw new IllegalArgumentException("Boost hold must not be negative");
+            }
+        }
+    }
+
+    /**
+     * @param classifierCallsPerMinute Frames sent to the image service per minute, across all cameras
+     * @param cpuShare Fraction of one core the scans may use, including classification when the
+     *                 image service runs locally
+     */
+    public record Budget(int classifierCallsPerMinute, double cpuShare) {
+        public static final Budget DEFAULT = new Budget(120, 0.5);
+
+        public Budget {
+            if (classifierCallsPerMinute < 1) {
+                throw new IllegalArgumentException("classifierCallsPerMinute must be at least 1");
+            }
+            if (!(cpuShare > 0)) {
+                throw new IllegalArgumentException("cpuShare must be positive");
+            }
+        }
+    }
+
+    private final SecurityService securityService;
+    private final Intervals intervals;
+    private final Budget budget;
+    private final Clock clock;
+    private final Executor scanExecutor;
+    private final ExecutorService ownedExecutor;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    // guarded by this
+    private final Map<String, CameraState> states = new HashMap<>();
+    private long lastTickMillis;
+    // far enough in the past that subtracting it from now cannot overflow
+    private long lastActivityMillis = Long.MIN_VALUE / 2;
+    private double callTokens;
+    private double cpuBalanceNanos;
+    // the first scan reserves a whole second's CPU, until a scan has been measured
+    private double cpuPerScanNanos;
+    private boolean cpuMeasured;
+    private double fixedRateCalls;
+    private long classifierCalls;
+    private long unchangedFrames;
+    private long deferredByCalls;
+    private long deferredByCpu;
+    private long cpuNanos;
+
+    private ScheduledExecutorService ticker;
+    private Flow.Subscription subscription;
+
+    /**
+     * Uses the default intervals and budget.
+     */
+    public ScanScheduler(SecurityService securityService) {
+        this(securityService, Intervals.DEFAULT, Budget.DEFAULT);
+    }
+
+    /**
+     * Scans on a pool with a thread per core. Call {@link #start()} to begin.
+     */
+    public ScanScheduler(SecurityService securityService, Intervals intervals, Budget budget) {
+        this(securityService, intervals, budget, Clock.systemUTC(), null);
+    }
+
+    /**
+     * Uses the given clock and runs scans on the given executor. Nothing happens on its own
+     * until {@link #start()}; tests call {@link #tick()} after moving their clock instead.
+     */
+    public ScanScheduler(SecurityService securityService, Intervals intervals, Budget budget, Clock clock, Executor scanExecutor) {
+        this.securityService = securityService;
+        this.intervals = intervals;
+        this.budget = budget;
+        this.clock = clock;
+        if (scanExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ownedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "adaptive-scan-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.scanExecutor = ownedExecutor;
+        } else {
+            ownedExecutor = null;
+            this.scanExecutor = scanExecutor;
+        }
+        this.lastTickMillis = clock.millis();
+        this.callTokens = callCapacity();
+        this.cpuBalanceNanos = cpuCapacity();
+        this.cpuPerScanNanos = cpuCapacity();
+    }
+
+    /**
+     * Follows the service's sensor events and ticks every {@link #TICK_MILLIS} ms.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        securityService.getEventPublisher().subscribe(this, SecurityEventPublisher.OverflowStrategy.DROP_OLDEST, SUBSCRIBER_BUFFER);
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "scan-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException ignored) {
+                // a failed tick must not end the schedule
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refills the budgets and starts the scans that are due. Called by the ticker thread.
+     */
+    public void tick() {
+        List<Runnable> scans = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.millis();
+            long elapsed = Math.max(0, now - lastTickMillis);
+            lastTickMillis = now;
+            callTokens = Math.min(callCapacity(), callTokens + elapsed * budget.classifierCallsPerMinute() / 60_000.0);
+            cpuBalanceNanos = Math.min(cpuCapacity(), cpuBalanceNanos + elapsed * 1_000_000.0 * budget.cpuShare());
+
+            // the snapshot is immutable; iterating the live sensor set here races the rule thread
+            if (securityService.getSensorSnapshot().getActiveCount() > 0) {
+                lastActivityMillis = now;
+            }
+            ArmingStatus arming = securityService.getArmingStatus();
+            AlarmStatus alarm = securityService.getAlarmStatus();
+            boolean boosted = (alarm != null && alarm != AlarmStatus.NO_ALARM)
+                    || (arming != null && arming != ArmingStatus.DISARMED
+                    && now - lastActivityMillis < intervals.boostHold().toMillis());
+            long base = baseInterval(arming);
+
+            List<CameraState> due = new ArrayList<>();
+            Map<String, CameraState> seen = new HashMap<>();
+            for (Camera camera : securityService.getCameras()) {
+                CameraState state = states.computeIfAbsent(camera.getCameraId(), id -> new CameraState(camera));
+                seen.put(camera.getCameraId(), state);
+                state.camera = camera;
+                state.interval = boosted || camera.isCatVisible() ? intervals.boosted().toMillis() : base;
+                if (camera.getLatestFrame() != null) {
+                    // what a fixed-rate scanner fast enough for a boost would have sent
+                    fixedRateCalls += (double) elapsed / intervals.boosted().toMillis();
+                }
+                if (!state.inFlight && now - state.lastScanMillis >= state.interval && camera.hasUnscannedFrame()) {
+                    due.add(state);
+                }
+            }
+            states.keySet().retainAll(seen.keySet());
+
+            due.sort(Comparator.comparingLong(s -> s.interval));
+            for (CameraState state : due) {
+                if (callTokens < 1) {
+                    deferredByCalls++;
+                    continue;
+                }
+                if (cpuBalanceNanos <= 0) {
+                    deferredByCpu++;
+                    continue;
+                }
+                Camera.Frame frame = state.camera.takeUnscannedFrame();
+                if (frame == null) {
+                    continue;
+                }
+                callTokens--;
+                double reserved = cpuPerScanNanos;
+                cpuBalanceNanos -= reserved;
+                state.inFlight = true;
+                state.lastScanMillis = now;
+                scans.add(() -> scan(state, frame, reserved));
+            }
+        }
+        for (Runnable scan : scans) {
+            scanExecutor.execute(scan);
+        }
+    }
+
+    /**
+     * @return The interval the camera was scanned at on the last tick, or null if it is not known yet
+     */
+    public synchronized Duration getInterval(String cameraId) {
+        CameraState state = states.get(cameraId);
+        return state == null ? null : Duration.ofMillis(state.interval);
+    }
+
+    public synchronized long getClassifierCalls() { return classifierCalls; }
+
+    /**
+     * @return Frames not classified because they looked like the last classified one
+     */
+    public synchronized long getUnchangedFrames() { return unchangedFrames; }
+    public synchronized long getDeferredByCallBudget() { return deferredByCalls; }
+    public synchronized long getDeferredByCpuBudget() { return deferredByCpu; }
+    public synchronized Duration getCpuTime() { return Duration.ofNanos(cpuNanos); }
+
+    /**
+     * @return Classifier calls saved against scanning every camera at the boosted interval all
+     * the time, which a fixed rate needs to be as quick to notice something
+     */
+    public synchronized long getCallsSaved() {
+        return Math.max(0, Math.round(fixedRateCalls) - classifierCalls);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            this.subscription = subscription;
+        }
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(SecurityEvent event) {
+        // catches activations that are over before the next tick looks at the sensors
+        if (event instanceof SecurityEvent.SensorChanged changed && changed.active()) {
+            synchronized (this) {
+                lastActivityMillis = Math.max(lastActivityMillis, changed.time().toEpochMilli());
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    /**
+     * Stops ticking. Scans already started finish on their own.
+     */
+    @Override
+    public void close() {
+        Flow.Subscription s;
+        synchronized (this) {
+            if (ticker != null) {
+                ticker.shutdownNow();
+                ticker = null;
+            }
+            s = subscription;
+            subscription = null;
+        }
+        if (s != null) {
+            s.cancel();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void scan(CameraState state, Camera.Frame frame, double reservedCpuNanos) {
+        long cpuStart = cpuTime();
+        boolean unchanged = false;
+        try {
+            BufferedImage thumbnail = thumbnail(frame.image());
+            unchanged = state.thumbnail != null && !changed(state.thumbnail, thumbnail);
+            if (!unchanged) {
+                state.thumbnail = thumbnail;
+            }
+        } catch (RuntimeException e) {
+            // a frame that cannot be compared is classified anyway
+            state.thumbnail = null;
+        }
+        try {
+            if (!unchanged) {
+                securityService.classifyAndApply(state.camera, frame);
+            }
+        } catch (RuntimeException ignored) {
+            // a failed scan must not stop the camera's scans; the next frame retries
+        } finally {
+            long used = cpuTime() - cpuStart;
+            synchronized (this) {
+                cpuNanos += used;
+                cpuBalanceNanos += reservedCpuNanos - used;
+                cpuPerScanNanos = cpuMeasured ? 0.8 * cpuPerScanNanos + 0.2 * used : used;
+                cpuMeasured = true;
+                if (unchanged) {
+                    callTokens++;
+                    unchangedFrames++;
+                } else {
+                    classifierCalls++;
+                }
+                state.inFlight = false;
+            }
+        }
+    }
+
+    private long baseInterval(ArmingStatus arming) {
+        if (arming == ArmingStatus.ARMED_AWAY) {
+            return intervals.armedAway().toMillis();
+        }
+        if (arming == ArmingStatus.ARMED_HOME) {
+            return intervals.armedHome().toMillis();
+        }
+        return intervals.disarmed().toMillis();
+    }
+
+    private double callCapacity() {
+        return Math.max(1, budget.classifierCallsPerMinute() / 6.0);
+    }
+
+    private double cpuCapacity() {
+        return budget.cpuShare() * 1e9;
+    }
+
+    private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static BufferedImage thumbnail(BufferedImage frame) {
+        int factor = Math.max(1, Math.min(frame.getWidth() / THUMBNAIL_WIDTH, frame.getHeight()));
+        return ImageKernels.downscaleBox(frame, factor);
+    }
+
+    private static boolean changed(BufferedImage previous, BufferedImage current) {
+        if (previous.getWidth() != current.getWidth() || previous.getHeight() != current.getHeight()) {
+            return true;
+        }
+        int[] bins = ImageKernels.histogram(ImageKernels.absoluteDifference(previous, current));
+        long moved = 0;
+        for (int level = CHANGE_LEVEL; level < bins.length; level++) {
+            moved += bins[level];
+        }
+        return moved >= Math.max(1, CHANGED_SHARE * current.getWidth() * current.getHeight());
+    }
+
+    /**
+     * What the scheduler knows about one camera. Guarded by the scheduler, except the thumbnail,
+     * which only the camera's one scan in flight touches.
+     */
+    private static class CameraState {
+        Camera camera;
+        long interval;
+        long lastScanMillis = Long.MIN_VALUE / 2;
+        boolean inFlight;
+        BufferedImage thumbnail;
+
+        CameraState(Camera camera) {
+            this.camera = camera;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A change to the system state, as published by SecurityService. Sequence numbers are assigned
+ * in publishing order and never repeat, so subscribers can spot gaps and duplicates.
+ */
+public sealed interface SecurityEvent {
+
+    long sequence();
+
+    Instant time();
+
+    record AlarmChanged(long sequence, Instant time, AlarmStatus status) implements SecurityEvent {
+    }
+
+    record ArmingChanged(long sequence, Instant time, ArmingStatus status) implements SecurityEvent {
+    }
+
+    /** A sensor was added or its activation state changed. */
+    record SensorChanged(long sequence, Instant time, UUID sensorId, String name, boolean active) implements SecurityEvent {
+    }
+
+    record SensorRemoved(long sequence, Instant time, UUID sensorId) implements SecurityEvent {
+    }
+
+    /** A camera's cat verdict flipped. */
+    record CameraChanged(long sequence, Instant time, String cameraId, boolean catDetected) implements SecurityEvent {
+    }
+}
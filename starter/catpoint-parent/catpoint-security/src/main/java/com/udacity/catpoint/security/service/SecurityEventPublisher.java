@@ -0,0 +1,362 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * Publishes SecurityEvents to any number of Flow subscribers.
+ *
+ * Every subscriber gets its own bounded buffer and is only sent as many events as it has
+ * requested. Delivery runs on the executor, one task at a time per subscriber, so a slow
+ * subscriber never holds up the others. What happens when a buffer is full depends on the
+ * subscriber's {@link OverflowStrategy}.
+ */
+public class SecurityEventPublisher implements Flow.Publisher<SecurityEvent>, AutoCloseable {
+
+    public enum OverflowStrategy {
+        /** Discard the oldest buffered event to make room. */
+        DROP_OLDEST,
+        /**
+         * Keep only the latest undelivered event per alarm, arming, sensor or camera, so a slow
+         * subscriber still ends up with the current state. Events stay in sequence order.
+         */
+        CONFLATE,
+        /**
+         * Make the publishing thread wait for room. Only use this with subscribers that keep
+         * requesting on another thread, since it stalls SecurityService.
+         */
+        BLOCK
+    }
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 256;
+
+    // events delivered per executor task before yielding to other subscribers
+    private static final int MAX_BATCH = 64;
+
+    private final Executor executor;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private long sequence;
+    private boolean closed;
+
+    public SecurityEventPublisher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor Runs delivery to subscribers
+     */
+    public SecurityEventPublisher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes with {@link OverflowStrategy#DROP_OLDEST} and the default buffer capacity.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super SecurityEvent> subscriber) {
+        subscribe(subscriber, OverflowStrategy.DROP_OLDEST, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public void subscribe(Flow.Subscriber<? super SecurityEvent> subscriber, OverflowStrategy strategy, int bufferCapacity) {
+        subscribe(subscriber, strategy, bufferCapacity, e -> true);
+    }
+
+    /**
+     * @param filter Events that are not accepted never take up room in the subscriber's buffer
+     */
+    public void subscribe(Flow.Subscriber<? super SecurityEvent> subscriber, OverflowStrategy strategy, int bufferCapacity,
+                          Predicate<? super SecurityEvent> filter) {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("bufferCapacity must be at least 1");
+        }
+        EventSubscription subscription = new EventSubscription(subscriber, strategy, bufferCapacity, filter);
+        synchronized (this) {
+            if (closed) {
+                subscription.complete();
+            } else {
+                subscriptions.add(subscription);
+            }
+        }
+        subscription.signal();
+    }
+
+    /**
+     * Assigns the next sequence number and offers the event to every subscriber. The event is
+     * only built when someone is subscribed.
+     */
+    public synchronized void publish(LongFunction<SecurityEvent> event) {
+        long seq = ++sequence;
+        if (closed || subscriptions.isEmpty()) {
+            return;
+        }
+        SecurityEvent e = event.apply(seq);
+        for (EventSubscription s : subscriptions) {
+            s.offer(e);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return Events discarded or conflated away across all subscribers
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Completes every subscriber once it has received what is already buffered.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (EventSubscription s : subscriptions) {
+            s.complete();
+        }
+    }
+
+    private static Object conflationKey(SecurityEvent e) {
+        return switch (e) {
+            case SecurityEvent.AlarmChanged a -> SecurityEvent.AlarmChanged.class;
+            case SecurityEvent.ArmingChanged a -> SecurityEvent.ArmingChanged.class;
+            case SecurityEvent.SensorChanged s -> s.sensorId();
+            case SecurityEvent.SensorRemoved s -> s.sensorId();
+            case SecurityEvent.CameraChanged c -> c.cameraId();
+        };
+    }
+
+    private final class EventSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super SecurityEvent> subscriber;
+        private final OverflowStrategy strategy;
+        private final int capacity;
+        private final Predicate<? super SecurityEvent> filter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private final ArrayDeque<SecurityEvent> queue = new ArrayDeque<>();
+        private final LinkedHashMap<Object, SecurityEvent> latest = new LinkedHashMap<>();
+
+        // guarded by lock
+        private long demand;
+        private boolean subscribed;
+        private boolean scheduled;
+        private boolean cancelled;
+        private boolean completing;
+
+        EventSubscription(Flow.Subscriber<? super SecurityEvent> subscriber, OverflowStrategy strategy, int capacity,
+                          Predicate<? super SecurityEvent> filter) {
+            this.subscriber = subscriber;
+            this.strategy = strategy;
+            this.capacity = capacity;
+            this.filter = filter;
+        }
+
+        void offer(SecurityEvent e) {
+            if (!filter.test(e)) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                switch (strategy) {
+                    case DROP_OLDEST -> {
+                        if (queue.size() == capacity) {
+                            queue.poll();
+                            dropped.increment();
+                        }
+                        queue.add(e);
+                    }
+                    case CONFLATE -> {
+                        // re-insert so the map's iteration order stays sequence order
+                        Object key = conflationKey(e);
+                        if (latest.remove(key) != null) {
+                            dropped.increment();
+                        }
+                        latest.put(key, e);
+                        if (latest.size() > capacity) {
+                            Iterator<SecurityEvent> oldest = latest.values().iterator();
+                            oldest.next();
+                            oldest.remove();
+                            dropped.increment();
+                        }
+                    }
+                    case BLOCK -> {
+                        while (queue.size() == capacity && !cancelled) {
+                            notFull.awaitUninterruptibly();
+                        }
+                        if (cancelled) {
+                            return;
+                        }
+                        queue.add(e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            signal();
+        }
+
+        void complete() {
+            lock.lock();
+            try {
+                completing = true;
+            } finally {
+                lock.unlock();
+            }
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested " + n + " events, must be positive"));
+                return;
+            }
+            lock.lock();
+            try {
+                demand += n;
+                if (demand < 0) {
+                    demand = Long.MAX_VALUE; // effectively unbounded
+                }
+            } finally {
+                lock.unlock();
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                queue.clear();
+                latest.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Schedules a delivery task unless one is already pending or there is nothing to do.
+         */
+        void signal() {
+            lock.lock();
+            try {
+                boolean work = !subscribed || (demand > 0 && size() > 0) || (completing && size() == 0);
+                if (scheduled || cancelled || !work) {
+                    return;
+                }
+                scheduled = true;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                lock.lock();
+                try {
+                    scheduled = false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean first;
+            lock.lock();
+            try {
+                first = !subscribed;
+                subscribed = true;
+            } finally {
+                lock.unlock();
+            }
+            if (first) {
+                subscriber.onSubscribe(this);
+            }
+
+            for (int delivered = 0; delivered < MAX_BATCH; delivered++) {
+                SecurityEvent next;
+                lock.lock();
+                try {
+                    if (cancelled) {
+                        scheduled = false;
+                        return;
+                    }
+                    if (completing && size() == 0) {
+                        cancelled = true;
+                        scheduled = false;
+                        next = null;
+                    } else if (demand == 0 || size() == 0) {
+                        scheduled = false;
+                        return;
+                    } else {
+                        next = poll();
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                        notFull.signal();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (next == null) {
+                    subscriptions.remove(this);
+                    subscriber.onComplete();
+                    return;
+                }
+                try {
+                    subscriber.onNext(next);
+                } catch (Throwable t) {
+                    // the subscriber broke the contract; treat the subscription as cancelled
+                    cancel();
+                    return;
+                }
+            }
+            // batch used up: give the executor to others and continue in a fresh task
+            lock.lock();
+            try {
+                scheduled = false;
+            } finally {
+                lock.unlock();
+            }
+            signal();
+        }
+
+        private int size() {
+            return strategy == OverflowStrategy.CONFLATE ? latest.size() : queue.size();
+        }
+
+        private SecurityEvent poll() {
+            if (strategy != OverflowStrategy.CONFLATE) {
+                return queue.poll();
+            }
+            Iterator<SecurityEvent> oldest = latest.values().iterator();
+            SecurityEvent e = oldest.next();
+            oldest.remove();
+            return e;
+        }
+    }
+}
@@ -1,167 +1,617 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.service.ImagePreprocessor;
 import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.data.*;
 
 import java.awt.image.BufferedImage;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class SecurityService {
 
+    /** Camera used by callers that do not name one, such as the single-camera ImagePanel. */
+    public static final String DEFAULT_CAMERA_ID = "default";
+
+    /** How long PENDING_ALARM may last before it escalates to ALARM on its own. */
+    public static final Duration DEFAULT_ENTRY_DELAY = Duration.ofSeconds(30);
+
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+    private static final long TIMER_TICK_MILLIS = 100;
+
     private final ImageService imageService;
     private final SecurityRepository repo;
-    private final Set<StatusListener> statusListeners = new HashSet<>();
+    // listeners are added and removed far less often than they are notified
+    private final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+    private final SecurityEventPublisher events = new SecurityEventPublisher();
+
+    // Track current camera results for “armed-home while cat visible -> ALARM”
+    private final CameraRegistry cameras = new CameraRegistry();
+    // Guards every change to arming, alarm and sensor state, so the rules always decide on the
+    // state they are about to change. Classification runs outside it.
+    private final Object stateLock = new Object();
+    private final int scanThreads;
+    private ScheduledExecutorService scanPool;
+    private volatile ImagePreprocessor imagePreprocessor;
+    private volatile AlarmRules alarmRules = new AlarmRules();
+    private volatile EvidenceStore evidenceStore;
+    private volatile SensorHistory sensorHistory;
+    private volatile long sensorResets;
+
+    // Listener calls and evidence run inline unless a lane scheduler is set
+    private volatile LaneScheduler laneScheduler;
+    private final Object sensorRefreshKey = new Object();
 
-    // Track current camera result for “armed-home while cat visible -> ALARM”
-    private boolean catCurrentlyVisible = false;
+    // Entry and exit delays. Timers live on a timing wheel driven by the clock.
+    private final Clock clock;
+    private final boolean driveTimersInBackground;
+    private final HierarchicalTimingWheel alarmTimers;
+    private final Object timerLock = new Object();
+    private volatile Duration entryDelay = DEFAULT_ENTRY_DELAY;
+    private volatile Duration exitDelay = Duration.ZERO;
+    private HierarchicalTimingWheel.Timeout entryTimeout;
+    private HierarchicalTimingWheel.Timeout exitTimeout;
+    private ScheduledExecutorService timerThread;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param scanThreads Size of the bounded pool that scans cameras in the background
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, int scanThreads) {
+        this(securityRepository, imageService, scanThreads, Clock.systemUTC(), true);
+    }
+
+    /**
+     * Uses the given clock for entry and exit delays. No timer thread is started: delays only
+     * expire when {@link #advanceTimers()} is called, which keeps tests deterministic.
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, int scanThreads, Clock clock) {
+        this(securityRepository, imageService, scanThreads, clock, false);
+    }
+
+    private SecurityService(SecurityRepository securityRepository, ImageService imageService, int scanThreads,
+                            Clock clock, boolean driveTimersInBackground) {
         this.repo = securityRepository;
         this.imageService = imageService;
+        this.scanThreads = scanThreads;
+        this.clock = clock;
+        this.driveTimersInBackground = driveTimersInBackground;
+        this.alarmTimers = new HierarchicalTimingWheel(TIMER_TICK_MILLIS, clock.millis());
+        cameras.register(DEFAULT_CAMERA_ID, "Camera Feed");
     }
 
     /* ------------ Public API ------------ */
 
     public void setArmingStatus(ArmingStatus armingStatus) {
+        synchronized (stateLock) {
+            applyArmingStatus(armingStatus);
+        }
+    }
+
+    private void applyArmingStatus(ArmingStatus armingStatus) {
         if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+            cancelExitDelay();
         } else {
+            startExitDelay();
             // Requirement 10: when arming, reset all sensors to inactive
+            sensorResets++;
             // iterate a copy so updates won't throw ConcurrentModificationException
             Set<Sensor> sensorsCopy = new HashSet<>(repo.getSensors());
             for (Sensor s : sensorsCopy) {
                 if (Boolean.TRUE.equals(s.getActive())) {
                     s.setActive(false);
                     repo.updateSensor(s);
+                    publishSensorChanged(s);
                 }
             }
             // notify listeners that sensor states changed (so GUI can refresh)
-            statusListeners.forEach(sl -> {
-                try { sl.sensorStatusChanged(); } catch (Exception ignored) {}
-            });
+            notifyListeners(LaneScheduler.Lane.HOUSEKEEPING, sensorRefreshKey, StatusListener::sensorStatusChanged);
         }
 
         repo.setArmingStatus(armingStatus);
-
-        // Requirement 11: If armed-home while camera shows a cat => ALARM
-        if (armingStatus == ArmingStatus.ARMED_HOME && catCurrentlyVisible) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        }
+        events.publish(seq -> new SecurityEvent.ArmingChanged(seq, clock.instant(), armingStatus));
+        // Requirements 9 and 11
+        applyRules(armingStatus, AlarmRules.Event.ARMING_CHANGED);
     }
 
     public void addStatusListener(StatusListener statusListener) { statusListeners.add(statusListener); }
     public void removeStatusListener(StatusListener statusListener) { statusListeners.remove(statusListener); }
 
     public void setAlarmStatus(AlarmStatus status) {
-        repo.setAlarmStatus(status);
-        statusListeners.forEach(sl -> {
-            try { sl.notify(status); } catch (Exception ignored) {}
-        });
+        synchronized (stateLock) {
+            repo.setAlarmStatus(status);
+            updateEntryDelay(status);
+            events.publish(seq -> new SecurityEvent.AlarmChanged(seq, clock.instant(), status));
+            notifyListeners(LaneScheduler.Lane.ALARM, null, sl -> sl.notify(status));
+        }
     }
 
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        // Requirement 4: If alarm is active, sensor changes do NOT affect alarm,
-        // but still persist the sensor change.
-        if (repo.getAlarmStatus() == AlarmStatus.ALARM) {
-            sensor.setActive(active);
-            repo.updateSensor(sensor);
-            // inform UI listeners about sensor change
-            statusListeners.forEach(sl -> {
-                try { sl.sensorStatusChanged(); } catch (Exception ignored) {}
-            });
-            return;
+        synchronized (stateLock) {
+            applySensorActivationStatus(sensor, active);
         }
+    }
 
+    private void applySensorActivationStatus(Sensor sensor, Boolean active) {
         boolean wasActive = Boolean.TRUE.equals(sensor.getActive());
         boolean becomesActive = Boolean.TRUE.equals(active);
 
         // Persist the new sensor state BEFORE we run alarm logic so repo.getSensors()
-        // reflects the change inside handleSensorDeactivated() / handleSensorActivated().
+        // reflects the change when the rules ask whether any sensor is still active.
         sensor.setActive(active);
         repo.updateSensor(sensor);
-
-        // If the sensor was active and is activated again while pending, escalate to ALARM.
-        if (wasActive && becomesActive) {
-            if (repo.getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
-                setAlarmStatus(AlarmStatus.ALARM);
+        publishSensorChanged(sensor);
+        SensorHistory history = sensorHistory;
+        if (history != null) {
+            try {
+                history.record(sensor, clock.instant());
+            } catch (RuntimeException ignored) {
+                // history is for analysis; a failed write must not stop the alarm rules
             }
-            // notify about sensor change and exit
-            statusListeners.forEach(sl -> {
-                try { sl.sensorStatusChanged(); } catch (Exception ignored) {}
-            });
-            return;
         }
 
-        if (!wasActive && becomesActive) {
-            // first-time activation
-            handleSensorActivated();
-        } else if (wasActive && !becomesActive) {
-            // deactivation (and handleSensorDeactivated will check repo.getSensors())
-            handleSensorDeactivated();
+        if (becomesActive) {
+            applyRules(repo.getArmingStatus(), wasActive ? AlarmRules.Event.SENSOR_REACTIVATED : AlarmRules.Event.SENSOR_ACTIVATED);
+        } else if (wasActive) {
+            applyRules(repo.getArmingStatus(), AlarmRules.Event.SENSOR_DEACTIVATED);
         }
         // notify listeners about sensor change
-        statusListeners.forEach(sl -> {
-            try { sl.sensorStatusChanged(); } catch (Exception ignored) {}
-        });
+        notifyListeners(LaneScheduler.Lane.HOUSEKEEPING, sensorRefreshKey, StatusListener::sensorStatusChanged);
     }
 
 
+    /**
+     * Like {@link #changeSensorActivationStatus}, but runs on the lane scheduler's sensor lane
+     * when one is set, so a flood of sensor events cannot hold up alarm work.
+     */
+    public void submitSensorActivationStatus(Sensor sensor, Boolean active) {
+        dispatch(LaneScheduler.Lane.SENSOR, null, () -> changeSensorActivationStatus(sensor, active));
+    }
+
     public void processImage(BufferedImage currentCameraImage) {
-        boolean cat = imageService.imageContainsCat(currentCameraImage, 50.0f);
-        catDetected(cat);
+        processImage(DEFAULT_CAMERA_ID, currentCameraImage);
+    }
+
+    /**
+     * Classifies a frame from the given camera and applies the verdict. The alarm rules see
+     * a cat as long as any camera still sees one.
+     */
+    public void processImage(String cameraId, BufferedImage frame) {
+        Camera camera = cameras.register(cameraId, cameraId);
+        classifyAndApply(camera, camera.takeNewFrame(frame));
+    }
+
+    /**
+     * Replaces the rules that decide how events change the alarm status.
+     */
+    public void setAlarmRules(AlarmRules alarmRules) {
+        this.alarmRules = alarmRules;
+    }
+
+    /**
+     * Keeps every frame classified as a cat in the given store. The image service only
+     * answers yes or no, so the confidence recorded is the threshold the frame passed.
+     * Pass null to stop keeping frames.
+     */
+    public void setEvidenceStore(EvidenceStore evidenceStore) {
+        this.evidenceStore = evidenceStore;
+    }
+
+    /**
+     * Records every sensor activation and deactivation in the given history. Pass null to stop.
+     */
+    public void setSensorHistory(SensorHistory sensorHistory) {
+        this.sensorHistory = sensorHistory;
+    }
+
+    /**
+     * Asks the image service whether a camera frame shows a cat, without changing any state.
+     * Safe to call from many threads; pair it with {@link #applyVerdict} to run classification
+     * and state updates as separate stages.
+     */
+    public boolean classify(String cameraId, BufferedImage frame) {
+        ImagePreprocessor preprocessor = imagePreprocessor;
+        BufferedImage input = preprocessor == null ? frame : preprocessor.preprocess(cameraId, frame);
+        return imageService.imageContainsCat(input, CAT_CONFIDENCE_THRESHOLD);
+    }
+
+    /**
+     * Applies a verdict from {@link #classify} for a frame that did not come through the
+     * camera's feed, such as one from SpoolIngestion. The camera's latest frame is left alone,
+     * still waiting for its scan if it has not had one; the verdict counts for the camera's
+     * current frame version. Callers classifying frames in parallel must put the verdicts back
+     * in order themselves.
+     */
+    public void applyVerdict(String cameraId, BufferedImage frame, boolean cat) {
+        Camera camera = cameras.register(cameraId, cameraId);
+        applyVerdict(camera, new Camera.Frame(frame, camera.getFrameVersion()), cat);
+    }
+
+    /**
+     * Moves listener calls and evidence recording onto the scheduler's lanes: alarm and cat
+     * notifications go first, sensor refreshes are merged or dropped under load, and evidence
+     * holds up the scanners rather than being dropped.
+     * Pass null to run everything on the calling thread again.
+     */
+    public void setLaneScheduler(LaneScheduler laneScheduler) {
+        this.laneScheduler = laneScheduler;
+    }
+
+    /* ------------ Entry / exit delays ------------ */
+
+    /**
+     * Sets how long PENDING_ALARM lasts before escalating to ALARM. Applies to pending
+     * alarms that start after the call.
+     */
+    public void setEntryDelay(Duration entryDelay) {
+        if (entryDelay.isNegative()) {
+            throw new IllegalArgumentException("Entry delay must not be negative");
+        }
+        this.entryDelay = entryDelay;
+    }
+
+    /**
+     * Sets how long after arming sensor activations are ignored, so people can leave. A sensor
+     * that is still active when the exit delay ends starts a pending alarm. Zero disables it.
+     */
+    public void setExitDelay(Duration exitDelay) {
+        if (exitDelay.isNegative()) {
+            throw new IllegalArgumentException("Exit delay must not be negative");
+        }
+        this.exitDelay = exitDelay;
+    }
+
+    public Duration getEntryDelay() { return entryDelay; }
+    public Duration getExitDelay() { return exitDelay; }
+
+    public boolean isExitDelayActive() {
+        synchronized (timerLock) {
+            return exitTimeout != null;
+        }
+    }
+
+    /**
+     * Runs every entry or exit delay that has expired according to the clock. Called by the
+     * timer thread; with an injected clock, tests call it after moving their clock.
+     */
+    public void advanceTimers() {
+        alarmTimers.advanceTo(clock.millis());
+    }
+
+    /* ------------ Cameras ------------ */
+
+    public Camera addCamera(String cameraId, String name) { return cameras.register(cameraId, name); }
+    public Collection<Camera> getCameras() { return cameras.getCameras(); }
+
+    /**
+     * Stops scanning a camera. If it was the only one seeing a cat, the rules run as if the cat
+     * had left.
+     */
+    public void removeCamera(String cameraId) {
+        synchronized (stateLock) {
+            boolean catVisible = cameras.anyCatVisible();
+            Camera camera = cameras.remove(cameraId);
+            if (camera == null) {
+                return;
+            }
+            cancelScan(camera.replaceScanTask(null, 0));
+            if (catVisible && !cameras.anyCatVisible()) {
+                catDetected(false);
+            }
+        }
+    }
+
+    /**
+     * Crops and shrinks frames before they are sent for classification. Pass null to send
+     * frames at full resolution.
+     */
+    public void setImagePreprocessor(ImagePreprocessor imagePreprocessor) {
+        this.imagePreprocessor = imagePreprocessor;
+    }
+
+    /**
+     * Stores the newest frame delivered by a camera. It is classified by the camera's next
+     * scheduled scan, see {@link #startScanning(String, Duration)}.
+     */
+    public void updateCameraFrame(String cameraId, BufferedImage frame) {
+        cameras.register(cameraId, cameraId).updateFrame(frame);
+    }
+
+    /**
+     * Scans the camera on the shared scan pool, classifying its latest frame whenever a new
+     * one has arrived. Each camera runs its own task, so a slow classification on one camera
+     * does not delay the others as long as the pool has free threads.
+     */
+    public void startScanning(String cameraId, Duration interval) {
+        Camera camera = cameras.register(cameraId, cameraId);
+        long intervalMillis = Math.max(1, interval.toMillis());
+        ScheduledFuture<?> task = getScanPool().scheduleWithFixedDelay(
+                () -> scanCamera(camera), 0, intervalMillis, TimeUnit.MILLISECONDS);
+        cancelScan(camera.replaceScanTask(task, intervalMillis));
+    }
+
+    public void stopScanning(String cameraId) {
+        Camera camera = cameras.get(cameraId);
+        if (camera != null) {
+            cancelScan(camera.replaceScanTask(null, 0));
+        }
+    }
+
+    /**
+     * Stops all background camera scans and releases the scan pool.
+     */
+    public synchronized void shutdownScanning() {
+        cameras.getCameras().forEach(c -> cancelScan(c.replaceScanTask(null, 0)));
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+            scanPool = null;
+        }
     }
 
     public AlarmStatus getAlarmStatus() { return repo.getAlarmStatus(); }
     public Set<Sensor> getSensors() { return repo.getSensors(); }
-    public void addSensor(Sensor sensor) { repo.addSensor(sensor); }
-    public void removeSensor(Sensor sensor) { repo.removeSensor(sensor); }
+
+    /**
+     * @return How many times arming has reset every sensor to inactive, so a stage in front of
+     * the service (such as SensorDebouncer) can tell its view of the sensors is out of date
+     */
+    public long getSensorResets() { return sensorResets; }
+    public SensorSnapshot getSensorSnapshot() { return repo.getSensorSnapshot(); }
+    public void addSensor(Sensor sensor) {
+        synchronized (stateLock) {
+            repo.addSensor(sensor);
+            publishSensorChanged(sensor);
+        }
+    }
+
+    public void removeSensor(Sensor sensor) {
+        synchronized (stateLock) {
+            repo.removeSensor(sensor);
+            events.publish(seq -> new SecurityEvent.SensorRemoved(seq, clock.instant(), sensor.getSensorId()));
+        }
+    }
+
     public ArmingStatus getArmingStatus() { return repo.getArmingStatus(); }
 
+    /**
+     * Typed state changes with backpressure. Unlike StatusListener, every event carries what
+     * changed, so subscribers do not need to call back into the service.
+     */
+    public SecurityEventPublisher getEventPublisher() { return events; }
+
     /* ------------ Internal logic ------------ */
 
-    private void handleSensorActivated() {
-        if (repo.getArmingStatus() == ArmingStatus.DISARMED) return; // Requirement 9 covered elsewhere
+    private void notifyListeners(LaneScheduler.Lane lane, Object key, Consumer<StatusListener> call) {
+        dispatch(lane, key, () -> statusListeners.forEach(sl -> {
+            try { call.accept(sl); } catch (Exception ignored) {}
+        }));
+    }
+
+    private void dispatch(LaneScheduler.Lane lane, Object key, Runnable task) {
+        LaneScheduler scheduler = laneScheduler;
+        if (scheduler == null) {
+            task.run();
+        } else {
+            scheduler.submit(lane, key, task);
+        }
+    }
+
+    private void publishSensorChanged(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        String name = sensor.getName();
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        events.publish(seq -> new SecurityEvent.SensorChanged(seq, clock.instant(), id, name, active));
+    }
 
-        switch (repo.getAlarmStatus()) {
-            // Requirement 1: armed + a sensor activated => PENDING_ALARM
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            // Requirement 2/5: if already PENDING and a (another or re-)sensor becomes active => ALARM
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
-            case ALARM -> { /* ignore per Requirement 4 */ }
+    /**
+     * Looks up what the event does to the alarm and applies it. Only the guards the rules need
+     * in the current state are worked out. Callers hold stateLock.
+     */
+    private void applyRules(ArmingStatus arming, AlarmRules.Event event) {
+        AlarmRules rules = alarmRules;
+        // a repository that has never stored a status may report null
+        ArmingStatus armingStatus = arming == null ? ArmingStatus.DISARMED : arming;
+        AlarmStatus current = repo.getAlarmStatus();
+        AlarmStatus alarmStatus = current == null ? AlarmStatus.NO_ALARM : current;
+        int used = rules.guardsUsed(armingStatus, alarmStatus, event);
+        int guards = 0;
+        if ((used & AlarmRules.ANY_SENSOR_ACTIVE) != 0 && repo.getSensors().stream().anyMatch(Sensor::getActive)) {
+            guards |= AlarmRules.ANY_SENSOR_ACTIVE;
+        }
+        if ((used & AlarmRules.CAT_VISIBLE) != 0 && cameras.anyCatVisible()) {
+            guards |= AlarmRules.CAT_VISIBLE;
+        }
+        if ((used & AlarmRules.EXIT_DELAY_ACTIVE) != 0 && isExitDelayActive()) {
+            guards |= AlarmRules.EXIT_DELAY_ACTIVE;
+        }
+        AlarmStatus next = rules.next(armingStatus, alarmStatus, event, guards);
+        if (next != null) {
+            setAlarmStatus(next);
         }
     }
 
-    private void handleSensorDeactivated() {
-        switch (repo.getAlarmStatus()) {
-            // Requirement 3: if PENDING and all sensors inactive => NO_ALARM
-            case PENDING_ALARM -> {
-                boolean anyActive = repo.getSensors().stream().anyMatch(Sensor::getActive);
-                if (!anyActive) {
-                    setAlarmStatus(AlarmStatus.NO_ALARM);
+    private void updateEntryDelay(AlarmStatus status) {
+        synchronized (timerLock) {
+            if (status == AlarmStatus.PENDING_ALARM) {
+                if (entryTimeout == null) {
+                    entryTimeout = scheduleTimer(entryDelay, this::entryDelayExpired);
                 }
+            } else if (entryTimeout != null) {
+                entryTimeout.cancel();
+                entryTimeout = null;
             }
-            case ALARM -> { /* Requirement 4: ignore while ALARM */ }
-            case NO_ALARM -> { /* nothing */ }
         }
     }
 
-    private void catDetected(boolean cat) {
-        catCurrentlyVisible = cat;
-
-        if (cat && repo.getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            // Requirement 7 & 11
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat) {
-            // Requirement 8: no cat AND no sensors active => NO_ALARM
-            boolean anyActive = repo.getSensors().stream().anyMatch(Sensor::getActive);
-            if (!anyActive) {
-                setAlarmStatus(AlarmStatus.NO_ALARM);
+    /**
+     * @param expired The timeout that ran. Cancelling cannot stop a timer the wheel has already
+     *                taken out to run, so one that has since been replaced does nothing.
+     */
+    private void entryDelayExpired(HierarchicalTimingWheel.Timeout expired) {
+        synchronized (stateLock) {
+            synchronized (timerLock) {
+                if (entryTimeout != expired) {
+                    return;
+                }
+                entryTimeout = null;
+            }
+            applyRules(repo.getArmingStatus(), AlarmRules.Event.ENTRY_DELAY_EXPIRED);
+        }
+    }
+
+    private void startExitDelay() {
+        synchronized (timerLock) {
+            if (exitTimeout != null) {
+                exitTimeout.cancel();
+                exitTimeout = null;
+            }
+            if (!exitDelay.isZero()) {
+                exitTimeout = scheduleTimer(exitDelay, this::exitDelayExpired);
+            }
+        }
+    }
+
+    private void cancelExitDelay() {
+        synchronized (timerLock) {
+            if (exitTimeout != null) {
+                exitTimeout.cancel();
+                exitTimeout = null;
+            }
+        }
+    }
+
+    /**
+     * @param expired The timeout that ran; does nothing if it has since been replaced
+     */
+    private void exitDelayExpired(HierarchicalTimingWheel.Timeout expired) {
+        synchronized (stateLock) {
+            synchronized (timerLock) {
+                if (exitTimeout != expired) {
+                    return;
+                }
+                exitTimeout = null;
+            }
+            // a door left open when the exit delay ends counts as an activation
+            applyRules(repo.getArmingStatus(), AlarmRules.Event.EXIT_DELAY_EXPIRED);
+        }
+    }
+
+    /**
+     * @param task Called with the timeout it was scheduled as, so it can tell whether it is
+     *             still the current one
+     */
+    private HierarchicalTimingWheel.Timeout scheduleTimer(Duration delay, Consumer<HierarchicalTimingWheel.Timeout> task) {
+        if (driveTimersInBackground && timerThread == null) {
+            timerThread = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "alarm-timers");
+                t.setDaemon(true);
+                return t;
+            });
+            timerThread.scheduleAtFixedRate(() -> {
+                try {
+                    advanceTimers();
+                } catch (RuntimeException ignored) {
+                    // a failed tick must not end the schedule; later delays still have to expire
+                }
+            }, TIMER_TICK_MILLIS, TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        // from the clock, not from the wheel's last tick: the ticker may not have run for a while
+        AtomicReference<HierarchicalTimingWheel.Timeout> self = new AtomicReference<>();
+        HierarchicalTimingWheel.Timeout timeout = alarmTimers.schedule(clock.millis(), delay.toMillis(), () -> task.accept(self.get()));
+        self.set(timeout);
+        return timeout;
+    }
+
+    private synchronized ScheduledExecutorService getScanPool() {
+        if (scanPool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(scanThreads, r -> {
+                Thread t = new Thread(r, "camera-scan-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            pool.setRemoveOnCancelPolicy(true);
+            scanPool = pool;
+        }
+        return scanPool;
+    }
+
+    private void cancelScan(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private void scanCamera(Camera camera) {
+        Camera.Frame frame = camera.takeUnscannedFrame();
+        if (frame == null) {
+            return;
+        }
+        try {
+            classifyAndApply(camera, frame);
+        } catch (RuntimeException ignored) {
+            // a failed scan must not cancel the camera's periodic task; the next frame retries
+        }
+    }
+
+    /**
+     * Classifies a frame the camera has already handed out and applies the verdict, leaving any
+     * newer frame in place. Used by the scans, including those of ScanScheduler.
+     */
+    void classifyAndApply(Camera camera, Camera.Frame frame) {
+        // classification runs outside the lock so cameras are scanned in parallel
+        applyVerdict(camera, frame, classify(camera.getCameraId(), frame.image()));
+    }
+
+    private void applyVerdict(Camera camera, Camera.Frame frame, boolean cat) {
+        AlarmStatus alarmStatus;
+        synchronized (stateLock) {
+            boolean changed = camera.isCatVisible() != cat;
+            if (!cameras.recordVerdict(camera, cat, frame.version(), clock.millis())) {
+                // a newer frame of this camera has already been classified
+                return;
+            }
+            if (changed) {
+                events.publish(seq -> new SecurityEvent.CameraChanged(seq, clock.instant(), camera.getCameraId(), cat));
             }
+            catDetected(cameras.anyCatVisible());
+            alarmStatus = repo.getAlarmStatus();
+        }
+        EvidenceStore evidence = evidenceStore;
+        if (cat && evidence != null) {
+            Instant seen = clock.instant();
+            dispatch(LaneScheduler.Lane.EVIDENCE, null, () -> {
+                try {
+                    // the full-resolution frame, not the preprocessed one
+                    evidence.record(camera.getCameraId(), seen, CAT_CONFIDENCE_THRESHOLD, alarmStatus, frame.image());
+                } catch (RuntimeException ignored) {
+                    // evidence is best effort; the verdict has already been applied
+                }
+            });
         }
-        statusListeners.forEach(sl -> {
-            try { sl.catDetected(cat); } catch (Exception ignored) {}
-        });
+    }
+
+    private void catDetected(boolean cat) {
+        // Requirements 7 and 8
+        applyRules(repo.getArmingStatus(), cat ? AlarmRules.Event.CAT_DETECTED : AlarmRules.Event.NO_CAT);
+        notifyListeners(LaneScheduler.Lane.ALARM, null, sl -> sl.catDetected(cat));
     }
 }
@@ -0,0 +1,282 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filters raw sensor events before they reach SecurityService.
+ * <ul>
+ *     <li>Activations pass straight through, so alarm-relevant events are never delayed.</li>
+ *     <li>A deactivation within the debounce window of the last forwarded change is held back.
+ *     If the sensor turns active again before the window ends, neither event is forwarded.</li>
+ *     <li>A sensor that toggles too often within the flap window is quarantined: its first
+ *     activation is forwarded, then it is held active until the quarantine ends.</li>
+ * </ul>
+ * Held-back changes are forwarded by {@link #flush()}, which {@link #start()} runs every
+ * {@link #FLUSH_MILLIS} ms; tests call it after moving their clock instead. When arming resets
+ * every sensor to inactive, the debouncer takes that as forwarded, so the next activation of any
+ * sensor goes through even if the sensor is quarantined. Sensors are removed through
+ * {@link #removeSensor(Sensor)}, so nothing held back for them is forwarded later.
+ *
+ * Per-sensor state lives in parallel primitive arrays indexed by a slot number, so handling an
+ * event allocates nothing once a sensor has been seen.
+ */
+public class SensorDebouncer implements AutoCloseable {
+
+    public static final long FLUSH_MILLIS = 100;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final SecurityService securityService;
+    private final Clock clock;
+
+    // per-type settings, indexed by SensorType ordinal
+    private final long[] debounceMillis = new long[SensorType.values().length];
+    private final int[] flapThreshold = new int[SensorType.values().length];
+    private final long[] flapWindowMillis = new long[SensorType.values().length];
+    private final long[] quarantineMillis = new long[SensorType.values().length];
+
+    // per-sensor state, indexed by slot
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private Sensor[] sensors = new Sensor[INITIAL_CAPACITY];
+    private boolean[] rawActive = new boolean[INITIAL_CAPACITY];
+    private boolean[] forwardedActive = new boolean[INITIAL_CAPACITY];
+    private boolean[] deactivationHeld = new boolean[INITIAL_CAPACITY];
+    private long[] lastForwardMillis = new long[INITIAL_CAPACITY];
+    private long[] flapWindowStart = new long[INITIAL_CAPACITY];
+    private int[] flapCount = new int[INITIAL_CAPACITY];
+    private long[] quarantinedUntil = new long[INITIAL_CAPACITY];
+
+    // SecurityService's sensor reset count when the per-sensor state was last in step with it
+    private long sensorResets;
+    private ScheduledExecutorService flusher;
+
+    private long eventsReceived;
+    private long eventsForwarded;
+    private long quarantines;
+
+    public SensorDebouncer(SecurityService securityService) {
+        this(securityService, Clock.systemUTC());
+    }
+
+    public SensorDebouncer(SecurityService securityService, Clock clock) {
+        this.securityService = securityService;
+        this.clock = clock;
+        this.sensorResets = securityService.getSensorResets();
+        // contact sensors bounce briefly; motion sensors retrigger for a couple of seconds
+        setWindows(SensorType.DOOR, Duration.ofMillis(500), 10, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        setWindows(SensorType.WINDOW, Duration.ofMillis(500), 10, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        setWindows(SensorType.MOTION, Duration.ofSeconds(2), 20, Duration.ofSeconds(30), Duration.ofMinutes(2));
+    }
+
+    /**
+     * Configures the filtering for one sensor type.
+     * @param debounce Minimum time between a forwarded change and a forwarded deactivation
+     * @param flapThreshold Number of raw toggles within the flap window that quarantines a sensor
+     * @param flapWindow Window in which toggles are counted
+     * @param quarantine How long a flapping sensor stays quarantined
+     */
+    public synchronized void setWindows(SensorType type, Duration debounce, int flapThreshold,
+                                        Duration flapWindow, Duration quarantine) {
+        int t = type.ordinal();
+        this.debounceMillis[t] = debounce.toMillis();
+        this.flapThreshold[t] = flapThreshold;
+        this.flapWindowMillis[t] = flapWindow.toMillis();
+        this.quarantineMillis[t] = quarantine.toMillis();
+    }
+
+    /**
+     * Flushes every {@link #FLUSH_MILLIS} ms on a daemon thread until {@link #close()}.
+     */
+    public synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sensor-debounce");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleAtFixedRate(() -> {
+            try {
+                flush();
+            } catch (RuntimeException ignored) {
+                // a failed flush must not end the schedule; the held change is retried
+            }
+        }, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops flushing. Changes still held back are not forwarded.
+     */
+    @Override
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+    }
+
+    /**
+     * Accepts a raw event from a sensor and forwards it to SecurityService if it passes the filters.
+     */
+    public synchronized void changeSensorActivationStatus(Sensor sensor, boolean active) {
+        followSensorResets();
+        long now = clock.millis();
+        int slot = slotFor(sensor);
+        int type = sensor.getSensorType().ordinal();
+        eventsReceived++;
+
+        if (rawActive[slot] != active) {
+            rawActive[slot] = active;
+            countToggle(slot, type, now);
+        }
+
+        if (active) {
+            deactivationHeld[slot] = false;
+            boolean quarantined = now < quarantinedUntil[slot];
+            // a repeated activation is forwarded too (it escalates a pending alarm), but not from a bouncing sensor
+            if (!forwardedActive[slot] || (!quarantined && now - lastForwardMillis[slot] >= debounceMillis[type])) {
+                forward(slot, true, now);
+            }
+        } else if (forwardedActive[slot]) {
+            if (now < quarantinedUntil[slot] || now - lastForwardMillis[slot] < debounceMillis[type]) {
+                deactivationHeld[slot] = true;
+            } else {
+                forward(slot, false, now);
+            }
+        }
+    }
+
+    /**
+     * Forwards deactivations whose debounce window has passed and releases sensors whose
+     * quarantine has ended.
+     */
+    public synchronized void flush() {
+        followSensorResets();
+        long now = clock.millis();
+        for (int slot = 0; slot < slots.size(); slot++) {
+            if (!deactivationHeld[slot]) {
+                continue;
+            }
+            int type = sensors[slot].getSensorType().ordinal();
+            if (now >= quarantinedUntil[slot] && now - lastForwardMillis[slot] >= debounceMillis[type]) {
+                deactivationHeld[slot] = false;
+                forward(slot, false, now);
+            }
+        }
+    }
+
+    /**
+     * Removes the sensor from SecurityService and forgets it here, so a deactivation still held
+     * back cannot be forwarded afterwards and bring the sensor back into the repository.
+     */
+    public synchronized void removeSensor(Sensor sensor) {
+        Integer slot = slots.remove(sensor.getSensorId());
+        if (slot != null) {
+            // keep the slots dense: the last one moves into the gap
+            int last = slots.size();
+            if (slot != last) {
+                sensors[slot] = sensors[last];
+                rawActive[slot] = rawActive[last];
+                forwardedActive[slot] = forwardedActive[last];
+                deactivationHeld[slot] = deactivationHeld[last];
+                lastForwardMillis[slot] = lastForwardMillis[last];
+                flapWindowStart[slot] = flapWindowStart[last];
+                flapCount[slot] = flapCount[last];
+                quarantinedUntil[slot] = quarantinedUntil[last];
+                slots.put(sensors[slot].getSensorId(), slot);
+            }
+            sensors[last] = null;
+            deactivationHeld[last] = false;
+            flapCount[last] = 0;
+            quarantinedUntil[last] = 0;
+        }
+        securityService.removeSensor(sensor);
+    }
+
+    public synchronized boolean isQuarantined(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        return slot != null && clock.millis() < quarantinedUntil[slot];
+    }
+
+    public synchronized long getEventsReceived() { return eventsReceived; }
+    public synchronized long getEventsForwarded() { return eventsForwarded; }
+    public synchronized long getEventsSuppressed() { return eventsReceived - eventsForwarded; }
+    public synchronized long getQuarantines() { return quarantines; }
+
+    /**
+     * Arming set every sensor inactive behind the debouncer's back. Nothing is forwarded as
+     * active any more, and held deactivations have nothing left to deactivate.
+     */
+    private void followSensorResets() {
+        long resets = securityService.getSensorResets();
+        if (resets == sensorResets) {
+            return;
+        }
+        sensorResets = resets;
+        Arrays.fill(forwardedActive, false);
+        Arrays.fill(deactivationHeld, false);
+    }
+
+    private void countToggle(int slot, int type, long now) {
+        if (now - flapWindowStart[slot] > flapWindowMillis[type]) {
+            flapWindowStart[slot] = now;
+            flapCount[slot] = 0;
+        }
+        if (++flapCount[slot] >= flapThreshold[type] && now >= quarantinedUntil[slot]) {
+            quarantinedUntil[slot] = now + quarantineMillis[type];
+            quarantines++;
+        }
+    }
+
+    private void forward(int slot, boolean active, long now) {
+        forwardedActive[slot] = active;
+        lastForwardMillis[slot] = now;
+        eventsForwarded++;
+        securityService.changeSensorActivationStatus(sensors[slot], active);
+    }
+
+    private int slotFor(Sensor sensor) {
+        Integer slot = slots.get(sensor.getSensorId());
+        if (slot != null) {
+            // always forward to the latest instance the caller handed us
+            sensors[slot] = sensor;
+            return slot;
+        }
+        int s = slots.size();
+        if (s == sensors.length) {
+            grow();
+        }
+        slots.put(sensor.getSensorId(), s);
+        sensors[s] = sensor;
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        rawActive[s] = active;
+        forwardedActive[s] = active;
+        lastForwardMillis[s] = Long.MIN_VALUE / 2;
+        flapWindowStart[s] = Long.MIN_VALUE / 2;
+        return s;
+    }
+
+    private void grow() {
+        int capacity = sensors.length * 2;
+        sensors = Arrays.copyOf(sensors, capacity);
+        rawActive = Arrays.copyOf(rawActive, capacity);
+        forwardedActive = Arrays.copyOf(forwardedActive, capacity);
+        deactivationHeld = Arrays.copyOf(deactivationHeld, capacity);
+        lastForwardMillis = Arrays.copyOf(lastForwardMillis, capacity);
+        flapWindowStart = Arrays.copyOf(flapWindowStart, capacity);
+        flapCount = Arrays.copyOf(flapCount, capacity);
+        quarantinedUntil = Arrays.copyOf(quarantinedUntil, capacity);
+    }
+}
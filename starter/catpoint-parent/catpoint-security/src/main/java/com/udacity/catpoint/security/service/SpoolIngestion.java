@@ -0,0 +1,344 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageDecoder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds camera frames that are dropped into a spool directory through SecurityService.
+ *
+ * Frames pass four stages connected by bounded queues: a WatchService thread detects new files,
+ * a pool decodes them, a pool classifies them, and a single thread applies the verdicts. Every
+ * stage is sized on its own, and a full queue makes the stage before it wait, so a burst of
+ * frames is worked off at the speed of the slowest stage without unbounded memory.
+ *
+ * A file named {@code porch_000123.jpg} is a frame from camera "porch"; names without an
+ * underscore belong to {@link SecurityService#DEFAULT_CAMERA_ID}. Files starting with a dot
+ * or ending in .tmp or .part are still being written and are skipped, so cameras should write
+ * under such a name and rename when done. Decoded files are deleted; files that cannot be
+ * decoded are left in place and counted as failed once, until they are modified. A file seen by
+ * both the startup scan and an event is only counted once. Frames that finish classification
+ * after a newer frame of the same camera are dropped as stale.
+ */
+public class SpoolIngestion implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /**
+     * Counters for one stage.
+     * @param queueDepth Items waiting for the stage
+     * @param processed Items the stage finished, including failures
+     * @param perSecond Average throughput since the pipeline started
+     */
+    public record StageStats(String name, int threads, int queueDepth, int queueCapacity,
+                             long processed, long failed, double perSecond) {
+    }
+
+    private record Frame(long seq, String cameraId, Path file, BufferedImage image, boolean cat) {
+    }
+
+    // decode result for a file that was detected twice and already consumed the first time
+    private static final Frame DUPLICATE = new Frame(-1, null, null, null, false);
+
+    private final Path spool;
+    private final SecurityService securityService;
+    private final WatchService watcher;
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    // files that could not be decoded, with their modification time then
+    private final Map<Path, FileTime> unreadable = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<String, Long> lastApplied = new HashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private long nextSeq;
+    private volatile long startNanos;
+    private volatile boolean closed;
+
+    private final Stage detect;
+    private final Stage decode;
+    private final Stage classify;
+    private final Stage apply;
+
+    public SpoolIngestion(Path spool, SecurityService securityService) {
+        this(spool, securityService, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param decodeThreads Threads decoding JPEG files
+     * @param classifyThreads Threads waiting on the image service
+     * @param queueCapacity Frames each stage may have waiting
+     */
+    public SpoolIngestion(Path spool, SecurityService securityService, int decodeThreads, int classifyThreads, int queueCapacity) {
+        if (decodeThreads < 1 || classifyThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Threads and queue capacity must be positive");
+        }
+        this.spool = spool;
+        this.securityService = securityService;
+        try {
+            Files.createDirectories(spool);
+            watcher = spool.getFileSystem().newWatchService();
+            spool.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not watch spool directory " + spool, e);
+        }
+        detect = new Stage("detect", 1, null);
+        decode = new Stage("decode", decodeThreads, new ArrayBlockingQueue<>(queueCapacity));
+        classify = new Stage("classify", classifyThreads, new ArrayBlockingQueue<>(queueCapacity));
+        apply = new Stage("apply", 1, new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /**
+     * Queues the frames already in the spool and starts watching for new ones.
+     */
+    public synchronized void start() {
+        if (startNanos != 0) {
+            throw new IllegalStateException("Already started");
+        }
+        startNanos = System.nanoTime();
+        startThreads(detect, this::watch);
+        startThreads(decode, () -> run(decode, this::decodeFrame));
+        startThreads(classify, () -> run(classify, this::classifyFrame));
+        startThreads(apply, () -> run(apply, this::applyFrame));
+    }
+
+    public List<StageStats> getStats() {
+        double seconds = startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1e9;
+        return List.of(detect.stats(seconds), decode.stats(seconds), classify.stats(seconds), apply.stats(seconds));
+    }
+
+    /**
+     * @return Frames detected whose verdict has not been applied yet
+     */
+    public int getPendingFrames() {
+        return pending.get();
+    }
+
+    /**
+     * Waits until every detected frame has been applied, dropped or has failed.
+     * @return false if frames were still pending when the timeout ran out
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+            // the watch thread stops either way
+        }
+        threads.forEach(Thread::interrupt);
+    }
+
+    /* ------------ Stages ------------ */
+
+    private void watch() {
+        scanSpool();
+        try {
+            while (!closed) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // events were lost, probably while we waited for the decoders
+                        scanSpool();
+                    } else {
+                        offer(spool.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    return; // spool directory is gone
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void scanSpool() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spool)) {
+            for (Path file : files) {
+                offer(file);
+            }
+        } catch (IOException e) {
+            detect.failed.increment();
+        }
+    }
+
+    private void offer(Path file) {
+        if (!isFrame(file)) {
+            return;
+        }
+        FileTime failed = unreadable.get(file);
+        if (failed != null && failed.equals(lastModified(file))) {
+            return; // still the file that could not be decoded
+        }
+        if (!queued.add(file)) {
+            return;
+        }
+        pending.incrementAndGet();
+        detect.processed.increment();
+        try {
+            // blocks while the decoders are behind; the watch service buffers meanwhile
+            decode.queue.put(new Frame(nextSeq++, cameraId(file), file, null, false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Frame decodeFrame(Frame frame) throws Exception {
+        try {
+            FileTime modified = lastModified(frame.file());
+            if (modified == null) {
+                return DUPLICATE; // seen twice, by a rescan and an event, and already consumed
+            }
+            BufferedImage image;
+            try {
+                image = ImageDecoder.decodeFullResolution(frame.file());
+            } catch (Exception e) {
+                unreadable.put(frame.file(), modified);
+                throw e;
+            }
+            unreadable.remove(frame.file());
+            Files.deleteIfExists(frame.file());
+            return new Frame(frame.seq(), frame.cameraId(), frame.file(), image, false);
+        } finally {
+            queued.remove(frame.file());
+        }
+    }
+
+    private Frame classifyFrame(Frame frame) {
+        boolean cat = securityService.classify(frame.cameraId(), frame.image());
+        return new Frame(frame.seq(), frame.cameraId(), frame.file(), frame.image(), cat);
+    }
+
+    private Frame applyFrame(Frame frame) {
+        // only the apply thread touches lastApplied
+        Long last = lastApplied.get(frame.cameraId());
+        if (last == null || last < frame.seq()) {
+            lastApplied.put(frame.cameraId(), frame.seq());
+            securityService.applyVerdict(frame.cameraId(), frame.image(), frame.cat());
+        }
+        return null;
+    }
+
+    private interface Step {
+        Frame process(Frame frame) throws Exception;
+    }
+
+    /**
+     * Worker loop: takes frames from the stage's queue and hands the result to the next stage.
+     */
+    private void run(Stage stage, Step step) {
+        Stage next = stage == decode ? classify : stage == classify ? apply : null;
+        try {
+            while (!closed) {
+                Frame frame = stage.queue.take();
+                Frame result;
+                try {
+                    result = step.process(frame);
+                } catch (Exception e) {
+                    stage.failed.increment();
+                    result = null;
+                }
+                if (result == DUPLICATE) {
+                    // only the first detection of the file counts
+                    detect.processed.decrement();
+                    pending.decrementAndGet();
+                    continue;
+                }
+                stage.processed.increment();
+                if (result != null && next != null) {
+                    next.queue.put(result);
+                } else {
+                    pending.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void startThreads(Stage stage, Runnable loop) {
+        for (int i = 1; i <= stage.threads; i++) {
+            Thread t = new Thread(loop, "spool-" + stage.name + "-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null; // gone
+        }
+    }
+
+    private static boolean isFrame(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part")) {
+            return false;
+        }
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    private static String cameraId(Path file) {
+        String name = file.getFileName().toString();
+        int underscore = name.indexOf('_');
+        return underscore > 0 ? name.substring(0, underscore) : SecurityService.DEFAULT_CAMERA_ID;
+    }
+
+    private static final class Stage {
+        final String name;
+        final int threads;
+        final BlockingQueue<Frame> queue;
+        final LongAdder processed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        Stage(String name, int threads, BlockingQueue<Frame> queue) {
+            this.name = name;
+            this.threads = threads;
+            this.queue = queue;
+        }
+
+        StageStats stats(double seconds) {
+            long done = processed.sum();
+            int depth = queue == null ? 0 : queue.size();
+            int capacity = queue == null ? 0 : depth + queue.remainingCapacity();
+            return new StageStats(name, threads, depth, capacity, done, failed.sum(), seconds > 0 ? done / seconds : 0);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 module com.udacity.catpoint.security {
     requires java.desktop;
     requires java.prefs;
+    requires java.sql;                         // JdbcSecurityRepository
+    requires java.net.http;                    // AlarmNotifier
+    requires java.management;                  // ScanScheduler's CPU budget
     requires com.google.common;                     // for Swing UI
     requires com.google.gson;                  // for serialization
     requires com.udacity.catpoint.image;       // depends on image module
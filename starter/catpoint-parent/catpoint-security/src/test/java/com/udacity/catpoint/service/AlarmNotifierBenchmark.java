@@ -0,0 +1,91 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.security.service.AlarmNotifier;
+import com.udacity.catpoint.security.service.AlarmNotifier.Destination;
+import com.udacity.catpoint.security.service.SecurityEvent;
+import com.udacity.catpoint.security.service.SecurityEventPublisher;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures AlarmNotifier against two local endpoints. First the delivery rate of a burst of
+ * alarm transitions, one notification per request against batches of up to 256. Then how long
+ * setAlarmStatus takes while one endpoint hangs, against no notifier at all: the notifier must
+ * not hold the caller up. Not a unit test; run the main method from the IDE.
+ */
+public class AlarmNotifierBenchmark {
+
+    private static final int BURST = 5_000;
+    private static final int CALLS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d cores, burst of %d transitions to 2 destinations%n", Runtime.getRuntime().availableProcessors(), BURST);
+        System.out.printf("%-22s %12s %10s%n", "", "delivered/s", "requests");
+        burst("1 per request", 1, Duration.ZERO);
+        burst("batches of 256", AlarmNotifier.DEFAULT_MAX_BATCH, AlarmNotifier.DEFAULT_LINGER);
+
+        System.out.printf("%nsetAlarmStatus, %d calls%n", CALLS);
+        System.out.printf("%-22s %10s %10s %10s%n", "", "p50 us", "p99 us", "max us");
+        setAlarmStatus("no notifier", false);
+        setAlarmStatus("destination hanging", true);
+    }
+
+    private static void burst(String label, int maxBatch, Duration linger) throws Exception {
+        Path dir = Files.createTempDirectory("outbox");
+        try (NotificationEndpointStub pager = new NotificationEndpointStub();
+             NotificationEndpointStub center = new NotificationEndpointStub();
+             AlarmNotifier notifier = new AlarmNotifier(dir.resolve("outbox.bin"),
+                     List.of(new Destination("pager", pager.getEndpoint()), new Destination("center", center.getEndpoint())),
+                     maxBatch, linger, AlarmNotifier.DEFAULT_INITIAL_BACKOFF, AlarmNotifier.DEFAULT_MAX_BACKOFF)) {
+            // the default executor, as in the app
+            SecurityEventPublisher publisher = new SecurityEventPublisher();
+            notifier.subscribeTo(publisher);
+            Instant time = Instant.now();
+            long start = System.nanoTime();
+            for (int i = 0; i < BURST; i++) {
+                AlarmStatus status = AlarmStatus.values()[i % AlarmStatus.values().length];
+                publisher.publish(seq -> new SecurityEvent.AlarmChanged(seq, time, status));
+            }
+            if (!notifier.awaitDelivered(Duration.ofMinutes(5))) {
+                throw new IllegalStateException("not delivered: " + notifier.getStats());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-22s %12.0f %10d%n", label, BURST / seconds, pager.getRequests() + center.getRequests());
+        }
+    }
+
+    private static void setAlarmStatus(String label, boolean notify) throws Exception {
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), (image, threshold) -> false, 1, new TestClock());
+        Path dir = Files.createTempDirectory("outbox");
+        try (NotificationEndpointStub pager = new NotificationEndpointStub();
+             NotificationEndpointStub center = new NotificationEndpointStub()) {
+            AlarmNotifier notifier = null;
+            if (notify) {
+                pager.hang();
+                notifier = new AlarmNotifier(dir.resolve("outbox.bin"),
+                        List.of(new Destination("pager", pager.getEndpoint()), new Destination("center", center.getEndpoint())));
+                notifier.subscribeTo(service.getEventPublisher());
+            }
+            long[] nanos = new long[CALLS];
+            for (int i = 0; i < CALLS; i++) {
+                AlarmStatus status = i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM;
+                long start = System.nanoTime();
+                service.setAlarmStatus(status);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-22s %10.1f %10.1f %10.1f%n", label,
+                    nanos[CALLS / 2] / 1e3, nanos[(int) (CALLS * 0.99)] / 1e3, nanos[CALLS - 1] / 1e3);
+            if (notifier != null) {
+                notifier.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.security.service.AlarmNotifier;
+import com.udacity.catpoint.security.service.AlarmNotifier.Destination;
+import com.udacity.catpoint.security.service.AlarmNotifier.DestinationStats;
+import com.udacity.catpoint.security.service.SecurityEvent;
+import com.udacity.catpoint.security.service.SecurityEventPublisher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlarmNotifierTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T02:13:00Z");
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    private static AlarmNotifier notifier(Path outbox, Destination... destinations) {
+        return new AlarmNotifier(outbox, List.of(destinations), 16, Duration.ofMillis(20), Duration.ofMillis(5), Duration.ofMillis(50));
+    }
+
+    /** Delivers on the publishing thread, which keeps batch sizes predictable. */
+    private static SecurityEventPublisher publisher(AlarmNotifier notifier) {
+        SecurityEventPublisher publisher = new SecurityEventPublisher(Runnable::run);
+        notifier.subscribeTo(publisher);
+        return publisher;
+    }
+
+    private static void publishAlarms(SecurityEventPublisher publisher, int count) {
+        for (int i = 0; i < count; i++) {
+            AlarmStatus status = AlarmStatus.values()[i % AlarmStatus.values().length];
+            publisher.publish(seq -> new SecurityEvent.AlarmChanged(seq, NOW, status));
+        }
+    }
+
+    private static List<String> ids(long epoch, int from, int to) {
+        return IntStream.rangeClosed(from, to).mapToObj(seq -> epoch + "-" + seq).toList();
+    }
+
+    @Test
+    void alarms_reachEveryDestination_inOrder_inBatches() throws Exception {
+        try (NotificationEndpointStub pager = new NotificationEndpointStub();
+             NotificationEndpointStub center = new NotificationEndpointStub();
+             AlarmNotifier notifier = notifier(dir.resolve("outbox.bin"),
+                     new Destination("pager", pager.getEndpoint()), new Destination("center", center.getEndpoint()))) {
+            publishAlarms(publisher(notifier), 100);
+
+            assertTrue(notifier.awaitDelivered(TIMEOUT));
+            for (NotificationEndpointStub endpoint : List.of(pager, center)) {
+                assertEquals(ids(1, 1, 100), endpoint.getReceived());
+                assertEquals(0, endpoint.getDuplicates());
+                assertTrue(endpoint.getLargestBatch() > 1 && endpoint.getLargestBatch() <= 16);
+                assertTrue(endpoint.getRequests() < 100);
+            }
+            for (DestinationStats stats : notifier.getStats()) {
+                assertEquals(100, stats.delivered());
+                assertEquals(0, stats.pending());
+            }
+        }
+    }
+
+    @Test
+    void everyTransition_isDelivered_whenThePublisherDeliversAsynchronously() throws Exception {
+        try (NotificationEndpointStub pager = new NotificationEndpointStub();
+             AlarmNotifier notifier = notifier(dir.resolve("outbox.bin"), new Destination("pager", pager.getEndpoint()));
+             SecurityEventPublisher publisher = new SecurityEventPublisher()) {
+            notifier.subscribeTo(publisher);
+            UUID door = UUID.randomUUID();
+            // far more alarm and sensor events than the subscriber buffer holds, published faster
+            // than the default executor delivers them
+            int transitions = 5_000;
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < transitions; i++) {
+                AlarmStatus status = AlarmStatus.values()[i % AlarmStatus.values().length];
+                boolean active = i % 2 == 0;
+                publisher.publish(seq -> {
+                    expected.add("1-" + seq);
+                    return new SecurityEvent.AlarmChanged(seq, NOW, status);
+                });
+                publisher.publish(seq -> new SecurityEvent.SensorChanged(seq, NOW, door, "Door", active));
+            }
+
+            assertTrue(notifier.awaitDelivered(TIMEOUT));
+            assertEquals(expected, pager.getReceived());
+            assertEquals(transitions, notifier.getStats().get(0).delivered());
+        }
+    }
+
+    @Test
+    void failedBatches_areRetried_andRefusedOnesAreNot() throws Exception {
+        try (NotificationEndpointStub flaky = new NotificationEndpointStub();
+             NotificationEndpointStub refusing = new NotificationEndpointStub();
+             AlarmNotifier notifier = notifier(dir.resolve("outbox.bin"),
+                     new Destination("flaky", flaky.getEndpoint()), new Destination("refusing", refusing.getEndpoint()))) {
+            flaky.failNext(3, 503);
+            flaky.loseNextAnswers(1);
+            refusing.failNext(Integer.MAX_VALUE, 400);
+            publishAlarms(publisher(notifier), 20);
+
+            assertTrue(notifier.awaitDelivered(TIMEOUT));
+            // the batch whose answer was lost arrives twice, and the destination drops the copy
+            assertEquals(ids(1, 1, 20), flaky.getReceived());
+            assertTrue(flaky.getDuplicates() > 0);
+            DestinationStats flakyStats = notifier.getStats().get(0);
+            assertEquals(20, flakyStats.delivered());
+            assertEquals(4, flakyStats.retries());
+
+            DestinationStats refusingStats = notifier.getStats().get(1);
+            assertEquals(20, refusingStats.rejected());
+            assertEquals(0, refusingStats.retries());
+            assertTrue(refusing.getReceived().isEmpty());
+        }
+    }
+
+    @Test
+    void failureInsideTheNotifier_isCountedAndRetried_andCloseUnsubscribes() throws Exception {
+        SecurityEventPublisher publisher = new SecurityEventPublisher(Runnable::run);
+        // HttpClient refuses the scheme with an IllegalArgumentException rather than an IOException
+        try (AlarmNotifier notifier = notifier(dir.resolve("outbox.bin"),
+                new Destination("pager", URI.create("ftp://pager.invalid/alarms")))) {
+            notifier.subscribeTo(publisher);
+            publishAlarms(publisher, 1);
+
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (notifier.getStats().get(0).failures() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            DestinationStats stats = notifier.getStats().get(0);
+            assertTrue(stats.failures() >= 3);
+            assertEquals(1, stats.pending());
+        }
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void undelivered_surviveRestart_andAreSentBeforeNewOnes() throws Exception {
+        Path outbox = dir.resolve("outbox.bin");
+        NotificationEndpointStub down = new NotificationEndpointStub();
+        Destination unreachable = new Destination("pager", down.getEndpoint());
+        down.close();
+
+        try (AlarmNotifier notifier = notifier(outbox, unreachable)) {
+            publishAlarms(publisher(notifier), 5);
+            assertFalse(notifier.awaitDelivered(Duration.ofMillis(200)));
+        }
+
+        try (NotificationEndpointStub pager = new NotificationEndpointStub();
+             AlarmNotifier notifier = notifier(outbox, new Destination("pager", pager.getEndpoint()))) {
+            publishAlarms(publisher(notifier), 2);
+
+            assertTrue(notifier.awaitDelivered(TIMEOUT));
+            // sequences restart with the app; the epoch keeps ids apart
+            List<String> expected = new ArrayList<>(ids(1, 1, 5));
+            expected.addAll(ids(2, 1, 2));
+            assertEquals(expected, pager.getReceived());
+        }
+
+        try (AlarmNotifier notifier = notifier(outbox, unreachable)) {
+            assertEquals(0, notifier.getStats().get(0).pending());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.security.service.AlarmRules;
+import com.udacity.catpoint.security.service.AlarmRules.Event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AlarmRulesTest {
+
+    /**
+     * The if and switch chains SecurityService used before the rules were a table, kept as
+     * the reference the compiled table has to agree with.
+     */
+    private static AlarmStatus handWritten(ArmingStatus arming, AlarmStatus alarm, Event event, int guards) {
+        boolean anyActive = (guards & AlarmRules.ANY_SENSOR_ACTIVE) != 0;
+        boolean catVisible = (guards & AlarmRules.CAT_VISIBLE) != 0;
+        boolean exitDelay = (guards & AlarmRules.EXIT_DELAY_ACTIVE) != 0;
+        switch (event) {
+            case ARMING_CHANGED:
+                if (arming == ArmingStatus.DISARMED) {
+                    return AlarmStatus.NO_ALARM;
+                }
+                return arming == ArmingStatus.ARMED_HOME && catVisible ? AlarmStatus.ALARM : null;
+            case SENSOR_REACTIVATED:
+                if (alarm == AlarmStatus.ALARM) {
+                    return null;
+                }
+                return alarm == AlarmStatus.PENDING_ALARM ? AlarmStatus.ALARM : null;
+            case SENSOR_ACTIVATED:
+                if (alarm == AlarmStatus.ALARM || arming == ArmingStatus.DISARMED || exitDelay) {
+                    return null;
+                }
+                return alarm == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM;
+            case SENSOR_DEACTIVATED:
+                return alarm == AlarmStatus.PENDING_ALARM && !anyActive ? AlarmStatus.NO_ALARM : null;
+            case CAT_DETECTED:
+                return arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : null;
+            case NO_CAT:
+                return anyActive ? null : AlarmStatus.NO_ALARM;
+            case ENTRY_DELAY_EXPIRED:
+                return alarm == AlarmStatus.PENDING_ALARM && arming != ArmingStatus.DISARMED ? AlarmStatus.ALARM : null;
+            case EXIT_DELAY_EXPIRED:
+                return anyActive && arming != ArmingStatus.DISARMED && alarm == AlarmStatus.NO_ALARM
+                        ? AlarmStatus.PENDING_ALARM : null;
+            default:
+                throw new AssertionError(event);
+        }
+    }
+
+    @Test
+    void defaultRules_matchHandWrittenLogic_inEveryState() {
+        AlarmRules rules = new AlarmRules();
+        for (ArmingStatus arming : ArmingStatus.values()) {
+            for (AlarmStatus alarm : AlarmStatus.values()) {
+                for (Event event : Event.values()) {
+                    for (int guards = 0; guards < 8; guards++) {
+                        assertEquals(handWritten(arming, alarm, event, guards), rules.next(arming, alarm, event, guards),
+                                arming + " " + alarm + " " + event + " guards=" + guards);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void guardsUsed_coversEveryGuardThatChangesTheOutcome() {
+        AlarmRules rules = new AlarmRules();
+        for (ArmingStatus arming : ArmingStatus.values()) {
+            for (AlarmStatus alarm : AlarmStatus.values()) {
+                for (Event event : Event.values()) {
+                    int used = rules.guardsUsed(arming, alarm, event);
+                    for (int guards = 0; guards < 8; guards++) {
+                        // unused guards may be left out without changing the answer
+                        assertEquals(rules.next(arming, alarm, event, guards), rules.next(arming, alarm, event, guards & used));
+                    }
+                }
+            }
+        }
+        assertEquals(0, rules.guardsUsed(ArmingStatus.DISARMED, AlarmStatus.NO_ALARM, Event.SENSOR_ACTIVATED));
+        assertEquals(AlarmRules.EXIT_DELAY_ACTIVE,
+                rules.guardsUsed(ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, Event.SENSOR_ACTIVATED));
+    }
+
+    @Test
+    void customRules_firstMatchWins_andUnmatchedKeepsTheAlarm() {
+        AlarmRules rules = new AlarmRules(List.of(
+                new AlarmRules.Rule(EnumSet.of(Event.CAT_DETECTED), EnumSet.of(ArmingStatus.ARMED_AWAY),
+                        EnumSet.allOf(AlarmStatus.class), 0, 0, null),
+                new AlarmRules.Rule(EnumSet.of(Event.CAT_DETECTED), EnumSet.allOf(ArmingStatus.class),
+                        EnumSet.allOf(AlarmStatus.class), 0, 0, AlarmStatus.PENDING_ALARM)));
+
+        assertNull(rules.next(ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, Event.CAT_DETECTED, 0));
+        assertEquals(AlarmStatus.PENDING_ALARM, rules.next(ArmingStatus.ARMED_HOME, AlarmStatus.NO_ALARM, Event.CAT_DETECTED, 0));
+        assertNull(rules.next(ArmingStatus.ARMED_HOME, AlarmStatus.NO_ALARM, Event.SENSOR_ACTIVATED, 0));
+    }
+}
@@ -0,0 +1,123 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.image.service.AwsImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives SecurityService.processImage through AwsImageService and the real SDK client against
+ * a local {@link RekognitionStub}, at several levels of concurrency, and prints throughput and
+ * p50/p99/p999 latency per level. Latencies are per processImage call, from the caller's view:
+ * JPEG encoding, request signing, SDK retries and applying the verdict are all included, and
+ * calls that still failed after the retries count with the time they took.
+ *
+ * The stub answers in a log-normal 40 ms (p99 about 130 ms) with 0.5% of calls taking 0.5-1.5 s,
+ * throttles 2% and fails 0.5% of calls, and sees a cat in 10% of frames. Not a unit test; run
+ * the main method from the IDE.
+ */
+public class AwsImageServiceBenchmark {
+
+    private static final int[] CONCURRENCY = {1, 4, 16, 48};
+    private static final int CALLS_PER_LEVEL = 2_000;
+    private static final int WARMUP_CALLS = 50;
+
+    public static void main(String[] args) throws Exception {
+        try (RekognitionStub stub = new RekognitionStub()) {
+            stub.setLatency(RekognitionStub.Latency.logNormal(40, 0.5)
+                    .withTail(0.005, RekognitionStub.Latency.uniform(500, 1_500)));
+            stub.setFailureRates(0.02, 0.005);
+            stub.setLabels(List.of(new RekognitionStub.Label("Cat", 96.1f),
+                    new RekognitionStub.Label("Furniture", 88.4f),
+                    new RekognitionStub.Label("Indoors", 71.0f)), 0.1);
+
+            BufferedImage frame = cameraFrame(640, 480);
+            System.out.printf("%d cores, %d calls per level, 640x480 frames%n",
+                    Runtime.getRuntime().availableProcessors(), CALLS_PER_LEVEL);
+            System.out.printf("%-11s %9s %8s %8s %8s %8s %7s%n", "concurrency", "calls/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "failed");
+            for (int concurrency : CONCURRENCY) {
+                run(stub, frame, concurrency);
+            }
+            System.out.printf("stub saw %d requests, %d throttled, %d failed%n", stub.getRequests(), stub.getThrottled(), stub.getFailed());
+        }
+    }
+
+    private static void run(RekognitionStub stub, BufferedImage frame, int concurrency) throws InterruptedException {
+        try (AwsImageService imageService = new AwsImageService(stub.clientProperties())) {
+            SecurityService service = new SecurityService(new FakeSecurityRepository(), imageService, 1, new TestClock());
+            for (int i = 0; i < WARMUP_CALLS; i++) {
+                call(service, "warmup", frame);
+            }
+
+            long[] latencies = new long[CALLS_PER_LEVEL];
+            AtomicInteger next = new AtomicInteger();
+            AtomicLong failures = new AtomicLong();
+            List<Thread> callers = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < concurrency; t++) {
+                String cameraId = "cam" + t;
+                Thread caller = new Thread(() -> {
+                    for (int i = next.getAndIncrement(); i < CALLS_PER_LEVEL; i = next.getAndIncrement()) {
+                        long began = System.nanoTime();
+                        if (!call(service, cameraId, frame)) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - began;
+                    }
+                });
+                callers.add(caller);
+                caller.start();
+            }
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-11d %9.1f %8.1f %8.1f %8.1f %8.1f %7d%n", concurrency, CALLS_PER_LEVEL / seconds,
+                    millis(latencies, 0.50), millis(latencies, 0.99), millis(latencies, 0.999),
+                    latencies[latencies.length - 1] / 1e6, failures.get());
+        }
+    }
+
+    /**
+     * @return false if the call failed after the SDK's retries
+     */
+    private static boolean call(SecurityService service, String cameraId, BufferedImage frame) {
+        try {
+            service.processImage(cameraId, frame);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /** Noisy picture, so the JPEG is about as large as a real camera frame. */
+    private static BufferedImage cameraFrame(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int i = 0; i < 400; i++) {
+                g.setColor(new Color(random.nextInt(0xFFFFFF)));
+                g.fillOval(random.nextInt(width), random.nextInt(height), 10 + random.nextInt(80), 10 + random.nextInt(80));
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
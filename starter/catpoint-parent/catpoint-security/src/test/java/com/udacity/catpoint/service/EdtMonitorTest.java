@@ -0,0 +1,113 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.security.application.EdtMonitor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import java.awt.EventQueue;
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs headless: invocation events, mouse events on lightweight components and secondary
+ * loops all go through the event queue without a display.
+ */
+class EdtMonitorTest {
+
+    static class CameraPanel extends JPanel {
+    }
+
+    private static void slowHandler(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** invokeAndWait returns before the dispatch is recorded; the next dispatch comes after it. */
+    private static void settle() throws Exception {
+        EventQueue.invokeAndWait(() -> { });
+    }
+
+    @Test
+    void slowEvent_isAStall_withStackSamplesOfTheHandler() throws Exception {
+        try (EdtMonitor monitor = EdtMonitor.install(Duration.ofMillis(50))) {
+            EventQueue.invokeAndWait(() -> { });
+            EventQueue.invokeAndWait(() -> slowHandler(200));
+            settle();
+
+            List<EdtMonitor.Stall> stalls = monitor.getStalls();
+            assertEquals(1, stalls.size());
+            EdtMonitor.Stall stall = stalls.get(0);
+            assertEquals("invokeLater", stall.source());
+            assertTrue(stall.durationMillis() >= 200);
+            assertFalse(stall.samples().isEmpty());
+            assertTrue(Arrays.stream(stall.samples().get(0)).anyMatch(f -> f.getMethodName().equals("slowHandler")));
+
+            assertTrue(monitor.getDispatched() >= 2);
+            assertEquals(1, monitor.getHistogram()[8]); // [128, 256) ms
+            assertEquals(256, monitor.getPercentileMillis(0.99));
+        }
+    }
+
+    @Test
+    void stalls_areChargedToTheirComponent_inItsPanel() throws Exception {
+        try (EdtMonitor monitor = EdtMonitor.install(Duration.ofMillis(20))) {
+            CameraPanel panel = new CameraPanel();
+            JButton scan = new JButton("Scan Picture");
+            panel.add(scan);
+            scan.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    slowHandler(40);
+                }
+            });
+            for (int i = 0; i < 3; i++) {
+                Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(
+                        new MouseEvent(scan, MouseEvent.MOUSE_CLICKED, System.currentTimeMillis(), 0, 1, 1, 1, false));
+            }
+            EventQueue.invokeAndWait(() -> slowHandler(30));
+            settle();
+
+            List<EdtMonitor.Offender> offenders = monitor.getWorstOffenders(10);
+            assertEquals("CameraPanel > JButton 'Scan Picture'", offenders.get(0).source());
+            assertEquals(3, offenders.get(0).stalls());
+            assertTrue(offenders.get(0).totalMillis() >= 120);
+            assertEquals("invokeLater", offenders.get(1).source());
+        }
+    }
+
+    @Test
+    void eventPumpingNestedEvents_isNotAStall_butTheNestedEventsAre() throws Exception {
+        try (EdtMonitor monitor = EdtMonitor.install(Duration.ofMillis(50))) {
+            EventQueue.invokeAndWait(() -> {
+                // what a modal dialog does until it is closed
+                SecondaryLoop dialog = Toolkit.getDefaultToolkit().getSystemEventQueue().createSecondaryLoop();
+                EventQueue.invokeLater(() -> slowHandler(5));
+                EventQueue.invokeLater(() -> {
+                    slowHandler(100);
+                    dialog.exit();
+                });
+                dialog.enter();
+            });
+            settle();
+
+            List<EdtMonitor.Stall> stalls = monitor.getStalls();
+            assertEquals(1, stalls.size());
+            // the nested 100 ms event, not the one that pumped it for longer
+            assertTrue(stalls.get(0).durationMillis() >= 100 && stalls.get(0).durationMillis() < 150);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.security.application.EdtStatusListener;
+import com.udacity.catpoint.security.application.StatusListener;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs headless, like EdtMonitorTest.
+ */
+class EdtStatusListenerTest {
+
+    @Test
+    void changesFromAnyThread_reachTheComponentOnTheEdt_inOrder() throws Exception {
+        List<String> calls = new ArrayList<>();
+        List<Boolean> onEdt = new ArrayList<>();
+        StatusListener panel = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                record("notify " + status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                record("cat " + catDetected);
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                record("sensors");
+            }
+
+            private void record(String call) {
+                calls.add(call);
+                onEdt.add(EventQueue.isDispatchThread());
+            }
+        };
+        StatusListener listener = new EdtStatusListener(panel);
+
+        Thread background = new Thread(() -> {
+            listener.notify(AlarmStatus.PENDING_ALARM);
+            listener.catDetected(true);
+        });
+        background.start();
+        background.join();
+        // queued behind the background thread's calls, even though it is made on the EDT
+        EventQueue.invokeAndWait(() -> listener.notify(AlarmStatus.ALARM));
+        listener.sensorStatusChanged();
+        EventQueue.invokeAndWait(() -> { });
+
+        assertEquals(List.of("notify PENDING_ALARM", "cat true", "notify ALARM", "sensors"), calls);
+        assertTrue(onEdt.stream().allMatch(b -> b));
+    }
+}
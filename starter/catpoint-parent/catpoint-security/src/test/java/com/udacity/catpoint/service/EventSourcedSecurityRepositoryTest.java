@@ -0,0 +1,150 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventSourcedSecurityRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private final TestClock clock = new TestClock();
+
+    @Test
+    void stateAt_returnsStateAsItWas() {
+        try (EventSourcedSecurityRepository repo = new EventSourcedSecurityRepository(dir.resolve("journal.bin"), clock, 10)) {
+            Instant beforeAnything = clock.instant().minusSeconds(1);
+            Sensor door = new Sensor("Front door", SensorType.DOOR);
+            repo.addSensor(door);
+            repo.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+            clock.advance(Duration.ofMinutes(13));
+            Instant doorOpened = clock.instant();
+            door.setActive(true);
+            repo.updateSensor(door);
+            repo.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+            clock.advance(Duration.ofMinutes(1));
+            repo.setAlarmStatus(AlarmStatus.ALARM);
+            repo.removeSensor(door);
+
+            SecurityState empty = repo.stateAt(beforeAnything);
+            assertTrue(empty.sensors().isEmpty());
+            assertEquals(ArmingStatus.DISARMED, empty.armingStatus());
+
+            SecurityState atOpening = repo.stateAt(doorOpened);
+            assertEquals(AlarmStatus.PENDING_ALARM, atOpening.alarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, atOpening.armingStatus());
+            assertTrue(atOpening.sensors().get(door.getSensorId()).getActive());
+
+            SecurityState justBefore = repo.stateAt(doorOpened.minusMillis(1));
+            assertEquals(AlarmStatus.NO_ALARM, justBefore.alarmStatus());
+            assertEquals(1, justBefore.sensors().size());
+            assertEquals(0, justBefore.sensors().getActiveCount());
+
+            SecurityState now = repo.stateAt(clock.instant());
+            assertEquals(AlarmStatus.ALARM, now.alarmStatus());
+            assertTrue(now.sensors().isEmpty());
+        }
+    }
+
+    @Test
+    void monthsOfHistory_matchRecordedStates_acrossCheckpointsAndReopen() {
+        Path journal = dir.resolve("journal.bin");
+        List<Instant> times = new ArrayList<>();
+        List<Integer> activeCounts = new ArrayList<>();
+        List<AlarmStatus> alarms = new ArrayList<>();
+
+        try (EventSourcedSecurityRepository repo = new EventSourcedSecurityRepository(journal, clock, 25)) {
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Sensor s = new Sensor("Sensor " + i, SensorType.values()[i % 3]);
+                sensors.add(s);
+                repo.addSensor(s);
+            }
+            // one change every ten minutes for 90 days
+            for (int i = 0; i < 90 * 24 * 6; i++) {
+                clock.advance(Duration.ofMinutes(10));
+                Sensor s = sensors.get(i % sensors.size());
+                s.setActive(!s.getActive());
+                repo.updateSensor(s);
+                if (i % 7 == 0) {
+                    repo.setAlarmStatus(AlarmStatus.values()[i % 3]);
+                }
+                if (i % 1000 == 0) {
+                    times.add(clock.instant());
+                    activeCounts.add(repo.getSensorSnapshot().getActiveCount());
+                    alarms.add(repo.getAlarmStatus());
+                }
+            }
+            assertTrue(repo.getCheckpointCount() > 500);
+        }
+
+        try (EventSourcedSecurityRepository reopened = new EventSourcedSecurityRepository(journal, clock, 25)) {
+            assertEquals(5, reopened.getSensors().size());
+            for (int i = 0; i < times.size(); i++) {
+                SecurityState state = reopened.stateAt(times.get(i));
+                assertEquals((int) activeCounts.get(i), state.sensors().getActiveCount());
+                assertEquals(alarms.get(i), state.alarmStatus());
+            }
+        }
+    }
+
+    @Test
+    void tornLastRecord_isDropped_onReopen() throws IOException {
+        Path journal = dir.resolve("journal.bin");
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        try (EventSourcedSecurityRepository repo = new EventSourcedSecurityRepository(journal, clock, 100)) {
+            repo.addSensor(door);
+            repo.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (EventSourcedSecurityRepository repo = new EventSourcedSecurityRepository(journal, clock, 100)) {
+            assertEquals(1, repo.getSensors().size());
+            repo.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            assertEquals(AlarmStatus.PENDING_ALARM, repo.stateAt(clock.instant()).alarmStatus());
+        }
+    }
+
+    @Test
+    void checkpointTornByACrash_isDropped_andTheEarlierOneUsed() throws IOException {
+        Path journal = dir.resolve("journal.bin");
+        try (EventSourcedSecurityRepository repo = new EventSourcedSecurityRepository(journal, clock, 100)) {
+            repo.addSensor(new Sensor("Front door", SensorType.DOOR));
+            repo.addSensor(new Sensor("Kitchen", SensorType.WINDOW));
+            repo.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        long beforeCheckpoint = Files.size(journal);
+        // reopening writes a checkpoint of the recovered state
+        new EventSourcedSecurityRepository(journal, clock, 100).close();
+        long afterCheckpoint = Files.size(journal);
+
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate((beforeCheckpoint + afterCheckpoint) / 2);
+        }
+        try (EventSourcedSecurityRepository repo = new EventSourcedSecurityRepository(journal, clock, 100)) {
+            assertEquals(2, repo.getSensors().size());
+            assertEquals(ArmingStatus.ARMED_HOME, repo.getArmingStatus());
+            assertEquals(2, repo.stateAt(clock.instant()).sensors().size());
+            // the opening checkpoint of each surviving session
+            assertEquals(2, repo.getCheckpointCount());
+        }
+    }
+}
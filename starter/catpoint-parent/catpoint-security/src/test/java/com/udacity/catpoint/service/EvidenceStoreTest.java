@@ -0,0 +1,101 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvidenceStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static ByteBuffer frame(int seed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Test
+    void find_returnsFramesInTimeRange_andSurvivesReopen() {
+        Path file = dir.resolve("evidence.ring");
+        Instant start = Instant.parse("2024-03-01T12:00:00Z");
+        try (EvidenceStore store = new EvidenceStore(file, 64 * 1024, 64)) {
+            for (int i = 0; i < 10; i++) {
+                store.append("cam-" + (i % 2), start.plusSeconds(i), 50.0f + i, AlarmStatus.ALARM, frame(i, 1000));
+            }
+        }
+        try (EvidenceStore store = new EvidenceStore(file, 64 * 1024, 64)) {
+            List<EvidenceStore.Evidence> found = store.find(start.plusSeconds(3), start.plusSeconds(6));
+            assertEquals(3, found.size());
+            EvidenceStore.Evidence first = found.get(0);
+            assertEquals(3, first.sequence());
+            assertEquals("cam-1", first.cameraId());
+            assertEquals(start.plusSeconds(3), first.time());
+            assertEquals(53.0f, first.confidence());
+            assertEquals(AlarmStatus.ALARM, first.alarmStatus());
+            assertArrayEquals(frame(3, 1000).array(), first.frame());
+            assertEquals(10, store.find(Instant.EPOCH, start.plusSeconds(60)).size());
+        }
+    }
+
+    @Test
+    void continuousCapture_keepsFileSize_andOnlyTheNewestFrames() throws IOException {
+        Path file = dir.resolve("evidence.ring");
+        Instant start = Instant.parse("2024-03-01T12:00:00Z");
+        try (EvidenceStore store = new EvidenceStore(file, 10_000, 16)) {
+            long size = Files.size(file);
+            for (int i = 0; i < 1000; i++) {
+                // uneven sizes, so records wrap at different points
+                store.append("cam", start.plusSeconds(i), 90.0f, AlarmStatus.ALARM, frame(i, 700 + (i * 37) % 900));
+            }
+            assertEquals(size, Files.size(file));
+            assertTrue(store.size() <= 16);
+
+            List<EvidenceStore.Evidence> all = store.find(Instant.EPOCH, start.plusSeconds(2000));
+            assertEquals(store.size(), all.size());
+            assertEquals(999, all.get(all.size() - 1).sequence());
+            for (EvidenceStore.Evidence e : all) {
+                int i = (int) e.sequence();
+                assertArrayEquals(frame(i, 700 + (i * 37) % 900).array(), e.frame());
+            }
+            assertEquals(1000 - all.size(), store.getOverwrittenCount());
+        }
+    }
+
+    @Test
+    void securityService_keepsFullResolutionCatFrames() {
+        ImageService catEverywhere = (image, threshold) -> true;
+        FakeSecurityRepository repo = new FakeSecurityRepository();
+        repo.setArmingStatus(ArmingStatus.ARMED_HOME);
+        SecurityService service = new SecurityService(repo, catEverywhere, 1, new TestClock());
+        try (EvidenceStore store = new EvidenceStore(dir.resolve("evidence.ring"), 1024 * 1024, 16)) {
+            service.setEvidenceStore(store);
+            service.processImage("porch", new BufferedImage(320, 240, BufferedImage.TYPE_INT_ARGB));
+
+            List<EvidenceStore.Evidence> found = store.find(Instant.EPOCH, Instant.now().plusSeconds(3600));
+            assertEquals(1, found.size());
+            assertEquals("porch", found.get(0).cameraId());
+            assertEquals(AlarmStatus.ALARM, found.get(0).alarmStatus());
+            BufferedImage decoded = found.get(0).decode();
+            assertEquals(320, decoded.getWidth());
+            assertEquals(240, decoded.getHeight());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Works like PretendDatabaseSecurityRepositoryImpl, minus the preferences, for tests that need
+ * a repository that actually keeps state.
+ */
+class FakeSecurityRepository implements SecurityRepository {
+
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private volatile SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        snapshot = snapshot.withoutSensor(sensor);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        sensors.add(sensor);
+        snapshot = snapshot.withSensor(sensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
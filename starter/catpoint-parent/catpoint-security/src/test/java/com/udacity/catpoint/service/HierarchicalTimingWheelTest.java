@@ -0,0 +1,78 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.security.service.HierarchicalTimingWheel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void timers_fireInDeadlineOrder_notBeforeDeadline() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(10, 0);
+        List<Long> firedAt = new ArrayList<>();
+        long[] now = {0};
+        // spread across every level of the wheel
+        long[] delays = {5, 640, 41_000, 2_700_000, 170_000_000, 30};
+        for (long delay : delays) {
+            wheel.schedule(delay, () -> firedAt.add(now[0]));
+        }
+
+        while (wheel.getPendingCount() > 0) {
+            now[0] += 10;
+            wheel.advanceTo(now[0]);
+        }
+
+        assertEquals(List.of(10L, 30L, 640L, 41_000L, 2_700_000L, 170_000_000L), firedAt);
+    }
+
+    @Test
+    void cancelledTimer_neverFires() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1, 0);
+        List<String> fired = new ArrayList<>();
+        HierarchicalTimingWheel.Timeout cancelled = wheel.schedule(100, () -> fired.add("cancelled"));
+        wheel.schedule(100, () -> fired.add("kept"));
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        wheel.advanceTo(1_000);
+
+        assertEquals(List.of("kept"), fired);
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void failingTimer_doesNotStopTheOthers() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(10, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(10, () -> {
+            throw new IllegalStateException("repository closed");
+        });
+        wheel.schedule(10, () -> fired.add("same tick"));
+        wheel.schedule(100, () -> fired.add("later"));
+
+        wheel.advanceTo(10);
+        assertEquals(List.of("same tick"), fired);
+        wheel.advanceTo(100);
+
+        assertEquals(List.of("same tick", "later"), fired);
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void manyTimers_allFire() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1, 0);
+        int[] fired = {0};
+        for (int i = 0; i < 1_000_000; i++) {
+            wheel.schedule(i % 50_000, () -> fired[0]++);
+        }
+        wheel.advanceTo(50_000);
+        assertEquals(1_000_000, fired[0]);
+    }
+}
@@ -0,0 +1,177 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdbcSecurityRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private String url() {
+        return "jdbc:h2:" + dir.resolve("security").toAbsolutePath();
+    }
+
+    @Test
+    void state_survivesReopen() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            repo.addSensor(door);
+            door.setActive(true);
+            repo.updateSensor(door);
+            repo.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repo.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            assertEquals(1, repo.getSensors().size());
+            Sensor loaded = repo.getSensors().iterator().next();
+            assertEquals(door, loaded);
+            assertEquals("Front door", loaded.getName());
+            assertEquals(SensorType.DOOR, loaded.getSensorType());
+            assertTrue(loaded.getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, repo.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void indexedQueries_seeQueuedWrites() {
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            for (int i = 0; i < 50; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % 3]);
+                sensor.setActive(i % 5 == 0);
+                repo.addSensor(sensor);
+            }
+
+            List<Sensor> windows = repo.getSensorsByType(SensorType.WINDOW);
+            assertEquals(17, windows.size());
+            assertTrue(windows.stream().allMatch(s -> s.getSensorType() == SensorType.WINDOW));
+            assertEquals(10, repo.getActiveSensors().size());
+        }
+    }
+
+    @Test
+    void removedSensor_isDeleted_evenWhenUpdateWasStillQueued() {
+        Sensor motion = new Sensor("Hall", SensorType.MOTION);
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            repo.addSensor(motion);
+            motion.setActive(true);
+            repo.updateSensor(motion);
+            repo.removeSensor(motion);
+            assertEquals(0, repo.getSensorsByType(SensorType.MOTION).size());
+        }
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            assertTrue(repo.getSensors().isEmpty());
+        }
+    }
+
+    @Test
+    void concurrentSensorWrites_allReachTheSnapshot() throws InterruptedException {
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int writer = t;
+                writers.add(new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        Sensor sensor = new Sensor("Sensor " + writer + "-" + i, SensorType.values()[i % 3]);
+                        repo.addSensor(sensor);
+                        sensor.setActive(true);
+                        repo.updateSensor(sensor);
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            assertEquals(2000, repo.getSensorSnapshot().size());
+            assertEquals(2000, repo.getSensorSnapshot().getActiveCount());
+            assertEquals(2000, repo.getSensors().size());
+            assertEquals(2000, repo.getActiveSensors().size());
+        }
+    }
+
+    @Test
+    void failedWrite_isReportedByFlush_andLaterWritesStillCommit() {
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            // longer than the name column
+            repo.addSensor(new Sensor("x".repeat(300), SensorType.DOOR));
+            assertThrows(IllegalStateException.class, repo::flush);
+
+            repo.addSensor(new Sensor("Back door", SensorType.DOOR));
+            assertEquals(1, repo.getSensorsByType(SensorType.DOOR).size());
+        }
+    }
+
+    @Test
+    void failedWrite_refusesLaterWritesUntilFlush_andIsNotKeptInMemory() throws InterruptedException {
+        try (JdbcSecurityRepository repo = new JdbcSecurityRepository(url())) {
+            Sensor tooLong = new Sensor("x".repeat(300), SensorType.DOOR);
+            repo.addSensor(tooLong);
+            // the commit fails on the writer thread; from then on nothing more is accepted
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            boolean refused = false;
+            while (!refused && System.nanoTime() < deadline) {
+                try {
+                    repo.setArmingStatus(ArmingStatus.ARMED_HOME);
+                    Thread.sleep(1);
+                } catch (IllegalStateException e) {
+                    refused = true;
+                }
+            }
+            assertTrue(refused);
+
+            assertThrows(IllegalStateException.class, repo::flush);
+            assertFalse(repo.getSensors().contains(tooLong));
+            assertEquals(0, repo.getSensorSnapshot().size());
+
+            repo.addSensor(new Sensor("Window", SensorType.WINDOW));
+            assertEquals(1, repo.getSensorsByType(SensorType.WINDOW).size());
+        }
+    }
+
+    @Test
+    void writeRacingClose_isEitherCommittedOrRefused() throws InterruptedException {
+        Set<Sensor> accepted = new HashSet<>();
+        CountDownLatch writing = new CountDownLatch(1);
+        JdbcSecurityRepository repo = new JdbcSecurityRepository(url());
+        // callers serialize their writes, but close() may come from another thread, e.g. a shutdown hook
+        Thread writer = new Thread(() -> {
+            try {
+                while (true) {
+                    Sensor sensor = new Sensor("Sensor " + accepted.size(), SensorType.MOTION);
+                    repo.addSensor(sensor);
+                    accepted.add(sensor);
+                    writing.countDown();
+                }
+            } catch (IllegalStateException e) {
+                // closed
+            }
+        });
+        writer.start();
+        writing.await();
+        repo.close();
+        writer.join();
+
+        try (JdbcSecurityRepository reopened = new JdbcSecurityRepository(url())) {
+            assertEquals(accepted, reopened.getSensors());
+        }
+    }
+}
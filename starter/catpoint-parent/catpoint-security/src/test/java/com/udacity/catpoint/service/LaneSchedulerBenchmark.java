@@ -0,0 +1,96 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorType;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.service.LaneScheduler;
+import com.udacity.catpoint.security.service.LaneScheduler.Lane;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time from setAlarmStatus(ALARM) to the listener hearing about it while another
+ * thread floods the scheduler with far more sensor and panel work than it can run. Lanes only
+ * make an alarm wait for the task in hand, so p99 should stay in the low milliseconds however
+ * long the backlog grows. Not a unit test; run the main method from the IDE.
+ */
+public class LaneSchedulerBenchmark {
+
+    private static final int SAMPLES = 1_000;
+    private static final long REFRESH_NANOS = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        BlockingQueue<Long> alarmLatencies = new ArrayBlockingQueue<>(1);
+        AtomicLong triggered = new AtomicLong();
+        StatusListener ui = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                if (status == AlarmStatus.ALARM) {
+                    alarmLatencies.offer(System.nanoTime() - triggered.get());
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                spin(REFRESH_NANOS); // rebuilding the sensor panel
+            }
+        };
+        ImageService noCats = (image, threshold) -> false;
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), noCats, 1, new TestClock());
+        service.addStatusListener(ui);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        service.addSensor(door);
+
+        try (LaneScheduler scheduler = new LaneScheduler(256, 64)) {
+            service.setLaneScheduler(scheduler);
+            Thread flood = new Thread(() -> {
+                for (int i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                    // disarmed, so the door only causes sensor work and panel refreshes
+                    service.submitSensorActivationStatus(door, i % 2 == 0);
+                    scheduler.submit(Lane.SENSOR, () -> spin(200_000));
+                    scheduler.submit(Lane.HOUSEKEEPING, () -> spin(1_000_000));
+                }
+            });
+            flood.setDaemon(true);
+            flood.start();
+            Thread.sleep(100); // let the backlog build
+
+            long[] latencies = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                triggered.set(System.nanoTime());
+                service.setAlarmStatus(AlarmStatus.ALARM);
+                Long latency = alarmLatencies.poll(5, TimeUnit.SECONDS);
+                if (latency == null) {
+                    throw new IllegalStateException("ALARM was never announced");
+                }
+                latencies[i] = latency;
+            }
+            flood.interrupt();
+
+            Arrays.sort(latencies);
+            System.out.printf("time to ALARM under overload: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    latencies[SAMPLES / 2] / 1e6, latencies[SAMPLES * 99 / 100] / 1e6, latencies[SAMPLES - 1] / 1e6);
+            System.out.printf("sensor tasks run %d, housekeeping run %d, shed %d%n",
+                    scheduler.getExecuted(Lane.SENSOR), scheduler.getExecuted(Lane.HOUSEKEEPING),
+                    scheduler.getShed(Lane.HOUSEKEEPING));
+        }
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorType;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.service.LaneScheduler;
+import com.udacity.catpoint.security.service.LaneScheduler.Lane;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LaneSchedulerTest {
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Occupies the worker until the returned latch is released. */
+    private static CountDownLatch block(LaneScheduler scheduler) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(Lane.ALARM, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        return release;
+    }
+
+    private static void drain(LaneScheduler scheduler) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit(Lane.HOUSEKEEPING, done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    /** Waits without submitting anything, for lanes that are full. */
+    private static void awaitExecuted(LaneScheduler scheduler, Lane lane, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getExecuted(lane) < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, scheduler.getExecuted(lane));
+    }
+
+    @Test
+    void alarmWork_runsBeforeWaitingSensorAndHousekeepingWork() throws InterruptedException {
+        try (LaneScheduler scheduler = new LaneScheduler()) {
+            List<String> ran = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch release = block(scheduler);
+            scheduler.submit(Lane.HOUSEKEEPING, () -> ran.add("refresh"));
+            scheduler.submit(Lane.SENSOR, () -> ran.add("sensor-1"));
+            scheduler.submit(Lane.SENSOR, () -> ran.add("sensor-2"));
+            scheduler.submit(Lane.ALARM, () -> ran.add("alarm"));
+            release.countDown();
+            drain(scheduler);
+
+            assertEquals(List.of("alarm", "sensor-1", "sensor-2", "refresh"), ran);
+            assertEquals(2, scheduler.getExecuted(Lane.SENSOR));
+        }
+    }
+
+    @Test
+    void housekeeping_isMergedByKey_andShedWhenFull() throws InterruptedException {
+        try (LaneScheduler scheduler = new LaneScheduler(16, 3)) {
+            List<String> ran = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch release = block(scheduler);
+            Object refreshKey = new Object();
+            for (int i = 1; i <= 3; i++) {
+                String name = "refresh-" + i;
+                scheduler.submit(Lane.HOUSEKEEPING, refreshKey, () -> ran.add(name));
+            }
+            scheduler.submit(Lane.HOUSEKEEPING, () -> ran.add("flush-1"));
+            scheduler.submit(Lane.HOUSEKEEPING, () -> ran.add("flush-2"));
+            assertEquals(3, scheduler.getQueueDepth(Lane.HOUSEKEEPING));
+            scheduler.submit(Lane.HOUSEKEEPING, () -> ran.add("flush-3"));
+            assertEquals(3, scheduler.getQueueDepth(Lane.HOUSEKEEPING));
+            release.countDown();
+            awaitExecuted(scheduler, Lane.HOUSEKEEPING, 3);
+
+            // two refreshes merged into the last one, which was then the oldest and dropped
+            assertEquals(List.of("flush-1", "flush-2", "flush-3"), ran);
+            assertEquals(3, scheduler.getShed(Lane.HOUSEKEEPING));
+        }
+    }
+
+    @Test
+    void evidence_isNeverShed_andAFullLaneHoldsUpTheSubmitter() throws InterruptedException {
+        try (LaneScheduler scheduler = new LaneScheduler(16, 2, 1)) {
+            List<String> ran = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch release = block(scheduler);
+            scheduler.submit(Lane.EVIDENCE, () -> ran.add("frame-1"));
+            scheduler.submit(Lane.EVIDENCE, () -> ran.add("frame-2"));
+            // a flood of refreshes overflows housekeeping but leaves evidence alone
+            for (int i = 0; i < 10; i++) {
+                scheduler.submit(Lane.HOUSEKEEPING, () -> { });
+            }
+            CountDownLatch submitted = new CountDownLatch(1);
+            Thread scanner = new Thread(() -> {
+                scheduler.submit(Lane.EVIDENCE, () -> ran.add("frame-3"));
+                submitted.countDown();
+            });
+            scanner.start();
+            assertFalse(submitted.await(100, TimeUnit.MILLISECONDS), "a full evidence lane must hold up the scanner");
+            assertEquals(2, scheduler.getQueueDepth(Lane.EVIDENCE));
+
+            release.countDown();
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+            awaitExecuted(scheduler, Lane.EVIDENCE, 3);
+
+            assertEquals(List.of("frame-1", "frame-2", "frame-3"), ran);
+            assertEquals(0, scheduler.getShed(Lane.EVIDENCE));
+            assertEquals(9, scheduler.getShed(Lane.HOUSEKEEPING));
+        }
+    }
+
+    /**
+     * Only checks that alarms get through at all; how fast they do is measured by
+     * LaneSchedulerBenchmark, as wall-clock bounds make unit tests flaky on loaded machines.
+     */
+    @Test
+    void alarm_isAnnounced_whileHousekeepingIsShed_underOverload() throws InterruptedException {
+        BlockingQueue<AlarmStatus> announced = new ArrayBlockingQueue<>(1);
+        StatusListener ui = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                if (status == AlarmStatus.ALARM) {
+                    announced.offer(status);
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                spin(2_000_000); // rebuilding the sensor panel
+            }
+        };
+        ImageService noCats = (image, threshold) -> false;
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), noCats, 1, new TestClock());
+        service.addStatusListener(ui);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        service.addSensor(door);
+
+        try (LaneScheduler scheduler = new LaneScheduler(256, 64)) {
+            service.setLaneScheduler(scheduler);
+            Thread flood = new Thread(() -> {
+                // far more sensor and UI work than one thread can keep up with
+                for (int i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                    // disarmed, so the door only causes sensor work and panel refreshes
+                    service.submitSensorActivationStatus(door, i % 2 == 0);
+                    scheduler.submit(Lane.SENSOR, () -> spin(200_000));
+                    scheduler.submit(Lane.HOUSEKEEPING, () -> spin(1_000_000));
+                }
+            });
+            flood.setDaemon(true);
+            flood.start();
+            Thread.sleep(100); // let the backlog build
+
+            for (int i = 0; i < 20; i++) {
+                service.setAlarmStatus(AlarmStatus.ALARM);
+                assertNotNull(announced.poll(5, TimeUnit.SECONDS), "ALARM was never announced");
+            }
+            flood.interrupt();
+
+            assertTrue(scheduler.getShed(Lane.HOUSEKEEPING) > 0, "housekeeping was never shed");
+        }
+    }
+}
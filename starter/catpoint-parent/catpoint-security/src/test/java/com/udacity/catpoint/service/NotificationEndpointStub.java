@@ -0,0 +1,150 @@
+package com.udacity.catpoint.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local webhook that receives AlarmNotifier batches and drops duplicates by notification id,
+ * the way a real destination is expected to.
+ *
+ * It can answer the next requests with an error without taking them, take the next requests but
+ * lose the answer, or hang every request until released.
+ */
+class NotificationEndpointStub implements AutoCloseable {
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"([0-9]+-[0-9]+)\"");
+
+    static {
+        // headers and body go out as separate writes; without this, delayed ACKs add ~40 ms to every call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    private final List<String> received = new ArrayList<>(); // guarded by this, first delivery of each id
+    private final Set<String> seen = new HashSet<>(); // guarded by this
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureStatus = 503;
+    private final AtomicInteger lostAnswers = new AtomicInteger();
+    private volatile CountDownLatch hang = new CountDownLatch(0);
+
+    NotificationEndpointStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(threads);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    URI getEndpoint() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/alarms");
+    }
+
+    /**
+     * Answers the next requests with this status without taking their notifications.
+     */
+    void failNext(int count, int status) {
+        failureStatus = status;
+        failures.set(count);
+    }
+
+    /**
+     * Takes the notifications of the next requests but answers 500, as if the answer was lost.
+     */
+    void loseNextAnswers(int count) {
+        lostAnswers.set(count);
+    }
+
+    /**
+     * Holds every request until {@link #release()}.
+     */
+    void hang() {
+        hang = new CountDownLatch(1);
+    }
+
+    void release() {
+        hang.countDown();
+    }
+
+    /**
+     * @return Ids of the notifications taken, in the order they first arrived
+     */
+    synchronized List<String> getReceived() {
+        return List.copyOf(received);
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getDuplicates() {
+        return duplicates.get();
+    }
+
+    int getLargestBatch() {
+        return largestBatch.get();
+    }
+
+    @Override
+    public void close() {
+        release();
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.incrementAndGet();
+            try {
+                hang.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+            take(body);
+            boolean lose = lostAnswers.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            exchange.sendResponseHeaders(lose ? 500 : 204, -1);
+        }
+    }
+
+    private void take(String body) {
+        Matcher m = ID.matcher(body);
+        int batch = 0;
+        synchronized (this) {
+            while (m.find()) {
+                batch++;
+                if (seen.add(m.group(1))) {
+                    received.add(m.group(1));
+                } else {
+                    duplicates.incrementAndGet();
+                }
+            }
+        }
+        largestBatch.accumulateAndGet(batch, Math::max);
+    }
+}
@@ -0,0 +1,217 @@
+package com.udacity.catpoint.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Local stand-in for Rekognition that answers DetectLabels calls from the real SDK client.
+ *
+ * It speaks the service's JSON 1.1 protocol: one POST per call, the operation named in the
+ * X-Amz-Target header, errors as a status code with an {@code __type} body. Signatures are not
+ * checked. Every answer is held back by a delay drawn from the configured {@link Latency}, and
+ * a configured share of calls fails with a throttling or internal error, which the SDK retries
+ * the way it would against AWS. Each request gets its own thread, so delays overlap like they do
+ * on the real service.
+ */
+class RekognitionStub implements AutoCloseable {
+
+    private static final String DETECT_LABELS = "RekognitionService.DetectLabels";
+    private static final Pattern MIN_CONFIDENCE = Pattern.compile("\"MinConfidence\"\\s*:\\s*([0-9.]+)");
+
+    static {
+        // headers and body go out as separate writes; without this, delayed ACKs add ~40 ms to every call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /** A label in the answer; labels below the request's MinConfidence are left out. */
+    record Label(String name, float confidence) {
+    }
+
+    /** Draws the delay of one answer. */
+    interface Latency {
+        long nextMillis(RandomGenerator random);
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> random.nextLong(minMillis, maxMillis + 1);
+        }
+
+        /**
+         * Right-skewed like most service latencies: half of the calls are faster than the median,
+         * and sigma stretches the slow side (0.5 puts p99 at about 3.2 times the median).
+         */
+        static Latency logNormal(long medianMillis, double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        /**
+         * Mostly this latency, but a share of calls takes the tail's instead, like a cold
+         * partition or a long GC pause on the service side.
+         */
+        default Latency withTail(double share, Latency tail) {
+            return random -> random.nextDouble() < share ? tail.nextMillis(random) : nextMillis(random);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    private volatile Latency latency = Latency.fixed(0);
+    private volatile double throttleRate;
+    private volatile double errorRate;
+    private volatile double catRate = 1;
+    private volatile List<Label> labels = List.of(new Label("Cat", 97.5f));
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    RekognitionStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(threads);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    void setLatency(Latency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param throttleRate Share of calls answered with ThrottlingException (HTTP 400)
+     * @param errorRate Share of calls answered with InternalServerError (HTTP 500)
+     */
+    void setFailureRates(double throttleRate, double errorRate) {
+        this.throttleRate = throttleRate;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param labels Labels of every answer
+     * @param catRate Share of answers that keep labels containing "cat"; the rest drop them
+     */
+    void setLabels(List<Label> labels, double catRate) {
+        this.labels = List.copyOf(labels);
+        this.catRate = catRate;
+    }
+
+    URI getEndpoint() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return config.properties keys that point AwsImageService at this stub
+     */
+    Properties clientProperties() {
+        Properties props = new Properties();
+        props.setProperty("aws.id", "stub");
+        props.setProperty("aws.secret", "stub");
+        props.setProperty("aws.region", "us-east-1");
+        props.setProperty("aws.endpoint", getEndpoint().toString());
+        return props;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getThrottled() {
+        return throttled.get();
+    }
+
+    long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.incrementAndGet();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            sleep(latency.nextMillis(random));
+
+            if (!DETECT_LABELS.equals(exchange.getRequestHeaders().getFirst("X-Amz-Target"))) {
+                respond(exchange, 400, error("UnknownOperationException", "Only DetectLabels is stubbed"));
+                return;
+            }
+            double roll = random.nextDouble();
+            if (roll < throttleRate) {
+                throttled.incrementAndGet();
+                respond(exchange, 400, error("ThrottlingException", "Rate exceeded"));
+                return;
+            }
+            if (roll < throttleRate + errorRate) {
+                failed.incrementAndGet();
+                respond(exchange, 500, error("InternalServerError", "Injected failure"));
+                return;
+            }
+            respond(exchange, 200, detectLabelsResponse(minConfidence(body), random.nextDouble() < catRate));
+        }
+    }
+
+    private String detectLabelsResponse(float minConfidence, boolean cat) {
+        String json = labels.stream()
+                .filter(l -> l.confidence() >= minConfidence)
+                .filter(l -> cat || !l.name().toLowerCase(Locale.ROOT).contains("cat"))
+                .map(l -> String.format(Locale.ROOT, "{\"Name\":\"%s\",\"Confidence\":%.3f}", l.name(), l.confidence()))
+                .collect(Collectors.joining(","));
+        return "{\"Labels\":[" + json + "],\"LabelModelVersion\":\"3.0\"}";
+    }
+
+    private static String error(String type, String message) {
+        return "{\"__type\":\"" + type + "\",\"message\":\"" + message + "\"}";
+    }
+
+    private static float minConfidence(String body) {
+        Matcher m = MIN_CONFIDENCE.matcher(body);
+        return m.find() ? Float.parseFloat(m.group(1)) : 55f; // the service's default
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+        exchange.getResponseHeaders().add("x-amzn-RequestId", Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
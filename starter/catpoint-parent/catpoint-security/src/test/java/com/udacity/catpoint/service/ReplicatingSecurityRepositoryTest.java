@@ -0,0 +1,188 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.data.ReplicatingSecurityRepository.Durability;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Primary and standby talk over loopback TCP, just as two processes would; one test runs the
+ * standby as a separate process and kills it.
+ */
+class ReplicatingSecurityRepositoryTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private ReplicationStandby standby;
+    private ReplicatingSecurityRepository primary;
+    private final List<Process> standbyProcesses = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        if (primary != null) {
+            primary.close();
+        }
+        if (standby != null) {
+            standby.close();
+        }
+        standbyProcesses.forEach(Process::destroyForcibly);
+    }
+
+    @Test
+    void syncMutations_areOnTheStandby_whenTheyReturn() throws Exception {
+        standby = new ReplicationStandby(new FakeSecurityRepository(), 0);
+        primary = new ReplicatingSecurityRepository(new FakeSecurityRepository(), standby.getAddress(),
+                Durability.SYNC, WAIT);
+        awaitConnected();
+
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        primary.addSensor(door);
+        door.setActive(true);
+        primary.updateSensor(door);
+        primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        primary.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        SecurityRepository replica = standby.getRepository();
+        assertEquals(1, replica.getSensors().size());
+        Sensor copy = replica.getSensors().iterator().next();
+        assertEquals(door.getSensorId(), copy.getSensorId());
+        assertTrue(copy.getActive());
+        assertEquals(ArmingStatus.ARMED_AWAY, replica.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, replica.getAlarmStatus());
+        assertEquals(0, primary.getReplicationLag());
+        assertEquals(0, primary.getSyncTimeouts());
+    }
+
+    @Test
+    void asyncBurst_isPipelined_andCatchesUp() throws Exception {
+        standby = new ReplicationStandby(new FakeSecurityRepository(), 0);
+        primary = new ReplicatingSecurityRepository(new FakeSecurityRepository(), standby.getAddress(),
+                Durability.ASYNC, WAIT);
+        awaitConnected();
+
+        Sensor window = new Sensor("Kitchen", SensorType.WINDOW);
+        primary.addSensor(window);
+        for (int i = 0; i < 10_000; i++) {
+            window.setActive(i % 2 == 0);
+            primary.updateSensor(window);
+        }
+        primary.removeSensor(window);
+        primary.addSensor(new Sensor("Hall", SensorType.MOTION));
+
+        assertTrue(primary.awaitReplication(WAIT));
+        assertEquals(0, primary.getReplicationLag());
+        assertEquals(0, primary.getReplicationLagMillis());
+        assertEquals(primary.getLastSequence(), standby.getAppliedSequence());
+        assertEquals(1, standby.getRepository().getSensors().size());
+        assertEquals("Hall", standby.getRepository().getSensors().iterator().next().getName());
+    }
+
+    @Test
+    void standbyStartedLate_receivesFullState() throws Exception {
+        int port = freePort();
+        primary = new ReplicatingSecurityRepository(new FakeSecurityRepository(), "localhost", port, Durability.SYNC);
+        primary.addSensor(new Sensor("Back door", SensorType.DOOR));
+        primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(2, primary.getReplicationLag());
+        assertEquals(2, primary.getSyncTimeouts());
+
+        standby = new ReplicationStandby(new FakeSecurityRepository(), port);
+        assertTrue(primary.awaitReplication(WAIT));
+        assertEquals(1, standby.getRepository().getSensors().size());
+        assertEquals(ArmingStatus.ARMED_HOME, standby.getRepository().getArmingStatus());
+    }
+
+    @Test
+    void standbyProcess_killedAndRestarted_isResynchronizedBySnapshot() throws Exception {
+        int port = freePort();
+        String url = "jdbc:h2:" + dir.resolve("standby").toAbsolutePath();
+        Process process = startStandbyProcess(port, url);
+        primary = new ReplicatingSecurityRepository(new FakeSecurityRepository(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), Durability.ASYNC, WAIT);
+        awaitConnected();
+
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Kitchen", SensorType.WINDOW);
+        primary.addSensor(door);
+        primary.addSensor(window);
+        assertTrue(primary.awaitReplication(WAIT));
+
+        // no shutdown hook runs, nothing is flushed or closed
+        process.destroyForcibly().waitFor();
+        primary.removeSensor(door);
+        window.setActive(true);
+        primary.updateSensor(window);
+        primary.addSensor(new Sensor("Hall", SensorType.MOTION));
+        primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertTrue(primary.getReplicationLag() > 0);
+
+        process = startStandbyProcess(port, url);
+        assertTrue(primary.awaitReplication(Duration.ofSeconds(30)));
+        assertEquals(0, primary.getReplicationLag());
+        // a normal shutdown closes the standby's database
+        process.destroy();
+        process.waitFor();
+
+        try (JdbcSecurityRepository replica = new JdbcSecurityRepository(url)) {
+            assertEquals(Set.of("Hall", "Kitchen"),
+                    replica.getSensors().stream().map(Sensor::getName).collect(Collectors.toSet()));
+            assertTrue(replica.getSensors().stream().filter(s -> s.getName().equals("Kitchen")).findAny().orElseThrow().getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, replica.getArmingStatus());
+        }
+    }
+
+    /**
+     * Starts ReplicationStandby's main method in another JVM, with this JVM's classpath, and
+     * waits until it listens.
+     */
+    private Process startStandbyProcess(int port, String url) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ReplicationStandby.class.getName(), String.valueOf(port), url)
+                .redirectErrorStream(true)
+                .start();
+        standbyProcesses.add(process);
+        BufferedReader output = process.inputReader();
+        String line;
+        do {
+            line = output.readLine();
+        } while (line != null && !line.startsWith("Standby listening"));
+        assertNotNull(line, "standby process exited before listening");
+        return process;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!primary.isConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(primary.isConnected());
+    }
+}
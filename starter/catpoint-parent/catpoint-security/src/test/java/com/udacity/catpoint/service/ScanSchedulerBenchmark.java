@@ -0,0 +1,224 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.security.service.ScanScheduler;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays one day of four cameras, delivering a frame every 200 ms, and counts the classifier
+ * calls and how long each of three cat incidents took to be seen. It compares ScanScheduler
+ * (default intervals and budget) with fixed-rate scanning at 250 ms, 2 s and 10 s, which
+ * classifies every new frame as SecurityService.startScanning does.
+ *
+ * The house is armed at home from 23:00 to 7:00 and away from 8:00 to 18:00, and disarmed
+ * with people moving in front of the cameras otherwise. Cats show up at 2:00 (camera 2, 30 s,
+ * no sensor), at 10:00 (camera 1, 60 s, no sensor) and at 14:30 (camera 0, 20 s, ten seconds
+ * after the back door opened). Time is simulated on a test clock. Not a unit test; run the
+ * main method from the IDE.
+ */
+public class ScanSchedulerBenchmark {
+
+    private static final int CAMERAS = 4;
+    private static final long TICK = ScanScheduler.TICK_MILLIS;
+    private static final long FRAME_EVERY = 200;
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    private record Incident(int camera, long from, long to) {
+    }
+
+    private static final List<Incident> INCIDENTS = List.of(
+            new Incident(2, hours(2) + 1_300, hours(2) + 31_300),
+            new Incident(1, hours(10) + 700, hours(10) + 60_700),
+            new Incident(0, hours(14.5) + 1_100, hours(14.5) + 21_100));
+    private static final long DOOR_OPENS = hours(14.5) - 8_900;
+
+    // per camera: quiet frames differing only by sensor noise, frames with people and frames with the cat
+    private static final List<List<BufferedImage>> quiet = new ArrayList<>();
+    private static final List<List<BufferedImage>> people = new ArrayList<>();
+    private static final List<List<BufferedImage>> cats = new ArrayList<>();
+    private static final Map<BufferedImage, Integer> catCamera = new IdentityHashMap<>();
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        for (int c = 0; c < CAMERAS; c++) {
+            BufferedImage background = background(random);
+            quiet.add(new ArrayList<>());
+            people.add(new ArrayList<>());
+            cats.add(new ArrayList<>());
+            for (int i = 0; i < 8; i++) {
+                quiet.get(c).add(noisy(background, random));
+                people.get(c).add(withBlob(noisy(background, random), random, Color.DARK_GRAY, 60));
+                BufferedImage cat = withBlob(noisy(background, random), random, Color.ORANGE, 40);
+                cats.get(c).add(cat);
+                catCamera.put(cat, c);
+            }
+        }
+
+        System.out.printf("%-20s %12s %16s %16s %16s%n", "", "calls/day", "cat at 2:00", "cat at 10:00", "cat at 14:30");
+        adaptive();
+        for (long interval : new long[]{250, 2_000, 10_000}) {
+            fixedRate(interval);
+        }
+    }
+
+    private static void adaptive() {
+        TestClock clock = new TestClock();
+        long start = clock.millis();
+        long[] seen = new long[INCIDENTS.size()];
+        long[] calls = new long[1];
+        FakeSecurityRepository repo = new FakeSecurityRepository();
+        SecurityService service = new SecurityService(repo, (image, threshold) -> {
+            calls[0]++;
+            return record(image, clock.millis() - start, seen);
+        }, 1, clock);
+        Sensor door = new Sensor("Back door", SensorType.DOOR);
+        service.addSensor(door);
+        service.removeCamera(SecurityService.DEFAULT_CAMERA_ID);
+        ScanScheduler scheduler = new ScanScheduler(service, ScanScheduler.Intervals.DEFAULT,
+                ScanScheduler.Budget.DEFAULT, clock, Runnable::run);
+
+        ArmingStatus arming = null;
+        for (long t = 0; t < DAY; t += TICK) {
+            ArmingStatus scheduled = armingAt(t);
+            if (scheduled != arming) {
+                arming = scheduled;
+                service.setArmingStatus(arming);
+            }
+            if (t == DOOR_OPENS) {
+                service.changeSensorActivationStatus(door, true);
+            } else if (t == DOOR_OPENS + 5_000) {
+                service.changeSensorActivationStatus(door, false);
+            } else if (t == DOOR_OPENS + 300_000) {
+                // someone answered the alarm
+                service.setAlarmStatus(AlarmStatus.NO_ALARM);
+            }
+            if (t % FRAME_EVERY == 0) {
+                for (int c = 0; c < CAMERAS; c++) {
+                    service.updateCameraFrame("camera-" + c, frameAt(c, t));
+                }
+            }
+            scheduler.tick();
+            clock.advance(Duration.ofMillis(TICK));
+            service.advanceTimers();
+        }
+        print("adaptive", calls[0], seen);
+        System.out.printf("  %d unchanged frames skipped, %d scans deferred by the call budget, %d by the CPU budget,%n",
+                scheduler.getUnchangedFrames(), scheduler.getDeferredByCallBudget(), scheduler.getDeferredByCpuBudget());
+        System.out.printf("  %d calls saved against 250 ms, %.1f s of scan CPU%n",
+                scheduler.getCallsSaved(), scheduler.getCpuTime().toMillis() / 1000.0);
+    }
+
+    private static void fixedRate(long interval) {
+        long[] seen = new long[INCIDENTS.size()];
+        long calls = 0;
+        long[] scannedFrame = new long[CAMERAS];
+        for (long t = 0; t < DAY; t += interval) {
+            for (int c = 0; c < CAMERAS; c++) {
+                // only frames that arrived since the last scan are classified
+                long frame = t / FRAME_EVERY;
+                if (t > 0 && frame == scannedFrame[c]) {
+                    continue;
+                }
+                scannedFrame[c] = frame;
+                calls++;
+                record(frameAt(c, frame * FRAME_EVERY), t, seen);
+            }
+        }
+        print("fixed " + interval + " ms", calls, seen);
+    }
+
+    private static boolean record(BufferedImage image, long t, long[] seen) {
+        Integer camera = catCamera.get(image);
+        if (camera == null) {
+            return false;
+        }
+        for (int i = 0; i < INCIDENTS.size(); i++) {
+            Incident incident = INCIDENTS.get(i);
+            if (incident.camera() == camera && t >= incident.from() && seen[i] == 0) {
+                seen[i] = t - incident.from() + 1;
+            }
+        }
+        return true;
+    }
+
+    private static void print(String name, long calls, long[] seen) {
+        StringBuilder line = new StringBuilder(String.format("%-20s %12d", name, calls));
+        for (long s : seen) {
+            line.append(String.format(" %16s", s == 0 ? "missed" : String.format("after %.1f s", (s - 1) / 1000.0)));
+        }
+        System.out.println(line);
+    }
+
+    private static BufferedImage frameAt(int camera, long t) {
+        // scrambled, so that scans at a fixed interval do not keep seeing the same variants
+        int variant = (int) (((t / FRAME_EVERY) * 0x9E3779B97F4A7C15L) >>> 61);
+        for (Incident incident : INCIDENTS) {
+            if (incident.camera() == camera && t >= incident.from() && t < incident.to()) {
+                return cats.get(camera).get(variant);
+            }
+        }
+        ArmingStatus arming = armingAt(t);
+        // while disarmed someone walks past each camera for a minute every ten
+        boolean busy = arming == ArmingStatus.DISARMED && (t / 60_000 + camera) % 10 == 0;
+        return (busy ? people : quiet).get(camera).get(variant);
+    }
+
+    private static ArmingStatus armingAt(long t) {
+        double hour = t / 3_600_000.0;
+        if (hour < 7 || hour >= 23) {
+            return ArmingStatus.ARMED_HOME;
+        }
+        if (hour >= 8 && hour < 18) {
+            return ArmingStatus.ARMED_AWAY;
+        }
+        return ArmingStatus.DISARMED;
+    }
+
+    private static long hours(double hours) {
+        return (long) (hours * 3_600_000);
+    }
+
+    private static BufferedImage background(Random random) {
+        BufferedImage image = new BufferedImage(320, 180, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(random.nextInt(320), random.nextInt(180), 20 + random.nextInt(120), 20 + random.nextInt(80));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage noisy(BufferedImage background, Random random) {
+        BufferedImage image = new BufferedImage(background.getWidth(), background.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = background.getRGB(x, y);
+                int n = random.nextInt(9) - 4;
+                int r = Math.clamp(((rgb >> 16) & 0xFF) + n, 0, 255);
+                int gr = Math.clamp(((rgb >> 8) & 0xFF) + n, 0, 255);
+                int b = Math.clamp((rgb & 0xFF) + n, 0, 255);
+                image.setRGB(x, y, (r << 16) | (gr << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage withBlob(BufferedImage image, Random random, Color color, int size) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillOval(random.nextInt(320 - size), random.nextInt(180 - size), size, size * 3 / 2);
+        g.dispose();
+        return image;
+    }
+}
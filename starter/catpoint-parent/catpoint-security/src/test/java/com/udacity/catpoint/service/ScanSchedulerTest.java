@@ -0,0 +1,206 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.security.service.ScanScheduler;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Scan rates, skipped frames and budgets, on a test clock with scans run inline.
+ */
+class ScanSchedulerTest {
+
+    private final TestClock clock = new TestClock();
+    private final AtomicInteger classifierCalls = new AtomicInteger();
+    private final Set<BufferedImage> cats = ConcurrentHashMap.newKeySet();
+    private FakeSecurityRepository repo;
+    private SecurityService service;
+    private Sensor door;
+
+    @BeforeEach
+    void setUp() {
+        repo = new FakeSecurityRepository();
+        service = new SecurityService(repo, (image, threshold) -> {
+            classifierCalls.incrementAndGet();
+            return cats.contains(image);
+        }, 1, clock);
+        door = new Sensor("Front door", SensorType.DOOR);
+        service.addSensor(door);
+    }
+
+    private ScanScheduler scheduler(ScanScheduler.Budget budget) {
+        return new ScanScheduler(service, ScanScheduler.Intervals.DEFAULT, budget, clock, Runnable::run);
+    }
+
+    private static BufferedImage frame(long seed) {
+        BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                frame.setRGB(x, y, random.nextInt());
+            }
+        }
+        return frame;
+    }
+
+    private void advance(Duration duration) {
+        clock.advance(duration);
+        service.advanceTimers();
+    }
+
+    @Test
+    void interval_followsArmingStatus_andBoostsAfterSensorActivation() {
+        ScanScheduler scheduler = scheduler(ScanScheduler.Budget.DEFAULT);
+        service.updateCameraFrame("porch", frame(1));
+
+        scheduler.tick();
+        assertEquals(Duration.ofSeconds(30), scheduler.getInterval("porch"));
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        scheduler.tick();
+        assertEquals(Duration.ofSeconds(5), scheduler.getInterval("porch"));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        scheduler.tick();
+        assertEquals(Duration.ofSeconds(2), scheduler.getInterval("porch"));
+
+        service.changeSensorActivationStatus(door, true);
+        scheduler.tick();
+        assertEquals(Duration.ofMillis(250), scheduler.getInterval("porch"));
+
+        // the boost outlasts the alarm by the boost hold
+        service.changeSensorActivationStatus(door, false);
+        service.setAlarmStatus(AlarmStatus.NO_ALARM);
+        advance(Duration.ofSeconds(29));
+        scheduler.tick();
+        assertEquals(Duration.ofMillis(250), scheduler.getInterval("porch"));
+        advance(Duration.ofSeconds(2));
+        scheduler.tick();
+        assertEquals(Duration.ofSeconds(2), scheduler.getInterval("porch"));
+    }
+
+    @Test
+    void tick_isSafe_whileSensorsChangeOnAnotherThread() throws InterruptedException {
+        ScanScheduler scheduler = scheduler(ScanScheduler.Budget.DEFAULT);
+        for (int i = 0; i < 20; i++) {
+            service.addSensor(new Sensor("Window " + i, SensorType.WINDOW));
+        }
+        Thread toggling = new Thread(() -> {
+            for (boolean active = true; !Thread.currentThread().isInterrupted(); active = !active) {
+                service.changeSensorActivationStatus(door, active);
+            }
+        });
+        toggling.start();
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                scheduler.tick();
+            }
+        } finally {
+            toggling.interrupt();
+            toggling.join();
+        }
+    }
+
+    @Test
+    void unchangedFrames_areNotClassified_butTheCameraKeepsItsInterval() {
+        ScanScheduler scheduler = scheduler(ScanScheduler.Budget.DEFAULT);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        service.updateCameraFrame("porch", frame(1));
+        scheduler.tick();
+        assertEquals(1, classifierCalls.get());
+        // the same picture, delivered twice more
+        for (int i = 0; i < 2; i++) {
+            advance(Duration.ofSeconds(10));
+            service.updateCameraFrame("porch", frame(1));
+            scheduler.tick();
+        }
+        assertEquals(1, classifierCalls.get());
+        assertEquals(2, scheduler.getUnchangedFrames());
+        scheduler.tick();
+        assertEquals(Duration.ofSeconds(2), scheduler.getInterval("porch"));
+
+        // a change is classified one armed-away interval after the last quiet frame
+        advance(Duration.ofSeconds(2));
+        service.updateCameraFrame("porch", frame(2));
+        scheduler.tick();
+        assertEquals(2, classifierCalls.get());
+    }
+
+    @Test
+    void disarmedTrickle_savesCallsAgainstAFixedRate() {
+        ScanScheduler scheduler = scheduler(ScanScheduler.Budget.DEFAULT);
+        for (int second = 0; second < 60; second++) {
+            service.updateCameraFrame("porch", frame(second));
+            scheduler.tick();
+            advance(Duration.ofSeconds(1));
+        }
+        scheduler.tick();
+
+        // at 0, 30 and 60 seconds, where 250 ms scans would have made 240 calls
+        assertEquals(3, scheduler.getClassifierCalls());
+        assertEquals(237, scheduler.getCallsSaved());
+    }
+
+    @Test
+    void callBudget_defersScans_camerasSeeingACatFirst() {
+        // 6 calls a minute hold one call in the bucket
+        ScanScheduler scheduler = scheduler(new ScanScheduler.Budget(6, 1.0));
+        BufferedImage cat = frame(1);
+        cats.add(cat);
+        service.processImage("garden", cat);
+        classifierCalls.set(0);
+
+        service.updateCameraFrame("porch", frame(2));
+        service.updateCameraFrame("garden", frame(3));
+        scheduler.tick();
+        assertEquals(1, classifierCalls.get());
+        assertEquals(1, scheduler.getDeferredByCallBudget());
+        assertTrue(service.getCameras().stream().noneMatch(c -> c.getCameraId().equals("garden") && c.isCatVisible()));
+
+        advance(Duration.ofSeconds(10));
+        scheduler.tick();
+        assertEquals(2, classifierCalls.get());
+    }
+
+    @Test
+    void cpuBudget_defersScansUntilItRefills() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        service = new SecurityService(repo, (image, threshold) -> {
+            classifierCalls.incrementAndGet();
+            long start = threads.getCurrentThreadCpuTime();
+            while (threads.getCurrentThreadCpuTime() - start < 30_000_000) {
+                Thread.onSpinWait();
+            }
+            return false;
+        }, 1, clock);
+        // 10 ms of CPU a second
+        ScanScheduler scheduler = scheduler(new ScanScheduler.Budget(600, 0.01));
+
+        service.updateCameraFrame("porch", frame(1));
+        service.updateCameraFrame("garden", frame(2));
+        scheduler.tick();
+        assertEquals(1, classifierCalls.get());
+        assertEquals(1, scheduler.getDeferredByCpuBudget());
+        assertTrue(scheduler.getCpuTime().toMillis() >= 30);
+
+        advance(Duration.ofSeconds(1));
+        scheduler.tick();
+        assertEquals(1, classifierCalls.get());
+        advance(Duration.ofSeconds(3));
+        scheduler.tick();
+        assertEquals(2, classifierCalls.get());
+    }
+}
@@ -0,0 +1,163 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.security.service.SecurityEvent;
+import com.udacity.catpoint.security.service.SecurityEventPublisher;
+import com.udacity.catpoint.security.service.SecurityEventPublisher.OverflowStrategy;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SecurityEventPublisherTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T02:13:00Z");
+
+    @Test
+    void securityService_publishesTypedEvents_inSequence() throws Exception {
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), (image, threshold) -> false, 1, new TestClock());
+        Recorder recorder = new Recorder(Long.MAX_VALUE, 3);
+        service.getEventPublisher().subscribe(recorder);
+        recorder.awaitSubscribed();
+
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        service.changeSensorActivationStatus(door, true);
+
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(SecurityEvent.ArmingChanged.class, recorder.events.get(0));
+        SecurityEvent.SensorChanged sensor = assertInstanceOf(SecurityEvent.SensorChanged.class, recorder.events.get(1));
+        assertEquals(door.getSensorId(), sensor.sensorId());
+        assertTrue(sensor.active());
+        SecurityEvent.AlarmChanged alarm = assertInstanceOf(SecurityEvent.AlarmChanged.class, recorder.events.get(2));
+        assertEquals(AlarmStatus.PENDING_ALARM, alarm.status());
+        assertTrue(recorder.events.get(0).sequence() < recorder.events.get(1).sequence());
+        assertTrue(recorder.events.get(1).sequence() < recorder.events.get(2).sequence());
+    }
+
+    @Test
+    void dropOldest_keepsNewestEvents_untilDemandArrives() {
+        SecurityEventPublisher publisher = new SecurityEventPublisher(Runnable::run);
+        Recorder recorder = new Recorder(0, 0);
+        publisher.subscribe(recorder, OverflowStrategy.DROP_OLDEST, 4);
+
+        for (int i = 0; i < 10; i++) {
+            publishAlarm(publisher, AlarmStatus.values()[i % 3]);
+        }
+        assertTrue(recorder.events.isEmpty());
+
+        recorder.subscription.request(100);
+        assertEquals(List.of(7L, 8L, 9L, 10L), recorder.events.stream().map(SecurityEvent::sequence).toList());
+        assertEquals(6, publisher.getDroppedEvents());
+    }
+
+    @Test
+    void conflate_keepsLatestPerKey_inSequenceOrder() {
+        SecurityEventPublisher publisher = new SecurityEventPublisher(Runnable::run);
+        Recorder recorder = new Recorder(0, 0);
+        publisher.subscribe(recorder, OverflowStrategy.CONFLATE, 16);
+
+        UUID door = UUID.randomUUID();
+        UUID window = UUID.randomUUID();
+        publishAlarm(publisher, AlarmStatus.PENDING_ALARM);                                   // 1
+        publisher.publish(seq -> new SecurityEvent.SensorChanged(seq, NOW, door, "door", true));      // 2
+        publisher.publish(seq -> new SecurityEvent.SensorChanged(seq, NOW, window, "window", true));  // 3
+        publishAlarm(publisher, AlarmStatus.ALARM);                                           // 4
+        publisher.publish(seq -> new SecurityEvent.SensorChanged(seq, NOW, door, "door", false));     // 5
+
+        recorder.subscription.request(100);
+        assertEquals(List.of(3L, 4L, 5L), recorder.events.stream().map(SecurityEvent::sequence).toList());
+        assertEquals(AlarmStatus.ALARM, ((SecurityEvent.AlarmChanged) recorder.events.get(1)).status());
+        assertEquals(2, publisher.getDroppedEvents());
+    }
+
+    @Test
+    void block_stallsPublisher_untilSubscriberCatchesUp() throws Exception {
+        SecurityEventPublisher publisher = new SecurityEventPublisher();
+        Recorder recorder = new Recorder(0, 100);
+        publisher.subscribe(recorder, OverflowStrategy.BLOCK, 2);
+        recorder.awaitSubscribed();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                publishAlarm(publisher, AlarmStatus.NO_ALARM);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "producer should be waiting for room");
+
+        recorder.subscription.request(Long.MAX_VALUE);
+        producer.join(5000);
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+        assertEquals(100, recorder.events.size());
+        assertEquals(0, publisher.getDroppedEvents());
+    }
+
+    @Test
+    void close_completesSubscribers() throws Exception {
+        SecurityEventPublisher publisher = new SecurityEventPublisher(Runnable::run);
+        Recorder recorder = new Recorder(Long.MAX_VALUE, 0);
+        publisher.subscribe(recorder);
+        publisher.close();
+        assertTrue(recorder.completed);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    private static void publishAlarm(SecurityEventPublisher publisher, AlarmStatus status) {
+        publisher.publish(seq -> new SecurityEvent.AlarmChanged(seq, NOW, status));
+    }
+
+    private static class Recorder implements Flow.Subscriber<SecurityEvent> {
+        private final long initialDemand;
+        private final List<SecurityEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch done;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean completed;
+
+        Recorder(long initialDemand, int expectedEvents) {
+            this.initialDemand = initialDemand;
+            this.done = new CountDownLatch(expectedEvents);
+        }
+
+        void awaitSubscribed() throws InterruptedException {
+            assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(SecurityEvent item) {
+            events.add(item);
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
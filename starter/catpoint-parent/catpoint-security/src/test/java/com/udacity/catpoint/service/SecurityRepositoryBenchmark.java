@@ -0,0 +1,75 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.prefs.Preferences;
+
+/**
+ * Compares PretendDatabaseSecurityRepositoryImpl with JdbcSecurityRepository on what
+ * SecurityService does most: toggling single sensors, and resetting every sensor when the
+ * system is armed. Prints the time per operation. Not a unit test; run the main method from
+ * the IDE. The Pretend implementation writes to a scratch preferences node that is removed
+ * afterwards, so the application's own sensor list is left alone.
+ */
+public class SecurityRepositoryBenchmark {
+
+    // the Pretend implementation keeps all sensors in one preferences value, capped at 8 KB of JSON
+    private static final int SENSORS = 60;
+    private static final int TOGGLES = 5_000;
+    private static final int RESETS = 50;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("catpoint-bench");
+        String url = "jdbc:h2:" + dir.resolve("security").toAbsolutePath();
+
+        Preferences scratch = Preferences.userRoot().node("catpoint-bench-" + UUID.randomUUID());
+        try {
+            run("Preferences + JSON", () -> new PretendDatabaseSecurityRepositoryImpl(scratch), () -> { });
+        } finally {
+            scratch.removeNode();
+        }
+        try (JdbcSecurityRepository jdbc = new JdbcSecurityRepository(url)) {
+            run("H2, group commit", () -> jdbc, jdbc::flush);
+        }
+    }
+
+    private static void run(String name, Supplier<SecurityRepository> factory, Runnable flush) {
+        SecurityRepository repo = factory.get();
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor(String.format("bench-%03d", i), SensorType.values()[i % 3]);
+            sensors.add(sensor);
+            repo.addSensor(sensor);
+        }
+        flush.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TOGGLES; i++) {
+            Sensor sensor = sensors.get(i % SENSORS);
+            sensor.setActive(!sensor.getActive());
+            repo.updateSensor(sensor);
+        }
+        flush.run();
+        double toggleMicros = (System.nanoTime() - start) / 1e3 / TOGGLES;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RESETS; i++) {
+            for (Sensor sensor : sensors) {
+                sensor.setActive(false);
+                repo.updateSensor(sensor);
+            }
+            flush.run();
+        }
+        double resetMillis = (System.nanoTime() - start) / 1e6 / RESETS;
+
+        System.out.printf("%-20s %8.1f us/toggle %8.2f ms/reset of %d sensors%n", name, toggleMicros, resetMillis, SENSORS);
+        sensors.forEach(repo::removeSensor);
+        flush.run();
+    }
+}
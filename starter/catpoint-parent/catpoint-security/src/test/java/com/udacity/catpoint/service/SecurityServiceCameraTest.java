@@ -0,0 +1,178 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.service.Camera;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Multi-camera behavior: the alarm rules see a cat while any camera sees one, and
+ * cameras are scanned in parallel on the service's scan pool.
+ */
+@MockitoSettings(strictness = Strictness.LENIENT)
+@ExtendWith(MockitoExtension.class)
+class SecurityServiceCameraTest {
+
+    @Mock private SecurityRepository repo;
+    @Mock private ImageService imageService;
+
+    private SecurityService service;
+
+    private final BufferedImage catFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage emptyFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+    @BeforeEach
+    void setUp() {
+        service = new SecurityService(repo, imageService, 16);
+        when(repo.getSensors()).thenReturn(Collections.emptySet());
+        when(repo.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        when(repo.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(imageService.imageContainsCat(eq(catFrame), anyFloat())).thenReturn(true);
+        when(imageService.imageContainsCat(eq(emptyFrame), anyFloat())).thenReturn(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdownScanning();
+    }
+
+    @Test
+    void catOnOneCamera_keepsCatVisible_whileOtherCameraIsClear() {
+        service.processImage("garden", catFrame);
+        verify(repo).setAlarmStatus(AlarmStatus.ALARM);
+
+        // a clear frame from another camera must not reset the alarm state
+        service.processImage("hallway", emptyFrame);
+        verify(repo, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+
+        // once the garden camera is clear too, nothing sees a cat any more
+        service.processImage("garden", emptyFrame);
+        verify(repo).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    void removingCameraThatSeesCat_clearsItsVote() {
+        service.processImage("garden", catFrame);
+        service.removeCamera("garden");
+
+        when(repo.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        verify(repo, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void removingTheOnlyCameraThatSeesCat_runsTheNoCatRules() {
+        StatusListener listener = mock(StatusListener.class);
+        service.addStatusListener(listener);
+        service.processImage("garden", catFrame);
+        service.processImage("hallway", emptyFrame);
+        verify(repo, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+
+        service.removeCamera("garden");
+        verify(repo).setAlarmStatus(AlarmStatus.NO_ALARM);
+        verify(listener).catDetected(false);
+    }
+
+    @Test
+    void verdict_isStampedWithTheServiceClock() {
+        TestClock clock = new TestClock();
+        SecurityService clocked = new SecurityService(repo, imageService, 1, clock);
+        try {
+            clocked.processImage("garden", emptyFrame);
+            Camera garden = clocked.getCameras().stream()
+                    .filter(c -> c.getCameraId().equals("garden")).findFirst().orElseThrow();
+            assertEquals(clock.millis(), garden.getLastScanMillis());
+        } finally {
+            clocked.shutdownScanning();
+        }
+    }
+
+    @Test
+    void lateVerdictForAnOlderFrame_isDropped() throws InterruptedException {
+        BufferedImage slowCatFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        CountDownLatch classifying = new CountDownLatch(1);
+        CountDownLatch newerApplied = new CountDownLatch(1);
+        when(imageService.imageContainsCat(eq(slowCatFrame), anyFloat())).thenAnswer(inv -> {
+            classifying.countDown();
+            newerApplied.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+
+        Thread older = new Thread(() -> service.processImage("garden", slowCatFrame));
+        older.start();
+        assertTrue(classifying.await(5, TimeUnit.SECONDS));
+        service.processImage("garden", emptyFrame);
+        newerApplied.countDown();
+        older.join();
+
+        assertTrue(service.getCameras().stream().noneMatch(c -> c.isCatVisible()));
+        verify(repo, never()).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void verdictFromOutsideTheFeed_leavesThePendingFrameToItsScan() throws InterruptedException {
+        CountDownLatch scanned = new CountDownLatch(1);
+        when(imageService.imageContainsCat(eq(catFrame), anyFloat())).thenAnswer(inv -> {
+            scanned.countDown();
+            return true;
+        });
+        service.updateCameraFrame("garden", catFrame);
+
+        // a spool frame classified elsewhere
+        service.applyVerdict("garden", emptyFrame, false);
+        assertSame(catFrame, service.getCameras().stream()
+                .filter(c -> c.getCameraId().equals("garden")).findAny().orElseThrow().getLatestFrame());
+
+        service.startScanning("garden", Duration.ofMillis(10));
+        assertTrue(scanned.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cameras_areScannedInParallel() throws InterruptedException {
+        int cameraCount = 16;
+        CountDownLatch allStarted = new CountDownLatch(cameraCount);
+        Set<Thread> scanThreads = ConcurrentHashMap.newKeySet();
+        when(imageService.imageContainsCat(any(BufferedImage.class), anyFloat())).thenAnswer(inv -> {
+            scanThreads.add(Thread.currentThread());
+            allStarted.countDown();
+            // every call waits for all cameras to be in flight at once; serial scanning would time out
+            allStarted.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+
+        for (int i = 0; i < cameraCount; i++) {
+            String cameraId = "cam-" + i;
+            service.updateCameraFrame(cameraId, new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+            service.startScanning(cameraId, Duration.ofMillis(50));
+        }
+
+        assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(cameraCount, scanThreads.size());
+    }
+}
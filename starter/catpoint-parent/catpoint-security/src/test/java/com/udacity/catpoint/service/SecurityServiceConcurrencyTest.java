@@ -0,0 +1,169 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorType;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.service.Camera;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Many threads calling SecurityService at once. Each test races a mix of calls, waits for all
+ * of them, and then checks that the state is one a single caller could have produced.
+ */
+class SecurityServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private final BufferedImage catFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage emptyFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final ImageService imageService = (image, threshold) -> image == catFrame;
+
+    /**
+     * Starts every task at the same moment and waits for all of them.
+     * @throws AssertionError with the first failure of any task as its cause
+     */
+    static void race(List<Runnable> tasks) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Runnable task : tasks) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.size() + " threads failed", failures.peek());
+        }
+    }
+
+    private static class CountingListener implements StatusListener {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void notify(AlarmStatus status) {
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+    }
+
+    @Test
+    void listenersAddedAndRemoved_whileNotifying_neverThrowOrGoMissing() throws InterruptedException {
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), imageService, 1, new TestClock());
+        List<CountingListener> permanent = List.of(new CountingListener(), new CountingListener());
+        permanent.forEach(service::addStatusListener);
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS / 2; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    CountingListener transientListener = new CountingListener();
+                    service.addStatusListener(transientListener);
+                    service.removeStatusListener(transientListener);
+                }
+            });
+            tasks.add(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    service.setAlarmStatus(i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+                }
+            });
+        }
+        race(tasks);
+
+        CountingListener probe = new CountingListener();
+        service.addStatusListener(probe);
+        permanent.forEach(l -> l.calls.set(0));
+        service.setAlarmStatus(AlarmStatus.NO_ALARM);
+        // a lost add would skip a permanent listener; a lost remove would leave a transient one
+        permanent.forEach(l -> assertEquals(1, l.calls.get()));
+        assertEquals(1, probe.calls.get());
+    }
+
+    @Test
+    void sensorsArmingAndCameras_racing_keepTheAlarmRules() throws InterruptedException {
+        FakeSecurityRepository repo = new FakeSecurityRepository();
+        SecurityService service = new SecurityService(repo, imageService, 1, new TestClock());
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensors.add(sensor);
+            service.addSensor(sensor);
+        }
+        ArmingStatus[] armings = ArmingStatus.values();
+
+        for (int round = 0; round < 300; round++) {
+            List<Runnable> tasks = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                tasks.add(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20; i++) {
+                        switch (random.nextInt(4)) {
+                            case 0 -> service.setArmingStatus(armings[random.nextInt(armings.length)]);
+                            case 1 -> service.processImage("cam" + random.nextInt(2), random.nextBoolean() ? catFrame : emptyFrame);
+                            default -> service.changeSensorActivationStatus(sensors.get(random.nextInt(sensors.size())), random.nextBoolean());
+                        }
+                    }
+                });
+            }
+            race(tasks);
+            assertInvariants(service, repo, sensors, round);
+        }
+    }
+
+    private static void assertInvariants(SecurityService service, FakeSecurityRepository repo, List<Sensor> sensors, int round) {
+        ArmingStatus arming = service.getArmingStatus();
+        AlarmStatus alarm = service.getAlarmStatus();
+        boolean anySensorActive = sensors.stream().anyMatch(s -> Boolean.TRUE.equals(s.getActive()));
+        boolean anyCat = service.getCameras().stream().anyMatch(Camera::isCatVisible);
+        String state = "round " + round + ": " + arming + ", " + alarm + ", sensor active " + anySensorActive + ", cat " + anyCat;
+
+        // a lost update in the repository drops or duplicates sensors
+        assertEquals(sensors.size(), repo.getSensors().size(), state);
+        for (Sensor sensor : sensors) {
+            assertTrue(repo.getSensors().contains(sensor), state);
+        }
+        if (arming == ArmingStatus.DISARMED) {
+            assertEquals(AlarmStatus.NO_ALARM, alarm, state);
+        } else if (anySensorActive && alarm == AlarmStatus.NO_ALARM) {
+            fail("armed with a sensor active, but no alarm; " + state);
+        }
+        if (arming == ArmingStatus.ARMED_HOME && anyCat) {
+            assertEquals(AlarmStatus.ALARM, alarm, state);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorType;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how SecurityService throughput scales with the number of calling threads. Two
+ * workloads: sensor toggles only, which all serialize on the state lock, and a mix in which one
+ * call in five is processImage with a classifier that takes CLASSIFY_MILLIS, like a remote
+ * service, and which should scale because classification runs outside the lock. Every call also
+ * notifies a few listeners, and one in a hundred adds and removes one. Not a unit test; run the
+ * main method from the IDE.
+ */
+public class SecurityServiceContentionBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+    private static final long MILLIS_PER_LEVEL = 2_000;
+    private static final long CLASSIFY_MILLIS = 2;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d cores, %d ms per level%n", Runtime.getRuntime().availableProcessors(), MILLIS_PER_LEVEL);
+        System.out.printf("%-8s %16s %16s%n", "threads", "sensors ops/s", "mixed ops/s");
+        for (int threads : THREADS) {
+            double sensors = run(threads, 0);
+            double mixed = run(threads, 20);
+            System.out.printf("%-8d %16.0f %16.0f%n", threads, sensors, mixed);
+        }
+    }
+
+    /**
+     * @param imagePercent Share of calls that process an image
+     * @return Calls per second over all threads
+     */
+    private static double run(int threads, int imagePercent) throws InterruptedException {
+        BufferedImage catFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage emptyFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        ImageService remote = (image, threshold) -> {
+            try {
+                Thread.sleep(CLASSIFY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return image == catFrame;
+        };
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), remote, 1, new TestClock());
+        for (int i = 0; i < 4; i++) {
+            service.addStatusListener(new NoOpListener());
+        }
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.DOOR);
+            sensors.add(sensor);
+            service.addSensor(sensor);
+        }
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        LongAdder calls = new LongAdder();
+        long deadline = System.nanoTime() + MILLIS_PER_LEVEL * 1_000_000;
+        List<Thread> callers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String cameraId = "cam" + t;
+            Thread caller = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int roll = random.nextInt(100);
+                    if (roll < imagePercent) {
+                        service.processImage(cameraId, random.nextInt(10) == 0 ? catFrame : emptyFrame);
+                    } else if (roll == 99) {
+                        StatusListener listener = new NoOpListener();
+                        service.addStatusListener(listener);
+                        service.removeStatusListener(listener);
+                    } else {
+                        service.changeSensorActivationStatus(sensors.get(random.nextInt(sensors.size())), random.nextBoolean());
+                    }
+                    calls.increment();
+                }
+            });
+            callers.add(caller);
+            caller.start();
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        return calls.sum() * 1000.0 / MILLIS_PER_LEVEL;
+    }
+
+    private static class NoOpListener implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Entry and exit delays, driven by a test clock instead of the timer thread.
+ */
+class SecurityServiceDelayTest {
+
+    private final TestClock clock = new TestClock();
+    private FakeSecurityRepository repo;
+    private SecurityService service;
+    private Sensor door;
+
+    @BeforeEach
+    void setUp() {
+        repo = new FakeSecurityRepository();
+        service = new SecurityService(repo, (image, threshold) -> false, 1, clock);
+        service.setEntryDelay(Duration.ofSeconds(30));
+        door = new Sensor("Front door", SensorType.DOOR);
+        service.addSensor(door);
+    }
+
+    @Test
+    void pendingAlarm_escalatesWhenEntryDelayEnds() {
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        service.changeSensorActivationStatus(door, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+
+        advance(Duration.ofSeconds(29));
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+
+        advance(Duration.ofSeconds(1));
+        assertEquals(AlarmStatus.ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void delays_countFromWhenTheyStart_afterTheClockMovedUnobserved() {
+        // an idle system: the clock moves, but nothing has advanced the timers
+        clock.advance(Duration.ofMinutes(10));
+        service.setExitDelay(Duration.ofSeconds(60));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        advance(Duration.ofMillis(100));
+        assertTrue(service.isExitDelayActive());
+        advance(Duration.ofSeconds(60));
+        assertFalse(service.isExitDelayActive());
+
+        clock.advance(Duration.ofMinutes(10));
+        service.changeSensorActivationStatus(door, true);
+        advance(Duration.ofMillis(100));
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+        advance(Duration.ofSeconds(29));
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+        advance(Duration.ofSeconds(1));
+        assertEquals(AlarmStatus.ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void pendingAlarm_clearedBeforeEntryDelay_neverEscalates() {
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        service.changeSensorActivationStatus(door, true);
+        advance(Duration.ofSeconds(10));
+        service.changeSensorActivationStatus(door, false);
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+
+        advance(Duration.ofMinutes(5));
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void disarming_duringEntryDelay_cancelsEscalation() {
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        service.changeSensorActivationStatus(door, true);
+        service.setArmingStatus(ArmingStatus.DISARMED);
+
+        advance(Duration.ofMinutes(1));
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void exitDelay_ignoresActivations_untilItEnds() {
+        service.setExitDelay(Duration.ofSeconds(60));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertTrue(service.isExitDelayActive());
+
+        // leaving through the front door
+        service.changeSensorActivationStatus(door, true);
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+        service.changeSensorActivationStatus(door, false);
+
+        advance(Duration.ofSeconds(60));
+        assertFalse(service.isExitDelayActive());
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+
+        service.changeSensorActivationStatus(door, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void doorLeftOpen_whenExitDelayEnds_startsPendingAlarm() {
+        service.setExitDelay(Duration.ofSeconds(60));
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        service.changeSensorActivationStatus(door, true);
+
+        advance(Duration.ofSeconds(60));
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+
+        advance(Duration.ofSeconds(30));
+        assertEquals(AlarmStatus.ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void entryDelayTakenOutToRun_isIgnored_onceAPendingAlarmHasRestarted() {
+        // runs the given action the next time the rules read the arming status
+        Runnable[] onNextArmingRead = {null};
+        FakeSecurityRepository hooked = new FakeSecurityRepository() {
+            @Override
+            public ArmingStatus getArmingStatus() {
+                Runnable action = onNextArmingRead[0];
+                onNextArmingRead[0] = null;
+                if (action != null) {
+                    action.run();
+                }
+                return super.getArmingStatus();
+            }
+        };
+        SecurityService racing = new SecurityService(hooked, (image, threshold) -> false, 1, clock);
+        racing.setEntryDelay(Duration.ofSeconds(5));
+        racing.setExitDelay(Duration.ofSeconds(5));
+        // both delays end on the same tick; the exit delay, scheduled last, runs first
+        racing.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        racing.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertEquals(AlarmStatus.PENDING_ALARM, hooked.getAlarmStatus());
+
+        // while the entry delay's task waits to run, the pending alarm is cleared and starts over
+        onNextArmingRead[0] = () -> {
+            racing.setAlarmStatus(AlarmStatus.NO_ALARM);
+            racing.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        };
+        clock.advance(Duration.ofSeconds(5));
+        racing.advanceTimers();
+        assertEquals(AlarmStatus.PENDING_ALARM, hooked.getAlarmStatus());
+
+        // the new pending alarm gets its full entry delay
+        clock.advance(Duration.ofSeconds(4));
+        racing.advanceTimers();
+        assertEquals(AlarmStatus.PENDING_ALARM, hooked.getAlarmStatus());
+        clock.advance(Duration.ofSeconds(1));
+        racing.advanceTimers();
+        assertEquals(AlarmStatus.ALARM, hooked.getAlarmStatus());
+    }
+
+    private void advance(Duration duration) {
+        clock.advance(duration);
+        service.advanceTimers();
+    }
+}
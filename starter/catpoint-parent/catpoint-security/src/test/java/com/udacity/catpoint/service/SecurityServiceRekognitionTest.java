@@ -0,0 +1,72 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.image.service.AwsImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives SecurityService through AwsImageService and the real SDK client against
+ * {@link RekognitionStub}. Tagged so the default build leaves it out; run it with
+ * {@code mvn test -Prekognition}.
+ */
+@Tag("rekognition")
+class SecurityServiceRekognitionTest {
+
+    private RekognitionStub stub;
+    private AwsImageService imageService;
+    private FakeSecurityRepository repo;
+    private SecurityService service;
+
+    private final BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new RekognitionStub();
+        imageService = new AwsImageService(stub.clientProperties());
+        repo = new FakeSecurityRepository();
+        repo.setArmingStatus(ArmingStatus.ARMED_HOME);
+        service = new SecurityService(repo, imageService, 1, new TestClock());
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageService.close();
+        stub.close();
+    }
+
+    @Test
+    void catLabel_raisesAlarm_whileArmed() {
+        stub.setLabels(List.of(new RekognitionStub.Label("Cat", 97.5f)), 1);
+        service.processImage(frame);
+        assertEquals(AlarmStatus.ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void labelsBelowThreshold_orWithoutCat_leaveAlarmAlone() {
+        stub.setLabels(List.of(new RekognitionStub.Label("Cat", 20f), new RekognitionStub.Label("Sofa", 90f)), 1);
+        service.processImage(frame);
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void persistentFailures_surfaceAfterRetries_withoutChangingState() {
+        stub.setFailureRates(0, 1);
+        assertThrows(RuntimeException.class, () -> service.processImage(frame));
+        assertTrue(stub.getRequests() > 1, "the SDK did not retry");
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+    }
+}
@@ -0,0 +1,166 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorDebouncer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorDebouncerTest {
+
+    private final TestClock clock = new TestClock();
+    private FakeSecurityRepository repo;
+    private SecurityService service;
+    private SensorDebouncer debouncer;
+    private Sensor door;
+
+    @BeforeEach
+    void setUp() {
+        repo = new FakeSecurityRepository();
+        service = new SecurityService(repo, (image, threshold) -> false, 1, clock);
+        service.setEntryDelay(Duration.ofSeconds(30));
+        debouncer = new SensorDebouncer(service, clock);
+        debouncer.setWindows(SensorType.DOOR, Duration.ofMillis(500), 6, Duration.ofSeconds(10), Duration.ofMinutes(1));
+        door = new Sensor("Front door", SensorType.DOOR);
+        service.addSensor(door);
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @Test
+    void activation_isForwardedImmediately() {
+        debouncer.changeSensorActivationStatus(door, true);
+        assertTrue(door.getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void bounce_withinDebounceWindow_isSuppressed() {
+        debouncer.changeSensorActivationStatus(door, true);
+        clock.advance(Duration.ofMillis(50));
+        debouncer.changeSensorActivationStatus(door, false);
+        clock.advance(Duration.ofMillis(50));
+        debouncer.changeSensorActivationStatus(door, true);
+
+        // the bounce must not look like a second activation, which would sound the alarm
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+        assertEquals(1, debouncer.getEventsForwarded());
+        assertEquals(2, debouncer.getEventsSuppressed());
+    }
+
+    @Test
+    void heldDeactivation_isForwardedByFlush_onceWindowPasses() {
+        debouncer.changeSensorActivationStatus(door, true);
+        clock.advance(Duration.ofMillis(100));
+        debouncer.changeSensorActivationStatus(door, false);
+        assertTrue(door.getActive());
+
+        debouncer.flush();
+        assertTrue(door.getActive());
+
+        clock.advance(Duration.ofMillis(400));
+        debouncer.flush();
+        assertFalse(door.getActive());
+        assertEquals(AlarmStatus.NO_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void removedSensor_heldDeactivation_isDropped_andOtherSensorsKeepTheirs() {
+        Sensor window = new Sensor("Kitchen window", SensorType.WINDOW);
+        service.addSensor(window);
+        debouncer.changeSensorActivationStatus(door, true);
+        debouncer.changeSensorActivationStatus(window, true);
+        clock.advance(Duration.ofMillis(100));
+        debouncer.changeSensorActivationStatus(door, false);
+        debouncer.changeSensorActivationStatus(window, false);
+
+        debouncer.removeSensor(door);
+        clock.advance(Duration.ofMillis(400));
+        debouncer.flush();
+
+        // the door's deactivation would have put it back into the repository
+        assertEquals(1, repo.getSensors().size());
+        assertTrue(repo.getSensors().contains(window));
+        assertFalse(window.getActive());
+    }
+
+    @Test
+    void flappingSensor_isQuarantined_andHeldActive() {
+        for (int i = 0; i < 10; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            debouncer.changeSensorActivationStatus(door, i % 2 == 0);
+        }
+        assertTrue(debouncer.isQuarantined(door));
+        assertEquals(1, debouncer.getQuarantines());
+        assertTrue(door.getActive());
+        long forwarded = debouncer.getEventsForwarded();
+
+        clock.advance(Duration.ofSeconds(30));
+        debouncer.flush();
+        assertTrue(door.getActive());
+        assertEquals(forwarded, debouncer.getEventsForwarded());
+
+        clock.advance(Duration.ofSeconds(30));
+        debouncer.flush();
+        assertFalse(debouncer.isQuarantined(door));
+        assertFalse(door.getActive());
+    }
+
+    @Test
+    void quarantinedSensor_resetByArming_forwardsItsNextActivation() {
+        service.setArmingStatus(ArmingStatus.DISARMED);
+        for (int i = 0; i < 10; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            debouncer.changeSensorActivationStatus(door, i % 2 == 0);
+        }
+        assertTrue(debouncer.isQuarantined(door));
+        assertTrue(door.getActive());
+
+        // requirement 10: arming resets the sensor behind the debouncer's back
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertFalse(door.getActive());
+
+        clock.advance(Duration.ofSeconds(1));
+        debouncer.changeSensorActivationStatus(door, true);
+        assertTrue(door.getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, repo.getAlarmStatus());
+    }
+
+    @Test
+    void heldDeactivation_beforeArming_isNotForwardedAfterIt() {
+        debouncer.changeSensorActivationStatus(door, true);
+        clock.advance(Duration.ofMillis(100));
+        debouncer.changeSensorActivationStatus(door, false);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        long forwarded = debouncer.getEventsForwarded();
+
+        clock.advance(Duration.ofSeconds(1));
+        debouncer.flush();
+        assertEquals(forwarded, debouncer.getEventsForwarded());
+    }
+
+    @Test
+    void start_flushesHeldDeactivations_onItsOwn() throws InterruptedException {
+        debouncer.changeSensorActivationStatus(door, true);
+        clock.advance(Duration.ofMillis(100));
+        debouncer.changeSensorActivationStatus(door, false);
+        clock.advance(Duration.ofSeconds(1));
+
+        debouncer.start();
+        try {
+            long deadline = System.nanoTime() + 2_000_000_000L;
+            while (door.getActive() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            debouncer.close();
+        }
+        assertFalse(door.getActive());
+    }
+}
@@ -0,0 +1,109 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorHistory;
+import com.udacity.catpoint.data.SensorType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Fills a SensorHistory with three months of a busy house, then times the queries the
+ * analysis needs: activity per sensor over everything, activity of the doors over one day, and
+ * door activations by hour over everything. Doors and windows open mostly in the daytime and
+ * close seconds to minutes later; motion sensors fire in short bursts. Prints bytes per
+ * change, recording rate and the median time of each query with the blocks it read. Not a
+ * unit test; run the main method from the IDE.
+ */
+public class SensorHistoryBenchmark {
+
+    private static final int SENSORS = 40;
+    private static final int DAYS = 90;
+    private static final int OPENINGS_PER_DAY = 60;
+    private static final int RUNS = 201;
+    private static final Instant START = Instant.parse("2024-07-01T00:00:00Z");
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+    private record Change(long time, int sensor, boolean active) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS; i++) {
+            sensors.add(new Sensor("bench-" + i, SensorType.values()[i % 3]));
+        }
+        List<Change> changes = generate();
+
+        Path dir = Files.createTempDirectory("catpoint-history");
+        try (SensorHistory history = new SensorHistory(dir.resolve("history.bin"))) {
+            long start = System.nanoTime();
+            for (Change change : changes) {
+                Sensor sensor = sensors.get(change.sensor());
+                sensor.setActive(change.active());
+                history.record(sensor, Instant.ofEpochMilli(change.time()));
+            }
+            history.flush();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d changes of %d sensors over %d days, %d blocks%n", changes.size(), SENSORS, DAYS, history.getBlockCount());
+            System.out.printf("%.2f bytes per change, %.0f changes/s recorded%n%n",
+                    (double) history.getFileSize() / changes.size(), changes.size() / seconds);
+
+            Instant end = START.plus(Duration.ofDays(DAYS));
+            Instant day = START.plus(Duration.ofDays(45)).plus(Duration.ofHours(7));
+            System.out.printf("%-34s %10s %12s%n", "query", "median ms", "blocks read");
+            time("activity, all sensors, 90 days", history, () -> history.getActivity(null, START, end));
+            time("activity, doors, one day", history, () -> history.getActivity(SensorType.DOOR, day, day.plus(Duration.ofDays(1))));
+            time("door activations by hour, 90 days", history, () -> history.getActivationsByHour(SensorType.DOOR, START, end, ZONE));
+        }
+    }
+
+    private static void time(String name, SensorHistory history, Supplier<Object> query) {
+        long[] nanos = new long[RUNS];
+        long blocks = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long before = history.getBlocksRead();
+            long start = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - start;
+            blocks = history.getBlocksRead() - before;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-34s %10.2f %12d%n", name, nanos[RUNS / 2] / 1e6, blocks);
+    }
+
+    /**
+     * Every sensor's changes, merged into the order they happen in.
+     */
+    private static List<Change> generate() {
+        Random random = new Random(42);
+        PriorityQueue<Change> queue = new PriorityQueue<>((a, b) -> Long.compare(a.time(), b.time()));
+        for (int sensor = 0; sensor < SENSORS; sensor++) {
+            SensorType type = SensorType.values()[sensor % 3];
+            for (int d = 0; d < DAYS; d++) {
+                long midnight = START.plus(Duration.ofDays(d)).toEpochMilli();
+                for (int i = 0; i < OPENINGS_PER_DAY; i++) {
+                    // mostly between 7 am and 11 pm
+                    double hour = random.nextDouble() < 0.9 ? 7 + random.nextDouble() * 16 : random.nextDouble() * 24;
+                    long opened = midnight + (long) (hour * 3_600_000);
+                    long open = type == SensorType.MOTION ? 1_000 + random.nextInt(10_000) : 5_000 + random.nextInt(300_000);
+                    queue.add(new Change(opened, sensor, true));
+                    queue.add(new Change(opened + open, sensor, false));
+                }
+            }
+        }
+        List<Change> changes = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            changes.add(queue.poll());
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,185 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.data.Sensor;
+import com.udacity.catpoint.data.SensorHistory;
+import com.udacity.catpoint.data.SensorHistory.Change;
+import com.udacity.catpoint.data.SensorHistory.SensorActivity;
+import com.udacity.catpoint.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorHistoryTest {
+
+    // spans the end of daylight saving time in Berlin
+    private static final Instant START = Instant.parse("2024-10-01T00:00:00Z");
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @TempDir
+    Path dir;
+
+    /** Changes of one sensor: alternately opened and closed, minutes to hours apart. */
+    private static List<Change> randomChanges(long seed, int count) {
+        Random random = new Random(seed);
+        List<Change> changes = new ArrayList<>();
+        Instant time = START;
+        for (int i = 0; i < count; i++) {
+            time = time.plusMillis(1 + (long) (random.nextDouble() * random.nextDouble() * 4 * 3_600_000));
+            changes.add(new Change(time, i % 2 == 0));
+        }
+        return changes;
+    }
+
+    private static void record(SensorHistory history, Sensor sensor, List<Change> changes) {
+        for (Change change : changes) {
+            sensor.setActive(change.active());
+            history.record(sensor, change.time());
+        }
+    }
+
+    @Test
+    void changes_readBackExactly_acrossBlocksAndReopen() {
+        Path file = dir.resolve("history.bin");
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        List<Change> changes = randomChanges(1, 1_000);
+        try (SensorHistory history = new SensorHistory(file, 64)) {
+            record(history, door, changes);
+            // sealed blocks and the open one together
+            assertEquals(changes, history.getChanges(door.getSensorId(), Instant.MIN, Instant.MAX));
+        }
+        try (SensorHistory history = new SensorHistory(file, 64)) {
+            assertEquals(16, history.getBlockCount());
+            assertEquals(changes, history.getChanges(door.getSensorId(), Instant.MIN, Instant.MAX));
+            assertEquals(changes.subList(100, 200),
+                    history.getChanges(door.getSensorId(), changes.get(100).time(), changes.get(200).time()));
+            // block headers add about a byte per change at this small block size
+            assertTrue(history.getFileSize() < 6 * changes.size(), history.getFileSize() + " bytes");
+        }
+    }
+
+    @Test
+    void queries_matchABruteForceCount_andOnlyReadTheBlocksTheyNeed() {
+        List<Sensor> sensors = List.of(new Sensor("Front door", SensorType.DOOR), new Sensor("Back door", SensorType.DOOR),
+                new Sensor("Kitchen window", SensorType.WINDOW));
+        List<List<Change>> changes = new ArrayList<>();
+        try (SensorHistory history = new SensorHistory(dir.resolve("history.bin"), 128)) {
+            for (int i = 0; i < sensors.size(); i++) {
+                changes.add(randomChanges(10 + i, 2_000 * (i + 1)));
+                record(history, sensors.get(i), changes.get(i));
+            }
+            Instant from = START.plus(Duration.ofDays(20));
+            Instant to = START.plus(Duration.ofDays(40));
+
+            long before = history.getBlocksRead();
+            List<SensorActivity> doors = history.getActivity(SensorType.DOOR, from, to);
+            // only the two blocks each door has cut by the range edges, none of the window's
+            assertTrue(history.getBlocksRead() - before <= 4, history.getBlocksRead() - before + " blocks read");
+            assertEquals(2, doors.size());
+            assertEquals("Back door", doors.get(0).name());
+            for (SensorActivity activity : doors) {
+                List<Change> expected = changes.get(sensors.indexOf(sensors.stream()
+                        .filter(s -> s.getSensorId().equals(activity.sensorId())).findFirst().orElseThrow()));
+                long inRange = expected.stream().filter(c -> !c.time().isBefore(from) && c.time().isBefore(to)).count();
+                long activations = expected.stream().filter(c -> c.active() && !c.time().isBefore(from) && c.time().isBefore(to)).count();
+                assertEquals(inRange, activity.changes());
+                assertEquals(activations, activity.activations());
+            }
+
+            long[] expectedHours = new long[24];
+            for (List<Change> sensorChanges : changes.subList(0, 2)) {
+                for (Change c : sensorChanges) {
+                    if (c.active() && !c.time().isBefore(from) && c.time().isBefore(to)) {
+                        expectedHours[c.time().atZone(BERLIN).getHour()]++;
+                    }
+                }
+            }
+            assertArrayEquals(expectedHours, history.getActivationsByHour(SensorType.DOOR, from, to, BERLIN));
+        }
+    }
+
+    @Test
+    void blockCutShortByACrash_isDroppedOnOpen() throws IOException {
+        Path file = dir.resolve("history.bin");
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        List<Change> changes = randomChanges(3, 256);
+        try (SensorHistory history = new SensorHistory(file, 64)) {
+            record(history, door, changes);
+        }
+        long size = Files.size(file);
+        try (var channel = Files.newByteChannel(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 10);
+        }
+        try (SensorHistory history = new SensorHistory(file, 64)) {
+            assertEquals(changes.subList(0, 192), history.getChanges(door.getSensorId(), Instant.MIN, Instant.MAX));
+            // appends continue after the last intact block
+            record(history, door, changes.subList(192, 256));
+        }
+        try (SensorHistory history = new SensorHistory(file, 64)) {
+            assertEquals(changes, history.getChanges(door.getSensorId(), Instant.MIN, Instant.MAX));
+        }
+    }
+
+    @Test
+    void queriesDuringWrites_neverMissABlockBeingSealed() throws InterruptedException {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        List<Change> changes = randomChanges(11, 20_000);
+        try (SensorHistory history = new SensorHistory(dir.resolve("history.bin"), 4)) {
+            AtomicInteger recorded = new AtomicInteger();
+            Thread writer = new Thread(() -> {
+                for (Change change : changes) {
+                    door.setActive(change.active());
+                    history.record(door, change.time());
+                    recorded.incrementAndGet();
+                }
+            });
+            writer.start();
+            int incomplete = 0;
+            while (writer.isAlive()) {
+                int before = recorded.get();
+                if (history.getChanges(door.getSensorId(), Instant.MIN, Instant.MAX).size() < before) {
+                    incomplete++;
+                }
+            }
+            writer.join();
+
+            assertEquals(0, incomplete, "queries missed changes recorded before they started");
+            assertEquals(changes, history.getChanges(door.getSensorId(), Instant.MIN, Instant.MAX));
+        }
+    }
+
+    @Test
+    void securityService_recordsSensorChanges() {
+        TestClock clock = new TestClock();
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), (image, threshold) -> false, 1, clock);
+        Sensor window = new Sensor("Kitchen window", SensorType.WINDOW);
+        try (SensorHistory history = new SensorHistory(dir.resolve("history.bin"))) {
+            service.setSensorHistory(history);
+            service.setArmingStatus(ArmingStatus.ARMED_HOME);
+            Instant opened = clock.instant();
+            service.changeSensorActivationStatus(window, true);
+            clock.advance(Duration.ofMinutes(5));
+            service.changeSensorActivationStatus(window, false);
+
+            assertEquals(List.of(new Change(opened, true), new Change(opened.plus(Duration.ofMinutes(5)), false)),
+                    history.getChanges(window.getSensorId(), Instant.MIN, Instant.MAX));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorSnapshotTest {
+
+    @Test
+    void oldSnapshot_isUnaffectedByLaterWrites() {
+        FakeSecurityRepository repo = new FakeSecurityRepository();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        repo.addSensor(door);
+        SensorSnapshot before = repo.getSensorSnapshot();
+
+        door.setActive(true);
+        repo.updateSensor(door);
+        repo.addSensor(new Sensor("Attic", SensorType.WINDOW));
+        SensorSnapshot after = repo.getSensorSnapshot();
+
+        assertEquals(1, before.size());
+        assertFalse(before.get(door.getSensorId()).getActive());
+        assertEquals(0, before.getActiveCount());
+
+        assertEquals(2, after.size());
+        assertTrue(after.get(door.getSensorId()).getActive());
+        assertEquals(1, after.getActiveCount());
+        assertTrue(after.getVersion() > before.getVersion());
+        assertSame(door, after.get(door.getSensorId()).getSensor());
+    }
+
+    @Test
+    void unchangedRepository_keepsVersion() {
+        FakeSecurityRepository repo = new FakeSecurityRepository();
+        repo.addSensor(new Sensor("Hall", SensorType.MOTION));
+        assertSame(repo.getSensorSnapshot(), repo.getSensorSnapshot());
+        assertSame(repo.getSensorSnapshot(), repo.getSensorSnapshot().withoutSensor(new Sensor("Other", SensorType.DOOR)));
+    }
+
+    @Test
+    void iteration_matchesSensorNaturalOrder_throughRandomChanges() {
+        Random random = new Random(7);
+        List<Sensor> live = new ArrayList<>();
+        SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+        for (int i = 0; i < 2_000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || live.isEmpty()) {
+                Sensor s = new Sensor("s" + random.nextInt(500), SensorType.values()[random.nextInt(3)]);
+                s.setActive(random.nextBoolean());
+                live.add(s);
+                snapshot = snapshot.withSensor(s);
+            } else if (op == 1) {
+                Sensor s = live.get(random.nextInt(live.size()));
+                s.setActive(!s.getActive());
+                s.setName("s" + random.nextInt(500));
+                snapshot = snapshot.withSensor(s);
+            } else {
+                Sensor s = live.remove(random.nextInt(live.size()));
+                snapshot = snapshot.withoutSensor(s);
+            }
+        }
+
+        List<String> expected = new ArrayList<>();
+        new TreeSet<>(live).forEach(s -> expected.add(s.getSensorId() + ":" + s.getActive()));
+        List<String> actual = new ArrayList<>();
+        snapshot.forEach(e -> actual.add(e.getSensorId() + ":" + e.getActive()));
+        assertEquals(expected, actual);
+        assertEquals(live.stream().filter(Sensor::getActive).count(), snapshot.getActiveCount());
+        assertNull(snapshot.get(new Sensor("x", SensorType.DOOR).getSensorId()));
+    }
+}
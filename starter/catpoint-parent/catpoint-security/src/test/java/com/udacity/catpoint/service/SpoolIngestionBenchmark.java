@@ -0,0 +1,80 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SpoolIngestion;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Drops a backlog of 640x480 camera frames into a spool and measures how fast SpoolIngestion
+ * works it off with different stage sizes. The image service takes CLASSIFY_MILLIS per frame,
+ * like a remote classifier would. Prints frames per second and the per-stage counters. Not a
+ * unit test; run the main method from the IDE.
+ */
+public class SpoolIngestionBenchmark {
+
+    private static final int FRAMES = 2_000;
+    private static final long CLASSIFY_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        byte[] jpeg = cameraJpeg(640, 480);
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d cores, %d frames of %d KB, classification %d ms%n", cores, FRAMES, jpeg.length / 1024, CLASSIFY_MILLIS);
+
+        run(jpeg, 1, 1);
+        run(jpeg, cores, 1);
+        run(jpeg, cores, 16);
+        run(jpeg, cores, 64);
+    }
+
+    private static void run(byte[] jpeg, int decodeThreads, int classifyThreads) throws Exception {
+        Path spool = Files.createTempDirectory("catpoint-spool");
+        for (int i = 0; i < FRAMES; i++) {
+            Files.write(spool.resolve("cam" + (i % 8) + "_" + i + ".jpg"), jpeg);
+        }
+        ImageService remote = (image, threshold) -> {
+            try {
+                Thread.sleep(CLASSIFY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        };
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), remote, 1, new TestClock());
+        try (SpoolIngestion ingestion = new SpoolIngestion(spool, service, decodeThreads, classifyThreads, SpoolIngestion.DEFAULT_QUEUE_CAPACITY)) {
+            long start = System.nanoTime();
+            ingestion.start();
+            while (ingestion.getStats().get(0).processed() < FRAMES) {
+                Thread.sleep(1);
+            }
+            ingestion.awaitIdle(Duration.ofMinutes(10));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("decode=%-3d classify=%-3d %8.0f frames/s%n", decodeThreads, classifyThreads, FRAMES / seconds);
+            for (SpoolIngestion.StageStats stage : ingestion.getStats()) {
+                System.out.printf("    %-9s threads=%-3d processed=%-6d failed=%d%n",
+                        stage.name(), stage.threads(), stage.processed(), stage.failed());
+            }
+        }
+    }
+
+    private static byte[] cameraJpeg(int width, int height) throws Exception {
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(16);
+                frame.setRGB(x, y, ((x * 255 / width + noise) << 16) | ((y * 255 / height + noise) << 8) | noise);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", out);
+        return out.toByteArray();
+    }
+}
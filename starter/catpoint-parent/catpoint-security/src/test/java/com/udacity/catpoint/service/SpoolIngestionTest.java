@@ -0,0 +1,99 @@
+package com.udacity.catpoint.service;
+
+import com.udacity.catpoint.data.AlarmStatus;
+import com.udacity.catpoint.data.ArmingStatus;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SpoolIngestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpoolIngestionTest {
+
+    @TempDir
+    Path spool;
+
+    // frames 64 pixels wide show a cat
+    private final ImageService catDetector = (image, threshold) -> image.getWidth() == 64;
+
+    private void drop(String name, int width) throws IOException {
+        Path part = spool.resolve(name + ".part");
+        ImageIO.write(new BufferedImage(width, 48, BufferedImage.TYPE_3BYTE_BGR), "jpg", part.toFile());
+        Files.move(part, spool.resolve(name));
+    }
+
+    private static void awaitDetected(SpoolIngestion ingestion, long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (ingestion.getStats().get(0).processed() < frames && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void framesInSpool_areDecodedClassifiedAndApplied() throws Exception {
+        FakeSecurityRepository repo = new FakeSecurityRepository();
+        repo.setArmingStatus(ArmingStatus.ARMED_HOME);
+        SecurityService service = new SecurityService(repo, catDetector, 1, new TestClock());
+
+        for (int i = 0; i < 20; i++) {
+            drop("garden_" + i + ".jpg", 32); // already waiting before the pipeline starts
+        }
+        try (SpoolIngestion ingestion = new SpoolIngestion(spool, service, 4, 2, 8)) {
+            ingestion.start();
+            for (int i = 0; i < 30; i++) {
+                drop("porch_" + i + ".jpg", 32);
+            }
+            drop("porch_30.jpg", 64);
+            awaitDetected(ingestion, 51);
+            assertTrue(ingestion.awaitIdle(Duration.ofSeconds(10)));
+
+            assertEquals(AlarmStatus.ALARM, repo.getAlarmStatus());
+            assertNotNull(service.getCameras().stream().filter(c -> c.getCameraId().equals("garden")).findAny().orElse(null));
+            try (var left = Files.list(spool)) {
+                assertEquals(0, left.count());
+            }
+
+            List<SpoolIngestion.StageStats> stats = ingestion.getStats();
+            assertEquals(List.of("detect", "decode", "classify", "apply"), stats.stream().map(SpoolIngestion.StageStats::name).toList());
+            assertEquals(51, stats.get(0).processed());
+            assertEquals(51, stats.get(1).processed());
+            assertEquals(8, stats.get(1).queueCapacity());
+            assertEquals(0, stats.get(1).queueDepth());
+            assertEquals(0, stats.get(1).failed());
+        }
+    }
+
+    @Test
+    void unreadableFrames_areLeftInPlace_andPartialFilesIgnored() throws Exception {
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), catDetector, 1, new TestClock());
+        try (SpoolIngestion ingestion = new SpoolIngestion(spool, service, 1, 1, 4)) {
+            ingestion.start();
+            Files.writeString(spool.resolve("porch_1.jpg.part"), "half a frame");
+            Files.writeString(spool.resolve("notes.txt"), "not a frame");
+            Path broken = Files.writeString(spool.resolve("porch_2.jpg"), "not a jpeg");
+            drop("porch_3.jpg", 32);
+
+            awaitDetected(ingestion, 2);
+            assertTrue(ingestion.awaitIdle(Duration.ofSeconds(10)));
+            SpoolIngestion.StageStats decode = ingestion.getStats().get(1);
+            assertEquals(2, decode.processed());
+            assertEquals(1, decode.failed());
+            assertTrue(Files.exists(broken));
+            assertFalse(Files.exists(spool.resolve("porch_3.jpg")));
+        }
+    }
+}